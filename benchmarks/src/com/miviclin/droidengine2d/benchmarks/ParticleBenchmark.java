@@ -0,0 +1,81 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.benchmarks;
+
+import android.util.Log;
+
+import com.miviclin.droidengine2d.graphics.particles.ParticleEmitter;
+import com.miviclin.droidengine2d.graphics.particles.ParticleEmitterDefinition;
+
+/**
+ * Microbenchmark that measures the time spent by {@link ParticleEmitter#update(float)} per frame.<br>
+ * The emitter is filled with particles that live longer than the benchmark, so the number of live particles does not
+ * change while it is measured. The particles have gravity and angular velocity, so every property is updated.<br>
+ * It does not call OpenGL, so it can be run on a device or in a desktop JVM. It is not part of the library: add the
+ * benchmarks/src folder to the sources of a test application and call it from there. Example:
+ * 
+ * <pre>
+ * long nanos = ParticleBenchmark.run(40000, 600);
+ * </pre>
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public final class ParticleBenchmark {
+
+	private static final float FRAME_TIME = 16.0f;
+
+	private ParticleBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark and logs the average time per frame.<br>
+	 * The first numFrames updates are not measured, so the code can be compiled by the JIT before measuring it.
+	 * 
+	 * @param numParticles Number of live particles.
+	 * @param numFrames Number of measured frames.
+	 * @return Total nanoseconds spent updating the emitter in the measured frames
+	 */
+	public static long run(int numParticles, int numFrames) {
+		ParticleEmitterDefinition definition = new ParticleEmitterDefinition();
+		definition.setMaxParticles(numParticles);
+		definition.setEmissionRate(0.0f);
+		// Twice the simulated time of the benchmark, so no particle dies
+		float life = FRAME_TIME * numFrames * 4;
+		definition.setLife(life, life);
+		definition.setSpeed(50.0f, 150.0f);
+		definition.setAngle(0.0f, 360.0f);
+		definition.setGravity(0.0f, -98.0f);
+		definition.setAngularVelocity(-90.0f, 90.0f);
+
+		ParticleEmitter emitter = new ParticleEmitter(definition);
+		emitter.setPosition(400.0f, 240.0f);
+		emitter.emit(numParticles);
+
+		for (int i = 0; i < numFrames; i++) {
+			emitter.update(FRAME_TIME);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < numFrames; i++) {
+			emitter.update(FRAME_TIME);
+		}
+		long nanos = System.nanoTime() - start;
+
+		String tag = ParticleBenchmark.class.getSimpleName();
+		Log.d(tag, emitter.getNumParticles() + " particles: " + (nanos / numFrames) + " ns/frame");
+		return nanos;
+	}
+
+}
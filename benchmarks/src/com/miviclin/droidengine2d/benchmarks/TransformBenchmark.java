@@ -0,0 +1,120 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.benchmarks;
+
+import android.opengl.Matrix;
+import android.util.Log;
+
+import com.miviclin.droidengine2d.util.TransformUtilities;
+import com.miviclin.droidengine2d.util.math.Affine2;
+import com.miviclin.droidengine2d.util.math.Matrix4;
+
+/**
+ * Microbenchmark that compares the cost of computing the MVP matrix of a sprite with 4x4 matrices (the way it was
+ * computed before {@link Affine2} existed) and with {@link Affine2}.<br>
+ * It must be run on a device, because the 4x4 path calls android.opengl.Matrix. It is not part of the library: add
+ * the benchmarks/src folder to the sources of a test application and call it from there. Example:
+ * 
+ * <pre>
+ * long[] nanos = TransformBenchmark.run(10000, 20);
+ * </pre>
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public final class TransformBenchmark {
+
+	private TransformBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark and logs the average time per sprite of each path.<br>
+	 * Each round computes the MVP matrices of numSprites sprites with different positions, scales and rotations. The
+	 * first round of each path is not measured, so the code can be compiled by the JIT before measuring it.
+	 * 
+	 * @param numSprites Number of sprites per round.
+	 * @param numRounds Number of measured rounds.
+	 * @return Total nanoseconds spent by the 4x4 path (index 0) and by the Affine2 path (index 1)
+	 */
+	public static long[] run(int numSprites, int numRounds) {
+		float[] view = new float[16];
+		float[] projection = new float[16];
+		float[] viewProjection = new float[16];
+		Matrix.setLookAtM(view, 0, 0.0f, 0.0f, 5.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+		Matrix.orthoM(projection, 0, 0.0f, 800.0f, 0.0f, 480.0f, 1.0f, 10.0f);
+		Matrix.multiplyMM(viewProjection, 0, projection, 0, view, 0);
+		float[] mvpMatrices = new float[numSprites * 16];
+
+		runMatrix4(numSprites, view, projection, mvpMatrices);
+		long matrix4Nanos = 0;
+		for (int i = 0; i < numRounds; i++) {
+			matrix4Nanos += runMatrix4(numSprites, view, projection, mvpMatrices);
+		}
+
+		runAffine2(numSprites, viewProjection, mvpMatrices);
+		long affine2Nanos = 0;
+		for (int i = 0; i < numRounds; i++) {
+			affine2Nanos += runAffine2(numSprites, viewProjection, mvpMatrices);
+		}
+
+		long numSamples = (long) numSprites * numRounds;
+		String tag = TransformBenchmark.class.getSimpleName();
+		Log.d(tag, "Matrix4: " + (matrix4Nanos / numSamples) + " ns/sprite, Affine2: " +
+				(affine2Nanos / numSamples) + " ns/sprite");
+		return new long[] { matrix4Nanos, affine2Nanos };
+	}
+
+	/**
+	 * Computes the MVP matrices with 4x4 matrices: the model matrix is built with TransformUtilities and it is
+	 * multiplied by the view matrix and then by the projection matrix.
+	 * 
+	 * @param numSprites Number of sprites.
+	 * @param view View matrix.
+	 * @param projection Projection matrix.
+	 * @param mvpMatrices Array where the MVP matrices are stored.
+	 * @return Elapsed nanoseconds
+	 */
+	private static long runMatrix4(int numSprites, float[] view, float[] projection, float[] mvpMatrices) {
+		Matrix4 modelMatrix = new Matrix4();
+		float[] temp = new float[16];
+		long start = System.nanoTime();
+		for (int i = 0; i < numSprites; i++) {
+			TransformUtilities.transform2D(modelMatrix, i % 800, i % 480, i % 360, 32.0f, 48.0f);
+			Matrix.multiplyMM(temp, 0, view, 0, modelMatrix.getValues(), 0);
+			Matrix.multiplyMM(mvpMatrices, i * 16, projection, 0, temp, 0);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Computes the MVP matrices with Affine2: the model transform is built in one step and it is composed with the
+	 * view-projection matrix.
+	 * 
+	 * @param numSprites Number of sprites.
+	 * @param viewProjection View-projection matrix.
+	 * @param mvpMatrices Array where the MVP matrices are stored.
+	 * @return Elapsed nanoseconds
+	 */
+	private static long runAffine2(int numSprites, float[] viewProjection, float[] mvpMatrices) {
+		Affine2 modelTransform = new Affine2();
+		long start = System.nanoTime();
+		for (int i = 0; i < numSprites; i++) {
+			modelTransform.setToTransform(i % 800, i % 480, i % 360, 32.0f, 48.0f);
+			Affine2.multiplyMM(mvpMatrices, i * 16, viewProjection, 0, modelTransform);
+		}
+		return System.nanoTime() - start;
+	}
+
+}
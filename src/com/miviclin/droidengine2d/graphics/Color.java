@@ -31,6 +31,10 @@ public class Color {
 	private float s;
 	private float v;
 
+	private int packedABGR;
+	private float packedFloat;
+	private boolean packedDirty;
+
 	/**
 	 * Creates a new Color with the specified RGB values (values between 0.0f and 1.0f). The A (alpha) component will
 	 * have tha value 1.0f by default.
@@ -59,6 +63,7 @@ public class Color {
 		this.g = g;
 		this.b = b;
 		this.a = a;
+		this.packedDirty = true;
 		convertRGBtoHSV();
 	}
 
@@ -75,6 +80,7 @@ public class Color {
 		this.h = color.h;
 		this.s = color.s;
 		this.v = color.v;
+		this.packedDirty = true;
 	}
 
 	/**
@@ -91,6 +97,7 @@ public class Color {
 		this.h = color.h;
 		this.s = color.s;
 		this.v = color.v;
+		this.packedDirty = true;
 	}
 
 	/**
@@ -107,6 +114,7 @@ public class Color {
 		this.r = r;
 		this.g = g;
 		this.b = b;
+		this.packedDirty = true;
 		convertRGBtoHSV();
 	}
 
@@ -168,6 +176,7 @@ public class Color {
 		this.h = h;
 		this.s = s;
 		this.v = v;
+		this.packedDirty = true;
 		convertHSVtoRGB();
 	}
 
@@ -273,6 +282,7 @@ public class Color {
 			throw new IllegalArgumentException("The alpha component must be a value between 0 and 1");
 		}
 		this.a = a;
+		this.packedDirty = true;
 	}
 
 	/**
@@ -302,6 +312,92 @@ public class Color {
 		return v;
 	}
 
+	/**
+	 * Returns this Color packed in a 32-bit integer, with one byte per component. The bytes are stored in ABGR order
+	 * (alpha is the most significant byte), so when the integer is written to a little-endian buffer the components
+	 * are in RGBA order, as expected by a GL_UNSIGNED_BYTE vertex attribute.<br>
+	 * The packed value is cached until this Color is modified.
+	 * 
+	 * @return Packed color
+	 */
+	public int toPackedABGR() {
+		if (packedDirty) {
+			updatePackedValues();
+		}
+		return packedABGR;
+	}
+
+	/**
+	 * Returns the value of {@link #toPackedABGR()} stored in a float, so it can be written to a vertex buffer of
+	 * floats. The vertex attribute must be declared as 4 normalized GL_UNSIGNED_BYTE components.<br>
+	 * The lowest bit of the alpha component is cleared to make sure the result is not a NaN value, whose bits might
+	 * be modified by the VM. This means that the maximum alpha value is 254/255.<br>
+	 * The packed value is cached until this Color is modified.
+	 * 
+	 * @return Packed color
+	 */
+	public float toPackedFloat() {
+		if (packedDirty) {
+			updatePackedValues();
+		}
+		return packedFloat;
+	}
+
+	/**
+	 * Updates the cached packed values of this Color.
+	 */
+	private void updatePackedValues() {
+		packedABGR = packABGR(r, g, b, a);
+		packedFloat = Float.intBitsToFloat(packedABGR & 0xfeffffff);
+		packedDirty = false;
+	}
+
+	/**
+	 * Packs the specified RGBA values in a 32-bit integer, with one byte per component, in ABGR order.<br>
+	 * Values out of the [0..1] interval are clamped.
+	 * 
+	 * @param r Red.
+	 * @param g Green.
+	 * @param b Blue.
+	 * @param a Alpha.
+	 * @return Packed color
+	 * @see #toPackedABGR()
+	 */
+	public static int packABGR(float r, float g, float b, float a) {
+		return (toByte(a) << 24) | (toByte(b) << 16) | (toByte(g) << 8) | toByte(r);
+	}
+
+	/**
+	 * Packs the specified RGBA values in a float, with one byte per component, in ABGR order.<br>
+	 * Values out of the [0..1] interval are clamped.
+	 * 
+	 * @param r Red.
+	 * @param g Green.
+	 * @param b Blue.
+	 * @param a Alpha.
+	 * @return Packed color
+	 * @see #toPackedFloat()
+	 */
+	public static float packABGRFloat(float r, float g, float b, float a) {
+		return Float.intBitsToFloat(packABGR(r, g, b, a) & 0xfeffffff);
+	}
+
+	/**
+	 * Converts a color component to a byte value between 0 and 255.
+	 * 
+	 * @param component Value between 0.0f and 1.0f.
+	 * @return Value between 0 and 255
+	 */
+	private static int toByte(float component) {
+		if (component <= 0.0f) {
+			return 0;
+		}
+		if (component >= 1.0f) {
+			return 255;
+		}
+		return (int) (component * 255.0f + 0.5f);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
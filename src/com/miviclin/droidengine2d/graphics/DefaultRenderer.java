@@ -18,11 +18,13 @@ import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 import android.app.Activity;
+import android.content.Context;
 import android.opengl.GLES20;
 
 import com.miviclin.droidengine2d.AbstractGame;
 import com.miviclin.droidengine2d.BuildConfig;
 import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.rendertarget.DynamicResolution;
 
 /**
  * Default renderer.
@@ -34,6 +36,8 @@ public class DefaultRenderer implements EngineRenderer {
 
 	private AbstractGame game;
 	private Graphics graphics;
+	private DynamicResolution dynamicResolution;
+	private long previousFrameStartTime;
 
 	/**
 	 * Creates a new DefaultRenderer.
@@ -48,14 +52,37 @@ public class DefaultRenderer implements EngineRenderer {
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
 		Camera camera = game.getCamera();
 		Activity activity = game.getActivity();
-		graphics = new Graphics(camera, activity);
+		graphics = createGraphics(camera, activity);
 		graphics.initialize();
 
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
-		GLES20.glEnable(GLES20.GL_BLEND);
-		GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-		GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+		graphics.setBackgroundColor(new Color(0.0f, 0.0f, 0.0f, 1.0f));
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		glStateCache.enable(GLES20.GL_CULL_FACE);
+		glStateCache.enable(GLES20.GL_BLEND);
+		glStateCache.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		glStateCache.disable(GLES20.GL_DEPTH_TEST);
+		previousFrameStartTime = 0;
+	}
+
+	/**
+	 * Creates the Graphics object used to render the game.<br>
+	 * This method is called from {@link #onSurfaceCreated(GL10, EGLConfig)}, every time the OpenGL context is created.
+	 * It can be overridden in order to configure how Graphics renders. For example:
+	 * 
+	 * <pre>
+	 * <code>{@literal @}Override
+	 * protected Graphics createGraphics(Camera camera, Context context) {
+	 *     return new Graphics(camera, context, TransformMode.CPU);
+	 * }
+	 * </code>
+	 * </pre>
+	 * 
+	 * @param camera Camera.
+	 * @param context Context.
+	 * @return Graphics
+	 */
+	protected Graphics createGraphics(Camera camera, Context context) {
+		return new Graphics(camera, context);
 	}
 
 	@Override
@@ -63,12 +90,27 @@ public class DefaultRenderer implements EngineRenderer {
 		Camera camera = game.getCamera();
 		camera.setViewportDimensions(width, height);
 		camera.update();
+		graphics.setSurfaceDimensions(width, height);
+		if (dynamicResolution != null) {
+			dynamicResolution.setSurfaceDimensions(width, height);
+		}
 		game.getTextureManager().loadAllTextures();
+		previousFrameStartTime = 0;
 	}
 
 	@Override
 	public void onDrawFrame(GL10 glUnused) {
-		GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+		long frameStartTime = System.nanoTime();
+		graphics.beginFrame();
+		if (dynamicResolution != null) {
+			if (previousFrameStartTime != 0) {
+				dynamicResolution.onFrameTime(frameStartTime - previousFrameStartTime);
+			}
+			dynamicResolution.beginFrame(graphics);
+		} else {
+			GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+		}
+		previousFrameStartTime = frameStartTime;
 
 		if (BuildConfig.DEBUG) {
 			GLDebugger.getInstance().logNumDrawCallsInPreviousFrame();
@@ -76,10 +118,42 @@ public class DefaultRenderer implements EngineRenderer {
 
 		game.draw(graphics);
 		graphics.flush();
+		if (dynamicResolution != null) {
+			dynamicResolution.endFrame(graphics);
+		}
 
 		if (BuildConfig.DEBUG) {
 			GLDebugger.getInstance().resetNumDrawCallsInCurrentFrame();
 		}
 	}
 
+	/**
+	 * Returns the DynamicResolution used to render the game.
+	 * 
+	 * @return DynamicResolution, or null if the game is rendered directly to the surface
+	 */
+	public DynamicResolution getDynamicResolution() {
+		return dynamicResolution;
+	}
+
+	/**
+	 * Sets the DynamicResolution used to render the game. If it is not null, the game is rendered to an offscreen
+	 * RenderTarget whose resolution changes depending on the time between consecutive calls to
+	 * {@link #onDrawFrame(GL10)}, and it is upscaled to the surface at the end of each frame (see
+	 * {@link DynamicResolution}).<br>
+	 * This method should be called before the engine starts. For example:
+	 * 
+	 * <pre>
+	 * <code>DefaultRenderer renderer = new DefaultRenderer(game);
+	 * renderer.setDynamicResolution(new DynamicResolution(0.5f, 1.0f));
+	 * engineBuilder.setRenderer(renderer);
+	 * </code>
+	 * </pre>
+	 * 
+	 * @param dynamicResolution DynamicResolution, or null to render the game directly to the surface.
+	 */
+	public void setDynamicResolution(DynamicResolution dynamicResolution) {
+		this.dynamicResolution = dynamicResolution;
+	}
+
 }
@@ -0,0 +1,517 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.miviclin.droidengine2d.graphics.material.BlendingOptions;
+import com.miviclin.droidengine2d.graphics.material.Material;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.mesh.RectangleBatchRenderer;
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+
+/**
+ * Queue of draw commands recorded by {@link Graphics} in deferred mode.<br>
+ * The data of the commands is stored in primitive arrays. Each command is tagged with a 64-bit sort key composed of
+ * (from the most significant bits to the least significant bits) the layer, the renderer, the texture and the blending
+ * options of the command. Sorting the commands by this key groups the commands that can be rendered in the same batch
+ * while preserving the order of the layers. The sort is stable, so commands with the same key are rendered in the
+ * order they were recorded.<br>
+ * A queue can also be created to sort the layers front-to-back (higher layers first). This is used for opaque elements
+ * rendered with depth testing, which do not depend on the painter's order.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class DrawCommandQueue {
+
+	/**
+	 * Min layer.
+	 */
+	public static final int MIN_LAYER = -32768;
+
+	/**
+	 * Max layer.
+	 */
+	public static final int MAX_LAYER = 32767;
+
+	/**
+	 * Type of the commands that render a rectangle with a Material.
+	 */
+	public static final int COMMAND_RECT = 0;
+
+	/**
+	 * Type of the commands that render a glyph of a text. The Material of these commands is a TextureColorMaterial
+	 * defined by a TextureRegion and a color.
+	 */
+	public static final int COMMAND_GLYPH = 1;
+
+	/**
+	 * Offset of the X coordinate of the position in the data of each command.
+	 */
+	public static final int POSITION_X = 0;
+
+	/**
+	 * Offset of the Y coordinate of the position in the data of each command.
+	 */
+	public static final int POSITION_Y = 1;
+
+	/**
+	 * Offset of the X component of the scale in the data of each command.
+	 */
+	public static final int SCALE_X = 2;
+
+	/**
+	 * Offset of the Y component of the scale in the data of each command.
+	 */
+	public static final int SCALE_Y = 3;
+
+	/**
+	 * Offset of the X coordinate of the origin in the data of each command.
+	 */
+	public static final int ORIGIN_X = 4;
+
+	/**
+	 * Offset of the Y coordinate of the origin in the data of each command.
+	 */
+	public static final int ORIGIN_Y = 5;
+
+	/**
+	 * Offset of the rotation in the data of each command.
+	 */
+	public static final int ROTATION = 6;
+
+	/**
+	 * Offset of the color (4 components) in the data of each command. Only used by glyph commands.
+	 */
+	public static final int COLOR = 7;
+
+	/**
+	 * Number of floats stored per command.
+	 */
+	public static final int COMMAND_DATA_SIZE = 11;
+
+	private static final int LAYER_SHIFT = 48;
+	private static final int RENDERER_SHIFT = 40;
+	private static final int TEXTURE_SHIFT = 16;
+	private static final int BLENDING_SHIFT = 8;
+	private static final long RENDERER_MASK = 0xFFL;
+	private static final long TEXTURE_MASK = 0xFFFFFFL;
+	private static final long BLENDING_MASK = 0xFFL;
+	private static final long BATCH_STATE_MASK = ~(0xFFFFL << LAYER_SHIFT);
+
+	private long[] keys;
+	private long[] tmpKeys;
+	private int[] order;
+	private int[] tmpOrder;
+	private int[] types;
+	private int[] layers;
+	private float[] data;
+	private RectangleBatchRenderer<?>[] renderers;
+	private Object[] payloads;
+	private int size;
+	private boolean sorted;
+
+	private final boolean frontToBack;
+	private final int[] radixCounts;
+	private final ArrayList<RectangleBatchRenderer<?>> rendererIds;
+	private final ArrayList<BlendingOptions> blendingIds;
+
+	/**
+	 * Creates a new DrawCommandQueue. The layers are sorted back-to-front.
+	 * 
+	 * @param initialCapacity Initial capacity. The queue grows when it is full.
+	 */
+	public DrawCommandQueue(int initialCapacity) {
+		this(initialCapacity, false);
+	}
+
+	/**
+	 * Creates a new DrawCommandQueue.
+	 * 
+	 * @param initialCapacity Initial capacity. The queue grows when it is full.
+	 * @param frontToBack true to sort the layers front-to-back (higher layers first), false to sort them back-to-front.
+	 */
+	public DrawCommandQueue(int initialCapacity, boolean frontToBack) {
+		if (initialCapacity < 1) {
+			throw new IllegalArgumentException("The initial capacity must be at least 1");
+		}
+		allocate(initialCapacity);
+		this.size = 0;
+		this.sorted = true;
+		this.frontToBack = frontToBack;
+		this.radixCounts = new int[256];
+		this.rendererIds = new ArrayList<RectangleBatchRenderer<?>>();
+		this.blendingIds = new ArrayList<BlendingOptions>();
+	}
+
+	/**
+	 * Allocates the arrays of this queue with the specified capacity, keeping the commands already recorded.
+	 * 
+	 * @param capacity New capacity.
+	 */
+	private void allocate(int capacity) {
+		if (keys == null) {
+			keys = new long[capacity];
+			order = new int[capacity];
+			types = new int[capacity];
+			layers = new int[capacity];
+			data = new float[capacity * COMMAND_DATA_SIZE];
+			renderers = new RectangleBatchRenderer<?>[capacity];
+			payloads = new Object[capacity];
+		} else {
+			keys = Arrays.copyOf(keys, capacity);
+			order = Arrays.copyOf(order, capacity);
+			types = Arrays.copyOf(types, capacity);
+			layers = Arrays.copyOf(layers, capacity);
+			data = Arrays.copyOf(data, capacity * COMMAND_DATA_SIZE);
+			renderers = Arrays.copyOf(renderers, capacity);
+			payloads = Arrays.copyOf(payloads, capacity);
+		}
+		tmpKeys = new long[capacity];
+		tmpOrder = new int[capacity];
+	}
+
+	/**
+	 * Records a command that renders a rectangle with the specified Material.<br>
+	 * The Material is referenced, not copied, so it must not be modified until the queue is submitted.
+	 * 
+	 * @param layer Layer.
+	 * @param renderer Renderer that will render the rectangle.
+	 * @param material Material.
+	 * @param x X coordinate of the position.
+	 * @param y Y coordinate of the position.
+	 * @param scaleX X component of the scale.
+	 * @param scaleY Y component of the scale.
+	 * @param originX X coordinate of the origin (value between 0.0f and 1.0f).
+	 * @param originY Y coordinate of the origin (value between 0.0f and 1.0f).
+	 * @param rotation Rotation angle around the origin.
+	 */
+	public void addRect(int layer, RectangleBatchRenderer<?> renderer, Material material, float x, float y,
+			float scaleX, float scaleY, float originX, float originY, float rotation) {
+
+		Texture texture = null;
+		if (material instanceof TextureMaterial) {
+			texture = ((TextureMaterial) material).getTextureRegion().getTexture();
+		}
+		int i = add(COMMAND_RECT, layer, renderer, texture, material.getBlendingOptions(), material);
+		int offset = i * COMMAND_DATA_SIZE;
+		setTransform(offset, x, y, scaleX, scaleY, originX, originY, rotation);
+	}
+
+	/**
+	 * Records a command that renders a glyph of a text.
+	 * 
+	 * @param layer Layer.
+	 * @param renderer Renderer that will render the glyph.
+	 * @param textureRegion TextureRegion of the glyph.
+	 * @param blendingOptions BlendingOptions.
+	 * @param x X coordinate of the position.
+	 * @param y Y coordinate of the position.
+	 * @param scaleX X component of the scale.
+	 * @param scaleY Y component of the scale.
+	 * @param originX X coordinate of the origin (value between 0.0f and 1.0f).
+	 * @param originY Y coordinate of the origin (value between 0.0f and 1.0f).
+	 * @param rotation Rotation angle around the origin.
+	 * @param color Color of the glyph. The color is copied.
+	 */
+	public void addGlyph(int layer, RectangleBatchRenderer<?> renderer, TextureRegion textureRegion,
+			BlendingOptions blendingOptions, float x, float y, float scaleX, float scaleY, float originX,
+			float originY, float rotation, Color color) {
+
+		int i = add(COMMAND_GLYPH, layer, renderer, textureRegion.getTexture(), blendingOptions, textureRegion);
+		int offset = i * COMMAND_DATA_SIZE;
+		setTransform(offset, x, y, scaleX, scaleY, originX, originY, rotation);
+		data[offset + COLOR + 0] = color.getR();
+		data[offset + COLOR + 1] = color.getG();
+		data[offset + COLOR + 2] = color.getB();
+		data[offset + COLOR + 3] = color.getA();
+	}
+
+	/**
+	 * Appends a new command to this queue and returns its index.
+	 * 
+	 * @param type Type of the command.
+	 * @param layer Layer.
+	 * @param renderer Renderer.
+	 * @param texture Texture used by the command, or null.
+	 * @param blendingOptions BlendingOptions.
+	 * @param payload Material or TextureRegion of the command.
+	 * @return Index of the command
+	 */
+	private int add(int type, int layer, RectangleBatchRenderer<?> renderer, Texture texture,
+			BlendingOptions blendingOptions, Object payload) {
+
+		if (layer < MIN_LAYER || layer > MAX_LAYER) {
+			throw new IllegalArgumentException("The layer must be a value between " + MIN_LAYER + " and " +
+					MAX_LAYER);
+		}
+		if (size == keys.length) {
+			allocate(size * 2);
+		}
+		int i = size;
+		long textureId = (texture != null) ? (System.identityHashCode(texture) & TEXTURE_MASK) : 0;
+		long layerKey = frontToBack ? (MAX_LAYER - layer) : (layer - MIN_LAYER);
+		keys[i] = (layerKey << LAYER_SHIFT) |
+				((getRendererId(renderer) & RENDERER_MASK) << RENDERER_SHIFT) |
+				(textureId << TEXTURE_SHIFT) |
+				((getBlendingId(blendingOptions) & BLENDING_MASK) << BLENDING_SHIFT);
+		order[i] = i;
+		types[i] = type;
+		layers[i] = layer;
+		renderers[i] = renderer;
+		payloads[i] = payload;
+		size++;
+		sorted = false;
+		return i;
+	}
+
+	/**
+	 * Stores the transform of a command.
+	 * 
+	 * @param offset Offset of the data of the command.
+	 * @param x X coordinate of the position.
+	 * @param y Y coordinate of the position.
+	 * @param scaleX X component of the scale.
+	 * @param scaleY Y component of the scale.
+	 * @param originX X coordinate of the origin.
+	 * @param originY Y coordinate of the origin.
+	 * @param rotation Rotation angle around the origin.
+	 */
+	private void setTransform(int offset, float x, float y, float scaleX, float scaleY, float originX, float originY,
+			float rotation) {
+
+		data[offset + POSITION_X] = x;
+		data[offset + POSITION_Y] = y;
+		data[offset + SCALE_X] = scaleX;
+		data[offset + SCALE_Y] = scaleY;
+		data[offset + ORIGIN_X] = originX;
+		data[offset + ORIGIN_Y] = originY;
+		data[offset + ROTATION] = rotation;
+	}
+
+	/**
+	 * Returns the id of the specified renderer in the sort keys.
+	 * 
+	 * @param renderer Renderer.
+	 * @return Id
+	 */
+	private long getRendererId(RectangleBatchRenderer<?> renderer) {
+		for (int i = 0; i < rendererIds.size(); i++) {
+			if (rendererIds.get(i) == renderer) {
+				return i;
+			}
+		}
+		rendererIds.add(renderer);
+		return rendererIds.size() - 1;
+	}
+
+	/**
+	 * Returns the id of the specified BlendingOptions in the sort keys.
+	 * 
+	 * @param blendingOptions BlendingOptions.
+	 * @return Id
+	 */
+	private long getBlendingId(BlendingOptions blendingOptions) {
+		for (int i = 0; i < blendingIds.size(); i++) {
+			if (blendingIds.get(i).equals(blendingOptions)) {
+				return i;
+			}
+		}
+		blendingIds.add(new BlendingOptions(blendingOptions.getSourceFactor(),
+				blendingOptions.getDestinationFactor(), blendingOptions.getBlendEquationMode()));
+		return blendingIds.size() - 1;
+	}
+
+	/**
+	 * Sorts the commands of this queue by their sort keys.<br>
+	 * This method uses a stable LSD radix sort over the bytes of the keys. Bytes that are equal in all keys are
+	 * skipped.
+	 */
+	public void sort() {
+		if (sorted) {
+			return;
+		}
+		int[] counts = radixCounts;
+		long[] srcKeys = keys;
+		long[] dstKeys = tmpKeys;
+		int[] srcOrder = order;
+		int[] dstOrder = tmpOrder;
+		long[] swapKeys;
+		int[] swapOrder;
+		int digit;
+		int position;
+		int count;
+		for (int shift = 0; shift < 64; shift += 8) {
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < size; i++) {
+				counts[(int) (srcKeys[i] >>> shift) & 0xFF]++;
+			}
+			if (counts[(int) (srcKeys[0] >>> shift) & 0xFF] == size) {
+				continue;
+			}
+			position = 0;
+			for (int d = 0; d < 256; d++) {
+				count = counts[d];
+				counts[d] = position;
+				position += count;
+			}
+			for (int i = 0; i < size; i++) {
+				digit = (int) (srcKeys[i] >>> shift) & 0xFF;
+				position = counts[digit]++;
+				dstKeys[position] = srcKeys[i];
+				dstOrder[position] = srcOrder[i];
+			}
+			swapKeys = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = swapKeys;
+			swapOrder = srcOrder;
+			srcOrder = dstOrder;
+			dstOrder = swapOrder;
+		}
+		keys = srcKeys;
+		tmpKeys = dstKeys;
+		order = srcOrder;
+		tmpOrder = dstOrder;
+		sorted = true;
+	}
+
+	/**
+	 * Returns an estimation of the number of draw calls needed to render the commands of this queue in their current
+	 * order. A new draw call is counted every time the renderer, the texture or the blending options change between
+	 * two consecutive commands.<br>
+	 * The number of draw calls caused by full batches is not taken into account.
+	 * 
+	 * @return Estimated number of draw calls
+	 */
+	public int estimateNumDrawCalls() {
+		if (size == 0) {
+			return 0;
+		}
+		int numDrawCalls = 1;
+		long previous = keys[0] & BATCH_STATE_MASK;
+		long current;
+		for (int i = 1; i < size; i++) {
+			current = keys[i] & BATCH_STATE_MASK;
+			if (current != previous) {
+				numDrawCalls++;
+			}
+			previous = current;
+		}
+		return numDrawCalls;
+	}
+
+	/**
+	 * Removes all commands from this queue.
+	 */
+	public void clear() {
+		Arrays.fill(renderers, 0, size, null);
+		Arrays.fill(payloads, 0, size, null);
+		size = 0;
+		sorted = true;
+	}
+
+	/**
+	 * Returns the number of commands recorded in this queue.
+	 * 
+	 * @return Number of commands
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the index of the command located at the specified position of the queue. If the queue has been sorted,
+	 * the position refers to the sorted order.
+	 * 
+	 * @param position Position in the queue.
+	 * @return Index of the command
+	 */
+	public int getCommand(int position) {
+		return order[position];
+	}
+
+	/**
+	 * Returns the type of the specified command.
+	 * 
+	 * @param command Index of the command.
+	 * @return {@link #COMMAND_RECT} or {@link #COMMAND_GLYPH}
+	 */
+	public int getType(int command) {
+		return types[command];
+	}
+
+	/**
+	 * Returns the layer of the specified command.
+	 * 
+	 * @param command Index of the command.
+	 * @return Layer
+	 */
+	public int getLayer(int command) {
+		return layers[command];
+	}
+
+	/**
+	 * Returns true if the layers of this queue are sorted front-to-back.
+	 * 
+	 * @return true if higher layers are rendered first, false otherwise
+	 */
+	public boolean isFrontToBack() {
+		return frontToBack;
+	}
+
+	/**
+	 * Returns the renderer of the specified command.
+	 * 
+	 * @param command Index of the command.
+	 * @return RectangleBatchRenderer
+	 */
+	public RectangleBatchRenderer<?> getRenderer(int command) {
+		return renderers[command];
+	}
+
+	/**
+	 * Returns the Material of the specified command.
+	 * 
+	 * @param command Index of the command. The command must be of type {@link #COMMAND_RECT}.
+	 * @return Material
+	 */
+	public Material getMaterial(int command) {
+		return (Material) payloads[command];
+	}
+
+	/**
+	 * Returns the TextureRegion of the specified command.
+	 * 
+	 * @param command Index of the command. The command must be of type {@link #COMMAND_GLYPH}.
+	 * @return TextureRegion
+	 */
+	public TextureRegion getTextureRegion(int command) {
+		return (TextureRegion) payloads[command];
+	}
+
+	/**
+	 * Returns the array where the data of the commands is stored. The data of each command takes
+	 * {@link #COMMAND_DATA_SIZE} consecutive elements, starting at command * COMMAND_DATA_SIZE.
+	 * 
+	 * @return Array of command data
+	 */
+	public float[] getData() {
+		return data;
+	}
+
+}
@@ -32,10 +32,23 @@ public final class GLDebugger {
 
 	public static final int FLAG_NO_LOGGING = 0;
 	public static final int FLAG_LOG_NUM_DRAW_CALLS = 1;
+	public static final int FLAG_LOG_DRAW_CALL_SORTING = 2;
+	public static final int FLAG_LOG_SKIPPED_GL_CALLS = 4;
+	public static final int FLAG_LOG_CULLING = 8;
 
 	private boolean debugModeEnabled;
 	private int numDrawCallsInCurrentFrame;
 	private int numDrawCallsInPreviousFrame;
+	private int numDrawCallsBeforeSortingInCurrentFrame;
+	private int numDrawCallsAfterSortingInCurrentFrame;
+	private int numDrawCallsBeforeSortingInPreviousFrame;
+	private int numDrawCallsAfterSortingInPreviousFrame;
+	private int numSkippedGLCallsInCurrentFrame;
+	private int numSkippedGLCallsInPreviousFrame;
+	private int numCulledElementsInCurrentFrame;
+	private int numCulledElementsInPreviousFrame;
+	private int numSubmittedElementsInCurrentFrame;
+	private int numSubmittedElementsInPreviousFrame;
 	private int logFlags;
 
 	/**
@@ -45,6 +58,16 @@ public final class GLDebugger {
 		this.debugModeEnabled = false;
 		this.numDrawCallsInCurrentFrame = 0;
 		this.numDrawCallsInPreviousFrame = 0;
+		this.numDrawCallsBeforeSortingInCurrentFrame = 0;
+		this.numDrawCallsAfterSortingInCurrentFrame = 0;
+		this.numDrawCallsBeforeSortingInPreviousFrame = 0;
+		this.numDrawCallsAfterSortingInPreviousFrame = 0;
+		this.numSkippedGLCallsInCurrentFrame = 0;
+		this.numSkippedGLCallsInPreviousFrame = 0;
+		this.numCulledElementsInCurrentFrame = 0;
+		this.numCulledElementsInPreviousFrame = 0;
+		this.numSubmittedElementsInCurrentFrame = 0;
+		this.numSubmittedElementsInPreviousFrame = 0;
 		this.logFlags = FLAG_NO_LOGGING;
 	}
 
@@ -183,6 +206,152 @@ public final class GLDebugger {
 	public void resetNumDrawCallsInCurrentFrame() {
 		numDrawCallsInPreviousFrame = numDrawCallsInCurrentFrame;
 		numDrawCallsInCurrentFrame = 0;
+		numDrawCallsBeforeSortingInPreviousFrame = numDrawCallsBeforeSortingInCurrentFrame;
+		numDrawCallsAfterSortingInPreviousFrame = numDrawCallsAfterSortingInCurrentFrame;
+		numDrawCallsBeforeSortingInCurrentFrame = 0;
+		numDrawCallsAfterSortingInCurrentFrame = 0;
+		numSkippedGLCallsInPreviousFrame = numSkippedGLCallsInCurrentFrame;
+		numSkippedGLCallsInCurrentFrame = 0;
+		numCulledElementsInPreviousFrame = numCulledElementsInCurrentFrame;
+		numCulledElementsInCurrentFrame = 0;
+		numSubmittedElementsInPreviousFrame = numSubmittedElementsInCurrentFrame;
+		numSubmittedElementsInCurrentFrame = 0;
+	}
+
+	/**
+	 * Registers the estimated number of draw calls needed to render a queue of deferred draw commands before and after
+	 * sorting it.<br>
+	 * This method is called by {@link Graphics} every time the draw commands recorded in deferred mode are submitted.
+	 * 
+	 * @param numDrawCallsBeforeSorting Estimated number of draw calls in the order the commands were recorded.
+	 * @param numDrawCallsAfterSorting Estimated number of draw calls in sorted order.
+	 * 
+	 * @see DrawCommandQueue#estimateNumDrawCalls()
+	 */
+	public void addSortedDrawCallsInCurrentFrame(int numDrawCallsBeforeSorting, int numDrawCallsAfterSorting) {
+		numDrawCallsBeforeSortingInCurrentFrame += numDrawCallsBeforeSorting;
+		numDrawCallsAfterSortingInCurrentFrame += numDrawCallsAfterSorting;
+	}
+
+	/**
+	 * Returns the estimated number of draw calls that the deferred draw commands submitted in the current frame would
+	 * have needed if they had not been sorted.
+	 * 
+	 * @return Estimated number of draw calls before sorting
+	 */
+	public int getNumDrawCallsBeforeSortingInCurrentFrame() {
+		return numDrawCallsBeforeSortingInCurrentFrame;
+	}
+
+	/**
+	 * Returns the estimated number of draw calls needed to render the deferred draw commands submitted in the current
+	 * frame once sorted.
+	 * 
+	 * @return Estimated number of draw calls after sorting
+	 */
+	public int getNumDrawCallsAfterSortingInCurrentFrame() {
+		return numDrawCallsAfterSortingInCurrentFrame;
+	}
+
+	/**
+	 * Returns the estimated number of draw calls that the deferred draw commands submitted in the previous frame would
+	 * have needed if they had not been sorted.
+	 * 
+	 * @return Estimated number of draw calls before sorting
+	 */
+	public int getNumDrawCallsBeforeSortingInPreviousFrame() {
+		return numDrawCallsBeforeSortingInPreviousFrame;
+	}
+
+	/**
+	 * Returns the estimated number of draw calls needed to render the deferred draw commands submitted in the
+	 * previous frame once sorted.
+	 * 
+	 * @return Estimated number of draw calls after sorting
+	 */
+	public int getNumDrawCallsAfterSortingInPreviousFrame() {
+		return numDrawCallsAfterSortingInPreviousFrame;
+	}
+
+	/**
+	 * Increments the number of redundant OpenGL calls skipped by {@link GLStateCache} in the current frame.
+	 */
+	public void incrementNumSkippedGLCallsInCurrentFrame() {
+		numSkippedGLCallsInCurrentFrame++;
+	}
+
+	/**
+	 * Returns the number of redundant OpenGL calls skipped by {@link GLStateCache} in the current frame.
+	 * 
+	 * @return Number of skipped calls
+	 */
+	public int getNumSkippedGLCallsInCurrentFrame() {
+		return numSkippedGLCallsInCurrentFrame;
+	}
+
+	/**
+	 * Returns the number of redundant OpenGL calls skipped by {@link GLStateCache} in the previous frame.
+	 * 
+	 * @return Number of skipped calls
+	 */
+	public int getNumSkippedGLCallsInPreviousFrame() {
+		return numSkippedGLCallsInPreviousFrame;
+	}
+
+	/**
+	 * Adds the specified number of elements (rectangles or glyphs) to the number of elements discarded by viewport
+	 * culling in the current frame.
+	 * 
+	 * @param numElements Number of culled elements.
+	 */
+	public void addNumCulledElementsInCurrentFrame(int numElements) {
+		numCulledElementsInCurrentFrame += numElements;
+	}
+
+	/**
+	 * Returns the number of elements discarded by viewport culling in the current frame.
+	 * 
+	 * @return Number of culled elements
+	 */
+	public int getNumCulledElementsInCurrentFrame() {
+		return numCulledElementsInCurrentFrame;
+	}
+
+	/**
+	 * Returns the number of elements discarded by viewport culling in the previous frame.
+	 * 
+	 * @return Number of culled elements
+	 */
+	public int getNumCulledElementsInPreviousFrame() {
+		return numCulledElementsInPreviousFrame;
+	}
+
+	/**
+	 * Adds the specified number of elements (rectangles or glyphs) to the number of elements submitted to the material
+	 * renderers in the current frame.
+	 * 
+	 * @param numElements Number of submitted elements.
+	 */
+	public void addNumSubmittedElementsInCurrentFrame(int numElements) {
+		numSubmittedElementsInCurrentFrame += numElements;
+	}
+
+	/**
+	 * Returns the number of elements submitted to the material renderers in the current frame.
+	 * 
+	 * @return Number of submitted elements
+	 */
+	public int getNumSubmittedElementsInCurrentFrame() {
+		return numSubmittedElementsInCurrentFrame;
+	}
+
+	/**
+	 * Returns the number of elements submitted to the material renderers in the previous frame.
+	 * 
+	 * @return Number of submitted elements
+	 */
+	public int getNumSubmittedElementsInPreviousFrame() {
+		return numSubmittedElementsInPreviousFrame;
 	}
 
 	/**
@@ -211,6 +380,57 @@ public final class GLDebugger {
 			String tag = getClass().getSimpleName();
 			Log.d(tag, "Number of draw calls in the previous frame: " + getNumDrawCallsInPreviousFrame());
 		}
+		logDrawCallSortingInPreviousFrame();
+		logSkippedGLCallsInPreviousFrame();
+		logCullingInPreviousFrame();
+	}
+
+	/**
+	 * Logs the estimated number of draw calls of the deferred draw commands submitted in the previously rendered
+	 * frame, before and after sorting them. If the flag {@link GLDebugger#FLAG_LOG_DRAW_CALL_SORTING} is disabled,
+	 * this method does not do anything.
+	 * 
+	 * @see #getNumDrawCallsBeforeSortingInPreviousFrame()
+	 * @see #getNumDrawCallsAfterSortingInPreviousFrame()
+	 */
+	public void logDrawCallSortingInPreviousFrame() {
+		boolean flagLogDrawCallSortingSet = ((logFlags & FLAG_LOG_DRAW_CALL_SORTING) == FLAG_LOG_DRAW_CALL_SORTING);
+		if (flagLogDrawCallSortingSet) {
+			String tag = getClass().getSimpleName();
+			Log.d(tag, "Deferred draw calls in the previous frame: " + getNumDrawCallsBeforeSortingInPreviousFrame() +
+					" before sorting, " + getNumDrawCallsAfterSortingInPreviousFrame() + " after sorting");
+		}
+	}
+
+	/**
+	 * Logs the number of redundant OpenGL calls skipped by {@link GLStateCache} in the previously rendered frame. If
+	 * the flag {@link GLDebugger#FLAG_LOG_SKIPPED_GL_CALLS} is disabled, this method does not do anything.
+	 * 
+	 * @see #getNumSkippedGLCallsInPreviousFrame()
+	 */
+	public void logSkippedGLCallsInPreviousFrame() {
+		boolean flagLogSkippedGLCallsSet = ((logFlags & FLAG_LOG_SKIPPED_GL_CALLS) == FLAG_LOG_SKIPPED_GL_CALLS);
+		if (flagLogSkippedGLCallsSet) {
+			String tag = getClass().getSimpleName();
+			Log.d(tag, "Skipped GL calls in the previous frame: " + getNumSkippedGLCallsInPreviousFrame());
+		}
+	}
+
+	/**
+	 * Logs the number of elements submitted to the material renderers and the number of elements discarded by viewport
+	 * culling in the previously rendered frame. If the flag {@link GLDebugger#FLAG_LOG_CULLING} is disabled, this
+	 * method does not do anything.
+	 * 
+	 * @see #getNumSubmittedElementsInPreviousFrame()
+	 * @see #getNumCulledElementsInPreviousFrame()
+	 */
+	public void logCullingInPreviousFrame() {
+		boolean flagLogCullingSet = ((logFlags & FLAG_LOG_CULLING) == FLAG_LOG_CULLING);
+		if (flagLogCullingSet) {
+			String tag = getClass().getSimpleName();
+			Log.d(tag, "Elements in the previous frame: " + getNumSubmittedElementsInPreviousFrame() + " submitted, " +
+					getNumCulledElementsInPreviousFrame() + " culled");
+		}
 	}
 
 }
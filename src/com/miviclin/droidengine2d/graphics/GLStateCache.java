@@ -0,0 +1,474 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics;
+
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.BuildConfig;
+
+/**
+ * Tracks the OpenGL state changed by the engine and skips the calls that would not change it.<br>
+ * The tracked state is the current program, the texture bound to GL_TEXTURE_2D in each texture unit, the active texture
+ * unit, the blend function, the blend equation, the enabled vertex attribute arrays, the clear color, the depth mask,
+ * the depth function and whether GL_BLEND, GL_CULL_FACE and GL_DEPTH_TEST are enabled. The tracked
+ * state is only valid if every change goes through this class, so code that calls GLES20 directly to change any of
+ * these values must call {@link #reset()} afterwards.<br>
+ * In debug mode, the number of skipped calls of each frame is registered in {@link GLDebugger}.<br>
+ * This class must only be used from the GL thread.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public final class GLStateCache {
+
+	private static final GLStateCache INSTANCE = new GLStateCache();
+
+	private static final int MAX_TEXTURE_UNITS = 32;
+	private static final int MAX_VERTEX_ATTRIBS = 32;
+	private static final int UNKNOWN = -1;
+	private static final int[] TRACKED_CAPABILITIES = { GLES20.GL_BLEND, GLES20.GL_CULL_FACE, GLES20.GL_DEPTH_TEST };
+
+	private final int[] boundTextures;
+	private final int[] vertexAttribArrayStates;
+	private final int[] capabilityStates;
+	private volatile int maxTextureImageUnits;
+	private int contextGeneration;
+	private int program;
+	private int activeTextureUnit;
+	private int blendSourceFactor;
+	private int blendDestinationFactor;
+	private int blendEquationMode;
+	private boolean separateAlphaBlending;
+	private int framebuffer;
+	private int viewportX;
+	private int viewportY;
+	private int viewportWidth;
+	private int viewportHeight;
+	private float clearColorR;
+	private float clearColorG;
+	private float clearColorB;
+	private float clearColorA;
+	private int depthMask;
+	private int depthFunction;
+
+	/**
+	 * Constructor.
+	 */
+	private GLStateCache() {
+		this.boundTextures = new int[MAX_TEXTURE_UNITS];
+		this.vertexAttribArrayStates = new int[MAX_VERTEX_ATTRIBS];
+		this.capabilityStates = new int[TRACKED_CAPABILITIES.length];
+		this.maxTextureImageUnits = 1;
+		this.contextGeneration = 0;
+		this.separateAlphaBlending = false;
+		forget();
+	}
+
+	/**
+	 * Returns the instance of GLStateCache.
+	 * 
+	 * @return GLStateCache
+	 */
+	public static GLStateCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Forgets the tracked state, so the next call to each method of this class will reach OpenGL.<br>
+	 * This method is called from {@link #onContextCreated()}, and it must be called after changing any of the tracked
+	 * values without using this class. It selects GL_TEXTURE0 as the active texture unit and queries the implementation
+	 * limits returned by {@link #getMaxTextureImageUnits()}.
+	 */
+	public void reset() {
+		forget();
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+		activeTextureUnit = 0;
+		int[] values = new int[1];
+		GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_IMAGE_UNITS, values, 0);
+		maxTextureImageUnits = Math.max(1, values[0]);
+	}
+
+	/**
+	 * Registers that a new GL context has been created and calls {@link #reset()}.<br>
+	 * The GL objects created in the previous context are lost, so objects that keep GL resources alive across frames
+	 * can compare {@link #getContextGeneration()} with the value they saw when they created those resources to know if
+	 * they have to create them again.
+	 */
+	public void onContextCreated() {
+		contextGeneration++;
+		reset();
+	}
+
+	/**
+	 * Returns the number of times {@link #onContextCreated()} has been called.
+	 * 
+	 * @return Generation of the current GL context
+	 */
+	public int getContextGeneration() {
+		return contextGeneration;
+	}
+
+	/**
+	 * Returns the value of GL_MAX_TEXTURE_IMAGE_UNITS queried the last time {@link #reset()} was called.<br>
+	 * Unlike the rest of the methods of this class, this method can be called from any thread.
+	 * 
+	 * @return Number of texture units that can be used from the fragment shader
+	 */
+	public int getMaxTextureImageUnits() {
+		return maxTextureImageUnits;
+	}
+
+	/**
+	 * Marks all the tracked values as unknown.
+	 */
+	private void forget() {
+		Arrays.fill(boundTextures, UNKNOWN);
+		Arrays.fill(vertexAttribArrayStates, UNKNOWN);
+		Arrays.fill(capabilityStates, UNKNOWN);
+		program = UNKNOWN;
+		activeTextureUnit = UNKNOWN;
+		blendSourceFactor = UNKNOWN;
+		blendDestinationFactor = UNKNOWN;
+		blendEquationMode = UNKNOWN;
+		framebuffer = UNKNOWN;
+		viewportX = UNKNOWN;
+		viewportY = UNKNOWN;
+		viewportWidth = UNKNOWN;
+		viewportHeight = UNKNOWN;
+		clearColorR = Float.NaN;
+		clearColorG = Float.NaN;
+		clearColorB = Float.NaN;
+		clearColorA = Float.NaN;
+		depthMask = UNKNOWN;
+		depthFunction = UNKNOWN;
+	}
+
+	/**
+	 * Installs the specified program as part of the current rendering state, unless it is already installed.
+	 * 
+	 * @param programId ID of the program.
+	 */
+	public void useProgram(int programId) {
+		if (program == programId) {
+			skipCall();
+			return;
+		}
+		GLES20.glUseProgram(programId);
+		program = programId;
+	}
+
+	/**
+	 * Selects the active texture unit, unless it is already selected.
+	 * 
+	 * @param unit Index of the texture unit (0 selects GL_TEXTURE0).
+	 */
+	public void activeTexture(int unit) {
+		if (activeTextureUnit == unit) {
+			skipCall();
+			return;
+		}
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+		activeTextureUnit = unit;
+	}
+
+	/**
+	 * Binds the specified texture to GL_TEXTURE_2D in the active texture unit, unless it is already bound.
+	 * 
+	 * @param textureId ID of the texture. 0 unbinds the texture bound to the active texture unit.
+	 */
+	public void bindTexture2D(int textureId) {
+		boolean unitTracked = (activeTextureUnit >= 0) && (activeTextureUnit < MAX_TEXTURE_UNITS);
+		if (unitTracked && boundTextures[activeTextureUnit] == textureId) {
+			skipCall();
+			return;
+		}
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+		if (unitTracked) {
+			boundTextures[activeTextureUnit] = textureId;
+		}
+	}
+
+	/**
+	 * Registers that the specified texture has been deleted. OpenGL unbinds a texture from every texture unit when it
+	 * is deleted, so the tracked bindings are updated accordingly.
+	 * 
+	 * @param textureId ID of the deleted texture.
+	 */
+	public void onTextureDeleted(int textureId) {
+		for (int i = 0; i < boundTextures.length; i++) {
+			if (boundTextures[i] == textureId) {
+				boundTextures[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Sets the blend function, unless it is already set.<br>
+	 * If the separate alpha blending is enabled (see {@link #setSeparateAlphaBlending(boolean)}), the specified factors
+	 * are only applied to the RGB components.
+	 * 
+	 * @param sourceFactor Source factor.
+	 * @param destinationFactor Destination factor.
+	 */
+	public void blendFunc(int sourceFactor, int destinationFactor) {
+		if (blendSourceFactor == sourceFactor && blendDestinationFactor == destinationFactor) {
+			skipCall();
+			return;
+		}
+		if (separateAlphaBlending) {
+			GLES20.glBlendFuncSeparate(sourceFactor, destinationFactor, GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		} else {
+			GLES20.glBlendFunc(sourceFactor, destinationFactor);
+		}
+		blendSourceFactor = sourceFactor;
+		blendDestinationFactor = destinationFactor;
+	}
+
+	/**
+	 * Enables or disables the separate alpha blending.<br>
+	 * If it is enabled, the alpha component is always blended with the factors GL_ONE and GL_ONE_MINUS_SRC_ALPHA,
+	 * whatever the factors passed to {@link #blendFunc(int, int)} are. This is used when rendering to a texture that
+	 * is cleared with a transparent color and then rendered with premultiplied alpha, because the alpha of the texture
+	 * must be the coverage of the elements rendered to it.
+	 * 
+	 * @param enabled true to enable the separate alpha blending, false to disable it.
+	 */
+	public void setSeparateAlphaBlending(boolean enabled) {
+		if (separateAlphaBlending == enabled) {
+			return;
+		}
+		separateAlphaBlending = enabled;
+		if (blendSourceFactor != UNKNOWN && blendDestinationFactor != UNKNOWN) {
+			int sourceFactor = blendSourceFactor;
+			int destinationFactor = blendDestinationFactor;
+			blendSourceFactor = UNKNOWN;
+			blendFunc(sourceFactor, destinationFactor);
+		}
+	}
+
+	/**
+	 * Binds the specified framebuffer object, unless it is already bound.
+	 * 
+	 * @param framebufferId ID of the framebuffer object. 0 binds the default framebuffer.
+	 */
+	public void bindFramebuffer(int framebufferId) {
+		if (framebuffer == framebufferId) {
+			skipCall();
+			return;
+		}
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebufferId);
+		framebuffer = framebufferId;
+	}
+
+	/**
+	 * Returns the ID of the framebuffer object bound through this class.
+	 * 
+	 * @return ID of the framebuffer object, 0 if the default framebuffer is bound, or -1 if it is unknown
+	 */
+	public int getBoundFramebuffer() {
+		return framebuffer;
+	}
+
+	/**
+	 * Registers that the specified framebuffer object has been deleted. OpenGL binds the default framebuffer when the
+	 * bound framebuffer object is deleted.
+	 * 
+	 * @param framebufferId ID of the deleted framebuffer object.
+	 */
+	public void onFramebufferDeleted(int framebufferId) {
+		if (framebuffer == framebufferId) {
+			framebuffer = 0;
+		}
+	}
+
+	/**
+	 * Sets the viewport, unless it is already set.
+	 * 
+	 * @param x X coordinate of the lower left corner of the viewport, in pixels.
+	 * @param y Y coordinate of the lower left corner of the viewport, in pixels.
+	 * @param width Width of the viewport, in pixels.
+	 * @param height Height of the viewport, in pixels.
+	 */
+	public void viewport(int x, int y, int width, int height) {
+		if (viewportX == x && viewportY == y && viewportWidth == width && viewportHeight == height) {
+			skipCall();
+			return;
+		}
+		GLES20.glViewport(x, y, width, height);
+		viewportX = x;
+		viewportY = y;
+		viewportWidth = width;
+		viewportHeight = height;
+	}
+
+	/**
+	 * Sets the blend equation, unless it is already set.
+	 * 
+	 * @param mode Blend equation mode.
+	 */
+	public void blendEquation(int mode) {
+		if (blendEquationMode == mode) {
+			skipCall();
+			return;
+		}
+		GLES20.glBlendEquation(mode);
+		blendEquationMode = mode;
+	}
+
+	/**
+	 * Enables the specified vertex attribute array, unless it is already enabled.
+	 * 
+	 * @param location Location of the vertex attribute.
+	 */
+	public void enableVertexAttribArray(int location) {
+		boolean locationTracked = (location >= 0) && (location < MAX_VERTEX_ATTRIBS);
+		if (locationTracked && vertexAttribArrayStates[location] == 1) {
+			skipCall();
+			return;
+		}
+		GLES20.glEnableVertexAttribArray(location);
+		if (locationTracked) {
+			vertexAttribArrayStates[location] = 1;
+		}
+	}
+
+	/**
+	 * Disables the specified vertex attribute array, unless it is already disabled.
+	 * 
+	 * @param location Location of the vertex attribute.
+	 */
+	public void disableVertexAttribArray(int location) {
+		boolean locationTracked = (location >= 0) && (location < MAX_VERTEX_ATTRIBS);
+		if (locationTracked && vertexAttribArrayStates[location] == 0) {
+			skipCall();
+			return;
+		}
+		GLES20.glDisableVertexAttribArray(location);
+		if (locationTracked) {
+			vertexAttribArrayStates[location] = 0;
+		}
+	}
+
+	/**
+	 * Sets the clear color, unless it is already set.
+	 * 
+	 * @param r Red component.
+	 * @param g Green component.
+	 * @param b Blue component.
+	 * @param a Alpha component.
+	 */
+	public void clearColor(float r, float g, float b, float a) {
+		if (clearColorR == r && clearColorG == g && clearColorB == b && clearColorA == a) {
+			skipCall();
+			return;
+		}
+		GLES20.glClearColor(r, g, b, a);
+		clearColorR = r;
+		clearColorG = g;
+		clearColorB = b;
+		clearColorA = a;
+	}
+
+	/**
+	 * Enables the specified server-side capability, unless it is already enabled.<br>
+	 * Only GL_BLEND, GL_CULL_FACE and GL_DEPTH_TEST are tracked. Other capabilities are always enabled.
+	 * 
+	 * @param capability Capability (for example, GL_BLEND).
+	 */
+	public void enable(int capability) {
+		setCapability(capability, true);
+	}
+
+	/**
+	 * Disables the specified server-side capability, unless it is already disabled.<br>
+	 * Only GL_BLEND, GL_CULL_FACE and GL_DEPTH_TEST are tracked. Other capabilities are always disabled.
+	 * 
+	 * @param capability Capability (for example, GL_BLEND).
+	 */
+	public void disable(int capability) {
+		setCapability(capability, false);
+	}
+
+	/**
+	 * Enables or disables the specified capability, unless it is already in the requested state.
+	 * 
+	 * @param capability Capability.
+	 * @param enabled true to enable it, false to disable it.
+	 */
+	private void setCapability(int capability, boolean enabled) {
+		int index = UNKNOWN;
+		for (int i = 0; i < TRACKED_CAPABILITIES.length; i++) {
+			if (TRACKED_CAPABILITIES[i] == capability) {
+				index = i;
+				break;
+			}
+		}
+		int state = enabled ? 1 : 0;
+		if (index != UNKNOWN && capabilityStates[index] == state) {
+			skipCall();
+			return;
+		}
+		if (enabled) {
+			GLES20.glEnable(capability);
+		} else {
+			GLES20.glDisable(capability);
+		}
+		if (index != UNKNOWN) {
+			capabilityStates[index] = state;
+		}
+	}
+
+	/**
+	 * Enables or disables writing into the depth buffer, unless it is already in the requested state.<br>
+	 * Note that glClear does not clear the depth buffer if writing into it is disabled.
+	 * 
+	 * @param flag true to enable writing into the depth buffer, false to disable it.
+	 */
+	public void depthMask(boolean flag) {
+		int state = flag ? 1 : 0;
+		if (depthMask == state) {
+			skipCall();
+			return;
+		}
+		GLES20.glDepthMask(flag);
+		depthMask = state;
+	}
+
+	/**
+	 * Sets the depth comparison function, unless it is already set.
+	 * 
+	 * @param function Depth comparison function (for example, GL_LEQUAL).
+	 */
+	public void depthFunc(int function) {
+		if (depthFunction == function) {
+			skipCall();
+			return;
+		}
+		GLES20.glDepthFunc(function);
+		depthFunction = function;
+	}
+
+	/**
+	 * Registers a skipped call in {@link GLDebugger} if the debug mode is enabled.
+	 */
+	private void skipCall() {
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().incrementNumSkippedGLCallsInCurrentFrame();
+		}
+	}
+
+}
@@ -14,12 +14,21 @@
  */
 package com.miviclin.droidengine2d.graphics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import android.content.Context;
 import android.opengl.GLES20;
 
+import com.miviclin.droidengine2d.BuildConfig;
 import com.miviclin.droidengine2d.graphics.cameras.Camera;
 import com.miviclin.droidengine2d.graphics.material.ColorMaterial;
 import com.miviclin.droidengine2d.graphics.material.Material;
@@ -30,14 +39,29 @@ import com.miviclin.droidengine2d.graphics.material.TransparentTextureMaterial;
 import com.miviclin.droidengine2d.graphics.material.UnsupportedMaterialException;
 import com.miviclin.droidengine2d.graphics.mesh.ColorMaterialBatchRenderer;
 import com.miviclin.droidengine2d.graphics.mesh.GraphicsBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.QuadIndexBufferObject;
 import com.miviclin.droidengine2d.graphics.mesh.RectangleBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.ShapeBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.SpriteCache;
 import com.miviclin.droidengine2d.graphics.mesh.TextureColorMaterialBatchRenderer;
 import com.miviclin.droidengine2d.graphics.mesh.TextureHsvMaterialBatchRenderer;
 import com.miviclin.droidengine2d.graphics.mesh.TextureMaterialBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.TransformMode;
 import com.miviclin.droidengine2d.graphics.mesh.TransparentTextureMaterialBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.TriangleBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.UberMaterialBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.VertexBufferMode;
+import com.miviclin.droidengine2d.graphics.particles.ParticleBatchRenderer;
+import com.miviclin.droidengine2d.graphics.particles.ParticleEmitter;
+import com.miviclin.droidengine2d.graphics.rendertarget.CachedLayer;
+import com.miviclin.droidengine2d.graphics.rendertarget.RenderTarget;
 import com.miviclin.droidengine2d.graphics.text.BitmapFont;
 import com.miviclin.droidengine2d.graphics.text.FontChar;
+import com.miviclin.droidengine2d.graphics.texture.NinePatch;
+import com.miviclin.droidengine2d.graphics.tilemap.TileMapLayer;
+import com.miviclin.droidengine2d.graphics.tilemap.TileMapRenderer;
 import com.miviclin.droidengine2d.util.Transform;
+import com.miviclin.droidengine2d.util.math.FastMath;
 import com.miviclin.droidengine2d.util.math.Vector2;
 
 /**
@@ -48,49 +72,285 @@ import com.miviclin.droidengine2d.util.math.Vector2;
  */
 public class Graphics {
 
+	/**
+	 * Number of distinct depth values that the opaque pass can use before the depth buffer has to be cleared.
+	 */
+	private static final int MAX_DEPTH_STEPS = 4096;
+
+	private static ExecutorService shaderProgramSetupExecutor;
+
 	private final Vector2 tmpOrigin;
 	private final Vector2 tmpScale;
 	private final Vector2 tmpPosition;
 	private final TextureColorMaterial tmpTextureColorMaterial;
+	private final TransformMode transformMode;
+	private final VertexBufferMode vertexBufferMode;
+	private final DrawCommandQueue drawCommandQueue;
+	private final DrawCommandQueue opaqueCommandQueue;
+	private final TextureColorMaterial deferredGlyphMaterial;
+	private final Color backgroundColor;
 
 	private Camera camera;
+	private TileMapRenderer tileMapRenderer;
+	private TriangleBatchRenderer<TextureMaterial> triangleRenderer;
+	private ParticleBatchRenderer<TextureMaterial> particleRenderer;
+	private ShapeBatchRenderer<ColorMaterial> shapeRenderer;
+	private RenderTarget renderTarget;
+	private int surfaceWidth;
+	private int surfaceHeight;
 	private Context context;
 	private RectangleBatchRenderer<? extends Material> currentRenderer;
 	private HashMap<Class<? extends Material>, RectangleBatchRenderer<? extends Material>> renderers;
 	private boolean inBeginEndPair;
+	private boolean deferred;
+	private boolean cullingEnabled;
+	private boolean opaquePassEnabled;
+	private int layer;
+	private int[] depthLayers;
+	private int numDepthLayers;
+	private int firstDepthStep;
+	private int nextDepthStep;
+	private boolean depthBufferCleared;
+	private boolean uberMaterialRendererEnabled;
+	private boolean lazyInitializationEnabled;
+	private final ArrayList<RectangleBatchRenderer<? extends Material>> initializedRenderers;
+	private final HashMap<RectangleBatchRenderer<? extends Material>, Future<?>> shaderProgramSetups;
 
 	/**
-	 * Constructor.
+	 * Constructor.<br>
+	 * The default material renderers will transform the vertices in the GPU.
 	 * 
 	 * @param camera Camera.
 	 * @param context Context.
 	 */
 	public Graphics(Camera camera, Context context) {
+		this(camera, context, TransformMode.GPU);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param camera Camera.
+	 * @param context Context.
+	 * @param transformMode Defines where the default material renderers transform the vertices.
+	 */
+	public Graphics(Camera camera, Context context, TransformMode transformMode) {
+		this(camera, context, transformMode, VertexBufferMode.CLIENT_SIDE_ARRAYS);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param camera Camera.
+	 * @param context Context.
+	 * @param transformMode Defines where the default material renderers transform the vertices.
+	 * @param vertexBufferMode Defines where the default material renderers store the vertex and index data when it is
+	 *            sent to the GPU.
+	 */
+	public Graphics(Camera camera, Context context, TransformMode transformMode, VertexBufferMode vertexBufferMode) {
 		this.tmpOrigin = new Vector2(0, 0);
 		this.tmpScale = new Vector2(1, 1);
 		this.tmpPosition = new Vector2(0, 0);
 		this.tmpTextureColorMaterial = new TextureColorMaterial(null, new Color(0, 0, 0));
+		this.transformMode = transformMode;
+		this.vertexBufferMode = vertexBufferMode;
+		this.drawCommandQueue = new DrawCommandQueue(256);
+		this.opaqueCommandQueue = new DrawCommandQueue(256, true);
+		this.deferredGlyphMaterial = new TextureColorMaterial(null, new Color(0, 0, 0));
+		this.backgroundColor = new Color(0, 0, 0, 1);
 		this.camera = camera;
 		this.context = context;
 		this.currentRenderer = null;
+		this.tileMapRenderer = null;
+		this.triangleRenderer = null;
+		this.particleRenderer = null;
+		this.shapeRenderer = null;
+		this.renderTarget = null;
+		this.surfaceWidth = 0;
+		this.surfaceHeight = 0;
 		this.renderers = new HashMap<Class<? extends Material>, RectangleBatchRenderer<? extends Material>>();
 		this.inBeginEndPair = false;
+		this.deferred = false;
+		this.cullingEnabled = true;
+		this.opaquePassEnabled = false;
+		this.layer = 0;
+		this.depthLayers = new int[16];
+		this.numDepthLayers = 0;
+		this.firstDepthStep = 0;
+		this.nextDepthStep = 0;
+		this.depthBufferCleared = false;
+		this.uberMaterialRendererEnabled = false;
+		this.lazyInitializationEnabled = false;
+		this.initializedRenderers = new ArrayList<RectangleBatchRenderer<? extends Material>>();
+		this.shaderProgramSetups = new HashMap<RectangleBatchRenderer<? extends Material>, Future<?>>();
 	}
 
 	/**
-	 * Initializes the Graphics object. Must be called from the renderer thread.
+	 * Initializes the Graphics object. Must be called from the renderer thread.<br>
+	 * The GLSL code of the shader programs of the material renderers is generated in parallel in background threads, so
+	 * {@link GraphicsBatchRenderer#setupShaderProgram()} is not called from the renderer thread. Then, the shader
+	 * programs are compiled and the renderers are initialized in the renderer thread, unless the lazy initialization is
+	 * enabled (see {@link #setLazyInitializationEnabled(boolean)}).
 	 * 
 	 * @see Graphics#loadMaterialRenderers()
 	 */
 	public void initialize() {
+		GLStateCache.getInstance().onContextCreated();
+		GLStateCache.getInstance().setSeparateAlphaBlending(false);
+		QuadIndexBufferObject.invalidate();
+		renderTarget = null;
+		initializedRenderers.clear();
+		shaderProgramSetups.clear();
+		currentRenderer = null;
+		inBeginEndPair = false;
 		loadMaterialRenderers();
-		for (Entry<Class<? extends Material>, RectangleBatchRenderer<? extends Material>> entry : renderers.entrySet()) {
-			entry.getValue().setupShaderProgram();
-			entry.getValue().getShaderProgram().compileAndLink();
-			entry.getValue().initialize();
+		ArrayList<RectangleBatchRenderer<? extends Material>> distinctRenderers = getDistinctMaterialRenderers();
+		startShaderProgramSetups(distinctRenderers);
+		if (!lazyInitializationEnabled) {
+			for (int i = 0; i < distinctRenderers.size(); i++) {
+				initializeRenderer(distinctRenderers.get(i));
+			}
 		}
 	}
 
+	/**
+	 * Returns the material renderers without duplicates. The same renderer can be registered for more than one
+	 * material.
+	 * 
+	 * @return List of material renderers
+	 */
+	private ArrayList<RectangleBatchRenderer<? extends Material>> getDistinctMaterialRenderers() {
+		ArrayList<RectangleBatchRenderer<? extends Material>> distinctRenderers;
+		distinctRenderers = new ArrayList<RectangleBatchRenderer<? extends Material>>();
+		for (RectangleBatchRenderer<? extends Material> renderer : renderers.values()) {
+			if (!distinctRenderers.contains(renderer)) {
+				distinctRenderers.add(renderer);
+			}
+		}
+		return distinctRenderers;
+	}
+
+	/**
+	 * Generates the GLSL code of the shader programs of the specified renderers in background threads.<br>
+	 * Generating the code does not use OpenGL, so it does not need to run in the renderer thread (see
+	 * {@link GraphicsBatchRenderer#setupShaderProgram()}).
+	 * 
+	 * @param renderersToSetup Renderers.
+	 */
+	private void startShaderProgramSetups(ArrayList<RectangleBatchRenderer<? extends Material>> renderersToSetup) {
+		if (renderersToSetup.isEmpty()) {
+			return;
+		}
+		ExecutorService executor = getShaderProgramSetupExecutor();
+		for (int i = 0; i < renderersToSetup.size(); i++) {
+			final RectangleBatchRenderer<? extends Material> renderer = renderersToSetup.get(i);
+			shaderProgramSetups.put(renderer, executor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					renderer.setupShaderProgram();
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Returns the executor that generates the GLSL code of the shader programs.<br>
+	 * The executor is created the first time it is needed and it is shared by all Graphics objects, so it is not
+	 * created again each time the GL context is recreated. Its threads are terminated when they are idle for a few
+	 * seconds, so they do not consume resources while the game is running.
+	 * 
+	 * @return ExecutorService
+	 */
+	private static synchronized ExecutorService getShaderProgramSetupExecutor() {
+		if (shaderProgramSetupExecutor == null) {
+			int numThreads = Runtime.getRuntime().availableProcessors();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads, 5, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "ShaderProgramSetup");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+			shaderProgramSetupExecutor = executor;
+		}
+		return shaderProgramSetupExecutor;
+	}
+
+	/**
+	 * Compiles the shader program of the specified renderer and initializes it.<br>
+	 * If the GLSL code of the shader program is being generated in a background thread, this method waits until it is
+	 * generated.
+	 * 
+	 * @param renderer Renderer.
+	 */
+	private void initializeRenderer(RectangleBatchRenderer<? extends Material> renderer) {
+		Future<?> shaderProgramSetup = shaderProgramSetups.remove(renderer);
+		if (shaderProgramSetup != null) {
+			try {
+				shaderProgramSetup.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while generating the shader program", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Could not generate the shader program", e.getCause());
+			}
+		} else if (renderer.getShaderProgram().getVertexShaderSource().equals("")) {
+			renderer.setupShaderProgram();
+		}
+		renderer.getShaderProgram().compileAndLink();
+		renderer.initialize();
+		initializedRenderers.add(renderer);
+	}
+
+	/**
+	 * Renders one invisible rectangle with each material renderer, so the first frames that use them do not have to
+	 * wait for the driver to finish preparing their shader programs. Renderers that have not been initialized yet
+	 * because of the lazy initialization are initialized first.<br>
+	 * This method is intended to be called while a loading screen is shown. Nothing is written to the color buffer.
+	 */
+	public void warmUp() {
+		flush();
+		GLES20.glColorMask(false, false, false, false);
+		ArrayList<RectangleBatchRenderer<? extends Material>> distinctRenderers = getDistinctMaterialRenderers();
+		for (int i = 0; i < distinctRenderers.size(); i++) {
+			RectangleBatchRenderer<? extends Material> renderer = distinctRenderers.get(i);
+			if (!initializedRenderers.contains(renderer)) {
+				initializeRenderer(renderer);
+			}
+			renderer.warmUp(camera);
+		}
+		GLES20.glColorMask(true, true, true, true);
+	}
+
+	/**
+	 * Returns true if the material renderers are initialized the first time they are used.
+	 * 
+	 * @return true if the lazy initialization is enabled, false otherwise
+	 * @see #setLazyInitializationEnabled(boolean)
+	 */
+	public boolean isLazyInitializationEnabled() {
+		return lazyInitializationEnabled;
+	}
+
+	/**
+	 * Enables or disables the lazy initialization of the material renderers.<br>
+	 * If it is enabled, {@link #initialize()} does not compile the shader programs of the material renderers nor
+	 * initializes them. Each renderer is initialized the first time something is rendered with it, so the renderers
+	 * that are never used do not slow down the creation of the GL context. {@link #warmUp()} can be used to initialize
+	 * them in advance. It is disabled by default.<br>
+	 * This method must be called before {@link #initialize()}.
+	 * 
+	 * @param lazyInitializationEnabled true to enable the lazy initialization, false to disable it.
+	 */
+	public void setLazyInitializationEnabled(boolean lazyInitializationEnabled) {
+		this.lazyInitializationEnabled = lazyInitializationEnabled;
+	}
+
 	/**
 	 * Loads all supported material renderers.<br>
 	 * This method is called from {@link Graphics#initialize()}.<br>
@@ -106,12 +366,28 @@ public class Graphics {
 	 * </pre>
 	 */
 	protected void loadMaterialRenderers() {
-		renderers.put(ColorMaterial.class, new ColorMaterialBatchRenderer<ColorMaterial>());
-		renderers.put(TextureMaterial.class, new TextureMaterialBatchRenderer<TextureMaterial>(context));
-		renderers.put(TextureColorMaterial.class, new TextureColorMaterialBatchRenderer<TextureColorMaterial>(context));
-		renderers.put(TextureHsvMaterial.class, new TextureHsvMaterialBatchRenderer<TextureHsvMaterial>(context));
-		renderers.put(TransparentTextureMaterial.class,
-				new TransparentTextureMaterialBatchRenderer<TransparentTextureMaterial>(context));
+		if (uberMaterialRendererEnabled) {
+			UberMaterialBatchRenderer<Material> uberRenderer;
+			uberRenderer = new UberMaterialBatchRenderer<Material>(context, transformMode);
+			renderers.put(ColorMaterial.class, uberRenderer);
+			renderers.put(TextureMaterial.class, uberRenderer);
+			renderers.put(TextureColorMaterial.class, uberRenderer);
+			renderers.put(TextureHsvMaterial.class, uberRenderer);
+			renderers.put(TransparentTextureMaterial.class, uberRenderer);
+		} else {
+			renderers.put(ColorMaterial.class, new ColorMaterialBatchRenderer<ColorMaterial>(transformMode));
+			renderers.put(TextureMaterial.class,
+					new TextureMaterialBatchRenderer<TextureMaterial>(context, transformMode));
+			renderers.put(TextureColorMaterial.class,
+					new TextureColorMaterialBatchRenderer<TextureColorMaterial>(context, transformMode));
+			renderers.put(TextureHsvMaterial.class,
+					new TextureHsvMaterialBatchRenderer<TextureHsvMaterial>(context, transformMode));
+			renderers.put(TransparentTextureMaterial.class,
+					new TransparentTextureMaterialBatchRenderer<TransparentTextureMaterial>(context, transformMode));
+		}
+		for (RectangleBatchRenderer<? extends Material> renderer : renderers.values()) {
+			renderer.setVertexBufferMode(vertexBufferMode);
+		}
 	}
 
 	/**
@@ -126,25 +402,441 @@ public class Graphics {
 		if (batchRenderer == null) {
 			throw new UnsupportedMaterialException(material.getClass());
 		}
+		if (!prepareDraw(transform)) {
+			return;
+		}
+		Vector2 scale = transform.getScale();
+		if (deferred) {
+			DrawCommandQueue queue = drawCommandQueue;
+			if (opaquePassEnabled && material.isOpaque() && (renderTarget == null || renderTarget.hasDepthBuffer())) {
+				queue = opaqueCommandQueue;
+			}
+			Vector2 position = transform.getPosition();
+			queue.addRect(layer, batchRenderer, material, position.getX(), position.getY(),
+					scale.getX(), scale.getY(), tmpOrigin.getX(), tmpOrigin.getY(), transform.getRotation());
+			return;
+		}
+		selectCurrentRenderer(batchRenderer);
+		batchRenderer.setCurrentMaterial(material);
+		batchRenderer.draw(transform.getPosition(), scale, tmpOrigin, transform.getRotation(), camera);
+	}
 
+	/**
+	 * Checks the scale and the origin of the specified transform and stores the origin divided by the scale in
+	 * {@code tmpOrigin}. Then, if the viewport culling is enabled, tests the resulting rectangle against the camera.
+	 * <br>
+	 * In debug mode, the rectangle is registered as submitted or culled in {@link GLDebugger}.
+	 * 
+	 * @param transform Transform of the rectangle.
+	 * @return true if the rectangle has to be rendered, false if it has been culled
+	 */
+	private boolean prepareDraw(Transform transform) {
 		Vector2 scale = transform.getScale();
 		if (scale.getX() < 1 || scale.getY() < 1) {
 			throw new IllegalArgumentException("The scale of the transform has to be at least (1, 1)");
 		}
-
 		Vector2 origin = transform.getOrigin();
 		if (origin.getX() < 0 || origin.getX() > scale.getX() || origin.getY() < 0 || origin.getY() > scale.getY()) {
 			throw new IllegalArgumentException("" +
 					"The origin of the transform must be between (0, 0) and (scale.getX(), scale.getY()");
 		}
 		Vector2.divide(tmpOrigin, origin, scale);
-		selectCurrentRenderer(batchRenderer);
-		batchRenderer.setCurrentMaterial(material);
-		batchRenderer.draw(transform.getPosition(), scale, tmpOrigin, transform.getRotation(), camera);
+		if (cullingEnabled && !isRectVisible(transform.getPosition(), scale, tmpOrigin, transform.getRotation())) {
+			if (BuildConfig.DEBUG) {
+				GLDebugger.getInstance().addNumCulledElementsInCurrentFrame(1);
+			}
+			return false;
+		}
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().addNumSubmittedElementsInCurrentFrame(1);
+		}
+		return true;
+	}
+
+	/**
+	 * Renders all the rectangles stored in the specified SpriteCache.<br>
+	 * The current material renderer is flushed first, so the rectangles of the cache are rendered on top of everything
+	 * drawn before. In deferred mode, the recorded draw commands are submitted before rendering the cache.
+	 * 
+	 * @param spriteCache SpriteCache.
+	 */
+	public void drawSpriteCache(SpriteCache spriteCache) {
+		flush();
+		spriteCache.draw(camera);
+	}
+
+	/**
+	 * Renders the TextureRegion of the specified material with its mesh (see
+	 * {@code TextureRegion.setMesh(RegionMesh)}), so the transparent areas of the image are not rendered. If the region
+	 * has no mesh, it is rendered as a rectangle.<br>
+	 * The transform is interpreted the same way as in {@link #drawRect(Material, Transform)}. Consecutive meshes are
+	 * rendered in one draw call while they use the same texture and blending options. Meshes are not recorded in
+	 * deferred mode: the recorded draw commands are submitted before rendering the mesh.
+	 * 
+	 * @param material TextureMaterial, TextureColorMaterial or TransparentTextureMaterial.
+	 * @param transform Transform.
+	 */
+	public void drawMesh(TextureMaterial material, Transform transform) {
+		if (!prepareDraw(transform)) {
+			return;
+		}
+		Vector2 scale = transform.getScale();
+		selectTriangleRenderer(material);
+		triangleRenderer.draw(transform.getPosition(), scale, tmpOrigin, transform.getRotation(), camera);
+	}
+
+	/**
+	 * Renders the specified NinePatch with the specified material. All the parts of the patch are rendered in one call
+	 * with the same transform, so the whole patch is added to the current batch at once.<br>
+	 * The scale of the transform is the size of the patch and the origin is interpreted the same way as in
+	 * {@link #drawRect(Material, Transform)}. The texture region of the material is not used: the patch is rendered
+	 * with the region of the NinePatch, and the material only provides the color, the opacity and the blending
+	 * options. Consecutive patches and meshes are rendered in one draw call while they use the same texture and
+	 * blending options. NinePatches are not recorded in deferred mode: the recorded draw commands are submitted before
+	 * rendering the patch.
+	 * 
+	 * @param material TextureMaterial, TextureColorMaterial or TransparentTextureMaterial.
+	 * @param ninePatch NinePatch.
+	 * @param transform Transform.
+	 */
+	public void drawNinePatch(TextureMaterial material, NinePatch ninePatch, Transform transform) {
+		if (!prepareDraw(transform)) {
+			return;
+		}
+		Vector2 scale = transform.getScale();
+		selectTriangleRenderer(material);
+		int maxQuads = Math.min(triangleRenderer.getBatchCapacity() / 4, triangleRenderer.getMaxIndices() / 6);
+		ninePatch.update(scale.getX(), scale.getY(), maxQuads);
+		if (ninePatch.getNumVertices() == 0) {
+			return;
+		}
+		triangleRenderer.draw(ninePatch.getTextureRegion().getTexture(), ninePatch.getPositions(), ninePatch.getUVs(),
+				ninePatch.getNumVertices(), ninePatch.getTriangles(), ninePatch.getNumIndices(),
+				transform.getPosition(), scale, tmpOrigin, transform.getRotation(), camera);
+	}
+
+	/**
+	 * Makes the TriangleBatchRenderer the current renderer and sets its current material. The recorded draw commands
+	 * are submitted first, so the draw order is preserved.
+	 * 
+	 * @param material TextureMaterial.
+	 */
+	private void selectTriangleRenderer(TextureMaterial material) {
+		if (drawCommandQueue.size() > 0 || opaqueCommandQueue.size() > 0) {
+			submitDrawCommands();
+		}
+		endCurrentRenderer();
+		endParticleRenderer();
+		if (triangleRenderer == null) {
+			triangleRenderer = new TriangleBatchRenderer<TextureMaterial>(context);
+		}
+		if (!triangleRenderer.isInBeginEndPair()) {
+			triangleRenderer.begin();
+		}
+		triangleRenderer.setCurrentMaterial(material);
+	}
+
+	/**
+	 * Renders the particles of the specified ParticleEmitter with the texture region and the blending options of the
+	 * specified material.<br>
+	 * The vertices of the particles are written directly to the batch of a {@link ParticleBatchRenderer}, so
+	 * consecutive emitters are rendered in one draw call while they use the same texture and blending options.
+	 * Particles are not culled and they are not recorded in deferred mode: the recorded draw commands are submitted
+	 * before rendering the particles.
+	 * 
+	 * @param material TextureMaterial, TextureColorMaterial or TransparentTextureMaterial.
+	 * @param emitter ParticleEmitter.
+	 */
+	public void drawParticles(TextureMaterial material, ParticleEmitter emitter) {
+		if (emitter.getNumParticles() == 0) {
+			return;
+		}
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().addNumSubmittedElementsInCurrentFrame(emitter.getNumParticles());
+		}
+		if (drawCommandQueue.size() > 0 || opaqueCommandQueue.size() > 0) {
+			submitDrawCommands();
+		}
+		endCurrentRenderer();
+		endTriangleRenderer();
+		if (particleRenderer == null) {
+			particleRenderer = new ParticleBatchRenderer<TextureMaterial>(context);
+		}
+		if (!particleRenderer.isInBeginEndPair()) {
+			particleRenderer.begin();
+		}
+		particleRenderer.setCurrentMaterial(material);
+		particleRenderer.draw(emitter, camera);
+	}
+
+	/**
+	 * Renders a line with the specified thickness and ColorMaterial.<br>
+	 * Shapes are rendered by a {@link ShapeBatchRenderer}, so consecutive shapes with the same material are rendered in
+	 * one draw call. Shapes are not recorded in deferred mode: the recorded draw commands are submitted before
+	 * rendering the shape.
+	 * 
+	 * @param material ColorMaterial.
+	 * @param start Start of the line.
+	 * @param end End of the line.
+	 * @param thickness Thickness of the line.
+	 */
+	public void drawLine(ColorMaterial material, Vector2 start, Vector2 end, float thickness) {
+		float halfThickness = thickness * 0.5f;
+		if (!isShapeVisible(Math.min(start.getX(), end.getX()) - halfThickness,
+				Math.min(start.getY(), end.getY()) - halfThickness,
+				Math.max(start.getX(), end.getX()) + halfThickness,
+				Math.max(start.getY(), end.getY()) + halfThickness)) {
+			return;
+		}
+		selectShapeRenderer(material).drawLine(start.getX(), start.getY(), end.getX(), end.getY(), thickness, camera);
+	}
+
+	/**
+	 * Renders a filled circle with the specified ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}).
+	 * 
+	 * @param material ColorMaterial.
+	 * @param center Center of the circle.
+	 * @param radius Radius.
+	 */
+	public void fillCircle(ColorMaterial material, Vector2 center, float radius) {
+		fillArc(material, center, radius, 0.0f, 360.0f);
+	}
+
+	/**
+	 * Renders the outline of a circle with the specified ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}).
+	 * 
+	 * @param material ColorMaterial.
+	 * @param center Center of the circle.
+	 * @param radius Radius of the center of the outline.
+	 * @param thickness Thickness of the outline.
+	 */
+	public void strokeCircle(ColorMaterial material, Vector2 center, float radius, float thickness) {
+		strokeArc(material, center, radius, 0.0f, 360.0f, thickness);
+	}
+
+	/**
+	 * Renders a filled circular sector with the specified ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}).
+	 * 
+	 * @param material ColorMaterial.
+	 * @param center Center of the circle.
+	 * @param radius Radius.
+	 * @param startAngle Angle where the arc starts, in degrees, counterclockwise from the X axis.
+	 * @param sweepAngle Angle covered by the arc, in degrees. Negative values sweep clockwise.
+	 */
+	public void fillArc(ColorMaterial material, Vector2 center, float radius, float startAngle, float sweepAngle) {
+		if (!isShapeVisible(center.getX() - radius, center.getY() - radius, center.getX() + radius,
+				center.getY() + radius)) {
+			return;
+		}
+		selectShapeRenderer(material).fillArc(center.getX(), center.getY(), radius, startAngle, sweepAngle, camera);
+	}
+
+	/**
+	 * Renders an arc with the specified thickness and ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}).
+	 * 
+	 * @param material ColorMaterial.
+	 * @param center Center of the circle.
+	 * @param radius Radius of the center of the arc.
+	 * @param startAngle Angle where the arc starts, in degrees, counterclockwise from the X axis.
+	 * @param sweepAngle Angle covered by the arc, in degrees. Negative values sweep clockwise.
+	 * @param thickness Thickness of the arc.
+	 */
+	public void strokeArc(ColorMaterial material, Vector2 center, float radius, float startAngle, float sweepAngle,
+			float thickness) {
+
+		float outerRadius = radius + thickness * 0.5f;
+		if (!isShapeVisible(center.getX() - outerRadius, center.getY() - outerRadius, center.getX() + outerRadius,
+				center.getY() + outerRadius)) {
+			return;
+		}
+		selectShapeRenderer(material).strokeArc(center.getX(), center.getY(), radius, startAngle, sweepAngle,
+				thickness, camera);
+	}
+
+	/**
+	 * Renders a filled polygon with the specified ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}). Convex and concave polygons are supported, but their
+	 * edges must not intersect each other.
+	 * 
+	 * @param material ColorMaterial.
+	 * @param vertices Coordinates of the vertices (x0, y0, x1, y1...), in any winding order.
+	 * @param numVertices Number of vertices.
+	 */
+	public void fillPolygon(ColorMaterial material, float[] vertices, int numVertices) {
+		if (!isPolygonVisible(vertices, numVertices, 0.0f)) {
+			return;
+		}
+		selectShapeRenderer(material).fillPolygon(vertices, numVertices, camera);
+	}
+
+	/**
+	 * Renders the outline of a polygon with the specified ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}).
+	 * 
+	 * @param material ColorMaterial.
+	 * @param vertices Coordinates of the vertices (x0, y0, x1, y1...).
+	 * @param numVertices Number of vertices.
+	 * @param thickness Thickness of the outline.
+	 * @param closed true to join the last vertex with the first one, false to render an open polyline.
+	 */
+	public void strokePolygon(ColorMaterial material, float[] vertices, int numVertices, float thickness,
+			boolean closed) {
+
+		// Miter joins can extend up to twice the thickness from the vertices
+		if (!isPolygonVisible(vertices, numVertices, thickness * 2)) {
+			return;
+		}
+		selectShapeRenderer(material).strokePolygon(vertices, numVertices, thickness, closed, camera);
+	}
+
+	/**
+	 * Renders a filled rectangle with rounded corners with the specified ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}).
+	 * 
+	 * @param material ColorMaterial.
+	 * @param position Position of the bottom-left corner.
+	 * @param size Width and height.
+	 * @param radius Radius of the corners.
+	 */
+	public void fillRoundedRect(ColorMaterial material, Vector2 position, Vector2 size, float radius) {
+		if (!isShapeVisible(position.getX(), position.getY(), position.getX() + size.getX(),
+				position.getY() + size.getY())) {
+			return;
+		}
+		selectShapeRenderer(material).fillRoundedRect(position.getX(), position.getY(), size.getX(), size.getY(),
+				radius, camera);
+	}
+
+	/**
+	 * Renders the outline of a rectangle with rounded corners with the specified ColorMaterial (see
+	 * {@link #drawLine(ColorMaterial, Vector2, Vector2, float)}).
+	 * 
+	 * @param material ColorMaterial.
+	 * @param position Position of the bottom-left corner.
+	 * @param size Width and height.
+	 * @param radius Radius of the corners.
+	 * @param thickness Thickness of the outline.
+	 */
+	public void strokeRoundedRect(ColorMaterial material, Vector2 position, Vector2 size, float radius,
+			float thickness) {
+
+		float halfThickness = thickness * 0.5f;
+		if (!isShapeVisible(position.getX() - halfThickness, position.getY() - halfThickness,
+				position.getX() + size.getX() + halfThickness, position.getY() + size.getY() + halfThickness)) {
+			return;
+		}
+		selectShapeRenderer(material).strokeRoundedRect(position.getX(), position.getY(), size.getX(), size.getY(),
+				radius, thickness, camera);
+	}
+
+	/**
+	 * Returns true if the specified bounding box is visible from the camera, or if the viewport culling is disabled.
+	 * In debug mode, the shape is registered as submitted or culled in {@link GLDebugger}.
+	 * 
+	 * @param minX Left edge of the bounding box.
+	 * @param minY Bottom edge of the bounding box.
+	 * @param maxX Right edge of the bounding box.
+	 * @param maxY Top edge of the bounding box.
+	 * @return true if the shape has to be rendered, false otherwise
+	 */
+	private boolean isShapeVisible(float minX, float minY, float maxX, float maxY) {
+		if (cullingEnabled && !camera.isVisible(minX, minY, maxX, maxY)) {
+			if (BuildConfig.DEBUG) {
+				GLDebugger.getInstance().addNumCulledElementsInCurrentFrame(1);
+			}
+			return false;
+		}
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().addNumSubmittedElementsInCurrentFrame(1);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the bounding box of the specified polygon is visible from the camera (see
+	 * {@link #isShapeVisible(float, float, float, float)}). If the viewport culling is disabled, the bounding box is
+	 * not computed.
+	 * 
+	 * @param vertices Coordinates of the vertices.
+	 * @param numVertices Number of vertices.
+	 * @param margin Distance added to each side of the bounding box.
+	 * @return true if the polygon has to be rendered, false otherwise
+	 */
+	private boolean isPolygonVisible(float[] vertices, int numVertices, float margin) {
+		if (!cullingEnabled) {
+			if (BuildConfig.DEBUG) {
+				GLDebugger.getInstance().addNumSubmittedElementsInCurrentFrame(1);
+			}
+			return true;
+		}
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < numVertices; i++) {
+			minX = Math.min(minX, vertices[i * 2]);
+			minY = Math.min(minY, vertices[i * 2 + 1]);
+			maxX = Math.max(maxX, vertices[i * 2]);
+			maxY = Math.max(maxY, vertices[i * 2 + 1]);
+		}
+		return isShapeVisible(minX - margin, minY - margin, maxX + margin, maxY + margin);
+	}
+
+	/**
+	 * Selects the shape renderer as the current renderer and sets its material. The draw commands recorded in deferred
+	 * mode are submitted first, so the shape is rendered on top of them.
+	 * 
+	 * @param material ColorMaterial.
+	 * @return ShapeBatchRenderer
+	 */
+	private ShapeBatchRenderer<ColorMaterial> selectShapeRenderer(ColorMaterial material) {
+		if (drawCommandQueue.size() > 0 || opaqueCommandQueue.size() > 0) {
+			submitDrawCommands();
+		}
+		ShapeBatchRenderer<ColorMaterial> renderer = getShapeRenderer();
+		selectCurrentRenderer(renderer);
+		renderer.setCurrentMaterial(material);
+		return renderer;
+	}
+
+	/**
+	 * Returns the renderer used to render lines, circles, arcs, polygons and rounded rectangles. It is created the
+	 * first time it is needed. Its curve tolerance can be changed to render smoother or cheaper circles (see
+	 * {@link ShapeBatchRenderer#setCurveTolerance(float)}).
+	 * 
+	 * @return ShapeBatchRenderer
+	 */
+	public ShapeBatchRenderer<ColorMaterial> getShapeRenderer() {
+		if (shapeRenderer == null) {
+			shapeRenderer = new ShapeBatchRenderer<ColorMaterial>();
+			shapeRenderer.setVertexBufferMode(vertexBufferMode);
+		}
+		return shapeRenderer;
+	}
+
+	/**
+	 * Renders the chunks of the specified TileMapLayer that are visible from the camera.<br>
+	 * The current material renderer is flushed first. In deferred mode, the recorded draw commands are submitted before
+	 * rendering the layer.
+	 * 
+	 * @param layer TileMapLayer.
+	 */
+	public void drawTileMapLayer(TileMapLayer layer) {
+		flush();
+		if (tileMapRenderer == null) {
+			tileMapRenderer = new TileMapRenderer(context);
+		}
+		tileMapRenderer.draw(layer, camera);
 	}
 
 	/**
-	 * Renders text.
+	 * Renders text.<br>
+	 * Each line break ('\n') starts a new line below the previous one. If the viewport culling is enabled, the lines
+	 * that are not visible are discarded.
 	 * 
 	 * @param text Text to render.
 	 * @param font Font to be used.
@@ -157,7 +849,9 @@ public class Graphics {
 	}
 
 	/**
-	 * Renders text.
+	 * Renders text.<br>
+	 * Each line break ('\n') starts a new line below the previous one. If the viewport culling is enabled, the lines
+	 * that are not visible are discarded.
 	 * 
 	 * @param text Text to render.
 	 * @param font Font to be used.
@@ -178,48 +872,178 @@ public class Graphics {
 		if (fontSizePx < 1 || fontSizePx < 1) {
 			throw new IllegalArgumentException("fontSizePx has to be at least 1");
 		}
-		selectCurrentRenderer(batchRenderer);
-		batchRenderer.setCurrentMaterial(tmpTextureColorMaterial);
-		tmpTextureColorMaterial.getColor().set(color);
+		if (!deferred) {
+			selectCurrentRenderer(batchRenderer);
+			batchRenderer.setCurrentMaterial(tmpTextureColorMaterial);
+			tmpTextureColorMaterial.getColor().set(color);
+		}
 		tmpOrigin.set(0, 1);
 
 		int textLength = text.length();
 		float scaleRatio = fontSizePx / font.getSize();
-		float posX = position.getX();
-		float posY = position.getY();
+		float lineHeight = font.measureLineHeight(fontSizePx);
+		float glyphRotation = (rotationPoint != null) ? rotation : 0.0f;
+		boolean rotated = rotation != 0 && rotationPoint != null;
+		float pivotX = rotated ? rotationPoint.getX() : 0.0f;
+		float pivotY = rotated ? rotationPoint.getY() : 0.0f;
+		float cosR = 1.0f;
+		float sinR = 0.0f;
+		if (rotated) {
+			cosR = FastMath.cosDeg(rotation);
+			sinR = FastMath.sinDeg(rotation);
+		}
 
-		FontChar currentChar;
-		FontChar lastChar = null;
-		float cosR, sinR;
-		for (int i = 0; i < textLength; i++) {
-			currentChar = font.getCharacter(text.charAt(i));
-			if (lastChar != null) {
-				posX += lastChar.getKernings().get(currentChar.getId()) * scaleRatio;
+		float lineY = position.getY();
+		int lineStart = 0;
+		while (lineStart <= textLength) {
+			int lineEnd = lineStart;
+			while (lineEnd < textLength && text.charAt(lineEnd) != '\n') {
+				lineEnd++;
 			}
-			posX += currentChar.getxOffset() * scaleRatio;
-			posY = position.getY() - currentChar.getyOffset() * scaleRatio;
-			tmpScale.setX(currentChar.getTextureRegion().getWidth() * scaleRatio);
-			tmpScale.setY(currentChar.getTextureRegion().getHeight() * scaleRatio);
+			if (cullingEnabled && !isLineVisible(text, lineStart, lineEnd, font, position.getX(), lineY, scaleRatio,
+					rotationPoint, cosR, sinR)) {
 
-			if (rotation != 0 && rotationPoint != null) {
-				cosR = (float) Math.cos(Math.toRadians(rotation));
-				sinR = (float) Math.sin(Math.toRadians(rotation));
+				if (BuildConfig.DEBUG) {
+					GLDebugger.getInstance().addNumCulledElementsInCurrentFrame(lineEnd - lineStart);
+				}
+				lineY -= lineHeight;
+				lineStart = lineEnd + 1;
+				continue;
+			}
 
-				tmpPosition.setX(((posX - rotationPoint.getX()) * cosR - (posY - rotationPoint.getY()) * sinR)
-						+ rotationPoint.getX());
+			FontChar currentChar;
+			FontChar lastChar = null;
+			float posX = position.getX();
+			float posY;
+			for (int i = lineStart; i < lineEnd; i++) {
+				currentChar = font.getCharacter(text.charAt(i));
+				if (lastChar != null) {
+					posX += lastChar.getKernings().get(currentChar.getId()) * scaleRatio;
+				}
+				posX += currentChar.getxOffset() * scaleRatio;
+				posY = lineY - currentChar.getyOffset() * scaleRatio;
+				tmpScale.setX(currentChar.getTextureRegion().getWidth() * scaleRatio);
+				tmpScale.setY(currentChar.getTextureRegion().getHeight() * scaleRatio);
 
-				tmpPosition.setY(((posY - rotationPoint.getY()) * cosR + (posX - rotationPoint.getX()) * sinR)
-						+ rotationPoint.getY());
+				if (rotated) {
+					float dx = posX - pivotX;
+					float dy = posY - pivotY;
+					tmpPosition.set(dx * cosR - dy * sinR + pivotX, dx * sinR + dy * cosR + pivotY);
+				} else {
+					tmpPosition.set(posX, posY);
+				}
 
-			} else {
-				tmpPosition.set(posX, posY);
+				if (deferred) {
+					drawCommandQueue.addGlyph(layer, batchRenderer, currentChar.getTextureRegion(),
+							tmpTextureColorMaterial.getBlendingOptions(), tmpPosition.getX(), tmpPosition.getY(),
+							tmpScale.getX(), tmpScale.getY(), tmpOrigin.getX(), tmpOrigin.getY(), glyphRotation,
+							color);
+				} else {
+					tmpTextureColorMaterial.setTextureRegion(currentChar.getTextureRegion());
+					batchRenderer.draw(tmpPosition, tmpScale, tmpOrigin, glyphRotation, camera);
+				}
+				posX += currentChar.getxAdvance() * scaleRatio;
+				lastChar = currentChar;
 			}
+			if (BuildConfig.DEBUG) {
+				GLDebugger.getInstance().addNumSubmittedElementsInCurrentFrame(lineEnd - lineStart);
+			}
+			lineY -= lineHeight;
+			lineStart = lineEnd + 1;
+		}
+	}
 
-			tmpTextureColorMaterial.setTextureRegion(currentChar.getTextureRegion());
-			batchRenderer.draw(tmpPosition, tmpScale, tmpOrigin, (rotationPoint != null) ? rotation : 0.0f, camera);
-			posX += currentChar.getxAdvance() * scaleRatio;
+	/**
+	 * Checks if the specified line of text intersects the area visible through the camera.<br>
+	 * The bounding box of the glyphs of the line is computed without transforming them. Then, the bounding box is
+	 * rotated around the rotation point and the axis-aligned bounding box of the result is tested against the camera.
+	 * 
+	 * @param text Text.
+	 * @param start Index of the first character of the line.
+	 * @param end Index after the last character of the line.
+	 * @param font Font.
+	 * @param x Position of the left side of the line in the X axis.
+	 * @param y Position of the top side of the line in the Y axis.
+	 * @param scaleRatio Ratio between the size of the rendered text and the size of the font.
+	 * @param rotationPoint Rotation point, or null if the line is not rotated.
+	 * @param cosR Cosine of the rotation angle.
+	 * @param sinR Sine of the rotation angle.
+	 * @return true if the line may be visible, false if it is not visible
+	 */
+	private boolean isLineVisible(CharSequence text, int start, int end, BitmapFont font, float x, float y,
+			float scaleRatio, Vector2 rotationPoint, float cosR, float sinR) {
+
+		if (start == end) {
+			return false;
+		}
+		float minX = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		float penX = x;
+		FontChar currentChar;
+		FontChar lastChar = null;
+		for (int i = start; i < end; i++) {
+			currentChar = font.getCharacter(text.charAt(i));
+			if (lastChar != null) {
+				penX += lastChar.getKernings().get(currentChar.getId()) * scaleRatio;
+			}
+			penX += currentChar.getxOffset() * scaleRatio;
+			float glyphTop = y - currentChar.getyOffset() * scaleRatio;
+			float glyphRight = penX + currentChar.getTextureRegion().getWidth() * scaleRatio;
+			float glyphBottom = glyphTop - currentChar.getTextureRegion().getHeight() * scaleRatio;
+			minX = Math.min(minX, penX);
+			maxX = Math.max(maxX, glyphRight);
+			minY = Math.min(minY, glyphBottom);
+			maxY = Math.max(maxY, glyphTop);
+			penX += currentChar.getxAdvance() * scaleRatio;
 			lastChar = currentChar;
 		}
+		// sin(180) is exactly 0 in the FastMath table, so the cosine must be checked too
+		if (rotationPoint == null || (cosR == 1.0f && sinR == 0.0f)) {
+			return camera.isVisible(minX, minY, maxX, maxY);
+		}
+		float centerX = (minX + maxX) * 0.5f - rotationPoint.getX();
+		float centerY = (minY + maxY) * 0.5f - rotationPoint.getY();
+		float rotatedCenterX = centerX * cosR - centerY * sinR + rotationPoint.getX();
+		float rotatedCenterY = centerY * cosR + centerX * sinR + rotationPoint.getY();
+		float halfWidth = (maxX - minX) * 0.5f;
+		float halfHeight = (maxY - minY) * 0.5f;
+		float extentX = Math.abs(cosR) * halfWidth + Math.abs(sinR) * halfHeight;
+		float extentY = Math.abs(sinR) * halfWidth + Math.abs(cosR) * halfHeight;
+		return camera.isVisible(rotatedCenterX - extentX, rotatedCenterY - extentY, rotatedCenterX + extentX,
+				rotatedCenterY + extentY);
+	}
+
+	/**
+	 * Checks if the rectangle with the specified transform intersects the area visible through the camera.<br>
+	 * The axis-aligned bounding box of the rotated rectangle is tested against the camera, so no matrices are computed.
+	 * 
+	 * @param position Position of the origin of the rectangle.
+	 * @param scale Scale.
+	 * @param origin Origin of the rectangle (value between 0.0f and 1.0f).
+	 * @param rotation Rotation angle around the origin, in degrees.
+	 * @return true if the rectangle may be visible, false if it is not visible
+	 */
+	private boolean isRectVisible(Vector2 position, Vector2 scale, Vector2 origin, float rotation) {
+		float halfWidth = scale.getX() * 0.5f;
+		float halfHeight = scale.getY() * 0.5f;
+		float centerX = (0.5f - origin.getX()) * scale.getX();
+		float centerY = (0.5f - origin.getY()) * scale.getY();
+		if (rotation == 0) {
+			centerX += position.getX();
+			centerY += position.getY();
+			return camera.isVisible(centerX - halfWidth, centerY - halfHeight, centerX + halfWidth,
+					centerY + halfHeight);
+		}
+		float cosR = FastMath.cosDeg(rotation);
+		float sinR = FastMath.sinDeg(rotation);
+		float rotatedCenterX = centerX * cosR - centerY * sinR + position.getX();
+		float rotatedCenterY = centerX * sinR + centerY * cosR + position.getY();
+		float extentX = Math.abs(cosR) * halfWidth + Math.abs(sinR) * halfHeight;
+		float extentY = Math.abs(sinR) * halfWidth + Math.abs(cosR) * halfHeight;
+		return camera.isVisible(rotatedCenterX - extentX, rotatedCenterY - extentY, rotatedCenterX + extentX,
+				rotatedCenterY + extentY);
 	}
 
 	/**
@@ -228,18 +1052,452 @@ public class Graphics {
 	 * @param color Color.
 	 */
 	public void setBackgroundColor(Color color) {
-		GLES20.glClearColor(color.getR(), color.getG(), color.getB(), color.getA());
+		backgroundColor.set(color);
+		GLStateCache.getInstance().clearColor(color.getR(), color.getG(), color.getB(), color.getA());
+	}
+
+	/**
+	 * Sets the dimensions of the surface where the game is rendered, and sets the viewport to cover the whole surface
+	 * if no RenderTarget is selected.<br>
+	 * This method must be called every time the dimensions of the surface change.
+	 * 
+	 * @param width Width of the surface in pixels.
+	 * @param height Height of the surface in pixels.
+	 */
+	public void setSurfaceDimensions(int width, int height) {
+		this.surfaceWidth = width;
+		this.surfaceHeight = height;
+		if (renderTarget == null) {
+			GLStateCache.getInstance().viewport(0, 0, width, height);
+		}
+	}
+
+	/**
+	 * Returns the RenderTarget where the elements are rendered.
+	 * 
+	 * @return RenderTarget, or null if the elements are rendered to the surface
+	 */
+	public RenderTarget getRenderTarget() {
+		return renderTarget;
+	}
+
+	/**
+	 * Redirects the rendering to the specified RenderTarget. The pending elements are rendered before switching.<br>
+	 * While a RenderTarget is selected, the alpha component of the rendered elements is blended separately, so the
+	 * texture of the RenderTarget stores premultiplied alpha (see {@link RenderTarget}). The camera is not changed, so
+	 * {@link #setCamera(Camera)} should be used to select a camera whose viewport matches the RenderTarget.<br>
+	 * The surface must be selected again before the frame ends.
+	 * 
+	 * @param renderTarget RenderTarget, or null to render to the surface.
+	 */
+	public void setRenderTarget(RenderTarget renderTarget) {
+		flush();
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		if (renderTarget != null) {
+			renderTarget.bind();
+		} else {
+			glStateCache.bindFramebuffer(0);
+			if (surfaceWidth > 0 && surfaceHeight > 0) {
+				glStateCache.viewport(0, 0, surfaceWidth, surfaceHeight);
+			} else {
+				glStateCache.viewport(0, 0, (int) camera.getViewportWidth(), (int) camera.getViewportHeight());
+			}
+		}
+		glStateCache.setSeparateAlphaBlending(renderTarget != null);
+		this.renderTarget = renderTarget;
+		depthBufferCleared = false;
+	}
+
+	/**
+	 * Renders the specified CachedLayer as one textured rectangle. If the layer is dirty or its contents have been
+	 * lost, they are rendered to its RenderTarget first (see {@link #updateCachedLayer(CachedLayer)}).
+	 * 
+	 * @param cachedLayer CachedLayer.
+	 * @param transform Transform of the rectangle. Its scale is the size of the rectangle in world units.
+	 */
+	public void drawCachedLayer(CachedLayer cachedLayer, Transform transform) {
+		updateCachedLayer(cachedLayer);
+		drawRect(cachedLayer.getMaterial(), transform);
+	}
+
+	/**
+	 * Renders the contents of the specified CachedLayer to its RenderTarget, if the layer is dirty or its contents have
+	 * been lost. The pending elements are rendered before updating the layer, and the RenderTarget and the camera
+	 * that were selected are selected again when the layer has been updated.
+	 * 
+	 * @param cachedLayer CachedLayer.
+	 */
+	public void updateCachedLayer(CachedLayer cachedLayer) {
+		if (!cachedLayer.needsUpdate()) {
+			return;
+		}
+		RenderTarget previousRenderTarget = renderTarget;
+		Camera previousCamera = camera;
+		setRenderTarget(cachedLayer.getRenderTarget());
+		setCamera(cachedLayer.getCamera());
+
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		glStateCache.clearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+		glStateCache.clearColor(backgroundColor.getR(), backgroundColor.getG(), backgroundColor.getB(),
+				backgroundColor.getA());
+
+		cachedLayer.drawContents(this);
+
+		setRenderTarget(previousRenderTarget);
+		setCamera(previousCamera);
+		cachedLayer.onContentsUpdated();
+	}
+
+	/**
+	 * Notifies Graphics that a new frame starts. The renderers that cache data between frames use it to know which
+	 * data has been used in the current frame, and the opaque pass clears the depth buffer again before using it.<br>
+	 * This method should be called once at the beginning of each frame, before rendering anything. It is called by
+	 * {@link DefaultRenderer}, and it must be called by other renderers if the opaque pass is enabled.
+	 */
+	public void beginFrame() {
+		depthBufferCleared = false;
+		if (tileMapRenderer != null) {
+			tileMapRenderer.beginFrame();
+		}
 	}
 
 	/**
 	 * Flushes the current material renderer, rendering the remaining elements.<br>
+	 * In deferred mode, the recorded draw commands are sorted and submitted before flushing.<br>
 	 * This method should be called once at the end of each frame to ensure that all elements are rendered.
 	 */
 	public void flush() {
+		if (drawCommandQueue.size() > 0 || opaqueCommandQueue.size() > 0) {
+			submitDrawCommands();
+		}
 		if (inBeginEndPair && currentRenderer != null) {
 			inBeginEndPair = false;
 			currentRenderer.end();
 		}
+		endTriangleRenderer();
+		endParticleRenderer();
+	}
+
+	/**
+	 * Renders the meshes batched in the triangle renderer, if there are any.
+	 */
+	private void endTriangleRenderer() {
+		if (triangleRenderer != null && triangleRenderer.isInBeginEndPair()) {
+			triangleRenderer.end();
+		}
+	}
+
+	/**
+	 * Renders the particles batched in the particle renderer, if there are any.
+	 */
+	private void endParticleRenderer() {
+		if (particleRenderer != null && particleRenderer.isInBeginEndPair()) {
+			particleRenderer.end();
+		}
+	}
+
+	/**
+	 * Sorts the draw commands recorded in deferred mode and renders them.<br>
+	 * If there are commands in the opaque pass, they are rendered first, front-to-back, with blending disabled and
+	 * depth testing and depth writes enabled. Then, the rest of the commands are rendered back-to-front with depth
+	 * testing enabled and depth writes disabled, so they are not rendered where they are hidden by opaque elements of
+	 * higher layers.<br>
+	 * The depth buffer is only cleared the first time it is used in each frame or after selecting a RenderTarget. Each
+	 * submission uses depth values closer to the camera than the previous ones, so the elements submitted later are
+	 * still rendered over the elements submitted before them, like in the painter's order.
+	 */
+	private void submitDrawCommands() {
+		if (opaqueCommandQueue.size() == 0) {
+			sortDrawCommands(drawCommandQueue);
+			submitDrawCommands(drawCommandQueue, false);
+			return;
+		}
+		sortDrawCommands(opaqueCommandQueue);
+		sortDrawCommands(drawCommandQueue);
+		updateDepthLayers();
+
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		glStateCache.depthMask(true);
+		if (!depthBufferCleared || nextDepthStep + numDepthLayers > MAX_DEPTH_STEPS) {
+			GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT);
+			depthBufferCleared = true;
+			nextDepthStep = 0;
+		}
+		firstDepthStep = nextDepthStep;
+		nextDepthStep += numDepthLayers;
+
+		glStateCache.enable(GLES20.GL_DEPTH_TEST);
+		glStateCache.depthFunc(GLES20.GL_LEQUAL);
+		glStateCache.disable(GLES20.GL_BLEND);
+		submitDrawCommands(opaqueCommandQueue, true);
+		endCurrentRenderer();
+
+		glStateCache.enable(GLES20.GL_BLEND);
+		glStateCache.depthMask(false);
+		submitDrawCommands(drawCommandQueue, true);
+		endCurrentRenderer();
+
+		glStateCache.depthMask(true);
+		glStateCache.disable(GLES20.GL_DEPTH_TEST);
+		for (int i = 0; i < initializedRenderers.size(); i++) {
+			initializedRenderers.get(i).setDepth(0.0f);
+		}
+	}
+
+	/**
+	 * Sorts the specified queue. In debug mode, the number of draw calls saved by sorting it is registered in
+	 * {@link GLDebugger}.
+	 * 
+	 * @param queue DrawCommandQueue.
+	 */
+	private void sortDrawCommands(DrawCommandQueue queue) {
+		if (BuildConfig.DEBUG) {
+			int numDrawCallsBeforeSorting = queue.estimateNumDrawCalls();
+			queue.sort();
+			GLDebugger.getInstance().addSortedDrawCallsInCurrentFrame(numDrawCallsBeforeSorting,
+					queue.estimateNumDrawCalls());
+		} else {
+			queue.sort();
+		}
+	}
+
+	/**
+	 * Renders the commands of the specified queue, which must be sorted, and clears it.
+	 * 
+	 * @param queue DrawCommandQueue.
+	 * @param useDepth true to set the depth of each command from its layer (see {@link #getLayerDepth(int)}).
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void submitDrawCommands(DrawCommandQueue queue, boolean useDepth) {
+		float[] data = queue.getData();
+		int numCommands = queue.size();
+		int command;
+		int offset;
+		int commandLayer;
+		int previousLayer = 0;
+		float depth = 0.0f;
+		RectangleBatchRenderer batchRenderer;
+		for (int i = 0; i < numCommands; i++) {
+			command = queue.getCommand(i);
+			offset = command * DrawCommandQueue.COMMAND_DATA_SIZE;
+			batchRenderer = queue.getRenderer(command);
+			selectCurrentRenderer(batchRenderer);
+			if (useDepth) {
+				commandLayer = queue.getLayer(command);
+				if (i == 0 || commandLayer != previousLayer) {
+					depth = getLayerDepth(commandLayer);
+					previousLayer = commandLayer;
+				}
+				batchRenderer.setDepth(depth);
+			}
+			if (queue.getType(command) == DrawCommandQueue.COMMAND_GLYPH) {
+				deferredGlyphMaterial.setTextureRegion(queue.getTextureRegion(command));
+				deferredGlyphMaterial.getColor().setRGBA(
+						data[offset + DrawCommandQueue.COLOR + 0],
+						data[offset + DrawCommandQueue.COLOR + 1],
+						data[offset + DrawCommandQueue.COLOR + 2],
+						data[offset + DrawCommandQueue.COLOR + 3]);
+				batchRenderer.setCurrentMaterial(deferredGlyphMaterial);
+			} else {
+				batchRenderer.setCurrentMaterial(queue.getMaterial(command));
+			}
+			tmpPosition.set(data[offset + DrawCommandQueue.POSITION_X], data[offset + DrawCommandQueue.POSITION_Y]);
+			tmpScale.set(data[offset + DrawCommandQueue.SCALE_X], data[offset + DrawCommandQueue.SCALE_Y]);
+			tmpOrigin.set(data[offset + DrawCommandQueue.ORIGIN_X], data[offset + DrawCommandQueue.ORIGIN_Y]);
+			batchRenderer.draw(tmpPosition, tmpScale, tmpOrigin, data[offset + DrawCommandQueue.ROTATION], camera);
+		}
+		queue.clear();
+	}
+
+	/**
+	 * Renders the elements batched in the current renderer, so the GL state can be changed.
+	 */
+	private void endCurrentRenderer() {
+		if (inBeginEndPair && currentRenderer != null) {
+			inBeginEndPair = false;
+			currentRenderer.end();
+		}
+	}
+
+	/**
+	 * Stores the distinct layers used by the recorded commands in ascending order. The depth of each layer is computed
+	 * from its position in this list, so the depth buffer precision is shared only by the layers that are used.
+	 */
+	private void updateDepthLayers() {
+		numDepthLayers = 0;
+		addDepthLayers(opaqueCommandQueue);
+		addDepthLayers(drawCommandQueue);
+		Arrays.sort(depthLayers, 0, numDepthLayers);
+		int numDistinctLayers = 0;
+		for (int i = 0; i < numDepthLayers; i++) {
+			if (i == 0 || depthLayers[i] != depthLayers[numDistinctLayers - 1]) {
+				depthLayers[numDistinctLayers++] = depthLayers[i];
+			}
+		}
+		numDepthLayers = numDistinctLayers;
+	}
+
+	/**
+	 * Appends the distinct layers of the specified queue, which must be sorted, to the list of depth layers.
+	 * 
+	 * @param queue DrawCommandQueue.
+	 */
+	private void addDepthLayers(DrawCommandQueue queue) {
+		int commandLayer;
+		for (int i = 0; i < queue.size(); i++) {
+			commandLayer = queue.getLayer(queue.getCommand(i));
+			if (i == 0 || commandLayer != depthLayers[numDepthLayers - 1]) {
+				if (numDepthLayers == depthLayers.length) {
+					depthLayers = Arrays.copyOf(depthLayers, numDepthLayers * 2);
+				}
+				depthLayers[numDepthLayers++] = commandLayer;
+			}
+		}
+	}
+
+	/**
+	 * Returns the Z coordinate used to render the elements of the specified layer in the opaque pass. Higher layers
+	 * are closer to the camera. Each layer of the current submission uses one depth step, starting at the first step
+	 * reserved for it. The steps are distributed between the near and far planes of the camera, which is expected to
+	 * look along the negative Z axis from its eye, like OrthographicCamera.
+	 * 
+	 * @param layerToRender Layer. It must be one of the layers stored by {@link #updateDepthLayers()}.
+	 * @return Z coordinate in world units
+	 */
+	private float getLayerDepth(int layerToRender) {
+		int step = firstDepthStep + Arrays.binarySearch(depthLayers, 0, numDepthLayers, layerToRender);
+		int numSteps = Math.max(MAX_DEPTH_STEPS, numDepthLayers);
+		float distance = (float) (numSteps - step) / (numSteps + 1);
+		return camera.getEye().getZ() - camera.getNear() - distance * (camera.getFar() - camera.getNear());
+	}
+
+	/**
+	 * Returns true if the built-in materials are rendered by one {@link UberMaterialBatchRenderer}.
+	 * 
+	 * @return true if the uber material renderer is enabled, false otherwise
+	 * @see #setUberMaterialRendererEnabled(boolean)
+	 */
+	public boolean isUberMaterialRendererEnabled() {
+		return uberMaterialRendererEnabled;
+	}
+
+	/**
+	 * Enables or disables the uber material renderer.<br>
+	 * If it is enabled, {@link #loadMaterialRenderers()} registers one {@link UberMaterialBatchRenderer} for all
+	 * built-in materials, so consecutive rectangles with different built-in materials can be rendered in the same
+	 * batch. Otherwise, each built-in material has its own renderer. It is disabled by default.<br>
+	 * This method must be called before {@link #initialize()}.
+	 * 
+	 * @param uberMaterialRendererEnabled true to enable the uber material renderer, false to disable it.
+	 */
+	public void setUberMaterialRendererEnabled(boolean uberMaterialRendererEnabled) {
+		this.uberMaterialRendererEnabled = uberMaterialRendererEnabled;
+	}
+
+	/**
+	 * Returns true if the deferred mode is enabled.
+	 * 
+	 * @return true if the deferred mode is enabled, false otherwise
+	 * @see #setDeferred(boolean)
+	 */
+	public boolean isDeferred() {
+		return deferred;
+	}
+
+	/**
+	 * Enables or disables the deferred mode.<br>
+	 * In deferred mode, {@link #drawRect(Material, Transform)} and drawText(...) do not render anything. They record
+	 * draw commands instead, which are sorted by layer, renderer, texture and blending options and rendered when
+	 * {@link #flush()} is called. This minimizes the number of draw calls when different materials are interleaved, but
+	 * the painter's order is only preserved between different layers (see {@link #setLayer(int)}) and between
+	 * elements that are rendered in the same batch.<br>
+	 * The materials passed to drawRect(...) in deferred mode are referenced, not copied, so they must not be modified
+	 * until flush() is called.<br>
+	 * If the deferred mode is disabled while there are recorded commands, they are rendered immediately.
+	 * 
+	 * @param deferred true to enable the deferred mode, false to disable it.
+	 */
+	public void setDeferred(boolean deferred) {
+		if (this.deferred && !deferred && (drawCommandQueue.size() > 0 || opaqueCommandQueue.size() > 0)) {
+			submitDrawCommands();
+		}
+		this.deferred = deferred;
+	}
+
+	/**
+	 * Returns true if the viewport culling is enabled.
+	 * 
+	 * @return true if the viewport culling is enabled, false otherwise
+	 */
+	public boolean isCullingEnabled() {
+		return cullingEnabled;
+	}
+
+	/**
+	 * Enables or disables the viewport culling. It is enabled by default.<br>
+	 * If it is enabled, {@link #drawRect(Material, Transform)} discards the rectangles whose bounding box does not
+	 * intersect the area visible through the camera before doing any transform work, and drawText(...) does the same
+	 * with each line of text. The number of culled and submitted elements is registered in {@link GLDebugger} in debug
+	 * mode.
+	 * 
+	 * @param cullingEnabled true to enable the viewport culling, false to disable it.
+	 */
+	public void setCullingEnabled(boolean cullingEnabled) {
+		this.cullingEnabled = cullingEnabled;
+	}
+
+	/**
+	 * Returns true if the opaque pass is enabled.
+	 * 
+	 * @return true if the opaque pass is enabled, false otherwise
+	 * @see #setOpaquePassEnabled(boolean)
+	 */
+	public boolean isOpaquePassEnabled() {
+		return opaquePassEnabled;
+	}
+
+	/**
+	 * Enables or disables the opaque pass. It is disabled by default.<br>
+	 * If it is enabled, the rectangles drawn in deferred mode with materials declared as opaque (see
+	 * {@link Material#setOpaque(boolean)}) are rendered before the rest of the elements, front-to-back, with blending
+	 * disabled and with a depth value derived from their layer. Then, the translucent elements are rendered
+	 * back-to-front, and the depth test discards the pixels hidden by opaque elements of higher layers. This reduces
+	 * the overdraw of stacked opaque elements (backgrounds, tiles...) without changing the order in which they are
+	 * drawn.<br>
+	 * The result is the same as the painter's order, except that translucent elements are rendered over the opaque
+	 * elements of their own layer. The opaque pass only works in deferred mode (see {@link #setDeferred(boolean)}), and
+	 * the surface or the selected RenderTarget must have a depth buffer. Otherwise, opaque materials are rendered like
+	 * translucent ones. The depth buffer is cleared when it is first used in each frame, so {@link #beginFrame()} must
+	 * be called at the beginning of each frame.
+	 * 
+	 * @param opaquePassEnabled true to enable the opaque pass, false to disable it.
+	 */
+	public void setOpaquePassEnabled(boolean opaquePassEnabled) {
+		this.opaquePassEnabled = opaquePassEnabled;
+	}
+
+	/**
+	 * Returns the layer of the elements that are drawn in deferred mode.
+	 * 
+	 * @return Layer
+	 */
+	public int getLayer() {
+		return layer;
+	}
+
+	/**
+	 * Sets the layer of the elements that will be drawn in deferred mode from now on.<br>
+	 * Elements in lower layers are always rendered before elements in higher layers. The default layer is 0.
+	 * 
+	 * @param layer Value between {@link DrawCommandQueue#MIN_LAYER} and {@link DrawCommandQueue#MAX_LAYER}.
+	 */
+	public void setLayer(int layer) {
+		if (layer < DrawCommandQueue.MIN_LAYER || layer > DrawCommandQueue.MAX_LAYER) {
+			throw new IllegalArgumentException("The layer must be a value between " + DrawCommandQueue.MIN_LAYER +
+					" and " + DrawCommandQueue.MAX_LAYER);
+		}
+		this.layer = layer;
 	}
 
 	/**
@@ -250,11 +1508,16 @@ public class Graphics {
 	 * @param renderer RectangleBatchMesh.
 	 */
 	private void selectCurrentRenderer(RectangleBatchRenderer<?> renderer) {
+		endTriangleRenderer();
+		endParticleRenderer();
 		if (!inBeginEndPair || currentRenderer != renderer) {
 			if (inBeginEndPair) {
 				currentRenderer.end();
 				inBeginEndPair = false;
 			}
+			if (!initializedRenderers.contains(renderer)) {
+				initializeRenderer(renderer);
+			}
 			currentRenderer = renderer;
 			currentRenderer.begin();
 			inBeginEndPair = true;
@@ -266,10 +1529,44 @@ public class Graphics {
 	 * 
 	 * @return Camera
 	 */
-	protected Camera getCamera() {
+	public Camera getCamera() {
 		return camera;
 	}
 
+	/**
+	 * Sets the camera used to render the elements from now on. The pending elements are rendered with the previous
+	 * camera before switching.
+	 * 
+	 * @param camera Camera.
+	 */
+	public void setCamera(Camera camera) {
+		if (camera == null) {
+			throw new IllegalArgumentException("camera can not be null");
+		}
+		if (this.camera != camera) {
+			flush();
+			this.camera = camera;
+		}
+	}
+
+	/**
+	 * Returns the TransformMode used by the default material renderers.
+	 * 
+	 * @return TransformMode
+	 */
+	protected TransformMode getTransformMode() {
+		return transformMode;
+	}
+
+	/**
+	 * Returns the VertexBufferMode used by the default material renderers.
+	 * 
+	 * @return VertexBufferMode
+	 */
+	protected VertexBufferMode getVertexBufferMode() {
+		return vertexBufferMode;
+	}
+
 	/**
 	 * Returns the Context where the game runs.
 	 * 
@@ -14,13 +14,16 @@
  */
 package com.miviclin.droidengine2d.graphics.cameras;
 
+import android.opengl.Matrix;
+
 import com.miviclin.droidengine2d.util.math.Matrix4;
 import com.miviclin.droidengine2d.util.math.Vector2;
 import com.miviclin.droidengine2d.util.math.Vector3;
 
 /**
  * Base class for cameras.<br>
- * Contains the view and projection matrices.
+ * Contains the view and projection matrices, and caches their product (the view-projection matrix) until the camera
+ * changes.
  * 
  * @author Miguel Vicente Linares
  * 
@@ -30,12 +33,17 @@ public abstract class Camera {
 	private final Vector2 viewportDimensions = new Vector2(1.0f, 1.0f);
 	private final Matrix4 viewMatrix = new Matrix4();
 	private final Matrix4 projectionMatrix = new Matrix4();
+	private final Matrix4 viewProjectionMatrix = new Matrix4();
+	private final Matrix4 inverseViewProjectionMatrix = new Matrix4();
+	private final float[] tmpVector = new float[8];
 	private final Vector3 eye = new Vector3(0.0f, 0.0f, 5.0f);
 	private final Vector3 center = new Vector3(0.0f, 0.0f, 0.0f);
 	private final Vector3 up = new Vector3(0.0f, 1.0f, 0.0f);
 
 	private float near = 1.0f;
 	private float far = 10.0f;
+	private boolean viewProjectionMatrixDirty = true;
+	private boolean inverseViewProjectionMatrixDirty = true;
 
 	/**
 	 * Constructor.
@@ -54,6 +62,7 @@ public abstract class Camera {
 	 */
 	public void translate(float x, float y, float z) {
 		eye.add(x, y, z);
+		invalidateViewProjectionMatrix();
 	}
 
 	/**
@@ -76,6 +85,7 @@ public abstract class Camera {
 			throw new IllegalArgumentException("The viewport width must be greater than 0");
 		}
 		this.viewportDimensions.setX(viewportWidth);
+		invalidateViewProjectionMatrix();
 	}
 
 	/**
@@ -98,6 +108,7 @@ public abstract class Camera {
 			throw new IllegalArgumentException("The viewport height must be greater than 0");
 		}
 		this.viewportDimensions.setY(viewportHeight);
+		invalidateViewProjectionMatrix();
 	}
 
 	/**
@@ -116,26 +127,129 @@ public abstract class Camera {
 		}
 		this.viewportDimensions.setX(viewportWidth);
 		this.viewportDimensions.setY(viewportHeight);
+		invalidateViewProjectionMatrix();
 	}
 
 	/**
-	 * Returns the view matrix.
+	 * Returns the view matrix.<br>
+	 * The returned matrix can be modified, so the cached view-projection matrix is invalidated.
 	 * 
 	 * @return View matrix.
 	 */
 	public Matrix4 getViewMatrix() {
+		invalidateViewProjectionMatrix();
 		return viewMatrix;
 	}
 
 	/**
-	 * Returns the projection matrix.
+	 * Returns the projection matrix.<br>
+	 * The returned matrix can be modified, so the cached view-projection matrix is invalidated.
 	 * 
 	 * @return Projection matrix.
 	 */
 	public Matrix4 getProjectionMatrix() {
+		invalidateViewProjectionMatrix();
 		return projectionMatrix;
 	}
 
+	/**
+	 * Returns the product of the projection matrix and the view matrix.<br>
+	 * The product is computed only the first time this method is called after the camera changes, so it can be called
+	 * once per rendered element without cost. The returned matrix must not be modified.
+	 * 
+	 * @return View-projection matrix
+	 */
+	public Matrix4 getViewProjectionMatrix() {
+		if (viewProjectionMatrixDirty) {
+			Matrix.multiplyMM(viewProjectionMatrix.getValues(), 0, projectionMatrix.getValues(), 0,
+					viewMatrix.getValues(), 0);
+			viewProjectionMatrixDirty = false;
+		}
+		return viewProjectionMatrix;
+	}
+
+	/**
+	 * Returns the inverse of the view-projection matrix. It is cached the same way as the view-projection matrix.
+	 * 
+	 * @return Inverse view-projection matrix
+	 */
+	public Matrix4 getInverseViewProjectionMatrix() {
+		if (inverseViewProjectionMatrixDirty) {
+			inverseViewProjectionMatrix.setValues(getViewProjectionMatrix().getValues());
+			inverseViewProjectionMatrix.invert();
+			inverseViewProjectionMatrixDirty = false;
+		}
+		return inverseViewProjectionMatrix;
+	}
+
+	/**
+	 * Marks the cached view-projection matrix as outdated, so it is computed again the next time it is requested.<br>
+	 * This method is called by the setters of this class and by {@link #getViewMatrix()} and
+	 * {@link #getProjectionMatrix()}, so {@link #update()} implementations that modify the matrices do not need to
+	 * call it.
+	 */
+	public void invalidateViewProjectionMatrix() {
+		viewProjectionMatrixDirty = true;
+		inverseViewProjectionMatrixDirty = true;
+	}
+
+	/**
+	 * Converts the specified point from screen coordinates to world coordinates, in the plane z = 0.<br>
+	 * Screen coordinates are relative to the top-left corner of the viewport, in pixels, like the coordinates of the
+	 * touch events.
+	 * 
+	 * @param output Vector2 where the result is stored.
+	 * @param screenX Position of the point in the X axis of the screen.
+	 * @param screenY Position of the point in the Y axis of the screen.
+	 * @return output
+	 */
+	public Vector2 unproject(Vector2 output, float screenX, float screenY) {
+		float ndcX = (2.0f * screenX / getViewportWidth()) - 1.0f;
+		float ndcY = 1.0f - (2.0f * screenY / getViewportHeight());
+		float[] v = tmpVector;
+		float[] m = getInverseViewProjectionMatrix().getValues();
+		// Point on the near plane
+		v[0] = ndcX;
+		v[1] = ndcY;
+		v[2] = -1.0f;
+		v[3] = 1.0f;
+		Matrix.multiplyMV(v, 4, m, 0, v, 0);
+		float nearX = v[4] / v[7];
+		float nearY = v[5] / v[7];
+		float nearZ = v[6] / v[7];
+		// Point on the far plane
+		v[2] = 1.0f;
+		Matrix.multiplyMV(v, 4, m, 0, v, 0);
+		float farX = v[4] / v[7];
+		float farY = v[5] / v[7];
+		float farZ = v[6] / v[7];
+		// Intersection of the ray with the plane z = 0
+		float deltaZ = farZ - nearZ;
+		float t = (deltaZ != 0) ? (-nearZ / deltaZ) : 0.0f;
+		return output.set(nearX + (farX - nearX) * t, nearY + (farY - nearY) * t);
+	}
+
+	/**
+	 * Converts the specified point from world coordinates to screen coordinates.<br>
+	 * Screen coordinates are relative to the top-left corner of the viewport, in pixels.
+	 * 
+	 * @param output Vector2 where the result is stored.
+	 * @param worldX Position of the point in the X axis of the world.
+	 * @param worldY Position of the point in the Y axis of the world.
+	 * @return output
+	 */
+	public Vector2 project(Vector2 output, float worldX, float worldY) {
+		float[] v = tmpVector;
+		v[0] = worldX;
+		v[1] = worldY;
+		v[2] = 0.0f;
+		v[3] = 1.0f;
+		Matrix.multiplyMV(v, 4, getViewProjectionMatrix().getValues(), 0, v, 0);
+		float ndcX = v[4] / v[7];
+		float ndcY = v[5] / v[7];
+		return output.set((ndcX + 1.0f) * 0.5f * getViewportWidth(), (1.0f - ndcY) * 0.5f * getViewportHeight());
+	}
+
 	/**
 	 * Returns the eye vector (camera position).
 	 * 
@@ -180,6 +294,7 @@ public abstract class Camera {
 	 */
 	public final void setNear(float near) {
 		this.near = near;
+		invalidateViewProjectionMatrix();
 	}
 
 	/**
@@ -199,11 +314,53 @@ public abstract class Camera {
 	 */
 	public final void setFar(float far) {
 		this.far = far;
+		invalidateViewProjectionMatrix();
 	}
 
 	/**
-	 * Updates the view and projection matrices with the current camera configuration.
+	 * Updates the view and projection matrices with the current camera configuration.<br>
+	 * The matrices are obtained with {@link #getViewMatrix()} and {@link #getProjectionMatrix()}, which invalidate the
+	 * cached view-projection matrix.
 	 */
 	public abstract void update();
 
+	/**
+	 * Checks if the specified axis-aligned rectangle, in world coordinates, intersects the area visible through this
+	 * camera.<br>
+	 * The corners of the rectangle (in the plane z = 0) are transformed with the view-projection matrix, and the
+	 * rectangle is considered not visible if all of them are outside the same side of the clip volume. Subclasses can
+	 * override this method with a cheaper test.
+	 * 
+	 * @param minX Minimum X coordinate of the rectangle.
+	 * @param minY Minimum Y coordinate of the rectangle.
+	 * @param maxX Maximum X coordinate of the rectangle.
+	 * @param maxY Maximum Y coordinate of the rectangle.
+	 * @return true if the rectangle may be visible, false if it is not visible
+	 */
+	public boolean isVisible(float minX, float minY, float maxX, float maxY) {
+		float[] m = getViewProjectionMatrix().getValues();
+		int outsideLeft = 0;
+		int outsideRight = 0;
+		int outsideBottom = 0;
+		int outsideTop = 0;
+		for (int i = 0; i < 4; i++) {
+			float x = (i == 0 || i == 3) ? minX : maxX;
+			float y = (i < 2) ? minY : maxY;
+			float clipX = m[Matrix4.M00] * x + m[Matrix4.M01] * y + m[Matrix4.M03];
+			float clipY = m[Matrix4.M10] * x + m[Matrix4.M11] * y + m[Matrix4.M13];
+			float clipW = m[Matrix4.M30] * x + m[Matrix4.M31] * y + m[Matrix4.M33];
+			if (clipX < -clipW) {
+				outsideLeft++;
+			} else if (clipX > clipW) {
+				outsideRight++;
+			}
+			if (clipY < -clipW) {
+				outsideBottom++;
+			} else if (clipY > clipW) {
+				outsideTop++;
+			}
+		}
+		return outsideLeft < 4 && outsideRight < 4 && outsideBottom < 4 && outsideTop < 4;
+	}
+
 }
@@ -40,4 +40,22 @@ public class OrthographicCamera extends Camera {
 		getProjectionMatrix().setOrtho(0, getViewportWidth(), 0, getViewportHeight(), getNear(), getFar());
 	}
 
+	/**
+	 * Checks if the specified axis-aligned rectangle, in world coordinates, intersects the viewport of this camera.<br>
+	 * The bottom-left corner of the viewport is located at the position of the eye.
+	 * 
+	 * @param minX Minimum X coordinate of the rectangle.
+	 * @param minY Minimum Y coordinate of the rectangle.
+	 * @param maxX Maximum X coordinate of the rectangle.
+	 * @param maxY Maximum Y coordinate of the rectangle.
+	 * @return true if the rectangle intersects the viewport, false otherwise
+	 */
+	@Override
+	public boolean isVisible(float minX, float minY, float maxX, float maxY) {
+		float left = getEye().getX();
+		float bottom = getEye().getY();
+		return (maxX >= left) && (minX <= left + getViewportWidth()) &&
+				(maxY >= bottom) && (minY <= bottom + getViewportHeight());
+	}
+
 }
@@ -23,6 +23,7 @@ package com.miviclin.droidengine2d.graphics.material;
 public abstract class Material {
 
 	private final BlendingOptions blendingOptions;
+	private boolean opaque;
 
 	/**
 	 * Constructor.
@@ -30,6 +31,7 @@ public abstract class Material {
 	public Material() {
 		super();
 		this.blendingOptions = new BlendingOptions();
+		this.opaque = false;
 	}
 
 	/**
@@ -41,4 +43,27 @@ public abstract class Material {
 		return blendingOptions;
 	}
 
+	/**
+	 * Returns true if this material has been declared opaque.
+	 * 
+	 * @return true if the material is opaque, false otherwise
+	 * @see #setOpaque(boolean)
+	 */
+	public boolean isOpaque() {
+		return opaque;
+	}
+
+	/**
+	 * Declares this material as opaque or translucent. Materials are translucent by default.<br>
+	 * An opaque material must cover every pixel of its rectangle with alpha 1. If the opaque pass of Graphics is
+	 * enabled, the rectangles rendered with opaque materials are rendered with blending disabled, front-to-back and
+	 * with depth testing, before the translucent ones (see
+	 * {@link com.miviclin.droidengine2d.graphics.Graphics#setOpaquePassEnabled(boolean)}).
+	 * 
+	 * @param opaque true if the material is opaque, false otherwise.
+	 */
+	public void setOpaque(boolean opaque) {
+		this.opaque = opaque;
+	}
+
 }
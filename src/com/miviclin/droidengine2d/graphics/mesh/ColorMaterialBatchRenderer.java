@@ -14,9 +14,6 @@
  */
 package com.miviclin.droidengine2d.graphics.mesh;
 
-import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
-
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 import com.miviclin.droidengine2d.graphics.Color;
@@ -25,11 +22,11 @@ import com.miviclin.droidengine2d.graphics.material.ColorMaterial;
 import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
 import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
 import com.miviclin.droidengine2d.util.math.Vector2;
-import com.miviclin.droidengine2d.util.math.Vector3;
 
 /**
- * ColorMaterialBatchRenderer allows rendering batches of up to 32 rectangles with ColorMaterial in one draw call. Each
- * rectangle has its own translation, rotation and scale.
+ * ColorMaterialBatchRenderer allows rendering batches of rectangles with ColorMaterial in one draw call. Each rectangle
+ * has its own translation, rotation and scale.<br>
+ * The max number of rectangles per batch depends on the {@link TransformMode}.
  * 
  * @author Miguel Vicente Linares
  * 
@@ -38,16 +35,37 @@ public class ColorMaterialBatchRenderer<M extends ColorMaterial> extends Rectang
 
 	private int vertexPositionOffset;
 	private int vertexColorOffset;
+	private int positionHandle;
+	private int colorHandle;
 
 	/**
-	 * Creates a new ColorMaterialBatchRenderer.
+	 * Creates a new ColorMaterialBatchRenderer.<br>
+	 * The vertices will be transformed in the GPU.
 	 */
 	public ColorMaterialBatchRenderer() {
-		super(7, 32);
-		setVerticesDataStride(7);
+		this(TransformMode.GPU);
+	}
+
+	/**
+	 * Creates a new ColorMaterialBatchRenderer with the default batch capacity of the specified TransformMode.
+	 * 
+	 * @param transformMode Defines where the vertices are transformed.
+	 */
+	public ColorMaterialBatchRenderer(TransformMode transformMode) {
+		this(transformMode, transformMode.getDefaultBatchCapacity());
+	}
+
+	/**
+	 * Creates a new ColorMaterialBatchRenderer.
+	 * 
+	 * @param transformMode Defines where the vertices are transformed.
+	 * @param batchCapacity Maximum size of the batch.
+	 */
+	public ColorMaterialBatchRenderer(TransformMode transformMode, int batchCapacity) {
+		super(4, batchCapacity, transformMode);
 		this.vertexPositionOffset = 0;
 		this.vertexColorOffset = 3;
-		setGeometry(new RectangleBatchGeometry(32, true, false));
+		setGeometry(new RectangleBatchGeometry(batchCapacity, true, false, transformMode, true));
 	}
 
 	@Override
@@ -56,13 +74,12 @@ public class ColorMaterialBatchRenderer<M extends ColorMaterial> extends Rectang
 		// @formatter:off
 		
 		String vertexShaderSource = "" +
-				"uniform mat4 " + ShaderVars.U_MVP_MATRIX + "[32];\n" +
-				"attribute float " + ShaderVars.A_MVP_MATRIX_INDEX + ";\n" +
+				getTransformDeclarationsSource() +
 				"attribute vec4 " + ShaderVars.A_POSITION + ";\n" +
 				"attribute vec4 " + ShaderVars.A_COLOR + ";\n" +
 				"varying vec4 " + ShaderVars.V_COLOR + ";\n" +
 				"void main() {\n" +
-				"    gl_Position = " + ShaderVars.U_MVP_MATRIX + "[int(" + ShaderVars.A_MVP_MATRIX_INDEX + ")] * " + ShaderVars.A_POSITION + ";\n" +
+				"    gl_Position = " + getTransformedPositionSource() + ";\n" +
 				"    " + ShaderVars.V_COLOR + " = " + ShaderVars.A_COLOR + ";\n" +
 				"}";
 
@@ -76,64 +93,55 @@ public class ColorMaterialBatchRenderer<M extends ColorMaterial> extends Rectang
 		// @formatter:on
 
 		ArrayList<String> attributes = new ArrayList<String>();
-		attributes.add(ShaderVars.A_MVP_MATRIX_INDEX);
 		attributes.add(ShaderVars.A_POSITION);
 		attributes.add(ShaderVars.A_COLOR);
 
 		ArrayList<String> uniforms = new ArrayList<String>();
-		uniforms.add(ShaderVars.U_MVP_MATRIX);
+		addTransformShaderVariables(attributes, uniforms);
 
 		getShaderProgram().setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
 	}
 
+	@Override
+	protected void setupShaderVariableHandles() {
+		super.setupShaderVariableHandles();
+		positionHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_POSITION);
+		colorHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_COLOR);
+	}
+
 	@Override
 	protected void setupVertexShaderVariables(int batchSize) {
-		int strideBytes = getVerticesDataStrideBytes();
-		ShaderProgram shaderProgram = getShaderProgram();
-		shaderProgram.setUniformMatrix4fv(ShaderVars.U_MVP_MATRIX, batchSize, getGeometry().getMvpMatrices(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_MVP_MATRIX_INDEX, 1, SIZE_OF_FLOAT, getMvpIndexBuffer(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_POSITION, 3, strideBytes, getVertexBuffer(), vertexPositionOffset);
-		shaderProgram.setAttribute(ShaderVars.A_COLOR, 4, strideBytes, getVertexBuffer(), vertexColorOffset);
+		setupTransformShaderVariables(batchSize);
+		setupVertexAttribute(positionHandle, 3, vertexPositionOffset);
+		setupPackedColorAttribute(colorHandle, vertexColorOffset);
 	}
 
 	@Override
-	protected void copyGeometryToVertexBuffer(int batchSize) {
-		FloatBuffer vertexBuffer = getVertexBuffer();
-		vertexBuffer.clear();
-		int nVertices = getBatchCapacity() * 4;
-		Vector3 position;
-		Color color;
-		for (int i = 0; i < nVertices; i++) {
-			position = getGeometry().getVertex(i);
-			vertexBuffer.put(position.getX());
-			vertexBuffer.put(position.getY());
-			vertexBuffer.put(position.getZ());
-
-			color = getGeometry().getColor(i);
-			vertexBuffer.put(color.getR());
-			vertexBuffer.put(color.getG());
-			vertexBuffer.put(color.getB());
-			vertexBuffer.put(color.getA());
-		}
+	protected void interleaveRectangleVertexData(int batchIndex) {
+		RectangleBatchGeometry geometry = getGeometry();
+		interleaveRectangleAttribute(batchIndex, geometry.getVertices(), Geometry.POSITION_COMPONENTS, 0,
+				Geometry.POSITION_COMPONENTS, vertexPositionOffset);
+		interleaveRectangleAttribute(batchIndex, geometry.getColors(), Geometry.PACKED_COLOR_COMPONENTS, 0,
+				Geometry.PACKED_COLOR_COMPONENTS, vertexColorOffset);
 	}
 
 	@Override
 	protected void setupVerticesData() {
 		RectangleBatchGeometry geometry = getGeometry();
 		int nVertices = getBatchCapacity() * 4;
-		for (int i = 0; i < nVertices; i++) {
+		for (int i = 0; i < nVertices; i += 4) {
 			// Bottom-Left
-			geometry.addVertex(new Vector3(-0.5f, -0.5f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(-0.5f, -0.5f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Bottom-Right
-			geometry.addVertex(new Vector3(0.5f, -0.5f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(0.5f, -0.5f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Top-Right
-			geometry.addVertex(new Vector3(0.5f, 0.5f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(0.5f, 0.5f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Top-Left
-			geometry.addVertex(new Vector3(-0.5f, 0.5f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(-0.5f, 0.5f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 		}
 	}
 
@@ -142,6 +150,7 @@ public class ColorMaterialBatchRenderer<M extends ColorMaterial> extends Rectang
 		checkInBeginEndPair();
 		ColorMaterial material = getCurrentMaterial();
 		setupColoredRectangle(material, position, scale, origin, rotation, camera);
+		copyRectangleToVertexBuffer(getBatchSize());
 		incrementBatchSize();
 	}
 
@@ -174,15 +183,16 @@ public class ColorMaterialBatchRenderer<M extends ColorMaterial> extends Rectang
 	 */
 	protected void setSpriteVerticesColorData(Color color) {
 		int i = getBatchSize() * 4;
+		float packedColor = color.toPackedFloat();
 		RectangleBatchGeometry geometry = getGeometry();
 		// Bottom-Left
-		geometry.getColor(i + 0).set(color);
+		geometry.setPackedColor(i + 0, packedColor);
 		// Bottom-Right
-		geometry.getColor(i + 1).set(color);
+		geometry.setPackedColor(i + 1, packedColor);
 		// Top-Right
-		geometry.getColor(i + 2).set(color);
+		geometry.setPackedColor(i + 2, packedColor);
 		// Top-Left
-		geometry.getColor(i + 3).set(color);
+		geometry.setPackedColor(i + 3, packedColor);
 	}
 
 	/**
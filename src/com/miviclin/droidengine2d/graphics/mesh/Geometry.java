@@ -14,24 +14,50 @@
  */
 package com.miviclin.droidengine2d.graphics.mesh;
 
-import java.util.ArrayList;
-
 import com.miviclin.droidengine2d.graphics.Color;
 import com.miviclin.droidengine2d.util.math.Vector2;
 import com.miviclin.droidengine2d.util.math.Vector3;
 
 /**
- * This class defines the Geometry of a mesh of vertices.
+ * This class defines the Geometry of a mesh of vertices.<br>
+ * The data of the vertices is stored in primitive arrays, one array per attribute (structure of arrays). The arrays are
+ * allocated with the capacity specified in the constructor and they can be accessed directly through
+ * {@link #getVertices()}, {@link #getIndices()}, {@link #getColors()} and {@link #getTexturesUV()}.
  * 
  * @author Miguel Vicente Linares
  * 
  */
 public class Geometry {
 
-	private ArrayList<Vector3> vertices;
-	private ArrayList<Short> indices;
-	private ArrayList<Color> colors;
-	private ArrayList<Vector2> texturesUV;
+	/**
+	 * Number of components of each vertex position (x, y, z).
+	 */
+	public static final int POSITION_COMPONENTS = 3;
+
+	/**
+	 * Number of components of each color (r, g, b, a).
+	 */
+	public static final int COLOR_COMPONENTS = 4;
+
+	/**
+	 * Number of elements of each packed color (see {@link Color#toPackedFloat()}).
+	 */
+	public static final int PACKED_COLOR_COMPONENTS = 1;
+
+	/**
+	 * Number of components of each pair of texture coordinates (u, v).
+	 */
+	public static final int TEXTURE_UV_COMPONENTS = 2;
+
+	private float[] vertices;
+	private short[] indices;
+	private float[] colors;
+	private final boolean packedColors;
+	private float[] texturesUV;
+	private int numVertices;
+	private int numIndices;
+	private int numColors;
+	private int numTexturesUV;
 
 	/**
 	 * Creates a new Geometry.
@@ -42,10 +68,33 @@ public class Geometry {
 	 * @param usesTexturesUV true if the geometry stores texture coordinates, false otherwise.
 	 */
 	public Geometry(int numVertices, int numIndices, boolean usesColors, boolean usesTexturesUV) {
-		this.vertices = new ArrayList<Vector3>(numVertices);
-		this.indices = new ArrayList<Short>(numIndices);
-		this.colors = (usesColors) ? new ArrayList<Color>(numVertices) : null;
-		this.texturesUV = (usesTexturesUV) ? new ArrayList<Vector2>(numVertices) : null;
+		this(numVertices, numIndices, usesColors, usesTexturesUV, false);
+	}
+
+	/**
+	 * Creates a new Geometry.<br>
+	 * If packedColors is true, each color is stored in one element of the array of colors, as returned by
+	 * {@link Color#toPackedFloat()}. Packed colors must be sent to the shader program as 4 normalized GL_UNSIGNED_BYTE
+	 * components.
+	 * 
+	 * @param numVertices Number of vertices.
+	 * @param numIndices Number of indices (the indices are used to render the vertices in the specified order).
+	 * @param usesColors true if the geometry stores colors, false otherwise.
+	 * @param usesTexturesUV true if the geometry stores texture coordinates, false otherwise.
+	 * @param packedColors true if the colors are packed, false if each component is stored in its own element.
+	 */
+	public Geometry(int numVertices, int numIndices, boolean usesColors, boolean usesTexturesUV,
+			boolean packedColors) {
+
+		this.packedColors = packedColors;
+		this.vertices = new float[numVertices * POSITION_COMPONENTS];
+		this.indices = new short[numIndices];
+		this.colors = (usesColors) ? new float[numVertices * getColorComponents()] : null;
+		this.texturesUV = (usesTexturesUV) ? new float[numVertices * TEXTURE_UV_COMPONENTS] : null;
+		this.numVertices = 0;
+		this.numIndices = 0;
+		this.numColors = 0;
+		this.numTexturesUV = 0;
 	}
 
 	/**
@@ -54,17 +103,57 @@ public class Geometry {
 	 * @param position Vertex position.
 	 */
 	public void addVertex(Vector3 position) {
-		vertices.add(position);
+		addVertex(position.getX(), position.getY(), position.getZ());
 	}
 
 	/**
-	 * Returns the vertex position located at the specified index of the array of vertices.
+	 * Adds a vertex position to this Geometry.
+	 * 
+	 * @param x X coordinate of the vertex.
+	 * @param y Y coordinate of the vertex.
+	 * @param z Z coordinate of the vertex.
+	 */
+	public void addVertex(float x, float y, float z) {
+		setVertex(numVertices, x, y, z);
+		numVertices++;
+	}
+
+	/**
+	 * Sets the vertex position located at the specified index of the array of vertices.
+	 * 
+	 * @param index Index.
+	 * @param x X coordinate of the vertex.
+	 * @param y Y coordinate of the vertex.
+	 * @param z Z coordinate of the vertex.
+	 */
+	public void setVertex(int index, float x, float y, float z) {
+		int offset = index * POSITION_COMPONENTS;
+		vertices[offset + 0] = x;
+		vertices[offset + 1] = y;
+		vertices[offset + 2] = z;
+	}
+
+	/**
+	 * Copies the vertex position located at the specified index of the array of vertices to the specified Vector3.
 	 * 
 	 * @param index Index.
-	 * @return Vertex position
+	 * @param result Vector3 where the result will be stored.
+	 * @return result
 	 */
-	public Vector3 getVertex(int index) {
-		return vertices.get(index);
+	public Vector3 getVertex(int index, Vector3 result) {
+		int offset = index * POSITION_COMPONENTS;
+		return result.set(vertices[offset + 0], vertices[offset + 1], vertices[offset + 2]);
+	}
+
+	/**
+	 * Returns the array where the vertex positions are stored. Each vertex position takes
+	 * {@link #POSITION_COMPONENTS} consecutive elements of the array.<br>
+	 * The returned array is not a copy, so any changes made to it will affect this Geometry.
+	 * 
+	 * @return Array of vertex positions
+	 */
+	public float[] getVertices() {
+		return vertices;
 	}
 
 	/**
@@ -73,7 +162,7 @@ public class Geometry {
 	 * @return Number of vertices
 	 */
 	public int getNumVertices() {
-		return vertices.size();
+		return numVertices;
 	}
 
 	/**
@@ -82,7 +171,8 @@ public class Geometry {
 	 * @param index Index.
 	 */
 	public void addIndex(short index) {
-		indices.add(index);
+		indices[numIndices] = index;
+		numIndices++;
 	}
 
 	/**
@@ -92,7 +182,17 @@ public class Geometry {
 	 * @return Index
 	 */
 	public short getIndex(int index) {
-		return indices.get(index);
+		return indices[index];
+	}
+
+	/**
+	 * Returns the array where the indices are stored.<br>
+	 * The returned array is not a copy, so any changes made to it will affect this Geometry.
+	 * 
+	 * @return Array of indices
+	 */
+	public short[] getIndices() {
+		return indices;
 	}
 
 	/**
@@ -101,7 +201,7 @@ public class Geometry {
 	 * @return Number of indices
 	 */
 	public int getNumIndices() {
-		return indices.size();
+		return numIndices;
 	}
 
 	/**
@@ -110,20 +210,97 @@ public class Geometry {
 	 * @param color Color.
 	 */
 	public void addColor(Color color) {
-		colors.add(color);
+		addColor(color.getR(), color.getG(), color.getB(), color.getA());
+	}
+
+	/**
+	 * Adds a color to this Geometry. The color will be associated to the vertex position located at the same index.
+	 * 
+	 * @param r Red.
+	 * @param g Green.
+	 * @param b Blue.
+	 * @param a Alpha.
+	 */
+	public void addColor(float r, float g, float b, float a) {
+		setColor(numColors, r, g, b, a);
+		numColors++;
 	}
 
 	/**
-	 * Returns the Color located at the specified index of the array of colors.
+	 * Sets the color located at the specified index of the array of colors to the RGBA values of the specified Color.
 	 * 
 	 * @param index Index.
-	 * @return Color or null if this Geometry does not contain color information.
+	 * @param color Color.
 	 */
-	public Color getColor(int index) {
-		if (colors == null) {
-			return null;
+	public void setColor(int index, Color color) {
+		if (packedColors) {
+			colors[index] = color.toPackedFloat();
+			return;
+		}
+		setColor(index, color.getR(), color.getG(), color.getB(), color.getA());
+	}
+
+	/**
+	 * Sets the color located at the specified index of the array of colors.<br>
+	 * The 4 components are stored as they are, so they do not need to be RGBA values. If the colors of this Geometry
+	 * are packed, the components are clamped to the [0..1] interval and packed.
+	 * 
+	 * @param index Index.
+	 * @param c0 First component (red).
+	 * @param c1 Second component (green).
+	 * @param c2 Third component (blue).
+	 * @param c3 Fourth component (alpha).
+	 */
+	public void setColor(int index, float c0, float c1, float c2, float c3) {
+		if (packedColors) {
+			colors[index] = Color.packABGRFloat(c0, c1, c2, c3);
+			return;
 		}
-		return colors.get(index);
+		int offset = index * COLOR_COMPONENTS;
+		colors[offset + 0] = c0;
+		colors[offset + 1] = c1;
+		colors[offset + 2] = c2;
+		colors[offset + 3] = c3;
+	}
+
+	/**
+	 * Sets the packed color located at the specified index of the array of colors.<br>
+	 * This method can only be used if the colors of this Geometry are packed.
+	 * 
+	 * @param index Index.
+	 * @param packedColor Packed color (see {@link Color#toPackedFloat()}).
+	 */
+	public void setPackedColor(int index, float packedColor) {
+		colors[index] = packedColor;
+	}
+
+	/**
+	 * Returns true if the colors of this Geometry are packed in one element per color.
+	 * 
+	 * @return true if the colors are packed, false otherwise
+	 */
+	public boolean isPackedColors() {
+		return packedColors;
+	}
+
+	/**
+	 * Returns the number of elements of the array of colors used by each color.
+	 * 
+	 * @return {@link #PACKED_COLOR_COMPONENTS} if the colors are packed, {@link #COLOR_COMPONENTS} otherwise
+	 */
+	public int getColorComponents() {
+		return (packedColors) ? PACKED_COLOR_COMPONENTS : COLOR_COMPONENTS;
+	}
+
+	/**
+	 * Returns the array where the colors are stored. Each color takes {@link #getColorComponents()} consecutive
+	 * elements of the array.<br>
+	 * The returned array is not a copy, so any changes made to it will affect this Geometry.
+	 * 
+	 * @return Array of colors or null if this Geometry does not contain color information.
+	 */
+	public float[] getColors() {
+		return colors;
 	}
 
 	/**
@@ -136,7 +313,7 @@ public class Geometry {
 		if (colors == null) {
 			return -1;
 		}
-		return colors.size();
+		return numColors;
 	}
 
 	/**
@@ -146,20 +323,43 @@ public class Geometry {
 	 * @param textureUV Texture UV coordinates.
 	 */
 	public void addTextureUV(Vector2 textureUV) {
-		texturesUV.add(textureUV);
+		addTextureUV(textureUV.getX(), textureUV.getY());
 	}
 
 	/**
-	 * Returns the texture UV coordinates located at the specified index of the array of texture UV coordinates.
+	 * Adds a pair of texture UV coordinates to this Geometry. The pair of texture UV coordinates will be associated to
+	 * the vertex position located at the same index.
+	 * 
+	 * @param u U coordinate.
+	 * @param v V coordinate.
+	 */
+	public void addTextureUV(float u, float v) {
+		setTextureUV(numTexturesUV, u, v);
+		numTexturesUV++;
+	}
+
+	/**
+	 * Sets the texture UV coordinates located at the specified index of the array of texture UV coordinates.
 	 * 
 	 * @param index Index.
-	 * @return Texture UV coordinates or null if this Geometry does not contain texture information.
+	 * @param u U coordinate.
+	 * @param v V coordinate.
 	 */
-	public Vector2 getTextureUV(int index) {
-		if (texturesUV == null) {
-			return null;
-		}
-		return texturesUV.get(index);
+	public void setTextureUV(int index, float u, float v) {
+		int offset = index * TEXTURE_UV_COMPONENTS;
+		texturesUV[offset + 0] = u;
+		texturesUV[offset + 1] = v;
+	}
+
+	/**
+	 * Returns the array where the texture UV coordinates are stored. Each pair of texture UV coordinates takes
+	 * {@link #TEXTURE_UV_COMPONENTS} consecutive elements of the array.<br>
+	 * The returned array is not a copy, so any changes made to it will affect this Geometry.
+	 * 
+	 * @return Array of texture UV coordinates or null if this Geometry does not contain texture information.
+	 */
+	public float[] getTexturesUV() {
+		return texturesUV;
 	}
 
 	/**
@@ -172,7 +372,7 @@ public class Geometry {
 		if (texturesUV == null) {
 			return -1;
 		}
-		return texturesUV.size();
+		return numTexturesUV;
 	}
 
 }
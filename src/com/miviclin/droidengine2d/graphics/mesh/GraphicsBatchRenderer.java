@@ -52,7 +52,10 @@ public abstract class GraphicsBatchRenderer<M extends Material> {
 	}
 
 	/**
-	 * Sets up the ShaderProgram.
+	 * Sets up the ShaderProgram.<br>
+	 * The material renderers registered in {@code Graphics} are set up in a background thread, not in the renderer
+	 * thread, so implementations must not call OpenGL from this method. They should only generate the GLSL code and
+	 * pass it to {@link ShaderProgram#setShaders}. The ShaderProgram is compiled later in the renderer thread.
 	 */
 	public abstract void setupShaderProgram();
 
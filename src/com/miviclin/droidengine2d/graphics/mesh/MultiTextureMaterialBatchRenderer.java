@@ -0,0 +1,306 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.content.Context;
+
+import com.miviclin.droidengine2d.graphics.GLStateCache;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+import com.miviclin.droidengine2d.util.math.Vector2;
+
+/**
+ * MultiTextureMaterialBatchRenderer allows rendering batches of rectangles with TextureMaterial in one draw call, even
+ * if the rectangles use different textures. Each rectangle has its own translation, rotation and scale.<br>
+ * Up to N textures are bound to different texture units, where N is the min value of the max number of texture slots
+ * specified in the constructor and GL_MAX_TEXTURE_IMAGE_UNITS. Each vertex carries the index of the texture slot it
+ * samples from, so the batch is only rendered before it is full when all texture slots are in use and a rectangle with
+ * a new texture is added.<br>
+ * This renderer can replace the default TextureMaterial renderer of
+ * {@link com.miviclin.droidengine2d.graphics.Graphics} overriding
+ * {@link com.miviclin.droidengine2d.graphics.Graphics#loadMaterialRenderers()}.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ * @param <M> TextureMaterial
+ */
+public class MultiTextureMaterialBatchRenderer<M extends TextureMaterial> extends TextureMaterialBatchRendererBase<M> {
+
+	/**
+	 * Default max number of texture slots.
+	 */
+	public static final int DEFAULT_MAX_TEXTURE_SLOTS = 8;
+
+	private final int maxTextureSlots;
+	private final float[] vertexTextureSlots;
+	private int vertexTextureSlotOffset;
+	private int numTextureSlots;
+	private int numUsedTextureSlots;
+	private Texture[] textureSlots;
+	private int[] textureUnits;
+	private int textureSlotHandle;
+	private int texturesHandle;
+
+	/**
+	 * Creates a new MultiTextureMaterialBatchRenderer.<br>
+	 * The vertices will be transformed in the GPU.
+	 * 
+	 * @param context Context.
+	 */
+	public MultiTextureMaterialBatchRenderer(Context context) {
+		this(context, TransformMode.GPU);
+	}
+
+	/**
+	 * Creates a new MultiTextureMaterialBatchRenderer with the default batch capacity of the specified TransformMode.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 */
+	public MultiTextureMaterialBatchRenderer(Context context, TransformMode transformMode) {
+		this(context, transformMode, transformMode.getDefaultBatchCapacity(), DEFAULT_MAX_TEXTURE_SLOTS);
+	}
+
+	/**
+	 * Creates a new MultiTextureMaterialBatchRenderer.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 * @param batchCapacity Maximum size of the batch.
+	 * @param maxTextureSlots Max number of textures per batch. The actual number is limited by
+	 *            GL_MAX_TEXTURE_IMAGE_UNITS.
+	 */
+	public MultiTextureMaterialBatchRenderer(Context context, TransformMode transformMode, int batchCapacity,
+			int maxTextureSlots) {
+
+		super(6, context, transformMode, batchCapacity);
+		if (maxTextureSlots < 1) {
+			throw new IllegalArgumentException("maxTextureSlots must be at least 1");
+		}
+		this.maxTextureSlots = maxTextureSlots;
+		this.vertexTextureSlots = new float[batchCapacity * 4];
+		this.vertexTextureSlotOffset = 5;
+		this.numTextureSlots = 1;
+		this.numUsedTextureSlots = 0;
+	}
+
+	@Override
+	public void setupShaderProgram() {
+		int maxTextureImageUnits = GLStateCache.getInstance().getMaxTextureImageUnits();
+		numTextureSlots = Math.max(1, Math.min(maxTextureSlots, maxTextureImageUnits));
+		textureSlots = new Texture[numTextureSlots];
+		textureUnits = new int[numTextureSlots];
+		for (int i = 0; i < numTextureSlots; i++) {
+			textureUnits[i] = i;
+		}
+
+		// @formatter:off
+
+		String vertexShaderSource = "" +
+				getTransformDeclarationsSource() +
+				"attribute vec4 " + ShaderVars.A_POSITION + ";\n" +
+				"attribute vec2 " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"attribute float " + ShaderVars.A_TEXTURE_SLOT + ";\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"varying float " + ShaderVars.V_TEXTURE_SLOT + ";\n" +
+				"void main() {\n" +
+				"    gl_Position = " + getTransformedPositionSource() + ";\n" +
+				"    " + ShaderVars.V_TEXTURE_COORD + " = " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"    " + ShaderVars.V_TEXTURE_SLOT + " = " + ShaderVars.A_TEXTURE_SLOT + ";\n" +
+				"}";
+
+		String fragmentShaderSource = "" +
+				"precision mediump float;\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"varying float " + ShaderVars.V_TEXTURE_SLOT + ";\n" +
+				"uniform sampler2D " + ShaderVars.U_TEXTURES + "[" + numTextureSlots + "];\n" +
+				"void main() {\n" +
+				getTextureSamplingSource() +
+				"}";
+
+		// @formatter:on
+
+		ArrayList<String> attributes = new ArrayList<String>();
+		attributes.add(ShaderVars.A_POSITION);
+		attributes.add(ShaderVars.A_TEXTURE_COORD);
+		attributes.add(ShaderVars.A_TEXTURE_SLOT);
+
+		ArrayList<String> uniforms = new ArrayList<String>();
+		uniforms.add(ShaderVars.U_TEXTURES);
+		addTransformShaderVariables(attributes, uniforms);
+
+		getShaderProgram().setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
+	}
+
+	/**
+	 * Returns the GLSL code that samples the texture slot of the fragment.<br>
+	 * GLSL ES 1.0 does not allow indexing arrays of samplers with non-constant expressions, so each texture slot is
+	 * selected in a branch.
+	 * 
+	 * @return GLSL code
+	 */
+	private String getTextureSamplingSource() {
+		StringBuilder source = new StringBuilder();
+		String sample;
+		for (int i = 0; i < numTextureSlots; i++) {
+			sample = "gl_FragColor = texture2D(" + ShaderVars.U_TEXTURES + "[" + i + "], " +
+					ShaderVars.V_TEXTURE_COORD + ");\n";
+
+			if (i == numTextureSlots - 1) {
+				source.append((i == 0) ? "    " : "    } else {\n        ").append(sample);
+				if (i != 0) {
+					source.append("    }\n");
+				}
+			} else {
+				source.append((i == 0) ? "    if (" : "    } else if (");
+				source.append(ShaderVars.V_TEXTURE_SLOT).append(" < ").append(i).append(".5) {\n");
+				source.append("        ").append(sample);
+			}
+		}
+		return source.toString();
+	}
+
+	@Override
+	protected void setupShaderVariableHandles() {
+		super.setupShaderVariableHandles();
+		textureSlotHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_TEXTURE_SLOT);
+		texturesHandle = getShaderProgram().getUniformHandle(ShaderVars.U_TEXTURES);
+	}
+
+	@Override
+	protected void setupVertexShaderVariables(int batchSize) {
+		setupTransformShaderVariables(batchSize);
+		setupVertexAttribute(getPositionHandle(), 3, getVertexPositionOffset());
+		setupVertexAttribute(getTextureCoordHandle(), 2, getVertexUVOffset());
+		setupVertexAttribute(textureSlotHandle, 1, vertexTextureSlotOffset);
+		getShaderProgram().setUniform1iv(texturesHandle, numTextureSlots, textureUnits, 0);
+	}
+
+	@Override
+	protected void setupVerticesData() {
+		RectangleBatchGeometry geometry = getGeometry();
+		int nVertices = getBatchCapacity() * 4;
+		for (int i = 0; i < nVertices; i += 4) {
+			// Bottom-Left
+			geometry.addVertex(-0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 1.0f);
+			// Bottom-Right
+			geometry.addVertex(0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 1.0f);
+			// Top-Right
+			geometry.addVertex(0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 0.0f);
+			// Top-Left
+			geometry.addVertex(-0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 0.0f);
+		}
+	}
+
+	@Override
+	protected void interleaveRectangleVertexData(int batchIndex) {
+		RectangleBatchGeometry geometry = getGeometry();
+		interleaveRectangleAttribute(batchIndex, geometry.getVertices(), Geometry.POSITION_COMPONENTS, 0,
+				Geometry.POSITION_COMPONENTS, getVertexPositionOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getTexturesUV(), Geometry.TEXTURE_UV_COMPONENTS, 0,
+				Geometry.TEXTURE_UV_COMPONENTS, getVertexUVOffset());
+		interleaveRectangleAttribute(batchIndex, vertexTextureSlots, 1, 0, 1, vertexTextureSlotOffset);
+	}
+
+	@Override
+	public void draw(Vector2 position, Vector2 scale, Vector2 origin, float rotation, Camera camera) {
+		checkInBeginEndPair();
+		TextureRegion textureRegion = getCurrentMaterial().getTextureRegion();
+		if ((getBatchSize() > 0) && ((getBatchSize() == getBatchCapacity()) || isForceDraw())) {
+			drawBatch();
+		}
+		int textureSlot = getTextureSlot(textureRegion.getTexture());
+		updateTransform(getBatchSize(), position, scale, origin, rotation, camera, textureRegion);
+		setupUVCoords(textureRegion);
+		setupTextureSlot(textureSlot);
+		copyRectangleToVertexBuffer(getBatchSize());
+		incrementBatchSize();
+	}
+
+	/**
+	 * Returns the texture slot assigned to the specified Texture in the current batch. If the Texture does not have a
+	 * texture slot yet, a new one is assigned to it. If all texture slots are in use, the current batch is rendered
+	 * first.
+	 * 
+	 * @param texture Texture.
+	 * @return Texture slot
+	 */
+	private int getTextureSlot(Texture texture) {
+		for (int i = 0; i < numUsedTextureSlots; i++) {
+			if (textureSlots[i].equals(texture)) {
+				return i;
+			}
+		}
+		if (numUsedTextureSlots == numTextureSlots) {
+			drawBatch();
+		}
+		if (!texture.isLoaded()) {
+			texture.loadTexture(getContext());
+		}
+		textureSlots[numUsedTextureSlots] = texture;
+		return numUsedTextureSlots++;
+	}
+
+	/**
+	 * Sets the texture slot of the vertices of the last rectangle added to this batch.
+	 * 
+	 * @param textureSlot Texture slot.
+	 */
+	private void setupTextureSlot(float textureSlot) {
+		int i = getBatchSize() * 4;
+		vertexTextureSlots[i + 0] = textureSlot;
+		vertexTextureSlots[i + 1] = textureSlot;
+		vertexTextureSlots[i + 2] = textureSlot;
+		vertexTextureSlots[i + 3] = textureSlot;
+	}
+
+	@Override
+	protected void prepareDrawBatch() {
+		for (int i = 0; i < numUsedTextureSlots; i++) {
+			GLStateCache.getInstance().activeTexture(i);
+			textureSlots[i].bind();
+		}
+		GLStateCache.getInstance().activeTexture(0);
+		super.prepareDrawBatch();
+	}
+
+	@Override
+	protected void drawBatch() {
+		super.drawBatch();
+		Arrays.fill(textureSlots, 0, numUsedTextureSlots, null);
+		numUsedTextureSlots = 0;
+	}
+
+	/**
+	 * Returns the number of texture slots available per batch.<br>
+	 * This value is known once {@link #setupShaderProgram()} has been called.
+	 * 
+	 * @return Number of texture slots
+	 */
+	public int getNumTextureSlots() {
+		return numTextureSlots;
+	}
+
+}
@@ -0,0 +1,209 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import android.opengl.GLES20;
+import android.os.Build;
+
+import com.miviclin.droidengine2d.graphics.Color;
+import com.miviclin.droidengine2d.graphics.GLStateCache;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.material.BlendingOptions;
+import com.miviclin.droidengine2d.graphics.material.TextureColorMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.TransparentTextureMaterial;
+import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
+import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
+
+/**
+ * Shader used by the renderers whose vertices are already transformed to world space and have a texture coordinate and
+ * a color packed in one float (see {@link Color#toPackedFloat()}).<br>
+ * The vertices are interleaved as {@code (x, y, [z,] u, v, color)}, so the stride of a vertex is the size of the
+ * position plus 3 floats. Only the view-projection matrix of the camera is sent as a uniform.<br>
+ * This class wraps a {@link ShaderProgram} owned by the renderer. {@link #setup()} only generates the GLSL code, so it
+ * can be called from any thread. The rest of the methods must be called from the GL thread.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class PackedColorTextureShader {
+
+	private static final float WHITE = Color.packABGRFloat(1.0f, 1.0f, 1.0f, 1.0f);
+
+	private final ShaderProgram shaderProgram;
+	private final int positionSize;
+	private final int strideBytes;
+	private int viewProjectionMatrixHandle;
+	private int positionHandle;
+	private int textureCoordHandle;
+	private int colorHandle;
+	private int contextGeneration;
+
+	/**
+	 * Creates a new PackedColorTextureShader.
+	 * 
+	 * @param shaderProgram ShaderProgram where the shaders are set.
+	 * @param positionSize Number of coordinates of the position of a vertex (2 or 3).
+	 */
+	public PackedColorTextureShader(ShaderProgram shaderProgram, int positionSize) {
+		if (positionSize < 2 || positionSize > 3) {
+			throw new IllegalArgumentException("The position size must be 2 or 3");
+		}
+		this.shaderProgram = shaderProgram;
+		this.positionSize = positionSize;
+		this.strideBytes = (positionSize + 3) * SIZE_OF_FLOAT;
+		this.contextGeneration = -1;
+	}
+
+	/**
+	 * Sets the GLSL code of the shader program and gets the handles of its variables.<br>
+	 * This method does not call OpenGL.
+	 */
+	public void setup() {
+
+		// @formatter:off
+
+		String vertexShaderSource = "" +
+				"uniform mat4 " + ShaderVars.U_VIEW_PROJECTION_MATRIX + ";\n" +
+				"attribute vec4 " + ShaderVars.A_POSITION + ";\n" +
+				"attribute vec2 " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"attribute vec4 " + ShaderVars.A_COLOR + ";\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"varying vec4 " + ShaderVars.V_COLOR + ";\n" +
+				"void main() {\n" +
+				"    gl_Position = " + ShaderVars.U_VIEW_PROJECTION_MATRIX + " * " + ShaderVars.A_POSITION + ";\n" +
+				"    " + ShaderVars.V_TEXTURE_COORD + " = " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"    " + ShaderVars.V_COLOR + " = " + ShaderVars.A_COLOR + ";\n" +
+				"}";
+
+		String fragmentShaderSource = "" +
+				"precision mediump float;\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"varying vec4 " + ShaderVars.V_COLOR + ";\n" +
+				"uniform sampler2D sTexture;\n" +
+				"void main() {\n" +
+				"    gl_FragColor = texture2D(sTexture, " + ShaderVars.V_TEXTURE_COORD + ") * " + ShaderVars.V_COLOR + ";\n" +
+				"}";
+
+		// @formatter:on
+
+		ArrayList<String> attributes = new ArrayList<String>();
+		attributes.add(ShaderVars.A_POSITION);
+		attributes.add(ShaderVars.A_TEXTURE_COORD);
+		attributes.add(ShaderVars.A_COLOR);
+
+		ArrayList<String> uniforms = new ArrayList<String>();
+		uniforms.add(ShaderVars.U_VIEW_PROJECTION_MATRIX);
+
+		shaderProgram.setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
+		viewProjectionMatrixHandle = shaderProgram.getUniformHandle(ShaderVars.U_VIEW_PROJECTION_MATRIX);
+		positionHandle = shaderProgram.getAttributeHandle(ShaderVars.A_POSITION);
+		textureCoordHandle = shaderProgram.getAttributeHandle(ShaderVars.A_TEXTURE_COORD);
+		colorHandle = shaderProgram.getAttributeHandle(ShaderVars.A_COLOR);
+	}
+
+	/**
+	 * Makes the shader program current. It is compiled and linked first if it was not linked yet or if the GL context
+	 * has been created again since it was linked.
+	 */
+	public void use() {
+		int currentContextGeneration = GLStateCache.getInstance().getContextGeneration();
+		if (contextGeneration != currentContextGeneration || !shaderProgram.isLinked()) {
+			shaderProgram.compileAndLink();
+			contextGeneration = currentContextGeneration;
+		}
+		shaderProgram.use();
+	}
+
+	/**
+	 * Sends the view-projection matrix of the specified camera to the shader program.
+	 * 
+	 * @param camera Camera.
+	 */
+	public void setViewProjectionMatrix(Camera camera) {
+		float[] viewProjectionMatrix = camera.getViewProjectionMatrix().getValues();
+		shaderProgram.setUniformMatrix4fv(viewProjectionMatrixHandle, 1, viewProjectionMatrix, 0);
+	}
+
+	/**
+	 * Points the attributes of the shader program to the vertices stored in the specified buffer.
+	 * 
+	 * @param vertexBuffer Vertex buffer.
+	 */
+	public void setAttributes(FloatBuffer vertexBuffer) {
+		shaderProgram.setAttribute(positionHandle, positionSize, strideBytes, vertexBuffer, 0);
+		shaderProgram.setAttribute(textureCoordHandle, 2, strideBytes, vertexBuffer, positionSize);
+		shaderProgram.setAttribute(colorHandle, 4, GLES20.GL_UNSIGNED_BYTE, true, strideBytes, vertexBuffer,
+				positionSize + 2);
+	}
+
+	/**
+	 * Points the attributes of the shader program to the vertices stored in the vertex buffer object that is currently
+	 * bound to {@code GL_ARRAY_BUFFER}.
+	 */
+	public void setBufferObjectAttributes() {
+		shaderProgram.setAttribute(positionHandle, positionSize, strideBytes, 0);
+		shaderProgram.setAttribute(textureCoordHandle, 2, strideBytes, positionSize * SIZE_OF_FLOAT);
+		shaderProgram.setAttribute(colorHandle, 4, GLES20.GL_UNSIGNED_BYTE, true, strideBytes,
+				(positionSize + 2) * SIZE_OF_FLOAT);
+	}
+
+	/**
+	 * Disables the vertex attribute arrays of the shader program.
+	 */
+	public void disableAttributes() {
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		glStateCache.disableVertexAttribArray(shaderProgram.getAttributeLocation(positionHandle));
+		glStateCache.disableVertexAttribArray(shaderProgram.getAttributeLocation(textureCoordHandle));
+		glStateCache.disableVertexAttribArray(shaderProgram.getAttributeLocation(colorHandle));
+	}
+
+	/**
+	 * Returns the packed color of the vertices rendered with the specified material.<br>
+	 * The color of a {@link TextureColorMaterial} is used as is, a {@link TransparentTextureMaterial} is white with its
+	 * opacity and any other material is opaque white.
+	 * 
+	 * @param material TextureMaterial.
+	 * @return Packed color (see {@link Color#toPackedFloat()})
+	 */
+	public static float getPackedColor(TextureMaterial material) {
+		if (material instanceof TextureColorMaterial) {
+			return ((TextureColorMaterial) material).getColor().toPackedFloat();
+		}
+		if (material instanceof TransparentTextureMaterial) {
+			return Color.packABGRFloat(1.0f, 1.0f, 1.0f, ((TransparentTextureMaterial) material).getOpacity());
+		}
+		return WHITE;
+	}
+
+	/**
+	 * Sets the blending function and, if the device supports it, the blending equation of the specified options.
+	 * 
+	 * @param blendingOptions BlendingOptions.
+	 */
+	public static void applyBlendingOptions(BlendingOptions blendingOptions) {
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		glStateCache.blendFunc(blendingOptions.getSourceFactor(), blendingOptions.getDestinationFactor());
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+			glStateCache.blendEquation(blendingOptions.getBlendEquationMode());
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_SHORT;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.graphics.GLDebugger;
+
+/**
+ * Static index buffer object shared by all batch renderers that render quads using buffer objects.<br>
+ * The quad index pattern (0, 1, 2, 2, 3, 0) is identical for every batch, so it is uploaded to the GPU only once. The
+ * buffer grows when a renderer with a bigger batch capacity requests it.<br>
+ * This class must only be used from the GL thread.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public final class QuadIndexBufferObject {
+
+	private static int handle = 0;
+	private static int numQuads = 0;
+
+	private QuadIndexBufferObject() {
+	}
+
+	/**
+	 * Makes sure that the shared index buffer object contains the indices of at least the specified number of
+	 * quads.<br>
+	 * If the buffer object does not exist yet or it is too small, it is (re)created. Leaves the buffer object bound to
+	 * GL_ELEMENT_ARRAY_BUFFER.
+	 * 
+	 * @param requiredQuads Number of quads.
+	 */
+	public static void ensureCapacity(int requiredQuads) {
+		if (handle != 0 && numQuads >= requiredQuads) {
+			return;
+		}
+		int[] handles = new int[] { handle };
+		if (handle != 0) {
+			GLES20.glDeleteBuffers(1, handles, 0);
+		}
+		GLES20.glGenBuffers(1, handles, 0);
+		handle = handles[0];
+		numQuads = requiredQuads;
+
+		ShortBuffer indices = ByteBuffer.allocateDirect(requiredQuads * 6 * SIZE_OF_SHORT)
+				.order(ByteOrder.nativeOrder())
+				.asShortBuffer();
+		for (int i = 0, j = 0; i < requiredQuads; i++, j += 4) {
+			indices.put((short) (j + 0));
+			indices.put((short) (j + 1));
+			indices.put((short) (j + 2));
+			indices.put((short) (j + 2));
+			indices.put((short) (j + 3));
+			indices.put((short) (j + 0));
+		}
+		indices.flip();
+
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, handle);
+		GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indices.limit() * SIZE_OF_SHORT, indices,
+				GLES20.GL_STATIC_DRAW);
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Binds the shared index buffer object to GL_ELEMENT_ARRAY_BUFFER.
+	 */
+	public static void bind() {
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, handle);
+	}
+
+	/**
+	 * Forgets the shared index buffer object without deleting it.<br>
+	 * This method must be called when the GL context is lost, because the buffer object is destroyed along with the
+	 * context. The buffer object will be created again the next time {@link #ensureCapacity(int)} is called.
+	 */
+	public static void invalidate() {
+		handle = 0;
+		numQuads = 0;
+	}
+
+	/**
+	 * Returns the number of quads whose indices are stored in the shared index buffer object.
+	 * 
+	 * @return Number of quads
+	 */
+	public static int getNumQuads() {
+		return numQuads;
+	}
+
+}
@@ -14,11 +14,8 @@
  */
 package com.miviclin.droidengine2d.graphics.mesh;
 
-import android.opengl.Matrix;
-
 import com.miviclin.droidengine2d.graphics.cameras.Camera;
-import com.miviclin.droidengine2d.util.TransformUtilities;
-import com.miviclin.droidengine2d.util.math.Matrix4;
+import com.miviclin.droidengine2d.util.math.Affine2;
 import com.miviclin.droidengine2d.util.math.Vector2;
 
 /**
@@ -29,26 +26,59 @@ import com.miviclin.droidengine2d.util.math.Vector2;
  */
 public class RectangleBatchGeometry extends Geometry {
 
-	protected final float[] temp = new float[16];
+	private final TransformMode transformMode;
 
 	private float[] mvpIndices;
 	private float[] mvpMatrices;
-	private Matrix4 modelMatrix;
+	private Affine2 modelTransform;
 
 	/**
-	 * Constructor.
+	 * Constructor.<br>
+	 * The vertices of the geometry will be transformed in the GPU.
 	 * 
 	 * @param batchCapacity Max number of elements of the batch.
 	 * @param usesColors true if the geometry stores colors, false otherwise.
 	 * @param usesTexturesUV true if the geometry stores texture coordinates, false otherwise.
 	 */
 	public RectangleBatchGeometry(int batchCapacity, boolean usesColors, boolean usesTexturesUV) {
-		super(batchCapacity * 4, batchCapacity * 6, usesColors, usesTexturesUV);
-		this.mvpIndices = new float[batchCapacity * 4];
-		this.mvpMatrices = new float[batchCapacity * 16];
-		this.modelMatrix = new Matrix4();
+		this(batchCapacity, usesColors, usesTexturesUV, TransformMode.GPU);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param batchCapacity Max number of elements of the batch.
+	 * @param usesColors true if the geometry stores colors, false otherwise.
+	 * @param usesTexturesUV true if the geometry stores texture coordinates, false otherwise.
+	 * @param transformMode Defines where the vertices of the geometry are transformed.
+	 */
+	public RectangleBatchGeometry(int batchCapacity, boolean usesColors, boolean usesTexturesUV,
+			TransformMode transformMode) {
+
+		this(batchCapacity, usesColors, usesTexturesUV, transformMode, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param batchCapacity Max number of elements of the batch.
+	 * @param usesColors true if the geometry stores colors, false otherwise.
+	 * @param usesTexturesUV true if the geometry stores texture coordinates, false otherwise.
+	 * @param transformMode Defines where the vertices of the geometry are transformed.
+	 * @param packedColors true if the colors are packed (see {@link Geometry#isPackedColors()}), false otherwise.
+	 */
+	public RectangleBatchGeometry(int batchCapacity, boolean usesColors, boolean usesTexturesUV,
+			TransformMode transformMode, boolean packedColors) {
+
+		super(batchCapacity * 4, batchCapacity * 6, usesColors, usesTexturesUV, packedColors);
+		this.transformMode = transformMode;
+		this.modelTransform = new Affine2();
 
-		setupMVPIndices();
+		if (transformMode == TransformMode.GPU) {
+			this.mvpIndices = new float[batchCapacity * 4];
+			this.mvpMatrices = new float[batchCapacity * 16];
+			setupMVPIndices();
+		}
 	}
 
 	/**
@@ -65,33 +95,61 @@ public class RectangleBatchGeometry extends Geometry {
 	}
 
 	/**
-	 * Transforms the MVP matrix located at the specified index with the especified position, scale and rotation.
+	 * Transforms the rectangle located at the specified index with the especified position, scale and rotation.<br>
+	 * The model transform is built as an {@link Affine2}. If the vertices are transformed in the GPU, it is composed
+	 * with the view-projection matrix of the camera to update the MVP matrix of the rectangle. Otherwise, the vertices
+	 * of the rectangle are transformed by it and stored in this geometry.
 	 * 
-	 * @param batchIndex Index of the array of MVP matrices where the matrix is located.
+	 * @param batchIndex Index of the rectangle in the batch.
 	 * @param position Position.
 	 * @param scale Scale.
 	 * @param rotation Rotation angle around the origin.
 	 * @param camera Camera.
 	 */
 	public void updateMVPMatrix(int batchIndex, Vector2 position, Vector2 scale, float rotation, Camera camera) {
-		int mvpOffset;
-		float tx = position.getX();
-		float ty = position.getY();
-
-		if (rotation != 0) {
-			TransformUtilities.transform2D(modelMatrix, tx, ty, rotation, scale.getX(), scale.getY());
-		} else {
-			TransformUtilities.transform2D(modelMatrix, tx, ty, scale.getX(), scale.getY());
+		modelTransform.setToTransform(position.getX(), position.getY(), rotation, scale.getX(), scale.getY());
+		if (transformMode == TransformMode.CPU) {
+			transformVertices(batchIndex * 4, modelTransform);
+			return;
 		}
-		mvpOffset = batchIndex * 16;
-		Matrix.multiplyMM(temp, 0, camera.getViewMatrix().getValues(), 0, modelMatrix.getValues(), 0);
-		Matrix.multiplyMM(mvpMatrices, mvpOffset, camera.getProjectionMatrix().getValues(), 0, temp, 0);
+		Affine2.multiplyMM(mvpMatrices, batchIndex * 16, camera.getViewProjectionMatrix().getValues(), 0,
+				modelTransform);
+	}
+
+	/**
+	 * Transforms the 4 vertices of a rectangle by the specified model transform. The result is stored in the same
+	 * vertices. The z coordinate is not modified.
+	 * 
+	 * @param firstVertexIndex Index of the first vertex of the rectangle.
+	 * @param m Model transform.
+	 */
+	private void transformVertices(int firstVertexIndex, Affine2 m) {
+		float[] vertices = getVertices();
+		float x;
+		float y;
+		int offset = firstVertexIndex * POSITION_COMPONENTS;
+		int limit = offset + 4 * POSITION_COMPONENTS;
+		for (int i = offset; i < limit; i += POSITION_COMPONENTS) {
+			x = vertices[i + 0];
+			y = vertices[i + 1];
+			vertices[i + 0] = m.transformX(x, y);
+			vertices[i + 1] = m.transformY(x, y);
+		}
+	}
+
+	/**
+	 * Returns the TransformMode of this geometry.
+	 * 
+	 * @return TransformMode
+	 */
+	public TransformMode getTransformMode() {
+		return transformMode;
 	}
 
 	/**
 	 * Returns the array of indices of the array of MVP matrices.
 	 * 
-	 * @return Array of indices of the array of MVP matrices.
+	 * @return Array of indices of the array of MVP matrices, or null if the vertices are transformed in the CPU.
 	 */
 	public float[] getMvpIndices() {
 		return mvpIndices;
@@ -110,7 +168,7 @@ public class RectangleBatchGeometry extends Geometry {
 	 * Returns the array of MVP matrices. All matrices are stored in the same array. Each block of 16 numbers is a 4x4
 	 * matrix.
 	 * 
-	 * @return Array of MVP matrices
+	 * @return Array of MVP matrices, or null if the vertices are transformed in the CPU.
 	 */
 	public float[] getMvpMatrices() {
 		return mvpMatrices;
@@ -21,16 +21,19 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
+import java.util.ArrayList;
 
 import android.opengl.GLES20;
 import android.os.Build;
 
 import com.miviclin.droidengine2d.BuildConfig;
 import com.miviclin.droidengine2d.graphics.GLDebugger;
+import com.miviclin.droidengine2d.graphics.GLStateCache;
 import com.miviclin.droidengine2d.graphics.cameras.Camera;
 import com.miviclin.droidengine2d.graphics.material.BlendingOptions;
 import com.miviclin.droidengine2d.graphics.material.Material;
 import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
+import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
 import com.miviclin.droidengine2d.util.math.Vector2;
 
 /**
@@ -44,24 +47,56 @@ import com.miviclin.droidengine2d.util.math.Vector2;
  */
 public abstract class RectangleBatchRenderer<M extends Material> extends GraphicsBatchRenderer<M> {
 
+	private final TransformMode transformMode;
+
 	private int verticesDataStride;
+	private float depth;
+	private Camera camera;
 
 	private ShortBuffer indexBuffer;
 	private FloatBuffer vertexBuffer;
+	private float[] rectangleVertexData;
 	private FloatBuffer mvpIndexBuffer;
 
+	private VertexBufferMode vertexBufferMode;
+	private VertexBufferObjectRing vertexBufferObjects;
+	private int mvpIndexBufferObject;
+
 	private RectangleBatchGeometry geometry;
 
+	private int mvpMatrixHandle;
+	private int mvpMatrixIndexHandle;
+	private int viewProjectionMatrixHandle;
+
 	/**
-	 * Creates a new RectangleBatchRenderer.
+	 * Creates a new RectangleBatchRenderer.<br>
+	 * The vertices will be transformed in the GPU.
 	 * 
 	 * @param verticesDataStride Data stride of the vertices.
 	 * @param batchCapacity Maximum size of this GraphicsBatch.
 	 */
 	public RectangleBatchRenderer(int verticesDataStride, int batchCapacity) {
+		this(verticesDataStride, batchCapacity, TransformMode.GPU);
+	}
+
+	/**
+	 * Creates a new RectangleBatchRenderer.
+	 * 
+	 * @param verticesDataStride Data stride of the vertices.
+	 * @param batchCapacity Maximum size of this GraphicsBatch.
+	 * @param transformMode Defines where the vertices are transformed.
+	 */
+	public RectangleBatchRenderer(int verticesDataStride, int batchCapacity, TransformMode transformMode) {
 		super(batchCapacity);
+		if (batchCapacity < 1 || batchCapacity > transformMode.getMaxBatchCapacity()) {
+			throw new IllegalArgumentException("The batch capacity must be a value between 1 and " +
+					transformMode.getMaxBatchCapacity() + " when using TransformMode." + transformMode);
+		}
+		this.transformMode = transformMode;
 		this.verticesDataStride = verticesDataStride;
-		this.geometry = new RectangleBatchGeometry(32, false, true);
+		this.depth = 0.0f;
+		this.vertexBufferMode = VertexBufferMode.CLIENT_SIDE_ARRAYS;
+		this.geometry = new RectangleBatchGeometry(batchCapacity, false, true, transformMode);
 	}
 
 	@Override
@@ -84,6 +119,7 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 	 * Initializes this batch renderer.
 	 */
 	public void initialize() {
+		setupShaderVariableHandles();
 		setupIndices();
 		setupVerticesData();
 
@@ -92,29 +128,142 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 				.asShortBuffer();
 		copyIndicesToIndexBuffer();
 
+		rectangleVertexData = new float[4 * verticesDataStride];
 		vertexBuffer = ByteBuffer.allocateDirect(getBatchCapacity() * 4 * verticesDataStride * SIZE_OF_FLOAT)
 				.order(ByteOrder.nativeOrder())
 				.asFloatBuffer();
 		copyGeometryToVertexBuffer(getBatchCapacity());
 		setVertexBufferLimit(getBatchCapacity());
 
-		mvpIndexBuffer = ByteBuffer.allocateDirect(geometry.getMvpIndices().length * SIZE_OF_FLOAT)
-				.order(ByteOrder.nativeOrder())
-				.asFloatBuffer();
-		mvpIndexBuffer.put(geometry.getMvpIndices()).flip();
+		if (transformMode == TransformMode.GPU) {
+			mvpIndexBuffer = ByteBuffer.allocateDirect(geometry.getMvpIndices().length * SIZE_OF_FLOAT)
+					.order(ByteOrder.nativeOrder())
+					.asFloatBuffer();
+			mvpIndexBuffer.put(geometry.getMvpIndices()).flip();
+		}
+
+		if (vertexBufferMode == VertexBufferMode.BUFFER_OBJECTS) {
+			initializeBufferObjects();
+		}
 	}
 
 	/**
-	 * Removes all elements of the vertex buffer and then copies the current geometry to the vertex buffer.<br>
-	 * After this method is called, {@link #setVertexBufferLimit()} must be called.
+	 * Renders one rectangle with the shader program of this renderer, so the driver finishes preparing the program
+	 * before it is needed to render a frame. The color mask should be disabled while this method is called.<br>
+	 * The rectangle is centered in the viewport of the camera and it covers half of it, so the fragment shader is
+	 * executed too. It is transformed like any other rectangle, but the rest of its vertex data is the initial one, so
+	 * no material is needed.<br>
+	 * This method must be called after {@link #initialize()} and outside of a begin-end pair.
+	 * 
+	 * @param camera Camera.
+	 */
+	public void warmUp(Camera camera) {
+		Vector2 position = camera.unproject(new Vector2(0.0f, 0.0f), camera.getViewportWidth() / 2,
+				camera.getViewportHeight() / 2);
+		Vector2 scale = new Vector2(camera.getViewportWidth() / 2, camera.getViewportHeight() / 2);
+		Vector2 origin = new Vector2(0.5f, 0.5f);
+		begin();
+		updateTransform(0, position, scale, origin, 0.0f, camera);
+		copyRectangleToVertexBuffer(0);
+		incrementBatchSize();
+		end();
+	}
+
+	/**
+	 * Creates the buffer objects used when the {@link VertexBufferMode} is {@link VertexBufferMode#BUFFER_OBJECTS}.
+	 * <br>
+	 * The quad indices are stored in the {@link QuadIndexBufferObject} shared by all renderers, the vertices are
+	 * streamed through a {@link VertexBufferObjectRing} and the MVP indices, which never change, are uploaded once to a
+	 * static buffer object.
+	 */
+	private void initializeBufferObjects() {
+		QuadIndexBufferObject.ensureCapacity(getBatchCapacity());
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		vertexBufferObjects = new VertexBufferObjectRing(vertexBuffer.capacity() * SIZE_OF_FLOAT);
+		vertexBufferObjects.initialize();
+
+		if (transformMode == TransformMode.GPU) {
+			int[] handles = new int[1];
+			GLES20.glGenBuffers(1, handles, 0);
+			mvpIndexBufferObject = handles[0];
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mvpIndexBufferObject);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mvpIndexBuffer.limit() * SIZE_OF_FLOAT, mvpIndexBuffer,
+					GLES20.GL_STATIC_DRAW);
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		}
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Removes all elements of the vertex buffer and then copies the first rectangles of the current geometry to the
+	 * vertex buffer.<br>
+	 * After this method is called, {@link #setVertexBufferLimit(int)} must be called.
 	 * 
 	 * @param batchSize Number of elements of the current batch to be copied to the vertex buffer.
 	 */
-	protected abstract void copyGeometryToVertexBuffer(int batchSize);
+	protected void copyGeometryToVertexBuffer(int batchSize) {
+		vertexBuffer.clear();
+		for (int i = 0; i < batchSize; i++) {
+			copyRectangleToVertexBuffer(i);
+		}
+	}
+
+	/**
+	 * Writes the interleaved vertex data of the rectangle located at the specified index of the batch directly into its
+	 * slot of the vertex buffer.<br>
+	 * This method is called from {@link #draw(Vector2, Vector2, Vector2, float, Camera)} once the geometry of the
+	 * rectangle has been set up, so the vertex buffer does not need to be filled again when the batch is rendered.
+	 * 
+	 * @param batchIndex Index of the rectangle in the batch.
+	 */
+	protected void copyRectangleToVertexBuffer(int batchIndex) {
+		interleaveRectangleVertexData(batchIndex);
+		vertexBuffer.clear();
+		vertexBuffer.position(batchIndex * 4 * verticesDataStride);
+		vertexBuffer.put(rectangleVertexData);
+	}
+
+	/**
+	 * Copies the vertex data of the rectangle located at the specified index of the batch from the geometry to the
+	 * interleaved vertex data array of this renderer.<br>
+	 * Implementations should call {@link #interleaveRectangleAttribute(int, float[], int, int, int, int)} once per
+	 * vertex attribute.
+	 * 
+	 * @param batchIndex Index of the rectangle in the batch.
+	 */
+	protected abstract void interleaveRectangleVertexData(int batchIndex);
+
+	/**
+	 * Copies one attribute of the 4 vertices of the rectangle located at the specified index of the batch from an
+	 * array of the geometry to the interleaved vertex data array of this renderer.
+	 * 
+	 * @param batchIndex Index of the rectangle in the batch.
+	 * @param source Array of the geometry where the attribute is stored (see {@link Geometry#getVertices()},
+	 *            {@link Geometry#getColors()} and {@link Geometry#getTexturesUV()}).
+	 * @param sourceStride Number of elements of the source array per vertex.
+	 * @param sourceOffset Offset of the first component of the attribute in each block of the source array.
+	 * @param numComponents Number of components of the attribute.
+	 * @param attributeOffset Offset of the attribute in the vertex data of each vertex.
+	 */
+	protected void interleaveRectangleAttribute(int batchIndex, float[] source, int sourceStride, int sourceOffset,
+			int numComponents, int attributeOffset) {
+
+		float[] vertexData = rectangleVertexData;
+		int stride = verticesDataStride;
+		int src = batchIndex * 4 * sourceStride + sourceOffset;
+		int dst = attributeOffset;
+		int c;
+		for (int i = 0; i < 4; i++, src += sourceStride, dst += stride) {
+			for (c = 0; c < numComponents; c++) {
+				vertexData[dst + c] = source[src + c];
+			}
+		}
+	}
 
 	/**
 	 * Sets the limit of the vertex buffer.<br>
-	 * This method must be called after {@link #copyGeometryToVertexBuffer()} is called.
+	 * This method must be called after the vertex data of the batch has been written to the vertex buffer.
 	 * 
 	 * @param batchSize Number of elements of the current batch copied to the vertex buffer.
 	 */
@@ -126,10 +275,7 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 	 * Copies the indices of the geometry to the index buffer.
 	 */
 	protected void copyIndicesToIndexBuffer() {
-		int numIndices = getBatchCapacity() * 6;
-		for (int i = 0; i < numIndices; i++) {
-			indexBuffer.put(geometry.getIndex(i));
-		}
+		indexBuffer.put(geometry.getIndices(), 0, getBatchCapacity() * 6);
 		indexBuffer.flip();
 	}
 
@@ -173,23 +319,165 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 	protected void updateTransform(int index, Vector2 position, Vector2 scale, Vector2 origin, float rotation,
 			Camera camera) {
 
+		updateTransform(index, position, scale, origin, rotation, camera, 0.0f, 0.0f, 1.0f, 1.0f);
+	}
+
+	/**
+	 * Transforms the rectangle located at the specified index of the batch. The vertices of the rectangle are placed
+	 * at the specified edges, which are relative to the full rectangle defined by the scale. This is used to render
+	 * trimmed texture regions (see {@link com.miviclin.droidengine2d.graphics.texture.TextureRegion#getQuadLeft()}).
+	 * 
+	 * @param index Index where the rectangle whose transform we want to update is located.
+	 * @param position Position.
+	 * @param scale Scale.
+	 * @param origin Origin of the rectangle (value between 0.0f and 1.0f).
+	 * @param rotation Rotation angle around the origin.
+	 * @param camera Camera.
+	 * @param left Left edge (value between 0.0f and 1.0f).
+	 * @param bottom Bottom edge (value between 0.0f and 1.0f).
+	 * @param right Right edge (value between 0.0f and 1.0f).
+	 * @param top Top edge (value between 0.0f and 1.0f).
+	 * 
+	 * @see RectangleBatchRenderer#setupVerticesData()
+	 */
+	protected void updateTransform(int index, Vector2 position, Vector2 scale, Vector2 origin, float rotation,
+			Camera camera, float left, float bottom, float right, float top) {
+
 		if (origin.getX() < 0 || origin.getX() > 1 || origin.getY() < 0 || origin.getY() > 1) {
 			throw new IllegalArgumentException("The origin coordinates must be in the [0..1] interval.");
 		}
 
 		int i = index * 4;
-		float modelOriginX = 0.0f - (origin.getX() - 0.5f);
-		float modelOriginY = 0.0f - (origin.getY() - 0.5f);
+		float originX = origin.getX();
+		float originY = origin.getY();
 		// Bottom-Left
-		geometry.getVertex(i + 0).set(modelOriginX - 0.5f, modelOriginY - 0.5f, 0.0f);
+		geometry.setVertex(i + 0, left - originX, bottom - originY, depth);
 		// Bottom-Right
-		geometry.getVertex(i + 1).set(modelOriginX + 0.5f, modelOriginY - 0.5f, 0.0f);
+		geometry.setVertex(i + 1, right - originX, bottom - originY, depth);
 		// Top-Right
-		geometry.getVertex(i + 2).set(modelOriginX + 0.5f, modelOriginY + 0.5f, 0.0f);
+		geometry.setVertex(i + 2, right - originX, top - originY, depth);
 		// Top-Left
-		geometry.getVertex(i + 3).set(modelOriginX - 0.5f, modelOriginY + 0.5f, 0.0f);
+		geometry.setVertex(i + 3, left - originX, top - originY, depth);
 		// Update MVP matrix
 		geometry.updateMVPMatrix(index, position, scale, rotation, camera);
+		this.camera = camera;
+	}
+
+	/**
+	 * Returns the declarations of the variables used to transform the vertices in the vertex shader.<br>
+	 * The returned GLSL code depends on the {@link TransformMode} of this batch renderer.
+	 * 
+	 * @return GLSL code
+	 */
+	protected String getTransformDeclarationsSource() {
+		if (transformMode == TransformMode.CPU) {
+			return "uniform mat4 " + ShaderVars.U_VIEW_PROJECTION_MATRIX + ";\n";
+		}
+		return "" +
+				"uniform mat4 " + ShaderVars.U_MVP_MATRIX + "[" + TransformMode.GPU.getMaxBatchCapacity() + "];\n" +
+				"attribute float " + ShaderVars.A_MVP_MATRIX_INDEX + ";\n";
+	}
+
+	/**
+	 * Returns the GLSL expression that transforms the vertex position in the vertex shader.<br>
+	 * The returned GLSL code depends on the {@link TransformMode} of this batch renderer.
+	 * 
+	 * @return GLSL code
+	 */
+	protected String getTransformedPositionSource() {
+		if (transformMode == TransformMode.CPU) {
+			return ShaderVars.U_VIEW_PROJECTION_MATRIX + " * " + ShaderVars.A_POSITION;
+		}
+		return ShaderVars.U_MVP_MATRIX + "[int(" + ShaderVars.A_MVP_MATRIX_INDEX + ")] * " + ShaderVars.A_POSITION;
+	}
+
+	/**
+	 * Adds the attributes and uniforms used to transform the vertices to the specified lists.
+	 * 
+	 * @param attributes List of attributes of the shader program.
+	 * @param uniforms List of uniforms of the shader program.
+	 */
+	protected void addTransformShaderVariables(ArrayList<String> attributes, ArrayList<String> uniforms) {
+		if (transformMode == TransformMode.CPU) {
+			uniforms.add(ShaderVars.U_VIEW_PROJECTION_MATRIX);
+		} else {
+			attributes.add(ShaderVars.A_MVP_MATRIX_INDEX);
+			uniforms.add(ShaderVars.U_MVP_MATRIX);
+		}
+	}
+
+	/**
+	 * Resolves the handles of the shader variables set by this renderer, so they do not have to be looked up by name
+	 * every time a batch is rendered.<br>
+	 * This method is called from {@link #initialize()}. Subclasses that set more shader variables should override it
+	 * and call the implementation of the superclass.
+	 */
+	protected void setupShaderVariableHandles() {
+		ShaderProgram shaderProgram = getShaderProgram();
+		if (transformMode == TransformMode.CPU) {
+			viewProjectionMatrixHandle = shaderProgram.getUniformHandle(ShaderVars.U_VIEW_PROJECTION_MATRIX);
+		} else {
+			mvpMatrixHandle = shaderProgram.getUniformHandle(ShaderVars.U_MVP_MATRIX);
+			mvpMatrixIndexHandle = shaderProgram.getAttributeHandle(ShaderVars.A_MVP_MATRIX_INDEX);
+		}
+	}
+
+	/**
+	 * Sends the variables used to transform the vertices to the shader program.
+	 * 
+	 * @param batchSize Number of elements in the batch.
+	 */
+	protected void setupTransformShaderVariables(int batchSize) {
+		ShaderProgram shaderProgram = getShaderProgram();
+		if (transformMode == TransformMode.CPU) {
+			float[] viewProjectionMatrix = camera.getViewProjectionMatrix().getValues();
+			shaderProgram.setUniformMatrix4fv(viewProjectionMatrixHandle, 1, viewProjectionMatrix, 0);
+		} else if (vertexBufferMode == VertexBufferMode.BUFFER_OBJECTS) {
+			shaderProgram.setUniformMatrix4fv(mvpMatrixHandle, batchSize, geometry.getMvpMatrices(), 0);
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mvpIndexBufferObject);
+			shaderProgram.setAttribute(mvpMatrixIndexHandle, 1, SIZE_OF_FLOAT, 0);
+			vertexBufferObjects.bind();
+		} else {
+			shaderProgram.setUniformMatrix4fv(mvpMatrixHandle, batchSize, geometry.getMvpMatrices(), 0);
+			shaderProgram.setAttribute(mvpMatrixIndexHandle, 1, SIZE_OF_FLOAT, mvpIndexBuffer, 0);
+		}
+	}
+
+	/**
+	 * Sends the specified vertex attribute to the shader program.<br>
+	 * The attribute is read from the vertex buffer or from the vertex buffer object that received the last upload,
+	 * depending on the {@link VertexBufferMode} of this renderer.
+	 * 
+	 * @param attributeHandle Handle of the attribute (see {@link ShaderProgram#getAttributeHandle(String)}).
+	 * @param size Number of components of the attribute.
+	 * @param offset Offset of the attribute in the vertex data of each vertex (number of floats).
+	 */
+	protected void setupVertexAttribute(int attributeHandle, int size, int offset) {
+		int strideBytes = getVerticesDataStrideBytes();
+		if (vertexBufferMode == VertexBufferMode.BUFFER_OBJECTS) {
+			getShaderProgram().setAttribute(attributeHandle, size, strideBytes, offset * SIZE_OF_FLOAT);
+		} else {
+			getShaderProgram().setAttribute(attributeHandle, size, strideBytes, vertexBuffer, offset);
+		}
+	}
+
+	/**
+	 * Sends the specified packed color attribute to the shader program.<br>
+	 * The color is stored in one float of the vertex data of each vertex (see {@link Geometry#isPackedColors()}) and
+	 * it is read by the shader program as 4 normalized GL_UNSIGNED_BYTE components, so it can be declared as a vec4.
+	 * 
+	 * @param attributeHandle Handle of the attribute (see {@link ShaderProgram#getAttributeHandle(String)}).
+	 * @param offset Offset of the attribute in the vertex data of each vertex (number of floats).
+	 */
+	protected void setupPackedColorAttribute(int attributeHandle, int offset) {
+		int strideBytes = getVerticesDataStrideBytes();
+		if (vertexBufferMode == VertexBufferMode.BUFFER_OBJECTS) {
+			getShaderProgram().setAttribute(attributeHandle, 4, GLES20.GL_UNSIGNED_BYTE, true, strideBytes,
+					offset * SIZE_OF_FLOAT);
+		} else {
+			getShaderProgram().setAttribute(attributeHandle, 4, GLES20.GL_UNSIGNED_BYTE, true, strideBytes,
+					vertexBuffer, offset);
+		}
 	}
 
 	/**
@@ -200,14 +488,20 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 	protected abstract void setupVertexShaderVariables(int batchSize);
 
 	/**
-	 * Prepares the batch to be rendered.
+	 * Prepares the batch to be rendered.<br>
+	 * The vertex data of each rectangle is written to the vertex buffer when the rectangle is drawn, so this method
+	 * only sets the limits of the buffers to the current batch size.
 	 */
 	protected void prepareDrawBatch() {
 		int batchSize = getBatchSize();
-		copyGeometryToVertexBuffer(batchSize);
 		setVertexBufferLimit(batchSize);
-		mvpIndexBuffer.limit(batchSize * 4).position(0);
+		if (transformMode == TransformMode.GPU) {
+			mvpIndexBuffer.limit(batchSize * 4).position(0);
+		}
 		indexBuffer.limit(batchSize * 6).position(0);
+		if (vertexBufferMode == VertexBufferMode.BUFFER_OBJECTS) {
+			vertexBufferObjects.upload(vertexBuffer);
+		}
 		setupVertexShaderVariables(batchSize);
 	}
 
@@ -218,13 +512,20 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 		prepareDrawBatch();
 
 		BlendingOptions blendingOptions = getCurrentBatchBlendingOptions();
-		GLES20.glBlendFunc(blendingOptions.getSourceFactor(), blendingOptions.getDestinationFactor());
+		GLStateCache.getInstance().blendFunc(blendingOptions.getSourceFactor(), blendingOptions.getDestinationFactor());
 
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-			GLES20.glBlendEquation(blendingOptions.getBlendEquationMode());
+			GLStateCache.getInstance().blendEquation(blendingOptions.getBlendEquationMode());
 		}
 
-		GLES20.glDrawElements(GLES20.GL_TRIANGLES, indexBuffer.limit(), GLES20.GL_UNSIGNED_SHORT, indexBuffer);
+		if (vertexBufferMode == VertexBufferMode.BUFFER_OBJECTS) {
+			QuadIndexBufferObject.bind();
+			GLES20.glDrawElements(GLES20.GL_TRIANGLES, indexBuffer.limit(), GLES20.GL_UNSIGNED_SHORT, 0);
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		} else {
+			GLES20.glDrawElements(GLES20.GL_TRIANGLES, indexBuffer.limit(), GLES20.GL_UNSIGNED_SHORT, indexBuffer);
+		}
 
 		if (BuildConfig.DEBUG) {
 			GLDebugger.getInstance().incrementNumDrawCallsInCurrentFrame();
@@ -250,6 +551,48 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 	 */
 	public abstract void draw(Vector2 position, Vector2 scale, Vector2 origin, float rotation, Camera camera);
 
+	/**
+	 * Sets the camera whose view-projection matrix is used to render the current batch when the vertices are
+	 * transformed in the CPU.<br>
+	 * This method only needs to be called by subclasses that write the vertices of the geometry without calling
+	 * {@link #updateTransform(int, Vector2, Vector2, Vector2, float, Camera)}.
+	 * 
+	 * @param camera Camera.
+	 */
+	protected void setCamera(Camera camera) {
+		this.camera = camera;
+	}
+
+	/**
+	 * Returns the Z coordinate of the vertices of the rectangles added to this batch.
+	 * 
+	 * @return Z coordinate in world units
+	 */
+	public float getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Sets the Z coordinate of the vertices of the rectangles that are added to this batch from now on. The default
+	 * value is 0.<br>
+	 * The Z coordinate only matters when depth testing is enabled. Graphics sets it to render the layers of its opaque
+	 * pass.
+	 * 
+	 * @param depth Z coordinate in world units.
+	 */
+	public void setDepth(float depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Returns the TransformMode of this batch.
+	 * 
+	 * @return TransformMode
+	 */
+	public TransformMode getTransformMode() {
+		return transformMode;
+	}
+
 	/**
 	 * Returns the stride of the data of the vertices of this batch.
 	 * 
@@ -259,6 +602,25 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 		return verticesDataStride;
 	}
 
+	/**
+	 * Returns the VertexBufferMode of this batch renderer.
+	 * 
+	 * @return VertexBufferMode
+	 */
+	public VertexBufferMode getVertexBufferMode() {
+		return vertexBufferMode;
+	}
+
+	/**
+	 * Sets the VertexBufferMode of this batch renderer.<br>
+	 * This method must be called before {@link #initialize()}.
+	 * 
+	 * @param vertexBufferMode Defines where the vertex and index data is stored when it is sent to the GPU.
+	 */
+	public void setVertexBufferMode(VertexBufferMode vertexBufferMode) {
+		this.vertexBufferMode = vertexBufferMode;
+	}
+
 	/**
 	 * Returns the stride of the data of the vertices of this batch in bytes.
 	 * 
@@ -298,7 +660,7 @@ public abstract class RectangleBatchRenderer<M extends Material> extends Graphic
 	/**
 	 * Returns the MVP index buffer of this batch.
 	 * 
-	 * @return MVP index buffer
+	 * @return MVP index buffer, or null if the vertices are transformed in the CPU
 	 */
 	public FloatBuffer getMvpIndexBuffer() {
 		return mvpIndexBuffer;
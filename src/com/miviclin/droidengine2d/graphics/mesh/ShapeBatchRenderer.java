@@ -0,0 +1,657 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.material.ColorMaterial;
+
+/**
+ * ShapeBatchRenderer renders batches of lines, circles, arcs, polygons and rounded rectangles with ColorMaterial in one
+ * draw call.<br>
+ * It reuses the buffers and the shader program of {@link ColorMaterialBatchRenderer} with
+ * {@link TransformMode#CPU}: every shape is decomposed into quads whose vertices are written already transformed, so
+ * thousands of shapes of the same color material are rendered with a few draw calls. The quads are rendered as 2
+ * triangles (0, 1, 2) and (2, 3, 0), so a quad can hold 2 triangles of a fan around its first vertex, or a single
+ * triangle if its last vertex repeats its first one.<br>
+ * Circles and arcs are split in as many segments as needed to keep the distance between the curve and the segments
+ * below the curve tolerance (see {@link #setCurveTolerance(float)}), so small circles use few vertices.<br>
+ * All coordinates are in world units and all angles are in degrees. The shapes are rendered with the color of the
+ * current material.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ * @param <M> ColorMaterial
+ */
+public class ShapeBatchRenderer<M extends ColorMaterial> extends ColorMaterialBatchRenderer<M> {
+
+	/**
+	 * Default maximum distance between a curve and the segments used to render it.
+	 */
+	public static final float DEFAULT_CURVE_TOLERANCE = 0.25f;
+
+	private static final int MIN_CURVE_SEGMENTS = 3;
+	private static final int MAX_CURVE_SEGMENTS = 256;
+	private static final float MITER_LIMIT = 4.0f;
+
+	private float curveTolerance;
+	private float[] points;
+	private float[] offsets;
+	private int[] polygonIndices;
+
+	/**
+	 * Creates a new ShapeBatchRenderer with the default batch capacity of {@link TransformMode#CPU}.
+	 */
+	public ShapeBatchRenderer() {
+		this(TransformMode.CPU.getDefaultBatchCapacity());
+	}
+
+	/**
+	 * Creates a new ShapeBatchRenderer.
+	 * 
+	 * @param batchCapacity Maximum number of quads of the batch.
+	 */
+	public ShapeBatchRenderer(int batchCapacity) {
+		super(TransformMode.CPU, batchCapacity);
+		this.curveTolerance = DEFAULT_CURVE_TOLERANCE;
+		this.points = new float[(MAX_CURVE_SEGMENTS + 1) * 2 * 4];
+		this.offsets = new float[points.length];
+		this.polygonIndices = new int[16];
+	}
+
+	/**
+	 * Adds a quad to this batch. The vertices must be sorted counterclockwise, otherwise the quad is discarded by face
+	 * culling.<br>
+	 * If the batch was full, it will be rendered in one draw call and it will be left empty. Then, the specified quad
+	 * will be added to this batch.
+	 * 
+	 * @param x0 X coordinate of the first vertex.
+	 * @param y0 Y coordinate of the first vertex.
+	 * @param x1 X coordinate of the second vertex.
+	 * @param y1 Y coordinate of the second vertex.
+	 * @param x2 X coordinate of the third vertex.
+	 * @param y2 Y coordinate of the third vertex.
+	 * @param x3 X coordinate of the fourth vertex.
+	 * @param y3 Y coordinate of the fourth vertex.
+	 * @param camera Camera.
+	 */
+	public void drawQuad(float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3,
+			Camera camera) {
+
+		checkInBeginEndPair();
+		if ((getBatchSize() > 0) && (getBatchSize() == getBatchCapacity() || isForceDraw())) {
+			drawBatch();
+		}
+		int batchIndex = getBatchSize();
+		int i = batchIndex * 4;
+		float depth = getDepth();
+		RectangleBatchGeometry geometry = getGeometry();
+		geometry.setVertex(i + 0, x0, y0, depth);
+		geometry.setVertex(i + 1, x1, y1, depth);
+		geometry.setVertex(i + 2, x2, y2, depth);
+		geometry.setVertex(i + 3, x3, y3, depth);
+		setSpriteVerticesColorData(getCurrentMaterial().getColor());
+		setCamera(camera);
+		copyRectangleToVertexBuffer(batchIndex);
+		incrementBatchSize();
+	}
+
+	/**
+	 * Adds a triangle to this batch. The vertices can be specified in any order.
+	 * 
+	 * @param x0 X coordinate of the first vertex.
+	 * @param y0 Y coordinate of the first vertex.
+	 * @param x1 X coordinate of the second vertex.
+	 * @param y1 Y coordinate of the second vertex.
+	 * @param x2 X coordinate of the third vertex.
+	 * @param y2 Y coordinate of the third vertex.
+	 * @param camera Camera.
+	 */
+	public void drawTriangle(float x0, float y0, float x1, float y1, float x2, float y2, Camera camera) {
+		if ((x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0) < 0) {
+			drawQuad(x0, y0, x2, y2, x1, y1, x0, y0, camera);
+		} else {
+			drawQuad(x0, y0, x1, y1, x2, y2, x0, y0, camera);
+		}
+	}
+
+	/**
+	 * Adds a line with the specified thickness to this batch. The line is a rectangle centered on the segment, without
+	 * caps.
+	 * 
+	 * @param x1 X coordinate of the start of the line.
+	 * @param y1 Y coordinate of the start of the line.
+	 * @param x2 X coordinate of the end of the line.
+	 * @param y2 Y coordinate of the end of the line.
+	 * @param thickness Thickness of the line.
+	 * @param camera Camera.
+	 */
+	public void drawLine(float x1, float y1, float x2, float y2, float thickness, Camera camera) {
+		float dx = x2 - x1;
+		float dy = y2 - y1;
+		float length = (float) Math.sqrt(dx * dx + dy * dy);
+		if (length == 0) {
+			return;
+		}
+		// Left normal of the line, scaled to half the thickness
+		float nx = -dy / length * thickness * 0.5f;
+		float ny = dx / length * thickness * 0.5f;
+		drawQuad(x1 - nx, y1 - ny, x2 - nx, y2 - ny, x2 + nx, y2 + ny, x1 + nx, y1 + ny, camera);
+	}
+
+	/**
+	 * Adds a filled circle to this batch.
+	 * 
+	 * @param centerX X coordinate of the center.
+	 * @param centerY Y coordinate of the center.
+	 * @param radius Radius.
+	 * @param camera Camera.
+	 */
+	public void fillCircle(float centerX, float centerY, float radius, Camera camera) {
+		fillArc(centerX, centerY, radius, 0.0f, 360.0f, camera);
+	}
+
+	/**
+	 * Adds a filled circular sector to this batch.
+	 * 
+	 * @param centerX X coordinate of the center.
+	 * @param centerY Y coordinate of the center.
+	 * @param radius Radius.
+	 * @param startAngle Angle where the arc starts, counterclockwise from the X axis.
+	 * @param sweepAngle Angle covered by the arc. Negative values sweep clockwise.
+	 * @param camera Camera.
+	 */
+	public void fillArc(float centerX, float centerY, float radius, float startAngle, float sweepAngle,
+			Camera camera) {
+
+		if (sweepAngle < 0) {
+			startAngle += sweepAngle;
+			sweepAngle = -sweepAngle;
+		}
+		int numPoints = computeArcPoints(centerX, centerY, radius, startAngle, sweepAngle, 0);
+		fillFan(centerX, centerY, points, 0, numPoints, camera);
+	}
+
+	/**
+	 * Adds the outline of a circle to this batch.
+	 * 
+	 * @param centerX X coordinate of the center.
+	 * @param centerY Y coordinate of the center.
+	 * @param radius Radius of the center of the outline.
+	 * @param thickness Thickness of the outline.
+	 * @param camera Camera.
+	 */
+	public void strokeCircle(float centerX, float centerY, float radius, float thickness, Camera camera) {
+		strokeArc(centerX, centerY, radius, 0.0f, 360.0f, thickness, camera);
+	}
+
+	/**
+	 * Adds an arc with the specified thickness to this batch.
+	 * 
+	 * @param centerX X coordinate of the center.
+	 * @param centerY Y coordinate of the center.
+	 * @param radius Radius of the center of the arc.
+	 * @param startAngle Angle where the arc starts, counterclockwise from the X axis.
+	 * @param sweepAngle Angle covered by the arc. Negative values sweep clockwise.
+	 * @param thickness Thickness of the arc.
+	 * @param camera Camera.
+	 */
+	public void strokeArc(float centerX, float centerY, float radius, float startAngle, float sweepAngle,
+			float thickness, Camera camera) {
+
+		if (sweepAngle < 0) {
+			startAngle += sweepAngle;
+			sweepAngle = -sweepAngle;
+		}
+		float outerRadius = radius + thickness * 0.5f;
+		if (outerRadius <= 0) {
+			return;
+		}
+		float innerRadius = Math.max(radius - thickness * 0.5f, 0.0f);
+		int numPoints = computeArcPoints(0.0f, 0.0f, outerRadius, startAngle, sweepAngle, 0);
+		float[] p = points;
+		float innerScale = innerRadius / outerRadius;
+		for (int i = 0; i < numPoints - 1; i++) {
+			float ox0 = p[i * 2];
+			float oy0 = p[i * 2 + 1];
+			float ox1 = p[i * 2 + 2];
+			float oy1 = p[i * 2 + 3];
+			drawQuad(centerX + ox0 * innerScale, centerY + oy0 * innerScale,
+					centerX + ox0, centerY + oy0,
+					centerX + ox1, centerY + oy1,
+					centerX + ox1 * innerScale, centerY + oy1 * innerScale, camera);
+		}
+	}
+
+	/**
+	 * Adds a filled polygon to this batch. Convex polygons are rendered as a fan of triangles. Concave polygons are
+	 * triangulated by ear clipping. The polygon must be simple (its edges must not intersect each other).
+	 * 
+	 * @param vertices Coordinates of the vertices (x0, y0, x1, y1...), in any winding order.
+	 * @param numVertices Number of vertices.
+	 * @param camera Camera.
+	 */
+	public void fillPolygon(float[] vertices, int numVertices, Camera camera) {
+		if (numVertices < 3) {
+			throw new IllegalArgumentException("A polygon must have at least 3 vertices");
+		}
+		float area = computeSignedArea(vertices, numVertices);
+		if (isConvex(vertices, numVertices)) {
+			if (area >= 0) {
+				fillFan(vertices[0], vertices[1], vertices, 1, numVertices - 1, camera);
+			} else {
+				// Clockwise polygons are rendered in reverse order
+				ensurePointsCapacity(numVertices);
+				for (int i = 0; i < numVertices - 1; i++) {
+					points[i * 2] = vertices[(numVertices - 1 - i) * 2];
+					points[i * 2 + 1] = vertices[(numVertices - 1 - i) * 2 + 1];
+				}
+				fillFan(vertices[0], vertices[1], points, 0, numVertices - 1, camera);
+			}
+			return;
+		}
+		fillConcavePolygon(vertices, numVertices, area >= 0, camera);
+	}
+
+	/**
+	 * Triangulates a concave polygon by ear clipping and adds its triangles to this batch.
+	 * 
+	 * @param vertices Coordinates of the vertices.
+	 * @param numVertices Number of vertices.
+	 * @param counterclockwise true if the vertices are sorted counterclockwise.
+	 * @param camera Camera.
+	 */
+	private void fillConcavePolygon(float[] vertices, int numVertices, boolean counterclockwise, Camera camera) {
+		if (polygonIndices.length < numVertices) {
+			polygonIndices = new int[numVertices];
+		}
+		int[] indices = polygonIndices;
+		for (int i = 0; i < numVertices; i++) {
+			indices[i] = counterclockwise ? i : numVertices - 1 - i;
+		}
+		int remaining = numVertices;
+		int i = 0;
+		int attempts = 0;
+		while (remaining > 3) {
+			int a = indices[(i + remaining - 1) % remaining];
+			int b = indices[i % remaining];
+			int c = indices[(i + 1) % remaining];
+			if (isEar(vertices, indices, remaining, a, b, c)) {
+				drawQuad(vertices[a * 2], vertices[a * 2 + 1], vertices[b * 2], vertices[b * 2 + 1],
+						vertices[c * 2], vertices[c * 2 + 1], vertices[a * 2], vertices[a * 2 + 1], camera);
+				int removed = i % remaining;
+				System.arraycopy(indices, removed + 1, indices, removed, remaining - removed - 1);
+				remaining--;
+				attempts = 0;
+			} else {
+				i++;
+				attempts++;
+				if (attempts > remaining) {
+					// The polygon is not simple: render the remaining vertices as a fan
+					break;
+				}
+			}
+		}
+		int a = indices[0];
+		for (int j = 1; j < remaining - 1; j++) {
+			int b = indices[j];
+			int c = indices[j + 1];
+			drawTriangle(vertices[a * 2], vertices[a * 2 + 1], vertices[b * 2], vertices[b * 2 + 1],
+					vertices[c * 2], vertices[c * 2 + 1], camera);
+		}
+	}
+
+	/**
+	 * Returns true if the triangle (a, b, c) is an ear of the remaining polygon: it is convex and no other vertex of
+	 * the polygon is inside it.
+	 * 
+	 * @param vertices Coordinates of the vertices.
+	 * @param indices Indices of the remaining vertices, sorted counterclockwise.
+	 * @param remaining Number of remaining vertices.
+	 * @param a Index of the previous vertex.
+	 * @param b Index of the vertex.
+	 * @param c Index of the next vertex.
+	 * @return true if the triangle can be clipped, false otherwise
+	 */
+	private static boolean isEar(float[] vertices, int[] indices, int remaining, int a, int b, int c) {
+		float ax = vertices[a * 2];
+		float ay = vertices[a * 2 + 1];
+		float bx = vertices[b * 2];
+		float by = vertices[b * 2 + 1];
+		float cx = vertices[c * 2];
+		float cy = vertices[c * 2 + 1];
+		if (cross(ax, ay, bx, by, cx, cy) <= 0) {
+			return false;
+		}
+		for (int i = 0; i < remaining; i++) {
+			int p = indices[i];
+			if (p == a || p == b || p == c) {
+				continue;
+			}
+			float px = vertices[p * 2];
+			float py = vertices[p * 2 + 1];
+			if (cross(ax, ay, bx, by, px, py) >= 0 && cross(bx, by, cx, cy, px, py) >= 0 &&
+					cross(cx, cy, ax, ay, px, py) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the outline of a polygon to this batch. The corners are joined with miter joins, which are clamped for
+	 * very sharp angles.
+	 * 
+	 * @param vertices Coordinates of the vertices (x0, y0, x1, y1...).
+	 * @param numVertices Number of vertices.
+	 * @param thickness Thickness of the outline.
+	 * @param closed true to join the last vertex with the first one, false to render an open polyline.
+	 * @param camera Camera.
+	 */
+	public void strokePolygon(float[] vertices, int numVertices, float thickness, boolean closed, Camera camera) {
+		if (numVertices < 2) {
+			throw new IllegalArgumentException("A polyline must have at least 2 vertices");
+		}
+		ensurePointsCapacity(numVertices);
+		float[] o = offsets;
+		float halfThickness = thickness * 0.5f;
+		for (int i = 0; i < numVertices; i++) {
+			boolean hasPrevious = closed || i > 0;
+			boolean hasNext = closed || i < numVertices - 1;
+			int previous = (i + numVertices - 1) % numVertices;
+			int next = (i + 1) % numVertices;
+			float n0x = 0.0f;
+			float n0y = 0.0f;
+			float n1x = 0.0f;
+			float n1y = 0.0f;
+			if (hasPrevious) {
+				float dx = vertices[i * 2] - vertices[previous * 2];
+				float dy = vertices[i * 2 + 1] - vertices[previous * 2 + 1];
+				float length = (float) Math.sqrt(dx * dx + dy * dy);
+				if (length > 0) {
+					n0x = -dy / length;
+					n0y = dx / length;
+				}
+			}
+			if (hasNext) {
+				float dx = vertices[next * 2] - vertices[i * 2];
+				float dy = vertices[next * 2 + 1] - vertices[i * 2 + 1];
+				float length = (float) Math.sqrt(dx * dx + dy * dy);
+				if (length > 0) {
+					n1x = -dy / length;
+					n1y = dx / length;
+				}
+			}
+			float mx = n0x + n1x;
+			float my = n0y + n1y;
+			float length = (float) Math.sqrt(mx * mx + my * my);
+			if (length == 0) {
+				o[i * 2] = 0.0f;
+				o[i * 2 + 1] = 0.0f;
+				continue;
+			}
+			mx /= length;
+			my /= length;
+			// The miter is longer than half the thickness by 1 / cos(angle between the miter and the normals)
+			boolean nextIsValid = n1x != 0 || n1y != 0;
+			float cos = nextIsValid ? mx * n1x + my * n1y : mx * n0x + my * n0y;
+			float miterLength = halfThickness / Math.max(cos, 1.0f / MITER_LIMIT);
+			o[i * 2] = mx * miterLength;
+			o[i * 2 + 1] = my * miterLength;
+		}
+		int numSegments = closed ? numVertices : numVertices - 1;
+		for (int i = 0; i < numSegments; i++) {
+			int next = (i + 1) % numVertices;
+			float x0 = vertices[i * 2];
+			float y0 = vertices[i * 2 + 1];
+			float x1 = vertices[next * 2];
+			float y1 = vertices[next * 2 + 1];
+			drawQuad(x0 - o[i * 2], y0 - o[i * 2 + 1], x1 - o[next * 2], y1 - o[next * 2 + 1],
+					x1 + o[next * 2], y1 + o[next * 2 + 1], x0 + o[i * 2], y0 + o[i * 2 + 1], camera);
+		}
+	}
+
+	/**
+	 * Adds a filled rectangle with rounded corners to this batch.
+	 * 
+	 * @param x X coordinate of the bottom-left corner.
+	 * @param y Y coordinate of the bottom-left corner.
+	 * @param width Width.
+	 * @param height Height.
+	 * @param radius Radius of the corners. It is clamped to half the smallest dimension.
+	 * @param camera Camera.
+	 */
+	public void fillRoundedRect(float x, float y, float width, float height, float radius, Camera camera) {
+		int numPoints = computeRoundedRectPoints(x, y, width, height, radius);
+		fillFan(x + width * 0.5f, y + height * 0.5f, points, 0, numPoints, camera);
+	}
+
+	/**
+	 * Adds the outline of a rectangle with rounded corners to this batch.
+	 * 
+	 * @param x X coordinate of the bottom-left corner.
+	 * @param y Y coordinate of the bottom-left corner.
+	 * @param width Width.
+	 * @param height Height.
+	 * @param radius Radius of the corners. It is clamped to half the smallest dimension.
+	 * @param thickness Thickness of the outline.
+	 * @param camera Camera.
+	 */
+	public void strokeRoundedRect(float x, float y, float width, float height, float radius, float thickness,
+			Camera camera) {
+
+		int numPoints = computeRoundedRectPoints(x, y, width, height, radius);
+		// The fan repeats the first point at the end, the outline is closed by strokePolygon
+		strokePolygon(points, numPoints - 1, thickness, true, camera);
+	}
+
+	/**
+	 * Stores the outline of a rectangle with rounded corners in the points buffer, counterclockwise. The first point
+	 * is repeated at the end.
+	 * 
+	 * @param x X coordinate of the bottom-left corner.
+	 * @param y Y coordinate of the bottom-left corner.
+	 * @param width Width.
+	 * @param height Height.
+	 * @param radius Radius of the corners.
+	 * @return Number of points
+	 */
+	private int computeRoundedRectPoints(float x, float y, float width, float height, float radius) {
+		float r = Math.max(0.0f, Math.min(radius, Math.min(width, height) * 0.5f));
+		int numPoints = 0;
+		numPoints = computeArcPoints(x + width - r, y + r, r, 270.0f, 90.0f, numPoints);
+		numPoints = computeArcPoints(x + width - r, y + height - r, r, 0.0f, 90.0f, numPoints);
+		numPoints = computeArcPoints(x + r, y + height - r, r, 90.0f, 90.0f, numPoints);
+		numPoints = computeArcPoints(x + r, y + r, r, 180.0f, 90.0f, numPoints);
+		ensurePointsCapacity(numPoints + 1);
+		points[numPoints * 2] = points[0];
+		points[numPoints * 2 + 1] = points[1];
+		return numPoints + 1;
+	}
+
+	/**
+	 * Adds a fan of triangles around the specified center to this batch. Each quad holds 2 triangles of the fan.
+	 * 
+	 * @param centerX X coordinate of the center.
+	 * @param centerY Y coordinate of the center.
+	 * @param fanPoints Coordinates of the points of the fan, sorted counterclockwise around the center.
+	 * @param firstPoint Index of the first point.
+	 * @param numPoints Number of points.
+	 * @param camera Camera.
+	 */
+	private void fillFan(float centerX, float centerY, float[] fanPoints, int firstPoint, int numPoints,
+			Camera camera) {
+
+		int last = firstPoint + numPoints - 1;
+		for (int i = firstPoint; i < last; i += 2) {
+			int third = Math.min(i + 2, last);
+			drawQuad(centerX, centerY,
+					fanPoints[i * 2], fanPoints[i * 2 + 1],
+					fanPoints[(i + 1) * 2], fanPoints[(i + 1) * 2 + 1],
+					fanPoints[third * 2], fanPoints[third * 2 + 1], camera);
+		}
+	}
+
+	/**
+	 * Stores the points of an arc in the points buffer, counterclockwise. The number of segments depends on the radius
+	 * and the curve tolerance. If the radius is 0, only the center is stored.
+	 * 
+	 * @param centerX X coordinate of the center.
+	 * @param centerY Y coordinate of the center.
+	 * @param radius Radius.
+	 * @param startAngle Start angle in degrees.
+	 * @param sweepAngle Sweep angle in degrees (positive).
+	 * @param firstPoint Index of the points buffer where the first point is stored.
+	 * @return Index of the points buffer after the last point
+	 */
+	private int computeArcPoints(float centerX, float centerY, float radius, float startAngle, float sweepAngle,
+			int firstPoint) {
+
+		if (radius == 0) {
+			ensurePointsCapacity(firstPoint + 1);
+			points[firstPoint * 2] = centerX;
+			points[firstPoint * 2 + 1] = centerY;
+			return firstPoint + 1;
+		}
+		float sweep = (float) Math.toRadians(Math.min(sweepAngle, 360.0f));
+		int numSegments = computeNumSegments(radius, sweep);
+		ensurePointsCapacity(firstPoint + numSegments + 1);
+		float step = sweep / numSegments;
+		float stepCos = (float) Math.cos(step);
+		float stepSin = (float) Math.sin(step);
+		double start = Math.toRadians(startAngle);
+		float dx = (float) Math.cos(start) * radius;
+		float dy = (float) Math.sin(start) * radius;
+		float[] p = points;
+		for (int i = 0; i <= numSegments; i++) {
+			p[(firstPoint + i) * 2] = centerX + dx;
+			p[(firstPoint + i) * 2 + 1] = centerY + dy;
+			// Rotate the radius by one step
+			float previousDx = dx;
+			dx = previousDx * stepCos - dy * stepSin;
+			dy = previousDx * stepSin + dy * stepCos;
+		}
+		return firstPoint + numSegments + 1;
+	}
+
+	/**
+	 * Returns the number of segments needed to render an arc so the distance between the arc and the segments is not
+	 * greater than the curve tolerance.
+	 * 
+	 * @param radius Radius.
+	 * @param sweep Sweep angle in radians.
+	 * @return Number of segments
+	 */
+	private int computeNumSegments(float radius, float sweep) {
+		if (radius <= curveTolerance) {
+			return MIN_CURVE_SEGMENTS;
+		}
+		double maxStep = 2 * Math.acos(1 - curveTolerance / radius);
+		int numSegments = (int) Math.ceil(sweep / maxStep);
+		return Math.max(MIN_CURVE_SEGMENTS, Math.min(numSegments, MAX_CURVE_SEGMENTS));
+	}
+
+	/**
+	 * Makes sure that the points buffer can store the specified number of points.
+	 * 
+	 * @param numPoints Number of points.
+	 */
+	private void ensurePointsCapacity(int numPoints) {
+		if (points.length < numPoints * 2) {
+			float[] newPoints = new float[numPoints * 4];
+			System.arraycopy(points, 0, newPoints, 0, points.length);
+			points = newPoints;
+			offsets = new float[newPoints.length];
+		}
+	}
+
+	/**
+	 * Returns twice the signed area of the specified polygon. The area is positive if the vertices are sorted
+	 * counterclockwise.
+	 * 
+	 * @param vertices Coordinates of the vertices.
+	 * @param numVertices Number of vertices.
+	 * @return Twice the signed area
+	 */
+	private static float computeSignedArea(float[] vertices, int numVertices) {
+		float area = 0.0f;
+		for (int i = 0, j = numVertices - 1; i < numVertices; j = i++) {
+			area += vertices[j * 2] * vertices[i * 2 + 1] - vertices[i * 2] * vertices[j * 2 + 1];
+		}
+		return area;
+	}
+
+	/**
+	 * Returns true if the specified polygon is convex.
+	 * 
+	 * @param vertices Coordinates of the vertices.
+	 * @param numVertices Number of vertices.
+	 * @return true if all the corners turn in the same direction, false otherwise
+	 */
+	private static boolean isConvex(float[] vertices, int numVertices) {
+		int sign = 0;
+		for (int i = 0; i < numVertices; i++) {
+			int j = (i + 1) % numVertices;
+			int k = (i + 2) % numVertices;
+			float cross = cross(vertices[i * 2], vertices[i * 2 + 1], vertices[j * 2], vertices[j * 2 + 1],
+					vertices[k * 2], vertices[k * 2 + 1]);
+			if (cross != 0) {
+				int crossSign = (cross > 0) ? 1 : -1;
+				if (sign != 0 && crossSign != sign) {
+					return false;
+				}
+				sign = crossSign;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the Z component of the cross product of (b - a) and (c - a).
+	 * 
+	 * @param ax X coordinate of a.
+	 * @param ay Y coordinate of a.
+	 * @param bx X coordinate of b.
+	 * @param by Y coordinate of b.
+	 * @param cx X coordinate of c.
+	 * @param cy Y coordinate of c.
+	 * @return Cross product (positive if a, b and c are sorted counterclockwise)
+	 */
+	private static float cross(float ax, float ay, float bx, float by, float cx, float cy) {
+		return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+	}
+
+	/**
+	 * Returns the maximum distance between a curve and the segments used to render it.
+	 * 
+	 * @return Curve tolerance in world units
+	 */
+	public float getCurveTolerance() {
+		return curveTolerance;
+	}
+
+	/**
+	 * Sets the maximum distance between a curve and the segments used to render it. Smaller values render smoother
+	 * circles with more vertices. If the camera is zoomed, the tolerance should be divided by the zoom.
+	 * 
+	 * @param curveTolerance Curve tolerance in world units (greater than 0).
+	 */
+	public void setCurveTolerance(float curveTolerance) {
+		if (curveTolerance <= 0) {
+			throw new IllegalArgumentException("The curve tolerance must be greater than 0");
+		}
+		this.curveTolerance = curveTolerance;
+	}
+
+}
@@ -0,0 +1,399 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_SHORT;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.BuildConfig;
+import com.miviclin.droidengine2d.graphics.Color;
+import com.miviclin.droidengine2d.graphics.GLDebugger;
+import com.miviclin.droidengine2d.graphics.GLStateCache;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.material.BlendingOptions;
+import com.miviclin.droidengine2d.graphics.material.TextureColorMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureHsvMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.TransparentTextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.UnsupportedMaterialException;
+import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+import com.miviclin.droidengine2d.util.Transform;
+import com.miviclin.droidengine2d.util.math.Affine2;
+import com.miviclin.droidengine2d.util.math.Vector2;
+
+/**
+ * SpriteCache stores textured rectangles that never move in a static vertex buffer object, so they can be rendered
+ * every frame without transforming or uploading their vertices again.<br>
+ * The rectangles are added between {@link #begin()} and {@link #end()}. When {@link #end()} is called, the vertices
+ * are transformed to world space and the rectangles are grouped by texture and blending options. Then,
+ * {@link #draw(Camera)} renders each group in one draw call, and only the view-projection matrix of the camera is sent
+ * to the GPU.<br>
+ * Rectangles that use different textures are not rendered in the order they were added, but in the order of their
+ * groups (the group of the first rectangle added is rendered first).<br>
+ * Supported materials: {@link TextureMaterial}, {@link TextureColorMaterial} and {@link TransparentTextureMaterial}.
+ * <br>
+ * The vertex buffer object and the shader program are created again if the GL context is lost. This class must only be
+ * used from the GL thread, except for the methods used to add the rectangles.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class SpriteCache {
+
+	private static final int MAX_CAPACITY = 16384;
+	private static final int POSITION_OFFSET = 0;
+	private static final int UV_OFFSET = 3;
+	private static final int COLOR_OFFSET = 5;
+	private static final int VERTEX_STRIDE = 6;
+	private static final int RECTANGLE_STRIDE = VERTEX_STRIDE * 4;
+
+	private final Context context;
+	private final int capacity;
+	private final float[] rectanglesData;
+	private final int[] rectanglesGroups;
+	private final ArrayList<Texture> groupsTextures;
+	private final ArrayList<BlendingOptions> groupsBlendingOptions;
+	private int[] groupsFirstRectangles;
+	private int[] groupsNumRectangles;
+	private final FloatBuffer vertexBuffer;
+	private final Affine2 modelTransform;
+	private final Vector2 tmpOrigin;
+	private final PackedColorTextureShader shader;
+	private int vertexBufferObject;
+	private int contextGeneration;
+	private int numRectangles;
+	private boolean recording;
+	private boolean vertexBufferDirty;
+
+	/**
+	 * Creates a new SpriteCache.
+	 * 
+	 * @param context Context used to load the textures.
+	 * @param capacity Maximum number of rectangles that can be stored in this cache (max 16384).
+	 */
+	public SpriteCache(Context context, int capacity) {
+		if (capacity < 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("The capacity must be between 1 and " + MAX_CAPACITY);
+		}
+		this.context = context;
+		this.capacity = capacity;
+		this.rectanglesData = new float[capacity * RECTANGLE_STRIDE];
+		this.rectanglesGroups = new int[capacity];
+		this.groupsTextures = new ArrayList<Texture>();
+		this.groupsBlendingOptions = new ArrayList<BlendingOptions>();
+		this.groupsFirstRectangles = new int[0];
+		this.groupsNumRectangles = new int[0];
+		this.vertexBuffer = ByteBuffer.allocateDirect(capacity * RECTANGLE_STRIDE * SIZE_OF_FLOAT)
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+		this.modelTransform = new Affine2();
+		this.tmpOrigin = new Vector2(0, 0);
+		this.shader = new PackedColorTextureShader(new ShaderProgram(), 3);
+		this.vertexBufferObject = 0;
+		this.contextGeneration = -1;
+		this.numRectangles = 0;
+		this.recording = false;
+		this.vertexBufferDirty = false;
+		shader.setup();
+	}
+
+	/**
+	 * Removes all the rectangles from this cache and starts recording new ones.
+	 */
+	public void begin() {
+		if (recording) {
+			throw new RuntimeException("end() must be called before calling begin() again");
+		}
+		recording = true;
+		numRectangles = 0;
+		groupsTextures.clear();
+		groupsBlendingOptions.clear();
+	}
+
+	/**
+	 * Adds a rectangle with the specified material and transform to this cache.<br>
+	 * The transform is interpreted the same way as in {@code Graphics.drawRect(material, transform)}.
+	 * 
+	 * @param material Material.
+	 * @param transform Transform.
+	 */
+	public void add(TextureMaterial material, Transform transform) {
+		Vector2 scale = transform.getScale();
+		Vector2 origin = transform.getOrigin();
+		if (origin.getX() < 0 || origin.getX() > scale.getX() || origin.getY() < 0 || origin.getY() > scale.getY()) {
+			throw new IllegalArgumentException("" +
+					"The origin of the transform must be between (0, 0) and (scale.getX(), scale.getY()");
+		}
+		Vector2.divide(tmpOrigin, origin, scale);
+		add(material, transform.getPosition(), scale, tmpOrigin, transform.getRotation());
+	}
+
+	/**
+	 * Adds a rectangle with the specified material to this cache.
+	 * 
+	 * @param material Material.
+	 * @param position Position.
+	 * @param scale Scale.
+	 * @param origin Origin of the rectangle (value between 0.0f and 1.0f).
+	 * @param rotation Rotation angle around the origin.
+	 */
+	public void add(TextureMaterial material, Vector2 position, Vector2 scale, Vector2 origin, float rotation) {
+		if (!recording) {
+			throw new RuntimeException("begin() must be called before adding rectangles");
+		}
+		if (numRectangles == capacity) {
+			throw new RuntimeException("The SpriteCache is full");
+		}
+		if (material instanceof TextureHsvMaterial) {
+			throw new UnsupportedMaterialException(material.getClass());
+		}
+		if (origin.getX() < 0 || origin.getX() > 1 || origin.getY() < 0 || origin.getY() > 1) {
+			throw new IllegalArgumentException("The origin coordinates must be in the [0..1] interval.");
+		}
+
+		float color = PackedColorTextureShader.getPackedColor(material);
+
+		TextureRegion textureRegion = material.getTextureRegion();
+		float left = textureRegion.getQuadLeft() - origin.getX();
+		float bottom = textureRegion.getQuadBottom() - origin.getY();
+		float right = textureRegion.getQuadRight() - origin.getX();
+		float top = textureRegion.getQuadTop() - origin.getY();
+		Affine2 m = modelTransform.setToTransform(position.getX(), position.getY(), rotation, scale.getX(),
+				scale.getY());
+		int offset = numRectangles * RECTANGLE_STRIDE;
+		// Bottom-Left
+		putVertex(offset, m, left, bottom, textureRegion.getVertexU(0), textureRegion.getVertexV(0), color);
+		// Bottom-Right
+		putVertex(offset + VERTEX_STRIDE, m, right, bottom, textureRegion.getVertexU(1), textureRegion.getVertexV(1),
+				color);
+		// Top-Right
+		putVertex(offset + VERTEX_STRIDE * 2, m, right, top, textureRegion.getVertexU(2), textureRegion.getVertexV(2),
+				color);
+		// Top-Left
+		putVertex(offset + VERTEX_STRIDE * 3, m, left, top, textureRegion.getVertexU(3), textureRegion.getVertexV(3),
+				color);
+
+		rectanglesGroups[numRectangles] = findGroup(textureRegion.getTexture(), material.getBlendingOptions());
+		numRectangles++;
+	}
+
+	/**
+	 * Transforms the specified vertex with the specified model transform and stores it in the recorded data.
+	 * 
+	 * @param offset Offset of the vertex in the recorded data.
+	 * @param m Model transform.
+	 * @param x X coordinate of the vertex in model space.
+	 * @param y Y coordinate of the vertex in model space.
+	 * @param u U coordinate.
+	 * @param v V coordinate.
+	 * @param color Packed color (see {@link Color#toPackedFloat()}).
+	 */
+	private void putVertex(int offset, Affine2 m, float x, float y, float u, float v, float color) {
+
+		float[] data = rectanglesData;
+		data[offset + POSITION_OFFSET + 0] = m.transformX(x, y);
+		data[offset + POSITION_OFFSET + 1] = m.transformY(x, y);
+		data[offset + POSITION_OFFSET + 2] = 0.0f;
+		data[offset + UV_OFFSET + 0] = u;
+		data[offset + UV_OFFSET + 1] = v;
+		data[offset + COLOR_OFFSET] = color;
+	}
+
+	/**
+	 * Returns the index of the group of rectangles that use the specified texture and blending options. If there is no
+	 * such group, a new one is created.
+	 * 
+	 * @param texture Texture.
+	 * @param blendingOptions BlendingOptions.
+	 * @return Index of the group
+	 */
+	private int findGroup(Texture texture, BlendingOptions blendingOptions) {
+		for (int i = 0; i < groupsTextures.size(); i++) {
+			if (groupsTextures.get(i).equals(texture) && groupsBlendingOptions.get(i).equals(blendingOptions)) {
+				return i;
+			}
+		}
+		BlendingOptions groupBlendingOptions = new BlendingOptions();
+		groupBlendingOptions.copy(blendingOptions);
+		groupsTextures.add(texture);
+		groupsBlendingOptions.add(groupBlendingOptions);
+		return groupsTextures.size() - 1;
+	}
+
+	/**
+	 * Finishes recording. The recorded rectangles are sorted by group and stored in the vertex buffer, which will be
+	 * uploaded to the GPU the next time this cache is rendered.
+	 */
+	public void end() {
+		if (!recording) {
+			throw new RuntimeException("begin() must be called before calling end()");
+		}
+		recording = false;
+
+		int numGroups = groupsTextures.size();
+		groupsFirstRectangles = new int[numGroups];
+		groupsNumRectangles = new int[numGroups];
+		for (int i = 0; i < numRectangles; i++) {
+			groupsNumRectangles[rectanglesGroups[i]]++;
+		}
+		for (int i = 1; i < numGroups; i++) {
+			groupsFirstRectangles[i] = groupsFirstRectangles[i - 1] + groupsNumRectangles[i - 1];
+		}
+
+		int[] nextRectangles = groupsFirstRectangles.clone();
+		vertexBuffer.clear();
+		for (int i = 0; i < numRectangles; i++) {
+			int target = nextRectangles[rectanglesGroups[i]]++;
+			vertexBuffer.position(target * RECTANGLE_STRIDE);
+			vertexBuffer.put(rectanglesData, i * RECTANGLE_STRIDE, RECTANGLE_STRIDE);
+		}
+		vertexBuffer.position(0).limit(numRectangles * RECTANGLE_STRIDE);
+		vertexBufferDirty = true;
+	}
+
+	/**
+	 * Renders all the rectangles stored in this cache with one draw call per group.<br>
+	 * The vertex data is uploaded to the GPU only the first time this method is called after {@link #end()} or after
+	 * the GL context has been created.
+	 * 
+	 * @param camera Camera.
+	 */
+	public void draw(Camera camera) {
+		if (recording) {
+			throw new RuntimeException("end() must be called before rendering the SpriteCache");
+		}
+		if (numRectangles == 0) {
+			return;
+		}
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		if (contextGeneration != glStateCache.getContextGeneration()) {
+			contextGeneration = glStateCache.getContextGeneration();
+			vertexBufferObject = 0;
+			vertexBufferDirty = true;
+		}
+		shader.use();
+		uploadVertexBuffer();
+
+		shader.setViewProjectionMatrix(camera);
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferObject);
+		shader.setBufferObjectAttributes();
+		QuadIndexBufferObject.ensureCapacity(capacity);
+		QuadIndexBufferObject.bind();
+
+		for (int i = 0; i < groupsTextures.size(); i++) {
+			drawGroup(i);
+		}
+
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		shader.disableAttributes();
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Renders the rectangles of the specified group in one draw call.
+	 * 
+	 * @param group Index of the group.
+	 */
+	private void drawGroup(int group) {
+		Texture texture = groupsTextures.get(group);
+		if (!texture.isLoaded()) {
+			texture.loadTexture(context);
+		}
+		texture.bind();
+
+		PackedColorTextureShader.applyBlendingOptions(groupsBlendingOptions.get(group));
+
+		int firstIndexOffsetBytes = groupsFirstRectangles[group] * 6 * SIZE_OF_SHORT;
+		GLES20.glDrawElements(GLES20.GL_TRIANGLES, groupsNumRectangles[group] * 6, GLES20.GL_UNSIGNED_SHORT,
+				firstIndexOffsetBytes);
+
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().incrementNumDrawCallsInCurrentFrame();
+		}
+	}
+
+	/**
+	 * Uploads the vertex buffer to the vertex buffer object if it has changed since the last upload. The vertex buffer
+	 * object is created if it does not exist yet.
+	 */
+	private void uploadVertexBuffer() {
+		if (!vertexBufferDirty) {
+			return;
+		}
+		if (vertexBufferObject == 0) {
+			int[] handles = new int[1];
+			GLES20.glGenBuffers(1, handles, 0);
+			vertexBufferObject = handles[0];
+		}
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferObject);
+		GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexBuffer.limit() * SIZE_OF_FLOAT, vertexBuffer,
+				GLES20.GL_STATIC_DRAW);
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		GLDebugger.getInstance().passiveCheckGLError();
+		vertexBufferDirty = false;
+	}
+
+	/**
+	 * Deletes the vertex buffer object of this cache. The rectangles are kept, so the vertex buffer object will be
+	 * created again the next time this cache is rendered.<br>
+	 * This method must be called from the GL thread.
+	 */
+	public void delete() {
+		if (vertexBufferObject != 0 && contextGeneration == GLStateCache.getInstance().getContextGeneration()) {
+			GLES20.glDeleteBuffers(1, new int[] { vertexBufferObject }, 0);
+		}
+		vertexBufferObject = 0;
+		vertexBufferDirty = true;
+	}
+
+	/**
+	 * Returns the number of rectangles stored in this cache.
+	 * 
+	 * @return Number of rectangles
+	 */
+	public int getNumRectangles() {
+		return numRectangles;
+	}
+
+	/**
+	 * Returns the number of draw calls needed to render this cache.
+	 * 
+	 * @return Number of draw calls
+	 */
+	public int getNumGroups() {
+		return groupsTextures.size();
+	}
+
+	/**
+	 * Returns the maximum number of rectangles that can be stored in this cache.
+	 * 
+	 * @return Capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+}
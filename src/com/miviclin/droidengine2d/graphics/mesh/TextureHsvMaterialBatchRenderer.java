@@ -14,24 +14,20 @@
  */
 package com.miviclin.droidengine2d.graphics.mesh;
 
-import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
-
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 import android.content.Context;
 
-import com.miviclin.droidengine2d.graphics.Color;
 import com.miviclin.droidengine2d.graphics.cameras.Camera;
 import com.miviclin.droidengine2d.graphics.material.TextureHsvMaterial;
 import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
 import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
 import com.miviclin.droidengine2d.util.math.Vector2;
-import com.miviclin.droidengine2d.util.math.Vector3;
 
 /**
- * TextureHsvMaterialBatchRenderer allows rendering batches of up to 32 rectangles with TextureHsvMaterial in one draw
- * call. Each rectangle has its own translation, rotation and scale.
+ * TextureHsvMaterialBatchRenderer allows rendering batches of rectangles with TextureHsvMaterial in one draw call. Each
+ * rectangle has its own translation, rotation and scale.<br>
+ * The max number of rectangles per batch depends on the {@link TransformMode}.
  * 
  * @author Miguel Vicente Linares
  * 
@@ -40,16 +36,39 @@ import com.miviclin.droidengine2d.util.math.Vector3;
 public class TextureHsvMaterialBatchRenderer<M extends TextureHsvMaterial> extends TextureMaterialBatchRendererBase<M> {
 
 	private int vertexColorOffset;
+	private int colorHandle;
 
 	/**
-	 * Creates a new TextureHsvMaterialBatchRenderer.
+	 * Creates a new TextureHsvMaterialBatchRenderer.<br>
+	 * The vertices will be transformed in the GPU.
 	 * 
 	 * @param context Context.
 	 */
 	public TextureHsvMaterialBatchRenderer(Context context) {
-		super(9, context);
+		this(context, TransformMode.GPU);
+	}
+
+	/**
+	 * Creates a new TextureHsvMaterialBatchRenderer with the default batch capacity of the specified TransformMode.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 */
+	public TextureHsvMaterialBatchRenderer(Context context, TransformMode transformMode) {
+		this(context, transformMode, transformMode.getDefaultBatchCapacity());
+	}
+
+	/**
+	 * Creates a new TextureHsvMaterialBatchRenderer.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 * @param batchCapacity Maximum size of the batch.
+	 */
+	public TextureHsvMaterialBatchRenderer(Context context, TransformMode transformMode, int batchCapacity) {
+		super(9, context, transformMode, batchCapacity);
 		this.vertexColorOffset = 5;
-		setGeometry(new RectangleBatchGeometry(getBatchCapacity(), true, true));
+		setGeometry(new RectangleBatchGeometry(getBatchCapacity(), true, true, transformMode));
 	}
 
 	@Override
@@ -58,15 +77,14 @@ public class TextureHsvMaterialBatchRenderer<M extends TextureHsvMaterial> exten
 		// @formatter:off
 		
 		String vertexShaderSource = "" +
-				"uniform mat4 " + ShaderVars.U_MVP_MATRIX + "[32];\n" +
-				"attribute float " + ShaderVars.A_MVP_MATRIX_INDEX + ";\n" +
+				getTransformDeclarationsSource() +
 				"attribute vec4 " + ShaderVars.A_POSITION + ";\n" +
 				"attribute vec2 " + ShaderVars.A_TEXTURE_COORD + ";\n" +
 				"attribute vec4 " + ShaderVars.A_COLOR + ";\n" +
 				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
 				"varying vec4 " + ShaderVars.V_COLOR + ";\n" +
 				"void main() {\n" +
-				"    gl_Position = " + ShaderVars.U_MVP_MATRIX + "[int(" + ShaderVars.A_MVP_MATRIX_INDEX + ")] * " + ShaderVars.A_POSITION + ";\n" +
+				"    gl_Position = " + getTransformedPositionSource() + ";\n" +
 				"    " + ShaderVars.V_TEXTURE_COORD + " = " + ShaderVars.A_TEXTURE_COORD + ";\n" +
 				"    " + ShaderVars.V_COLOR + " = " + ShaderVars.A_COLOR + ";\n" +
 				"}";
@@ -97,82 +115,69 @@ public class TextureHsvMaterialBatchRenderer<M extends TextureHsvMaterial> exten
 				"    fragHSV.yz *= " + ShaderVars.V_COLOR + ".yz;\n" +
 				"    fragHSV.xyz = mod(fragHSV.xyz, 1.0);\n" +
 				"    fragRGB = HSVtoRGB(fragHSV);\n" +
-				"    gl_FragColor = vec4(fragRGB, textureColor.w);\n" +
+				"    gl_FragColor = vec4(fragRGB, textureColor.w * " + ShaderVars.V_COLOR + ".w);\n" +
 				"}";
 		
 		// @formatter:on
 
 		ArrayList<String> attributes = new ArrayList<String>();
-		attributes.add(ShaderVars.A_MVP_MATRIX_INDEX);
 		attributes.add(ShaderVars.A_POSITION);
 		attributes.add(ShaderVars.A_TEXTURE_COORD);
 		attributes.add(ShaderVars.A_COLOR);
 
 		ArrayList<String> uniforms = new ArrayList<String>();
-		uniforms.add(ShaderVars.U_MVP_MATRIX);
+		addTransformShaderVariables(attributes, uniforms);
 
 		getShaderProgram().setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
 	}
 
+	@Override
+	protected void setupShaderVariableHandles() {
+		super.setupShaderVariableHandles();
+		colorHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_COLOR);
+	}
+
 	@Override
 	protected void setupVertexShaderVariables(int batchSize) {
-		int strideBytes = getVerticesDataStrideBytes();
-		ShaderProgram shaderProgram = getShaderProgram();
-		shaderProgram.setUniformMatrix4fv(ShaderVars.U_MVP_MATRIX, batchSize, getGeometry().getMvpMatrices(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_MVP_MATRIX_INDEX, 1, SIZE_OF_FLOAT, getMvpIndexBuffer(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_POSITION, 3, strideBytes, getVertexBuffer(), getVertexPositionOffset());
-		shaderProgram.setAttribute(ShaderVars.A_TEXTURE_COORD, 2, strideBytes, getVertexBuffer(), getVertexUVOffset());
-		shaderProgram.setAttribute(ShaderVars.A_COLOR, 4, strideBytes, getVertexBuffer(), vertexColorOffset);
+		setupTransformShaderVariables(batchSize);
+		setupVertexAttribute(getPositionHandle(), 3, getVertexPositionOffset());
+		setupVertexAttribute(getTextureCoordHandle(), 2, getVertexUVOffset());
+		setupVertexAttribute(colorHandle, 4, vertexColorOffset);
 	}
 
 	@Override
 	protected void setupVerticesData() {
 		RectangleBatchGeometry geometry = getGeometry();
 		int nVertices = getBatchCapacity() * 4;
-		for (int i = 0; i < nVertices; i++) {
+		for (int i = 0; i < nVertices; i += 4) {
 			// Bottom-Left
-			geometry.addVertex(new Vector3(-0.5f, -0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(0.0f, 1.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(-0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 1.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Bottom-Right
-			geometry.addVertex(new Vector3(0.5f, -0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(1.0f, 1.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 1.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Top-Right
-			geometry.addVertex(new Vector3(0.5f, 0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(1.0f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Top-Left
-			geometry.addVertex(new Vector3(-0.5f, 0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(0.0f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(-0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 		}
 	}
 
 	@Override
-	protected void copyGeometryToVertexBuffer(int batchSize) {
-		FloatBuffer vertexBuffer = getVertexBuffer();
-		vertexBuffer.clear();
-		int nVertices = getBatchCapacity() * 4;
-		Vector3 position;
-		Vector2 textureUV;
-		Color color;
-		for (int i = 0; i < nVertices; i++) {
-			position = getGeometry().getVertex(i);
-			vertexBuffer.put(position.getX());
-			vertexBuffer.put(position.getY());
-			vertexBuffer.put(position.getZ());
-
-			textureUV = getGeometry().getTextureUV(i);
-			vertexBuffer.put(textureUV.getX());
-			vertexBuffer.put(textureUV.getY());
-
-			color = getGeometry().getColor(i);
-			vertexBuffer.put(color.getH());
-			vertexBuffer.put(color.getS());
-			vertexBuffer.put(color.getV());
-			vertexBuffer.put(color.getA());
-		}
+	protected void interleaveRectangleVertexData(int batchIndex) {
+		RectangleBatchGeometry geometry = getGeometry();
+		interleaveRectangleAttribute(batchIndex, geometry.getVertices(), Geometry.POSITION_COMPONENTS, 0,
+				Geometry.POSITION_COMPONENTS, getVertexPositionOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getTexturesUV(), Geometry.TEXTURE_UV_COMPONENTS, 0,
+				Geometry.TEXTURE_UV_COMPONENTS, getVertexUVOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getColors(), Geometry.COLOR_COMPONENTS, 0,
+				Geometry.COLOR_COMPONENTS, vertexColorOffset);
 	}
 
 	@Override
@@ -180,22 +185,25 @@ public class TextureHsvMaterialBatchRenderer<M extends TextureHsvMaterial> exten
 		checkInBeginEndPair();
 		TextureHsvMaterial material = getCurrentMaterial();
 		setupTexturedRectangle(material.getTextureRegion(), position, scale, origin, rotation, camera);
-		setupHSV(material.getHOffset(), material.getSMulti(), material.getVMulti());
+		setupHSV(material.getHOffset(), material.getSMulti(), material.getVMulti(), material.getOpacity());
+		copyRectangleToVertexBuffer(getBatchSize());
 		incrementBatchSize();
 	}
 
 	/**
-	 * Sets up the color of the vertices of the last rectangle added to this batch.
+	 * Sets up the color of the vertices of the last rectangle added to this batch. The HSV parameters are stored in
+	 * the RGB components and the opacity in the alpha component.
 	 * 
 	 * @param hOffset Hue offset.
 	 * @param sMulti Saturation multiplier.
 	 * @param vMulti Brightness multiplier.
+	 * @param opacity Opacity.
 	 */
-	private void setupHSV(float hOffset, float sMulti, float vMulti) {
+	private void setupHSV(float hOffset, float sMulti, float vMulti, float opacity) {
 		int spriteOffset = getBatchSize() * 4;
 		int limit = spriteOffset + 4;
 		for (int i = spriteOffset; i < limit; i++) {
-			getGeometry().getColor(i).setHSV(hOffset, sMulti, vMulti);
+			getGeometry().setColor(i, hOffset, sMulti, vMulti, opacity);
 		}
 	}
 
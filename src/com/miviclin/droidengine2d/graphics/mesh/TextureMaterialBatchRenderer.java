@@ -14,9 +14,6 @@
  */
 package com.miviclin.droidengine2d.graphics.mesh;
 
-import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
-
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 import android.content.Context;
@@ -26,11 +23,11 @@ import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
 import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
 import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
 import com.miviclin.droidengine2d.util.math.Vector2;
-import com.miviclin.droidengine2d.util.math.Vector3;
 
 /**
- * TextureMaterialBatchRenderer allows rendering batches of up to 32 rectangles with TextureMaterial in one draw call.
- * Each rectangle has its own translation, rotation and scale.
+ * TextureMaterialBatchRenderer allows rendering batches of rectangles with TextureMaterial in one draw call. Each
+ * rectangle has its own translation, rotation and scale.<br>
+ * The max number of rectangles per batch depends on the {@link TransformMode}.
  * 
  * @author Miguel Vicente Linares
  * 
@@ -39,12 +36,34 @@ import com.miviclin.droidengine2d.util.math.Vector3;
 public class TextureMaterialBatchRenderer<M extends TextureMaterial> extends TextureMaterialBatchRendererBase<M> {
 
 	/**
-	 * Creates a new TextureMaterialBatchRenderer.
+	 * Creates a new TextureMaterialBatchRenderer.<br>
+	 * The vertices will be transformed in the GPU.
 	 * 
 	 * @param context Context.
 	 */
 	public TextureMaterialBatchRenderer(Context context) {
-		super(5, context);
+		this(context, TransformMode.GPU);
+	}
+
+	/**
+	 * Creates a new TextureMaterialBatchRenderer with the default batch capacity of the specified TransformMode.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 */
+	public TextureMaterialBatchRenderer(Context context, TransformMode transformMode) {
+		this(context, transformMode, transformMode.getDefaultBatchCapacity());
+	}
+
+	/**
+	 * Creates a new TextureMaterialBatchRenderer.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 * @param batchCapacity Maximum size of the batch.
+	 */
+	public TextureMaterialBatchRenderer(Context context, TransformMode transformMode, int batchCapacity) {
+		super(5, context, transformMode, batchCapacity);
 	}
 
 	@Override
@@ -53,13 +72,12 @@ public class TextureMaterialBatchRenderer<M extends TextureMaterial> extends Tex
 		// @formatter:off
 		
 		String vertexShaderSource = "" +
-				"uniform mat4 " + ShaderVars.U_MVP_MATRIX + "[32];\n" +
-				"attribute float " + ShaderVars.A_MVP_MATRIX_INDEX + ";\n" +
+				getTransformDeclarationsSource() +
 				"attribute vec4 " + ShaderVars.A_POSITION + ";\n" +
 				"attribute vec2 " + ShaderVars.A_TEXTURE_COORD + ";\n" +
 				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
 				"void main() {\n" +
-				"    gl_Position = " + ShaderVars.U_MVP_MATRIX + "[int(" + ShaderVars.A_MVP_MATRIX_INDEX + ")] * " + ShaderVars.A_POSITION + ";\n" +
+				"    gl_Position = " + getTransformedPositionSource() + ";\n" +
 				"    " + ShaderVars.V_TEXTURE_COORD + " = " + ShaderVars.A_TEXTURE_COORD + ";\n" +
 				"}";
 		
@@ -74,63 +92,49 @@ public class TextureMaterialBatchRenderer<M extends TextureMaterial> extends Tex
 		// @formatter:on
 
 		ArrayList<String> attributes = new ArrayList<String>();
-		attributes.add(ShaderVars.A_MVP_MATRIX_INDEX);
 		attributes.add(ShaderVars.A_POSITION);
 		attributes.add(ShaderVars.A_TEXTURE_COORD);
 
 		ArrayList<String> uniforms = new ArrayList<String>();
-		uniforms.add(ShaderVars.U_MVP_MATRIX);
+		addTransformShaderVariables(attributes, uniforms);
 
 		getShaderProgram().setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
 	}
 
 	@Override
 	protected void setupVertexShaderVariables(int batchSize) {
-		int strideBytes = getVerticesDataStrideBytes();
-		ShaderProgram shaderProgram = getShaderProgram();
-		shaderProgram.setUniformMatrix4fv(ShaderVars.U_MVP_MATRIX, batchSize, getGeometry().getMvpMatrices(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_MVP_MATRIX_INDEX, 1, SIZE_OF_FLOAT, getMvpIndexBuffer(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_POSITION, 3, strideBytes, getVertexBuffer(), getVertexPositionOffset());
-		shaderProgram.setAttribute(ShaderVars.A_TEXTURE_COORD, 2, strideBytes, getVertexBuffer(), getVertexUVOffset());
+		setupTransformShaderVariables(batchSize);
+		setupVertexAttribute(getPositionHandle(), 3, getVertexPositionOffset());
+		setupVertexAttribute(getTextureCoordHandle(), 2, getVertexUVOffset());
 	}
 
 	@Override
 	protected void setupVerticesData() {
 		RectangleBatchGeometry geometry = getGeometry();
 		int nVertices = getBatchCapacity() * 4;
-		for (int i = 0; i < nVertices; i++) {
+		for (int i = 0; i < nVertices; i += 4) {
 			// Bottom-Left
-			geometry.addVertex(new Vector3(-0.5f, -0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(0.0f, 1.0f));
+			geometry.addVertex(-0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 1.0f);
 			// Bottom-Right
-			geometry.addVertex(new Vector3(0.5f, -0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(1.0f, 1.0f));
+			geometry.addVertex(0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 1.0f);
 			// Top-Right
-			geometry.addVertex(new Vector3(0.5f, 0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(1.0f, 0.0f));
+			geometry.addVertex(0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 0.0f);
 			// Top-Left
-			geometry.addVertex(new Vector3(-0.5f, 0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(0.0f, 0.0f));
+			geometry.addVertex(-0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 0.0f);
 		}
 	}
 
 	@Override
-	protected void copyGeometryToVertexBuffer(int batchSize) {
-		FloatBuffer vertexBuffer = getVertexBuffer();
-		vertexBuffer.clear();
-		int nVertices = getBatchCapacity() * 4;
-		Vector3 position;
-		Vector2 textureUV;
-		for (int i = 0; i < nVertices; i++) {
-			position = getGeometry().getVertex(i);
-			vertexBuffer.put(position.getX());
-			vertexBuffer.put(position.getY());
-			vertexBuffer.put(position.getZ());
-
-			textureUV = getGeometry().getTextureUV(i);
-			vertexBuffer.put(textureUV.getX());
-			vertexBuffer.put(textureUV.getY());
-		}
+	protected void interleaveRectangleVertexData(int batchIndex) {
+		RectangleBatchGeometry geometry = getGeometry();
+		interleaveRectangleAttribute(batchIndex, geometry.getVertices(), Geometry.POSITION_COMPONENTS, 0,
+				Geometry.POSITION_COMPONENTS, getVertexPositionOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getTexturesUV(), Geometry.TEXTURE_UV_COMPONENTS, 0,
+				Geometry.TEXTURE_UV_COMPONENTS, getVertexUVOffset());
 	}
 
 	@Override
@@ -138,6 +142,7 @@ public class TextureMaterialBatchRenderer<M extends TextureMaterial> extends Tex
 		checkInBeginEndPair();
 		TextureMaterial material = getCurrentMaterial();
 		setupTexturedRectangle(material.getTextureRegion(), position, scale, origin, rotation, camera);
+		copyRectangleToVertexBuffer(getBatchSize());
 		incrementBatchSize();
 	}
 
@@ -18,6 +18,7 @@ import android.content.Context;
 
 import com.miviclin.droidengine2d.graphics.cameras.Camera;
 import com.miviclin.droidengine2d.graphics.material.Material;
+import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
 import com.miviclin.droidengine2d.graphics.texture.Texture;
 import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
 import com.miviclin.droidengine2d.util.math.Vector2;
@@ -36,15 +37,32 @@ public abstract class TextureMaterialBatchRendererBase<M extends Material> exten
 	private Texture texture;
 	private Context context;
 	private boolean requestTextureBind;
+	private int positionHandle;
+	private int textureCoordHandle;
 
 	/**
-	 * Constructor.
+	 * Constructor.<br>
+	 * The vertices will be transformed in the GPU.
 	 * 
 	 * @param verticesDataStride Data stride of the vertices.
 	 * @param context Context.
 	 */
 	public TextureMaterialBatchRendererBase(int verticesDataStride, Context context) {
-		super(verticesDataStride, 32);
+		this(verticesDataStride, context, TransformMode.GPU, TransformMode.GPU.getDefaultBatchCapacity());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param verticesDataStride Data stride of the vertices.
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 * @param batchCapacity Maximum size of the batch.
+	 */
+	public TextureMaterialBatchRendererBase(int verticesDataStride, Context context, TransformMode transformMode,
+			int batchCapacity) {
+
+		super(verticesDataStride, batchCapacity, transformMode);
 		this.vertexPositionOffset = 0;
 		this.vertexUVOffset = 3;
 		this.context = context;
@@ -76,7 +94,7 @@ public abstract class TextureMaterialBatchRendererBase<M extends Material> exten
 		if ((getBatchSize() > 0) && ((getBatchSize() == getBatchCapacity()) || textureChanged || isForceDraw())) {
 			drawBatch();
 		}
-		updateTransform(getBatchSize(), position, scale, origin, rotation, camera);
+		updateTransform(getBatchSize(), position, scale, origin, rotation, camera, textureRegion);
 		setupTexture(textureRegion.getTexture(), textureChanged);
 		setupUVCoords(textureRegion);
 	}
@@ -119,21 +137,70 @@ public abstract class TextureMaterialBatchRendererBase<M extends Material> exten
 	}
 
 	/**
-	 * Sets the UV coordinates of the vertices of the last rectangle added to this batch.
+	 * Transforms the rectangle located at the specified index of the batch. If the TextureRegion is trimmed, the
+	 * rectangle only covers the trimmed image, at its position inside the original image.
+	 * 
+	 * @param index Index of the rectangle in the batch.
+	 * @param position Position.
+	 * @param scale Scale of the original image.
+	 * @param origin Origin of the rectangle (value between 0.0f and 1.0f), relative to the original image.
+	 * @param rotation Rotation angle around the origin.
+	 * @param camera Camera.
+	 * @param textureRegion TextureRegion that will be used for the rectangle.
+	 */
+	protected void updateTransform(int index, Vector2 position, Vector2 scale, Vector2 origin, float rotation,
+			Camera camera, TextureRegion textureRegion) {
+
+		updateTransform(index, position, scale, origin, rotation, camera, textureRegion.getQuadLeft(),
+				textureRegion.getQuadBottom(), textureRegion.getQuadRight(), textureRegion.getQuadTop());
+	}
+
+	/**
+	 * Sets the UV coordinates of the vertices of the last rectangle added to this batch. Rotated regions are taken
+	 * into account.
 	 * 
 	 * @param textureRegion TextureRegion that will be used for the last rectangle added.
 	 */
 	protected void setupUVCoords(TextureRegion textureRegion) {
 		int i = getBatchSize() * 4;
 		RectangleBatchGeometry geometry = getGeometry();
-		// Bottom-Left
-		geometry.getTextureUV(i + 0).set(textureRegion.getU1(), textureRegion.getV2());
-		// Bottom-Right
-		geometry.getTextureUV(i + 1).set(textureRegion.getU2(), textureRegion.getV2());
-		// Top-Right
-		geometry.getTextureUV(i + 2).set(textureRegion.getU2(), textureRegion.getV1());
-		// Top-Left
-		geometry.getTextureUV(i + 3).set(textureRegion.getU1(), textureRegion.getV1());
+		for (int vertex = 0; vertex < 4; vertex++) {
+			geometry.setTextureUV(i + vertex, textureRegion.getVertexU(vertex), textureRegion.getVertexV(vertex));
+		}
+	}
+
+	/**
+	 * Returns the Context used to load the textures.
+	 * 
+	 * @return Context
+	 */
+	protected Context getContext() {
+		return context;
+	}
+
+	@Override
+	protected void setupShaderVariableHandles() {
+		super.setupShaderVariableHandles();
+		positionHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_POSITION);
+		textureCoordHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_TEXTURE_COORD);
+	}
+
+	/**
+	 * Returns the handle of the vertex position attribute.
+	 * 
+	 * @return Handle
+	 */
+	protected int getPositionHandle() {
+		return positionHandle;
+	}
+
+	/**
+	 * Returns the handle of the UV coordinates attribute.
+	 * 
+	 * @return Handle
+	 */
+	protected int getTextureCoordHandle() {
+		return textureCoordHandle;
 	}
 
 	/**
@@ -0,0 +1,71 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+/**
+ * Defines where the vertices of the rectangles rendered by a {@link RectangleBatchRenderer} are transformed.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public enum TransformMode {
+
+	/**
+	 * The MVP matrix of each rectangle is sent to the vertex shader in a uniform array and the vertices are
+	 * transformed in the GPU.<br>
+	 * The size of the uniform array limits the batch capacity to 32 rectangles.
+	 */
+	GPU(32, 32),
+
+	/**
+	 * The vertices of each rectangle are transformed in the CPU and stored already transformed in the vertex buffer.
+	 * The vertex shader only applies the view-projection matrix, which is shared by all rectangles of the batch.<br>
+	 * The batch capacity is only limited by the range of the 16-bit indices.
+	 */
+	CPU(2048, 16384);
+
+	private final int defaultBatchCapacity;
+	private final int maxBatchCapacity;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param defaultBatchCapacity Default batch capacity.
+	 * @param maxBatchCapacity Max batch capacity.
+	 */
+	private TransformMode(int defaultBatchCapacity, int maxBatchCapacity) {
+		this.defaultBatchCapacity = defaultBatchCapacity;
+		this.maxBatchCapacity = maxBatchCapacity;
+	}
+
+	/**
+	 * Returns the default batch capacity of the renderers that use this TransformMode.
+	 * 
+	 * @return Default number of rectangles per batch
+	 */
+	public int getDefaultBatchCapacity() {
+		return defaultBatchCapacity;
+	}
+
+	/**
+	 * Returns the max batch capacity of the renderers that use this TransformMode.
+	 * 
+	 * @return Max number of rectangles per batch
+	 */
+	public int getMaxBatchCapacity() {
+		return maxBatchCapacity;
+	}
+
+}
@@ -14,24 +14,20 @@
  */
 package com.miviclin.droidengine2d.graphics.mesh;
 
-import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
-
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 import android.content.Context;
 
-import com.miviclin.droidengine2d.graphics.Color;
 import com.miviclin.droidengine2d.graphics.cameras.Camera;
 import com.miviclin.droidengine2d.graphics.material.TransparentTextureMaterial;
 import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
 import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
 import com.miviclin.droidengine2d.util.math.Vector2;
-import com.miviclin.droidengine2d.util.math.Vector3;
 
 /**
- * TransparentTextureMaterialBatchRenderer allows rendering batches of up to 32 rectangles with
- * TransparentTextureMaterial in one draw call. Each rectangle has its own translation, rotation and scale.
+ * TransparentTextureMaterialBatchRenderer allows rendering batches of rectangles with TransparentTextureMaterial in
+ * one draw call. Each rectangle has its own translation, rotation and scale.<br>
+ * The max number of rectangles per batch depends on the {@link TransformMode}.
  * 
  * @author Miguel Vicente Linares
  * 
@@ -41,16 +37,40 @@ public class TransparentTextureMaterialBatchRenderer<M extends TransparentTextur
 		extends TextureMaterialBatchRendererBase<M> {
 
 	private int vertexOpacityOffset;
+	private int opacityHandle;
 
 	/**
-	 * Constructor
+	 * Creates a new TransparentTextureMaterialBatchRenderer.<br>
+	 * The vertices will be transformed in the GPU.
 	 * 
-	 * @param context Context en el que se ejecuta el juego
+	 * @param context Context.
 	 */
 	public TransparentTextureMaterialBatchRenderer(Context context) {
-		super(6, context);
+		this(context, TransformMode.GPU);
+	}
+
+	/**
+	 * Creates a new TransparentTextureMaterialBatchRenderer with the default batch capacity of the specified
+	 * TransformMode.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 */
+	public TransparentTextureMaterialBatchRenderer(Context context, TransformMode transformMode) {
+		this(context, transformMode, transformMode.getDefaultBatchCapacity());
+	}
+
+	/**
+	 * Creates a new TransparentTextureMaterialBatchRenderer.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 * @param batchCapacity Maximum size of the batch.
+	 */
+	public TransparentTextureMaterialBatchRenderer(Context context, TransformMode transformMode, int batchCapacity) {
+		super(6, context, transformMode, batchCapacity);
 		this.vertexOpacityOffset = 5;
-		setGeometry(new RectangleBatchGeometry(getBatchCapacity(), true, true));
+		setGeometry(new RectangleBatchGeometry(getBatchCapacity(), true, true, transformMode));
 	}
 
 	@Override
@@ -59,15 +79,14 @@ public class TransparentTextureMaterialBatchRenderer<M extends TransparentTextur
 		// @formatter:off
 		
 		String vertexShaderSource = "" +
-				"uniform mat4 " + ShaderVars.U_MVP_MATRIX + "[32];\n" +
-				"attribute float " + ShaderVars.A_MVP_MATRIX_INDEX + ";\n" +
+				getTransformDeclarationsSource() +
 				"attribute vec4 " + ShaderVars.A_POSITION + ";\n" +
 				"attribute vec2 " + ShaderVars.A_TEXTURE_COORD + ";\n" +
 				"attribute float " + ShaderVars.A_OPACITY + ";\n" +
 				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
 				"varying float " + ShaderVars.V_OPACITY + ";\n" +
 				"void main() {\n" +
-				"    gl_Position = " + ShaderVars.U_MVP_MATRIX + "[int(" + ShaderVars.A_MVP_MATRIX_INDEX + ")] * " + ShaderVars.A_POSITION + ";\n" +
+				"    gl_Position = " + getTransformedPositionSource() + ";\n" +
 				"    " + ShaderVars.V_TEXTURE_COORD + " = " + ShaderVars.A_TEXTURE_COORD + ";\n" +
 				"    " + ShaderVars.V_OPACITY + " = " + ShaderVars.A_OPACITY + ";\n" +
 				"}";
@@ -85,73 +104,63 @@ public class TransparentTextureMaterialBatchRenderer<M extends TransparentTextur
 		// @formatter:on
 
 		ArrayList<String> attributes = new ArrayList<String>();
-		attributes.add(ShaderVars.A_MVP_MATRIX_INDEX);
 		attributes.add(ShaderVars.A_POSITION);
 		attributes.add(ShaderVars.A_TEXTURE_COORD);
 		attributes.add(ShaderVars.A_OPACITY);
 
 		ArrayList<String> uniforms = new ArrayList<String>();
-		uniforms.add(ShaderVars.U_MVP_MATRIX);
+		addTransformShaderVariables(attributes, uniforms);
 
 		getShaderProgram().setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
 	}
 
+	@Override
+	protected void setupShaderVariableHandles() {
+		super.setupShaderVariableHandles();
+		opacityHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_OPACITY);
+	}
+
 	@Override
 	protected void setupVertexShaderVariables(int batchSize) {
-		int strideBytes = getVerticesDataStrideBytes();
-		ShaderProgram shaderProgram = getShaderProgram();
-		shaderProgram.setUniformMatrix4fv(ShaderVars.U_MVP_MATRIX, batchSize, getGeometry().getMvpMatrices(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_MVP_MATRIX_INDEX, 1, SIZE_OF_FLOAT, getMvpIndexBuffer(), 0);
-		shaderProgram.setAttribute(ShaderVars.A_POSITION, 3, strideBytes, getVertexBuffer(), getVertexPositionOffset());
-		shaderProgram.setAttribute(ShaderVars.A_TEXTURE_COORD, 2, strideBytes, getVertexBuffer(), getVertexUVOffset());
-		shaderProgram.setAttribute(ShaderVars.A_OPACITY, 1, strideBytes, getVertexBuffer(), vertexOpacityOffset);
+		setupTransformShaderVariables(batchSize);
+		setupVertexAttribute(getPositionHandle(), 3, getVertexPositionOffset());
+		setupVertexAttribute(getTextureCoordHandle(), 2, getVertexUVOffset());
+		setupVertexAttribute(opacityHandle, 1, vertexOpacityOffset);
 	}
 
 	@Override
 	protected void setupVerticesData() {
 		RectangleBatchGeometry geometry = getGeometry();
 		int nVertices = getBatchCapacity() * 4;
-		for (int i = 0; i < nVertices; i++) {
+		for (int i = 0; i < nVertices; i += 4) {
 			// Bottom-Left
-			geometry.addVertex(new Vector3(-0.5f, -0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(0.0f, 1.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(-0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 1.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Bottom-Right
-			geometry.addVertex(new Vector3(0.5f, -0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(1.0f, 1.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 1.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Top-Right
-			geometry.addVertex(new Vector3(0.5f, 0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(1.0f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 			// Top-Left
-			geometry.addVertex(new Vector3(-0.5f, 0.5f, 0.0f));
-			geometry.addTextureUV(new Vector2(0.0f, 0.0f));
-			geometry.addColor(new Color(1.0f, 1.0f, 1.0f, 1.0f));
+			geometry.addVertex(-0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
 		}
 	}
 
 	@Override
-	protected void copyGeometryToVertexBuffer(int batchSize) {
-		FloatBuffer vertexBuffer = getVertexBuffer();
-		vertexBuffer.clear();
-		int nVertices = getBatchCapacity() * 4;
-		Vector3 position;
-		Vector2 textureUV;
-		Color color;
-		for (int i = 0; i < nVertices; i++) {
-			position = getGeometry().getVertex(i);
-			vertexBuffer.put(position.getX());
-			vertexBuffer.put(position.getY());
-			vertexBuffer.put(position.getZ());
-
-			textureUV = getGeometry().getTextureUV(i);
-			vertexBuffer.put(textureUV.getX());
-			vertexBuffer.put(textureUV.getY());
-
-			color = getGeometry().getColor(i);
-			vertexBuffer.put(color.getA());
-		}
+	protected void interleaveRectangleVertexData(int batchIndex) {
+		RectangleBatchGeometry geometry = getGeometry();
+		interleaveRectangleAttribute(batchIndex, geometry.getVertices(), Geometry.POSITION_COMPONENTS, 0,
+				Geometry.POSITION_COMPONENTS, getVertexPositionOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getTexturesUV(), Geometry.TEXTURE_UV_COMPONENTS, 0,
+				Geometry.TEXTURE_UV_COMPONENTS, getVertexUVOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getColors(), Geometry.COLOR_COMPONENTS, 3,
+				1, vertexOpacityOffset);
 	}
 
 	@Override
@@ -160,6 +169,7 @@ public class TransparentTextureMaterialBatchRenderer<M extends TransparentTextur
 		TransparentTextureMaterial material = getCurrentMaterial();
 		setupTexturedRectangle(material.getTextureRegion(), position, scale, origin, rotation, camera);
 		setupOpacity(material.getOpacity());
+		copyRectangleToVertexBuffer(getBatchSize());
 		incrementBatchSize();
 	}
 
@@ -172,7 +182,7 @@ public class TransparentTextureMaterialBatchRenderer<M extends TransparentTextur
 		int spriteOffset = getBatchSize() * 4;
 		int limit = spriteOffset + 4;
 		for (int i = spriteOffset; i < limit; i++) {
-			getGeometry().getColor(i).setA(opacity);
+			getGeometry().setColor(i, 1.0f, 1.0f, 1.0f, opacity);
 		}
 	}
 
@@ -0,0 +1,342 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_SHORT;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.BuildConfig;
+import com.miviclin.droidengine2d.graphics.GLDebugger;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.material.TextureColorMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureHsvMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.TransparentTextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.UnsupportedMaterialException;
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+import com.miviclin.droidengine2d.util.math.Affine2;
+import com.miviclin.droidengine2d.util.math.Vector2;
+
+/**
+ * Batch renderer that renders arbitrary lists of textured triangles in one draw call.<br>
+ * Unlike {@link RectangleBatchRenderer}, which always renders 4 vertices per element, each element of this batch has
+ * its own number of vertices and indices. It is used to render the mesh of a {@link TextureRegion} (see
+ * {@link TextureRegion#setMesh(com.miviclin.droidengine2d.graphics.texture.RegionMesh)}), which covers only the visible
+ * pixels of the image, so the GPU does not spend fill rate on the transparent areas of big sprites. Regions without a
+ * mesh are rendered as rectangles.<br>
+ * The vertices are transformed in the CPU, so only the view-projection matrix of the camera is sent to the GPU. The
+ * batch is rendered when the texture or the blending options change, or when there is no room for the vertices or the
+ * indices of the next element.<br>
+ * Supported materials: {@link TextureMaterial}, {@link TextureColorMaterial} and {@link TransparentTextureMaterial}.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ * @param <M> TextureMaterial
+ */
+public class TriangleBatchRenderer<M extends TextureMaterial> extends GraphicsBatchRenderer<M> {
+
+	/**
+	 * Default maximum number of vertices of a batch.
+	 */
+	public static final int DEFAULT_MAX_VERTICES = 4096;
+
+	/**
+	 * Default maximum number of indices of a batch.
+	 */
+	public static final int DEFAULT_MAX_INDICES = DEFAULT_MAX_VERTICES * 3;
+
+	private static final int MAX_VERTICES = 65536;
+	private static final int POSITION_OFFSET = 0;
+	private static final int UV_OFFSET = 3;
+	private static final int COLOR_OFFSET = 5;
+	private static final int VERTEX_STRIDE = 6;
+	private static final short[] QUAD_TRIANGLES = new short[] { 0, 1, 2, 0, 2, 3 };
+
+	private final Context context;
+	private final PackedColorTextureShader shader;
+	private final int maxIndices;
+	private final float[] vertexData;
+	private final short[] indexData;
+	private final FloatBuffer vertexBuffer;
+	private final ShortBuffer indexBuffer;
+	private final Affine2 modelTransform;
+	private final float[] quadPositions;
+	private final float[] quadUVs;
+	private Texture texture;
+	private Camera camera;
+	private int numVertices;
+	private int numIndices;
+	private float depth;
+
+	/**
+	 * Creates a new TriangleBatchRenderer with capacity for {@link #DEFAULT_MAX_VERTICES} vertices and
+	 * {@link #DEFAULT_MAX_INDICES} indices.
+	 * 
+	 * @param context Context used to load the textures.
+	 */
+	public TriangleBatchRenderer(Context context) {
+		this(context, DEFAULT_MAX_VERTICES, DEFAULT_MAX_INDICES);
+	}
+
+	/**
+	 * Creates a new TriangleBatchRenderer.<br>
+	 * The batch capacity (see {@link #getBatchCapacity()}) is the maximum number of vertices.
+	 * 
+	 * @param context Context used to load the textures.
+	 * @param maxVertices Maximum number of vertices of a batch (max 65536).
+	 * @param maxIndices Maximum number of indices of a batch (3 per triangle).
+	 */
+	public TriangleBatchRenderer(Context context, int maxVertices, int maxIndices) {
+		super(maxVertices);
+		if (maxVertices < 4 || maxVertices > MAX_VERTICES) {
+			throw new IllegalArgumentException("The maximum number of vertices must be between 4 and " + MAX_VERTICES);
+		}
+		if (maxIndices < 6) {
+			throw new IllegalArgumentException("The maximum number of indices must be at least 6");
+		}
+		this.context = context;
+		this.shader = new PackedColorTextureShader(getShaderProgram(), 3);
+		this.maxIndices = maxIndices;
+		this.vertexData = new float[maxVertices * VERTEX_STRIDE];
+		this.indexData = new short[maxIndices];
+		this.vertexBuffer = ByteBuffer.allocateDirect(maxVertices * VERTEX_STRIDE * SIZE_OF_FLOAT)
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+		this.indexBuffer = ByteBuffer.allocateDirect(maxIndices * SIZE_OF_SHORT)
+				.order(ByteOrder.nativeOrder())
+				.asShortBuffer();
+		this.modelTransform = new Affine2();
+		this.quadPositions = new float[8];
+		this.quadUVs = new float[8];
+		this.texture = null;
+		this.camera = null;
+		this.numVertices = 0;
+		this.numIndices = 0;
+		this.depth = 0.0f;
+		setupShaderProgram();
+	}
+
+	@Override
+	public void setupShaderProgram() {
+		shader.setup();
+	}
+
+	@Override
+	protected void beginDraw() {
+		shader.use();
+		texture = null;
+	}
+
+	@Override
+	protected void endDraw() {
+		if (getBatchSize() > 0) {
+			drawBatch();
+		}
+		shader.disableAttributes();
+	}
+
+	/**
+	 * Adds the texture region of the current material to this batch. The mesh of the region is used if it has one,
+	 * otherwise the region is rendered as a rectangle.<br>
+	 * The position, scale, origin and rotation are interpreted the same way as in
+	 * {@link RectangleBatchRenderer#draw(Vector2, Vector2, Vector2, float, Camera)}.
+	 * 
+	 * @param position Position.
+	 * @param scale Scale of the original image.
+	 * @param origin Origin of the original image (value between 0.0f and 1.0f).
+	 * @param rotation Rotation angle around the origin.
+	 * @param camera Camera.
+	 */
+	public void draw(Vector2 position, Vector2 scale, Vector2 origin, float rotation, Camera camera) {
+		TextureRegion region = getCurrentMaterial().getTextureRegion();
+		if (region.getMesh() != null) {
+			draw(region.getTexture(), region.getMeshPositions(), region.getMeshUVs(),
+					region.getMesh().getNumVertices(), region.getMeshTriangles(), region.getMeshTriangles().length,
+					position, scale, origin, rotation, camera);
+			return;
+		}
+		float[] positions = quadPositions;
+		positions[0] = region.getQuadLeft();
+		positions[1] = region.getQuadBottom();
+		positions[2] = region.getQuadRight();
+		positions[3] = region.getQuadBottom();
+		positions[4] = region.getQuadRight();
+		positions[5] = region.getQuadTop();
+		positions[6] = region.getQuadLeft();
+		positions[7] = region.getQuadTop();
+		for (int vertex = 0; vertex < 4; vertex++) {
+			quadUVs[vertex * 2 + 0] = region.getVertexU(vertex);
+			quadUVs[vertex * 2 + 1] = region.getVertexV(vertex);
+		}
+		draw(region.getTexture(), positions, quadUVs, 4, QUAD_TRIANGLES, 6, position, scale, origin, rotation, camera);
+	}
+
+	/**
+	 * Adds a list of triangles to this batch, using the color and the blending options of the current material and the
+	 * specified texture.<br>
+	 * The positions are in model space: the origin is subtracted from them and the result is scaled, rotated and
+	 * translated to the specified position. The triangles must be sorted counterclockwise, otherwise they are
+	 * discarded by face culling.<br>
+	 * If there is no room for the triangles in this batch, the batch is rendered first.
+	 * 
+	 * @param texture Texture.
+	 * @param positions Positions of the vertices (x0, y0, x1, y1...).
+	 * @param uvs UV coordinates of the vertices (u0, v0, u1, v1...).
+	 * @param numVertices Number of vertices.
+	 * @param triangles Indices of the vertices of the triangles (3 per triangle).
+	 * @param numIndices Number of indices.
+	 * @param position Position.
+	 * @param scale Scale.
+	 * @param origin Origin in model space.
+	 * @param rotation Rotation angle around the origin.
+	 * @param camera Camera.
+	 */
+	public void draw(Texture texture, float[] positions, float[] uvs, int numVertices, short[] triangles,
+			int numIndices, Vector2 position, Vector2 scale, Vector2 origin, float rotation, Camera camera) {
+
+		checkInBeginEndPair();
+		M material = getCurrentMaterial();
+		if (material instanceof TextureHsvMaterial) {
+			throw new UnsupportedMaterialException(material.getClass());
+		}
+		if (numVertices > getBatchCapacity() || numIndices > maxIndices) {
+			throw new IllegalArgumentException("The triangles do not fit in an empty batch of this renderer");
+		}
+		boolean textureChanged = this.texture != texture;
+		if ((getBatchSize() > 0) && (textureChanged || isForceDraw() || camera != this.camera ||
+				this.numVertices + numVertices > getBatchCapacity() || this.numIndices + numIndices > maxIndices)) {
+			drawBatch();
+		}
+		if (textureChanged) {
+			this.texture = texture;
+			if (!texture.isLoaded()) {
+				texture.loadTexture(context);
+			}
+			texture.bind();
+		}
+		this.camera = camera;
+
+		float color = PackedColorTextureShader.getPackedColor(material);
+
+		Affine2 m = modelTransform.setToTransform(position.getX(), position.getY(), origin.getX(), origin.getY(),
+				rotation, scale.getX(), scale.getY());
+		float[] data = vertexData;
+		float z = depth;
+		int offset = this.numVertices * VERTEX_STRIDE;
+		for (int i = 0; i < numVertices; i++) {
+			float x = positions[i * 2 + 0];
+			float y = positions[i * 2 + 1];
+			data[offset + POSITION_OFFSET + 0] = m.transformX(x, y);
+			data[offset + POSITION_OFFSET + 1] = m.transformY(x, y);
+			data[offset + POSITION_OFFSET + 2] = z;
+			data[offset + UV_OFFSET + 0] = uvs[i * 2 + 0];
+			data[offset + UV_OFFSET + 1] = uvs[i * 2 + 1];
+			data[offset + COLOR_OFFSET] = color;
+			offset += VERTEX_STRIDE;
+		}
+		short firstVertex = (short) this.numVertices;
+		short[] indices = indexData;
+		int indexOffset = this.numIndices;
+		for (int i = 0; i < numIndices; i++) {
+			indices[indexOffset + i] = (short) (firstVertex + triangles[i]);
+		}
+		this.numVertices += numVertices;
+		this.numIndices += numIndices;
+		incrementBatchSize();
+	}
+
+	/**
+	 * Renders all the triangles that are currently in this batch in one draw call.
+	 */
+	protected void drawBatch() {
+		vertexBuffer.clear();
+		vertexBuffer.put(vertexData, 0, numVertices * VERTEX_STRIDE).flip();
+		indexBuffer.clear();
+		indexBuffer.put(indexData, 0, numIndices).flip();
+
+		shader.setViewProjectionMatrix(camera);
+		shader.setAttributes(vertexBuffer);
+		PackedColorTextureShader.applyBlendingOptions(getCurrentBatchBlendingOptions());
+
+		GLES20.glDrawElements(GLES20.GL_TRIANGLES, numIndices, GLES20.GL_UNSIGNED_SHORT, indexBuffer);
+
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().incrementNumDrawCallsInCurrentFrame();
+		}
+
+		getCurrentBatchBlendingOptions().copy(getNextBatchBlendingOptions());
+		setForceDraw(false);
+		resetBatchSize();
+		numVertices = 0;
+		numIndices = 0;
+
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Returns the Z coordinate of the vertices added to this batch.
+	 * 
+	 * @return Depth
+	 */
+	public float getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Sets the Z coordinate of the vertices added to this batch from now on.
+	 * 
+	 * @param depth Depth.
+	 */
+	public void setDepth(float depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Returns the number of vertices that are currently in this batch.
+	 * 
+	 * @return Number of vertices
+	 */
+	public int getNumVertices() {
+		return numVertices;
+	}
+
+	/**
+	 * Returns the number of indices that are currently in this batch.
+	 * 
+	 * @return Number of indices
+	 */
+	public int getNumIndices() {
+		return numIndices;
+	}
+
+	/**
+	 * Returns the maximum number of indices of a batch.
+	 * 
+	 * @return Maximum number of indices
+	 */
+	public int getMaxIndices() {
+		return maxIndices;
+	}
+
+}
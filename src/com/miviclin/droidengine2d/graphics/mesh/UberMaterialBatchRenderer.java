@@ -0,0 +1,332 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import java.util.ArrayList;
+
+import android.content.Context;
+
+import com.miviclin.droidengine2d.graphics.Color;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.material.ColorMaterial;
+import com.miviclin.droidengine2d.graphics.material.Material;
+import com.miviclin.droidengine2d.graphics.material.TextureColorMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureHsvMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.TransparentTextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.UnsupportedMaterialException;
+import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
+import com.miviclin.droidengine2d.util.math.Vector2;
+
+/**
+ * UberMaterialBatchRenderer allows rendering batches of rectangles with any of the built-in materials in one draw call:
+ * ColorMaterial, TextureMaterial, TextureColorMaterial, TextureHsvMaterial and TransparentTextureMaterial. Each
+ * rectangle has its own translation, rotation and scale.<br>
+ * All materials share the same vertex format and the same shader program, so switching between built-in materials does
+ * not render the batch. The batch is still rendered when the texture or the blending options change.<br>
+ * The opacity of TransparentTextureMaterial and TextureHsvMaterial is stored in the alpha component of the tint color.
+ * The tint color is packed in 4 bytes (see {@link Color#toPackedFloat()}).<br>
+ * The max number of rectangles per batch depends on the {@link TransformMode}.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ * @param <M> Material
+ */
+public class UberMaterialBatchRenderer<M extends Material> extends TextureMaterialBatchRendererBase<M> {
+
+	private static final int HSV_COMPONENTS = 3;
+	private static final int MATERIAL_FLAGS_COMPONENTS = 2;
+	private static final float WHITE = Color.packABGRFloat(1.0f, 1.0f, 1.0f, 1.0f);
+
+	private final float[] hsv;
+	private final float[] materialFlags;
+	private int vertexColorOffset;
+	private int vertexHsvOffset;
+	private int vertexMaterialFlagsOffset;
+	private int colorHandle;
+	private int hsvHandle;
+	private int materialFlagsHandle;
+
+	/**
+	 * Creates a new UberMaterialBatchRenderer.<br>
+	 * The vertices will be transformed in the GPU.
+	 * 
+	 * @param context Context.
+	 */
+	public UberMaterialBatchRenderer(Context context) {
+		this(context, TransformMode.GPU);
+	}
+
+	/**
+	 * Creates a new UberMaterialBatchRenderer with the default batch capacity of the specified TransformMode.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 */
+	public UberMaterialBatchRenderer(Context context, TransformMode transformMode) {
+		this(context, transformMode, transformMode.getDefaultBatchCapacity());
+	}
+
+	/**
+	 * Creates a new UberMaterialBatchRenderer.
+	 * 
+	 * @param context Context.
+	 * @param transformMode Defines where the vertices are transformed.
+	 * @param batchCapacity Maximum size of the batch.
+	 */
+	public UberMaterialBatchRenderer(Context context, TransformMode transformMode, int batchCapacity) {
+		super(11, context, transformMode, batchCapacity);
+		this.hsv = new float[batchCapacity * 4 * HSV_COMPONENTS];
+		this.materialFlags = new float[batchCapacity * 4 * MATERIAL_FLAGS_COMPONENTS];
+		this.vertexColorOffset = 5;
+		this.vertexHsvOffset = 6;
+		this.vertexMaterialFlagsOffset = 9;
+		setGeometry(new RectangleBatchGeometry(getBatchCapacity(), true, true, transformMode, true));
+	}
+
+	@Override
+	public void setupShaderProgram() {
+
+		// @formatter:off
+
+		String vertexShaderSource = "" +
+				getTransformDeclarationsSource() +
+				"attribute vec4 " + ShaderVars.A_POSITION + ";\n" +
+				"attribute vec2 " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"attribute vec4 " + ShaderVars.A_COLOR + ";\n" +
+				"attribute vec3 " + ShaderVars.A_HSV + ";\n" +
+				"attribute vec2 " + ShaderVars.A_MATERIAL_FLAGS + ";\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"varying vec4 " + ShaderVars.V_COLOR + ";\n" +
+				"varying vec3 " + ShaderVars.V_HSV + ";\n" +
+				"varying vec2 " + ShaderVars.V_MATERIAL_FLAGS + ";\n" +
+				"void main() {\n" +
+				"    gl_Position = " + getTransformedPositionSource() + ";\n" +
+				"    " + ShaderVars.V_TEXTURE_COORD + " = " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"    " + ShaderVars.V_COLOR + " = " + ShaderVars.A_COLOR + ";\n" +
+				"    " + ShaderVars.V_HSV + " = " + ShaderVars.A_HSV + ";\n" +
+				"    " + ShaderVars.V_MATERIAL_FLAGS + " = " + ShaderVars.A_MATERIAL_FLAGS + ";\n" +
+				"}";
+
+		String fragmentShaderSource = "" +
+				"precision mediump float;\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"varying vec4 " + ShaderVars.V_COLOR + ";\n" +
+				"varying vec3 " + ShaderVars.V_HSV + ";\n" +
+				"varying vec2 " + ShaderVars.V_MATERIAL_FLAGS + ";\n" +
+				"uniform sampler2D sTexture;\n" +
+				"vec3 RGBtoHSV(vec3 c) {\n" +
+				"    vec4 K = vec4(0.0, -1.0 / 3.0, 2.0 / 3.0, -1.0);\n" +
+				"    vec4 p = mix(vec4(c.bg, K.wz), vec4(c.gb, K.xy), step(c.b, c.g));\n" +
+				"    vec4 q = mix(vec4(p.xyw, c.r), vec4(c.r, p.yzx), step(p.x, c.r));\n" +
+				"    float d = q.x - min(q.w, q.y);\n" +
+				"    float e = 1.0e-10;\n" +
+				"    return vec3(abs(q.z + (q.w - q.y) / (6.0 * d + e)), d / (q.x + e), q.x);\n" +
+				"}\n" +
+				"vec3 HSVtoRGB(vec3 c) {\n" +
+				"    vec4 K = vec4(1.0, 2.0 / 3.0, 1.0 / 3.0, 3.0);\n" +
+				"    vec3 p = abs(fract(c.xxx + K.xyz) * 6.0 - K.www);\n" +
+				"    return c.z * mix(K.xxx, clamp(p - K.xxx, 0.0, 1.0), c.y);\n" +
+				"}\n" +
+				"void main() {\n" +
+				"    vec4 textureColor = mix(vec4(1.0), texture2D(sTexture, " + ShaderVars.V_TEXTURE_COORD + "), " +
+						ShaderVars.V_MATERIAL_FLAGS + ".x);\n" +
+				"    if (" + ShaderVars.V_MATERIAL_FLAGS + ".y > 0.5) {\n" +
+				"        vec3 fragHSV = RGBtoHSV(textureColor.rgb);\n" +
+				"        fragHSV.x += " + ShaderVars.V_HSV + ".x / 360.0;\n" +
+				"        fragHSV.yz *= " + ShaderVars.V_HSV + ".yz;\n" +
+				"        fragHSV.xyz = mod(fragHSV.xyz, 1.0);\n" +
+				"        textureColor.rgb = HSVtoRGB(fragHSV);\n" +
+				"    }\n" +
+				"    gl_FragColor = textureColor * " + ShaderVars.V_COLOR + ";\n" +
+				"}";
+
+		// @formatter:on
+
+		ArrayList<String> attributes = new ArrayList<String>();
+		attributes.add(ShaderVars.A_POSITION);
+		attributes.add(ShaderVars.A_TEXTURE_COORD);
+		attributes.add(ShaderVars.A_COLOR);
+		attributes.add(ShaderVars.A_HSV);
+		attributes.add(ShaderVars.A_MATERIAL_FLAGS);
+
+		ArrayList<String> uniforms = new ArrayList<String>();
+		addTransformShaderVariables(attributes, uniforms);
+
+		getShaderProgram().setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
+	}
+
+	@Override
+	protected void setupShaderVariableHandles() {
+		super.setupShaderVariableHandles();
+		colorHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_COLOR);
+		hsvHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_HSV);
+		materialFlagsHandle = getShaderProgram().getAttributeHandle(ShaderVars.A_MATERIAL_FLAGS);
+	}
+
+	@Override
+	protected void setupVertexShaderVariables(int batchSize) {
+		setupTransformShaderVariables(batchSize);
+		setupVertexAttribute(getPositionHandle(), 3, getVertexPositionOffset());
+		setupVertexAttribute(getTextureCoordHandle(), 2, getVertexUVOffset());
+		setupPackedColorAttribute(colorHandle, vertexColorOffset);
+		setupVertexAttribute(hsvHandle, HSV_COMPONENTS, vertexHsvOffset);
+		setupVertexAttribute(materialFlagsHandle, MATERIAL_FLAGS_COMPONENTS, vertexMaterialFlagsOffset);
+	}
+
+	@Override
+	protected void setupVerticesData() {
+		RectangleBatchGeometry geometry = getGeometry();
+		int nVertices = getBatchCapacity() * 4;
+		for (int i = 0; i < nVertices; i += 4) {
+			// Bottom-Left
+			geometry.addVertex(-0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 1.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
+			// Bottom-Right
+			geometry.addVertex(0.5f, -0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 1.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
+			// Top-Right
+			geometry.addVertex(0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(1.0f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
+			// Top-Left
+			geometry.addVertex(-0.5f, 0.5f, 0.0f);
+			geometry.addTextureUV(0.0f, 0.0f);
+			geometry.addColor(1.0f, 1.0f, 1.0f, 1.0f);
+		}
+	}
+
+	@Override
+	protected void interleaveRectangleVertexData(int batchIndex) {
+		RectangleBatchGeometry geometry = getGeometry();
+		interleaveRectangleAttribute(batchIndex, geometry.getVertices(), Geometry.POSITION_COMPONENTS, 0,
+				Geometry.POSITION_COMPONENTS, getVertexPositionOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getTexturesUV(), Geometry.TEXTURE_UV_COMPONENTS, 0,
+				Geometry.TEXTURE_UV_COMPONENTS, getVertexUVOffset());
+		interleaveRectangleAttribute(batchIndex, geometry.getColors(), Geometry.PACKED_COLOR_COMPONENTS, 0,
+				Geometry.PACKED_COLOR_COMPONENTS, vertexColorOffset);
+		interleaveRectangleAttribute(batchIndex, hsv, HSV_COMPONENTS, 0, HSV_COMPONENTS, vertexHsvOffset);
+		interleaveRectangleAttribute(batchIndex, materialFlags, MATERIAL_FLAGS_COMPONENTS, 0,
+				MATERIAL_FLAGS_COMPONENTS, vertexMaterialFlagsOffset);
+	}
+
+	@Override
+	public void draw(Vector2 position, Vector2 scale, Vector2 origin, float rotation, Camera camera) {
+		checkInBeginEndPair();
+		M material = getCurrentMaterial();
+		if (material instanceof TextureMaterial) {
+			setupTexturedRectangle(((TextureMaterial) material).getTextureRegion(), position, scale, origin, rotation,
+					camera);
+		} else if (material instanceof ColorMaterial) {
+			if ((getBatchSize() > 0) && (getBatchSize() == getBatchCapacity() || isForceDraw())) {
+				drawBatch();
+			}
+			updateTransform(getBatchSize(), position, scale, origin, rotation, camera);
+		} else {
+			throw new UnsupportedMaterialException(material.getClass());
+		}
+		setupMaterialData(material);
+		copyRectangleToVertexBuffer(getBatchSize());
+		incrementBatchSize();
+	}
+
+	/**
+	 * Sets the tint color, the HSV parameters and the material flags of the vertices of the last rectangle added to
+	 * this batch, depending on the type of the specified material.
+	 * 
+	 * @param material Material.
+	 */
+	private void setupMaterialData(Material material) {
+		if (material instanceof TextureHsvMaterial) {
+			TextureHsvMaterial hsvMaterial = (TextureHsvMaterial) material;
+			setupColor(1.0f, 1.0f, 1.0f, hsvMaterial.getOpacity());
+			setupHSV(hsvMaterial.getHOffset(), hsvMaterial.getSMulti(), hsvMaterial.getVMulti());
+			setupMaterialFlags(1.0f, 1.0f);
+		} else if (material instanceof TransparentTextureMaterial) {
+			setupColor(1.0f, 1.0f, 1.0f, ((TransparentTextureMaterial) material).getOpacity());
+			setupMaterialFlags(1.0f, 0.0f);
+		} else if (material instanceof TextureColorMaterial) {
+			setupColor(((TextureColorMaterial) material).getColor().toPackedFloat());
+			setupMaterialFlags(1.0f, 0.0f);
+		} else if (material instanceof TextureMaterial) {
+			setupColor(WHITE);
+			setupMaterialFlags(1.0f, 0.0f);
+		} else {
+			setupColor(((ColorMaterial) material).getColor().toPackedFloat());
+			setupMaterialFlags(0.0f, 0.0f);
+		}
+	}
+
+	/**
+	 * Sets the tint color of the vertices of the last rectangle added to this batch.
+	 * 
+	 * @param r Red component.
+	 * @param g Green component.
+	 * @param b Blue component.
+	 * @param a Alpha component.
+	 */
+	private void setupColor(float r, float g, float b, float a) {
+		setupColor(Color.packABGRFloat(r, g, b, a));
+	}
+
+	/**
+	 * Sets the tint color of the vertices of the last rectangle added to this batch.
+	 * 
+	 * @param packedColor Packed color (see {@link Color#toPackedFloat()}).
+	 */
+	private void setupColor(float packedColor) {
+		int spriteOffset = getBatchSize() * 4;
+		int limit = spriteOffset + 4;
+		RectangleBatchGeometry geometry = getGeometry();
+		for (int i = spriteOffset; i < limit; i++) {
+			geometry.setPackedColor(i, packedColor);
+		}
+	}
+
+	/**
+	 * Sets the HSV parameters of the vertices of the last rectangle added to this batch.
+	 * 
+	 * @param hOffset Hue offset.
+	 * @param sMulti Saturation multiplier.
+	 * @param vMulti Brightness multiplier.
+	 */
+	private void setupHSV(float hOffset, float sMulti, float vMulti) {
+		int i = getBatchSize() * 4 * HSV_COMPONENTS;
+		int limit = i + 4 * HSV_COMPONENTS;
+		for (; i < limit; i += HSV_COMPONENTS) {
+			hsv[i + 0] = hOffset;
+			hsv[i + 1] = sMulti;
+			hsv[i + 2] = vMulti;
+		}
+	}
+
+	/**
+	 * Sets the material flags of the vertices of the last rectangle added to this batch.
+	 * 
+	 * @param textureWeight 1 if the texture is sampled, 0 if the rectangle is filled with the tint color.
+	 * @param hsvWeight 1 if the HSV parameters are applied, 0 otherwise.
+	 */
+	private void setupMaterialFlags(float textureWeight, float hsvWeight) {
+		int i = getBatchSize() * 4 * MATERIAL_FLAGS_COMPONENTS;
+		int limit = i + 4 * MATERIAL_FLAGS_COMPONENTS;
+		for (; i < limit; i += MATERIAL_FLAGS_COMPONENTS) {
+			materialFlags[i + 0] = textureWeight;
+			materialFlags[i + 1] = hsvWeight;
+		}
+	}
+
+}
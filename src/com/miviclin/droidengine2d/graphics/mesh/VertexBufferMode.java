@@ -0,0 +1,38 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+/**
+ * Defines where the vertex and index data of the batches rendered by a {@link RectangleBatchRenderer} is stored when
+ * it is sent to the GPU.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public enum VertexBufferMode {
+
+	/**
+	 * The vertex and index data is passed to the draw calls as pointers to client-side buffers. The driver copies the
+	 * data on every draw call.
+	 */
+	CLIENT_SIDE_ARRAYS,
+
+	/**
+	 * The indices are uploaded once to a static index buffer object shared by all renderers and the vertices are
+	 * streamed through a ring of vertex buffer objects which are orphaned before being filled.
+	 */
+	BUFFER_OBJECTS;
+
+}
@@ -0,0 +1,115 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.mesh;
+
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
+
+import java.nio.FloatBuffer;
+
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.graphics.GLDebugger;
+
+/**
+ * Ring of vertex buffer objects used to stream vertex data to the GPU.<br>
+ * Each upload goes to the next buffer object of the ring. The storage of that buffer object is orphaned before the new
+ * data is written, so the driver can give it new memory instead of waiting for the GPU to finish the draw calls that
+ * still read the previous contents.<br>
+ * This class must only be used from the GL thread.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class VertexBufferObjectRing {
+
+	/**
+	 * Default number of buffer objects of the ring.
+	 */
+	public static final int DEFAULT_RING_SIZE = 3;
+
+	private final int[] handles;
+	private final int sizeBytes;
+	private int current;
+
+	/**
+	 * Creates a new VertexBufferObjectRing with {@link #DEFAULT_RING_SIZE} buffer objects.
+	 * 
+	 * @param sizeBytes Size of each buffer object, in bytes.
+	 */
+	public VertexBufferObjectRing(int sizeBytes) {
+		this(sizeBytes, DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * Creates a new VertexBufferObjectRing.
+	 * 
+	 * @param sizeBytes Size of each buffer object, in bytes.
+	 * @param ringSize Number of buffer objects.
+	 */
+	public VertexBufferObjectRing(int sizeBytes, int ringSize) {
+		if (ringSize < 1) {
+			throw new IllegalArgumentException("The ring must contain at least 1 buffer object");
+		}
+		this.handles = new int[ringSize];
+		this.sizeBytes = sizeBytes;
+		this.current = 0;
+	}
+
+	/**
+	 * Creates the buffer objects of the ring and allocates their storage.<br>
+	 * This method must be called from the GL thread, every time the GL context is created.
+	 */
+	public void initialize() {
+		GLES20.glGenBuffers(handles.length, handles, 0);
+		for (int i = 0; i < handles.length; i++) {
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, handles[i]);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, sizeBytes, null, GLES20.GL_STREAM_DRAW);
+		}
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		current = 0;
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Advances to the next buffer object of the ring, orphans its storage and uploads the specified data to it.<br>
+	 * The buffer object is left bound to GL_ARRAY_BUFFER.
+	 * 
+	 * @param data Buffer containing the data. The data between position 0 and the limit of the buffer is uploaded.
+	 */
+	public void upload(FloatBuffer data) {
+		current = (current + 1) % handles.length;
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, handles[current]);
+		GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, sizeBytes, null, GLES20.GL_STREAM_DRAW);
+		data.position(0);
+		GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, data.limit() * SIZE_OF_FLOAT, data);
+	}
+
+	/**
+	 * Binds the buffer object that received the last upload to GL_ARRAY_BUFFER.
+	 */
+	public void bind() {
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, handles[current]);
+	}
+
+	/**
+	 * Returns the size of each buffer object of the ring.
+	 * 
+	 * @return Size in bytes
+	 */
+	public int getSizeBytes() {
+		return sizeBytes;
+	}
+
+}
@@ -0,0 +1,266 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.particles;
+
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_SHORT;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.BuildConfig;
+import com.miviclin.droidengine2d.graphics.GLDebugger;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.material.TextureColorMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureHsvMaterial;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.TransparentTextureMaterial;
+import com.miviclin.droidengine2d.graphics.material.UnsupportedMaterialException;
+import com.miviclin.droidengine2d.graphics.mesh.GraphicsBatchRenderer;
+import com.miviclin.droidengine2d.graphics.mesh.PackedColorTextureShader;
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+import com.miviclin.droidengine2d.util.math.FastMath;
+
+/**
+ * Batch renderer that renders the particles of {@link ParticleEmitter}s.<br>
+ * The vertices of the particles are written directly from the arrays of the emitters to the vertex buffer of the
+ * batch, without creating any intermediate object or array, and the indices of the quads are generated only once,
+ * when the renderer is created. Particles are squares rendered with the texture region of the current material. Their
+ * color replaces the color of the material, which only provides the texture and the blending options.<br>
+ * If an emitter has more particles than fit in a batch, the batch is rendered and the rest of the particles are added
+ * to the next one. Consecutive emitters are rendered in one draw call while they use the same texture and blending
+ * options.<br>
+ * Supported materials: {@link TextureMaterial}, {@link TextureColorMaterial} and {@link TransparentTextureMaterial}.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ * @param <M> TextureMaterial
+ */
+public class ParticleBatchRenderer<M extends TextureMaterial> extends GraphicsBatchRenderer<M> {
+
+	/**
+	 * Default maximum number of particles of a batch.
+	 */
+	public static final int DEFAULT_MAX_PARTICLES = 8192;
+
+	private static final int MAX_PARTICLES = 16384;
+	private static final int VERTEX_STRIDE = 5;
+
+	private final Context context;
+	private final PackedColorTextureShader shader;
+	private final int maxParticles;
+	private final FloatBuffer vertexBuffer;
+	private final ShortBuffer indexBuffer;
+	private Texture texture;
+	private Camera camera;
+	private int numParticles;
+
+	/**
+	 * Creates a new ParticleBatchRenderer with capacity for {@link #DEFAULT_MAX_PARTICLES} particles.
+	 * 
+	 * @param context Context used to load the textures.
+	 */
+	public ParticleBatchRenderer(Context context) {
+		this(context, DEFAULT_MAX_PARTICLES);
+	}
+
+	/**
+	 * Creates a new ParticleBatchRenderer.<br>
+	 * The batch capacity (see {@link #getBatchCapacity()}) is the maximum number of particles.
+	 * 
+	 * @param context Context used to load the textures.
+	 * @param maxParticles Maximum number of particles of a batch (max 16384).
+	 */
+	public ParticleBatchRenderer(Context context, int maxParticles) {
+		super(maxParticles);
+		if (maxParticles < 1 || maxParticles > MAX_PARTICLES) {
+			throw new IllegalArgumentException("The maximum number of particles must be between 1 and " +
+					MAX_PARTICLES);
+		}
+		this.context = context;
+		this.shader = new PackedColorTextureShader(getShaderProgram(), 2);
+		this.maxParticles = maxParticles;
+		this.vertexBuffer = ByteBuffer.allocateDirect(maxParticles * 4 * VERTEX_STRIDE * SIZE_OF_FLOAT)
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+		this.indexBuffer = ByteBuffer.allocateDirect(maxParticles * 6 * SIZE_OF_SHORT)
+				.order(ByteOrder.nativeOrder())
+				.asShortBuffer();
+		for (int i = 0, j = 0; i < maxParticles; i++, j += 4) {
+			indexBuffer.put((short) (j + 0));
+			indexBuffer.put((short) (j + 1));
+			indexBuffer.put((short) (j + 2));
+			indexBuffer.put((short) (j + 2));
+			indexBuffer.put((short) (j + 3));
+			indexBuffer.put((short) (j + 0));
+		}
+		indexBuffer.flip();
+		this.texture = null;
+		this.camera = null;
+		this.numParticles = 0;
+		setupShaderProgram();
+	}
+
+	@Override
+	public void setupShaderProgram() {
+		shader.setup();
+	}
+
+	@Override
+	protected void beginDraw() {
+		shader.use();
+		texture = null;
+	}
+
+	@Override
+	protected void endDraw() {
+		if (getBatchSize() > 0) {
+			drawBatch();
+		}
+		shader.disableAttributes();
+	}
+
+	/**
+	 * Adds the particles of the specified emitter to this batch, using the texture region and the blending options of
+	 * the current material.
+	 * 
+	 * @param emitter ParticleEmitter.
+	 * @param camera Camera.
+	 */
+	public void draw(ParticleEmitter emitter, Camera camera) {
+		checkInBeginEndPair();
+		M material = getCurrentMaterial();
+		if (material instanceof TextureHsvMaterial) {
+			throw new UnsupportedMaterialException(material.getClass());
+		}
+		int count = emitter.numParticles;
+		if (count == 0) {
+			return;
+		}
+		TextureRegion region = material.getTextureRegion();
+		Texture texture = region.getTexture();
+		boolean textureChanged = this.texture != texture;
+		if ((getBatchSize() > 0) && (textureChanged || isForceDraw() || camera != this.camera)) {
+			drawBatch();
+		}
+		if (textureChanged) {
+			this.texture = texture;
+			if (!texture.isLoaded()) {
+				texture.loadTexture(context);
+			}
+			texture.bind();
+		}
+		this.camera = camera;
+
+		float u0 = region.getVertexU(0);
+		float v0 = region.getVertexV(0);
+		float u1 = region.getVertexU(1);
+		float v1 = region.getVertexV(1);
+		float u2 = region.getVertexU(2);
+		float v2 = region.getVertexV(2);
+		float u3 = region.getVertexU(3);
+		float v3 = region.getVertexV(3);
+
+		ParticleEmitterDefinition definition = emitter.getDefinition();
+		float startSize = definition.getStartSize();
+		float sizeRange = definition.getEndSize() - startSize;
+		boolean rotated = emitter.hasRotation();
+		float[] px = emitter.positionX;
+		float[] py = emitter.positionY;
+		float[] age = emitter.age;
+		float[] rotation = emitter.rotation;
+		float[] colors = emitter.colors;
+		float colorSteps = ParticleEmitter.COLOR_STEPS - 1;
+		FloatBuffer buffer = vertexBuffer;
+
+		int particle = 0;
+		while (particle < count) {
+			if (numParticles == maxParticles) {
+				drawBatch();
+			}
+			int start = particle;
+			int end = Math.min(count, particle + maxParticles - numParticles);
+			for (; particle < end; particle++) {
+				float t = age[particle];
+				float halfSize = (startSize + sizeRange * t) * 0.5f;
+				float color = colors[(int) (t * colorSteps + 0.5f)];
+				float x = px[particle];
+				float y = py[particle];
+				// Offsets of the right-bottom corner (ax, ay) and the right-top corner (bx, by) from the center.
+				// The left corners are symmetric.
+				float ax = halfSize;
+				float ay = -halfSize;
+				float bx = halfSize;
+				float by = halfSize;
+				if (rotated) {
+					float cos = FastMath.cosDeg(rotation[particle]);
+					float sin = FastMath.sinDeg(rotation[particle]);
+					ax = (cos + sin) * halfSize;
+					ay = (sin - cos) * halfSize;
+					bx = (cos - sin) * halfSize;
+					by = (sin + cos) * halfSize;
+				}
+				// Bottom-left, bottom-right, top-right and top-left vertices
+				buffer.put(x - bx).put(y - by).put(u0).put(v0).put(color);
+				buffer.put(x + ax).put(y + ay).put(u1).put(v1).put(color);
+				buffer.put(x + bx).put(y + by).put(u2).put(v2).put(color);
+				buffer.put(x - ax).put(y - ay).put(u3).put(v3).put(color);
+			}
+			numParticles += end - start;
+			incrementBatchSize();
+		}
+	}
+
+	/**
+	 * Renders all the particles that are currently in this batch in one draw call.
+	 */
+	protected void drawBatch() {
+		vertexBuffer.flip();
+		shader.setViewProjectionMatrix(camera);
+		shader.setAttributes(vertexBuffer);
+		PackedColorTextureShader.applyBlendingOptions(getCurrentBatchBlendingOptions());
+
+		indexBuffer.position(0);
+		GLES20.glDrawElements(GLES20.GL_TRIANGLES, numParticles * 6, GLES20.GL_UNSIGNED_SHORT, indexBuffer);
+
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().incrementNumDrawCallsInCurrentFrame();
+		}
+
+		getCurrentBatchBlendingOptions().copy(getNextBatchBlendingOptions());
+		setForceDraw(false);
+		resetBatchSize();
+		numParticles = 0;
+		vertexBuffer.clear();
+
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Returns the number of particles that are currently in this batch.
+	 * 
+	 * @return Number of particles
+	 */
+	public int getNumParticles() {
+		return numParticles;
+	}
+
+}
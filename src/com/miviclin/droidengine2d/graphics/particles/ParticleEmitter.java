@@ -0,0 +1,314 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.particles;
+
+import com.miviclin.droidengine2d.graphics.Color;
+import com.miviclin.droidengine2d.util.math.FastMath;
+
+/**
+ * ParticleEmitter emits and updates the particles of an effect described by a {@link ParticleEmitterDefinition}.<br>
+ * The state of the particles is stored in primitive arrays, one per property (structure of arrays), and the arrays are
+ * allocated only when the emitter is created or reset, so updating and rendering thousands of particles does not
+ * create garbage. Dead particles are replaced by the last alive particle, so the alive particles are always stored in
+ * the first {@link #getNumParticles()} positions of the arrays.<br>
+ * Particles are emitted in world coordinates: once emitted, they do not follow the emitter when it moves.<br>
+ * ParticleEmitters are rendered with {@link ParticleBatchRenderer} (see {@code Graphics.drawParticles}).
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class ParticleEmitter {
+
+	/**
+	 * Number of precomputed colors between the start color and the end color of the particles.
+	 */
+	static final int COLOR_STEPS = 64;
+
+	private final ParticleEmitterDefinition definition;
+
+	// Properties of the particles. The age goes from 0 (emitted) to 1 (dead).
+	float[] positionX;
+	float[] positionY;
+	float[] velocityX;
+	float[] velocityY;
+	float[] age;
+	float[] ageIncrement;
+	float[] rotation;
+	float[] angularVelocity;
+	final float[] colors;
+	int numParticles;
+
+	private float x;
+	private float y;
+	private boolean emitting;
+	private float elapsedTime;
+	private float pendingEmissions;
+	private int seed;
+
+	/**
+	 * Creates a new ParticleEmitter. The emitter does not emit particles until {@link #start()} is called.
+	 * 
+	 * @param definition ParticleEmitterDefinition.
+	 */
+	public ParticleEmitter(ParticleEmitterDefinition definition) {
+		this.definition = definition;
+		this.colors = new float[COLOR_STEPS];
+		this.x = 0.0f;
+		this.y = 0.0f;
+		this.seed = (int) System.nanoTime() | 1;
+		reset();
+	}
+
+	/**
+	 * Kills all the particles and stops the emitter.<br>
+	 * The arrays are reallocated if the maximum number of particles of the definition has changed, and the colors of
+	 * the definition are read again.
+	 */
+	public void reset() {
+		int maxParticles = definition.getMaxParticles();
+		if (positionX == null || positionX.length != maxParticles) {
+			positionX = new float[maxParticles];
+			positionY = new float[maxParticles];
+			velocityX = new float[maxParticles];
+			velocityY = new float[maxParticles];
+			age = new float[maxParticles];
+			ageIncrement = new float[maxParticles];
+			rotation = new float[maxParticles];
+			angularVelocity = new float[maxParticles];
+		}
+		Color start = definition.getStartColor();
+		Color end = definition.getEndColor();
+		for (int i = 0; i < COLOR_STEPS; i++) {
+			float t = (float) i / (COLOR_STEPS - 1);
+			colors[i] = Color.packABGRFloat(
+					start.getR() + (end.getR() - start.getR()) * t,
+					start.getG() + (end.getG() - start.getG()) * t,
+					start.getB() + (end.getB() - start.getB()) * t,
+					start.getA() + (end.getA() - start.getA()) * t);
+		}
+		numParticles = 0;
+		emitting = false;
+		elapsedTime = 0.0f;
+		pendingEmissions = 0.0f;
+	}
+
+	/**
+	 * Starts emitting particles. The burst particles of the definition are emitted immediately.
+	 */
+	public void start() {
+		emitting = true;
+		elapsedTime = 0.0f;
+		pendingEmissions = 0.0f;
+		emit(definition.getBurst());
+	}
+
+	/**
+	 * Stops emitting particles. The particles that are alive keep being updated until they die.
+	 */
+	public void stop() {
+		emitting = false;
+	}
+
+	/**
+	 * Returns true if this emitter is emitting particles.
+	 * 
+	 * @return true if this emitter is emitting particles
+	 */
+	public boolean isEmitting() {
+		return emitting;
+	}
+
+	/**
+	 * Returns true if this emitter has stopped emitting particles and all its particles are dead.
+	 * 
+	 * @return true if the effect has finished
+	 */
+	public boolean isComplete() {
+		return !emitting && numParticles == 0;
+	}
+
+	/**
+	 * Updates the particles and emits new particles.
+	 * 
+	 * @param delta Elapsed time, in milliseconds, since the last update.
+	 */
+	public void update(float delta) {
+		float dt = delta / 1000.0f;
+		float gravityX = definition.getGravityX() * dt;
+		float gravityY = definition.getGravityY() * dt;
+		float[] px = positionX;
+		float[] py = positionY;
+		float[] vx = velocityX;
+		float[] vy = velocityY;
+		float[] a = age;
+		float[] ai = ageIncrement;
+		float[] r = rotation;
+		float[] av = angularVelocity;
+		int n = numParticles;
+		int i = 0;
+		while (i < n) {
+			float particleAge = a[i] + ai[i] * delta;
+			if (particleAge >= 1.0f) {
+				// Move the last particle to this position. It is updated in the next iteration.
+				n--;
+				px[i] = px[n];
+				py[i] = py[n];
+				vx[i] = vx[n];
+				vy[i] = vy[n];
+				a[i] = a[n];
+				ai[i] = ai[n];
+				r[i] = r[n];
+				av[i] = av[n];
+				continue;
+			}
+			a[i] = particleAge;
+			vx[i] += gravityX;
+			vy[i] += gravityY;
+			px[i] += vx[i] * dt;
+			py[i] += vy[i] * dt;
+			r[i] += av[i] * dt;
+			i++;
+		}
+		numParticles = n;
+
+		if (emitting) {
+			float duration = definition.getDuration();
+			float emissionTime = delta;
+			elapsedTime += delta;
+			if (duration > 0 && elapsedTime >= duration) {
+				emissionTime -= elapsedTime - duration;
+				emitting = false;
+			}
+			pendingEmissions += definition.getEmissionRate() * Math.max(emissionTime, 0.0f) / 1000.0f;
+			int count = (int) pendingEmissions;
+			pendingEmissions -= count;
+			emit(count);
+		}
+	}
+
+	/**
+	 * Emits the specified number of particles at the position of this emitter. If there is no room for all of them,
+	 * only the ones that fit are emitted.
+	 * 
+	 * @param count Number of particles.
+	 */
+	public void emit(int count) {
+		ParticleEmitterDefinition d = definition;
+		int end = Math.min(numParticles + count, positionX.length);
+		float lifeMin = d.getLifeMin();
+		float lifeRange = d.getLifeMax() - lifeMin;
+		float speedMin = d.getSpeedMin();
+		float speedRange = d.getSpeedMax() - speedMin;
+		float angleMin = d.getAngleMin();
+		float angleRange = d.getAngleMax() - angleMin;
+		float rotationMin = d.getRotationMin();
+		float rotationRange = d.getRotationMax() - rotationMin;
+		float angularVelocityMin = d.getAngularVelocityMin();
+		float angularVelocityRange = d.getAngularVelocityMax() - angularVelocityMin;
+		float spawnLeft = x - d.getSpawnWidth() / 2;
+		float spawnBottom = y - d.getSpawnHeight() / 2;
+		float spawnWidth = d.getSpawnWidth();
+		float spawnHeight = d.getSpawnHeight();
+		for (int i = numParticles; i < end; i++) {
+			float speed = speedMin + speedRange * random();
+			float angle = angleMin + angleRange * random();
+			positionX[i] = spawnLeft + spawnWidth * random();
+			positionY[i] = spawnBottom + spawnHeight * random();
+			velocityX[i] = FastMath.cosDeg(angle) * speed;
+			velocityY[i] = FastMath.sinDeg(angle) * speed;
+			age[i] = 0.0f;
+			ageIncrement[i] = 1.0f / (lifeMin + lifeRange * random());
+			rotation[i] = rotationMin + rotationRange * random();
+			angularVelocity[i] = angularVelocityMin + angularVelocityRange * random();
+		}
+		if (end > numParticles) {
+			numParticles = end;
+		}
+	}
+
+	/**
+	 * Returns a pseudorandom number between 0 (inclusive) and 1 (exclusive). A xorshift generator is used because it
+	 * is much cheaper than {@link java.util.Random}, which is synchronized.
+	 * 
+	 * @return Pseudorandom number
+	 */
+	private float random() {
+		int s = seed;
+		s ^= s << 13;
+		s ^= s >>> 17;
+		s ^= s << 5;
+		seed = s;
+		return (s >>> 8) * (1.0f / (1 << 24));
+	}
+
+	/**
+	 * Returns true if the particles of this emitter can be rotated.
+	 * 
+	 * @return true if the definition specifies a rotation or an angular velocity
+	 */
+	public boolean hasRotation() {
+		ParticleEmitterDefinition d = definition;
+		return d.getRotationMin() != 0 || d.getRotationMax() != 0 ||
+				d.getAngularVelocityMin() != 0 || d.getAngularVelocityMax() != 0;
+	}
+
+	/**
+	 * Returns the ParticleEmitterDefinition of this emitter.
+	 * 
+	 * @return ParticleEmitterDefinition
+	 */
+	public ParticleEmitterDefinition getDefinition() {
+		return definition;
+	}
+
+	/**
+	 * Returns the number of particles that are alive.
+	 * 
+	 * @return Number of particles
+	 */
+	public int getNumParticles() {
+		return numParticles;
+	}
+
+	/**
+	 * Returns the X coordinate of the position of this emitter.
+	 * 
+	 * @return X coordinate
+	 */
+	public float getX() {
+		return x;
+	}
+
+	/**
+	 * Returns the Y coordinate of the position of this emitter.
+	 * 
+	 * @return Y coordinate
+	 */
+	public float getY() {
+		return y;
+	}
+
+	/**
+	 * Sets the position where the new particles are emitted. The particles that are alive are not moved.
+	 * 
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 */
+	public void setPosition(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+}
@@ -0,0 +1,445 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.particles;
+
+import com.miviclin.droidengine2d.graphics.Color;
+
+/**
+ * Describes how a {@link ParticleEmitter} emits its particles and how the particles evolve during their life.<br>
+ * Random properties are defined by a range (min, max). Times are specified in milliseconds, speeds in units per
+ * second, accelerations in units per second squared and angles in degrees. The size and the color of the particles
+ * are interpolated linearly from their start value to their end value during the life of each particle.<br>
+ * Definitions are usually loaded from a data file (see {@link ParticleEmitterLibrary}) and shared by all the emitters
+ * of the same effect. The emitters read the definition every time they are updated, so changes are visible
+ * immediately, but the maximum number of particles and the colors are only read when an emitter is created or reset.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class ParticleEmitterDefinition {
+
+	private int maxParticles;
+	private float emissionRate;
+	private int burst;
+	private float duration;
+	private float lifeMin;
+	private float lifeMax;
+	private float spawnWidth;
+	private float spawnHeight;
+	private float speedMin;
+	private float speedMax;
+	private float angleMin;
+	private float angleMax;
+	private float gravityX;
+	private float gravityY;
+	private float startSize;
+	private float endSize;
+	private float rotationMin;
+	private float rotationMax;
+	private float angularVelocityMin;
+	private float angularVelocityMax;
+	private final Color startColor;
+	private final Color endColor;
+
+	/**
+	 * Creates a new ParticleEmitterDefinition.<br>
+	 * By default, 100 white particles of 8x8 units are emitted upwards per second for ever, and each one lives 1
+	 * second.
+	 */
+	public ParticleEmitterDefinition() {
+		this.maxParticles = 100;
+		this.emissionRate = 100.0f;
+		this.burst = 0;
+		this.duration = 0.0f;
+		this.lifeMin = 1000.0f;
+		this.lifeMax = 1000.0f;
+		this.spawnWidth = 0.0f;
+		this.spawnHeight = 0.0f;
+		this.speedMin = 100.0f;
+		this.speedMax = 100.0f;
+		this.angleMin = 90.0f;
+		this.angleMax = 90.0f;
+		this.gravityX = 0.0f;
+		this.gravityY = 0.0f;
+		this.startSize = 8.0f;
+		this.endSize = 8.0f;
+		this.rotationMin = 0.0f;
+		this.rotationMax = 0.0f;
+		this.angularVelocityMin = 0.0f;
+		this.angularVelocityMax = 0.0f;
+		this.startColor = new Color(1.0f, 1.0f, 1.0f, 1.0f);
+		this.endColor = new Color(1.0f, 1.0f, 1.0f, 1.0f);
+	}
+
+	/**
+	 * Returns the maximum number of particles that can be alive at the same time.
+	 * 
+	 * @return Maximum number of particles
+	 */
+	public int getMaxParticles() {
+		return maxParticles;
+	}
+
+	/**
+	 * Sets the maximum number of particles that can be alive at the same time. While an emitter is full, it does not
+	 * emit new particles.
+	 * 
+	 * @param maxParticles Maximum number of particles (at least 1).
+	 */
+	public void setMaxParticles(int maxParticles) {
+		if (maxParticles < 1) {
+			throw new IllegalArgumentException("The maximum number of particles must be at least 1");
+		}
+		this.maxParticles = maxParticles;
+	}
+
+	/**
+	 * Returns the number of particles emitted per second.
+	 * 
+	 * @return Particles per second
+	 */
+	public float getEmissionRate() {
+		return emissionRate;
+	}
+
+	/**
+	 * Sets the number of particles emitted per second.
+	 * 
+	 * @param emissionRate Particles per second.
+	 */
+	public void setEmissionRate(float emissionRate) {
+		if (emissionRate < 0) {
+			throw new IllegalArgumentException("The emission rate can not be negative");
+		}
+		this.emissionRate = emissionRate;
+	}
+
+	/**
+	 * Returns the number of particles emitted at once when an emitter starts.
+	 * 
+	 * @return Number of particles
+	 */
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * Sets the number of particles emitted at once when an emitter starts.
+	 * 
+	 * @param burst Number of particles.
+	 */
+	public void setBurst(int burst) {
+		if (burst < 0) {
+			throw new IllegalArgumentException("The burst can not be negative");
+		}
+		this.burst = burst;
+	}
+
+	/**
+	 * Returns the time during which particles are emitted.
+	 * 
+	 * @return Duration in milliseconds, or 0 if the particles are emitted until the emitter is stopped
+	 */
+	public float getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Sets the time during which particles are emitted.
+	 * 
+	 * @param duration Duration in milliseconds, or 0 to emit particles until the emitter is stopped.
+	 */
+	public void setDuration(float duration) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("The duration can not be negative");
+		}
+		this.duration = duration;
+	}
+
+	/**
+	 * Returns the minimum life of the particles.
+	 * 
+	 * @return Life in milliseconds
+	 */
+	public float getLifeMin() {
+		return lifeMin;
+	}
+
+	/**
+	 * Returns the maximum life of the particles.
+	 * 
+	 * @return Life in milliseconds
+	 */
+	public float getLifeMax() {
+		return lifeMax;
+	}
+
+	/**
+	 * Sets the range of the life of the particles.
+	 * 
+	 * @param lifeMin Minimum life in milliseconds.
+	 * @param lifeMax Maximum life in milliseconds.
+	 */
+	public void setLife(float lifeMin, float lifeMax) {
+		if (lifeMin <= 0 || lifeMax < lifeMin) {
+			throw new IllegalArgumentException("The life must be positive and lifeMin can not be greater than lifeMax");
+		}
+		this.lifeMin = lifeMin;
+		this.lifeMax = lifeMax;
+	}
+
+	/**
+	 * Returns the width of the rectangle, centered on the position of the emitter, where the particles are emitted.
+	 * 
+	 * @return Width
+	 */
+	public float getSpawnWidth() {
+		return spawnWidth;
+	}
+
+	/**
+	 * Returns the height of the rectangle, centered on the position of the emitter, where the particles are emitted.
+	 * 
+	 * @return Height
+	 */
+	public float getSpawnHeight() {
+		return spawnHeight;
+	}
+
+	/**
+	 * Sets the size of the rectangle, centered on the position of the emitter, where the particles are emitted.
+	 * 
+	 * @param spawnWidth Width, or 0 to emit all the particles at the same X coordinate.
+	 * @param spawnHeight Height, or 0 to emit all the particles at the same Y coordinate.
+	 */
+	public void setSpawnArea(float spawnWidth, float spawnHeight) {
+		if (spawnWidth < 0 || spawnHeight < 0) {
+			throw new IllegalArgumentException("The size of the spawn area can not be negative");
+		}
+		this.spawnWidth = spawnWidth;
+		this.spawnHeight = spawnHeight;
+	}
+
+	/**
+	 * Returns the minimum initial speed of the particles.
+	 * 
+	 * @return Speed in units per second
+	 */
+	public float getSpeedMin() {
+		return speedMin;
+	}
+
+	/**
+	 * Returns the maximum initial speed of the particles.
+	 * 
+	 * @return Speed in units per second
+	 */
+	public float getSpeedMax() {
+		return speedMax;
+	}
+
+	/**
+	 * Sets the range of the initial speed of the particles.
+	 * 
+	 * @param speedMin Minimum speed in units per second.
+	 * @param speedMax Maximum speed in units per second.
+	 */
+	public void setSpeed(float speedMin, float speedMax) {
+		if (speedMax < speedMin) {
+			throw new IllegalArgumentException("speedMin can not be greater than speedMax");
+		}
+		this.speedMin = speedMin;
+		this.speedMax = speedMax;
+	}
+
+	/**
+	 * Returns the minimum angle of the initial velocity of the particles.
+	 * 
+	 * @return Angle in degrees, counterclockwise from the X axis
+	 */
+	public float getAngleMin() {
+		return angleMin;
+	}
+
+	/**
+	 * Returns the maximum angle of the initial velocity of the particles.
+	 * 
+	 * @return Angle in degrees, counterclockwise from the X axis
+	 */
+	public float getAngleMax() {
+		return angleMax;
+	}
+
+	/**
+	 * Sets the range of the angle of the initial velocity of the particles.
+	 * 
+	 * @param angleMin Minimum angle in degrees, counterclockwise from the X axis.
+	 * @param angleMax Maximum angle in degrees, counterclockwise from the X axis.
+	 */
+	public void setAngle(float angleMin, float angleMax) {
+		if (angleMax < angleMin) {
+			throw new IllegalArgumentException("angleMin can not be greater than angleMax");
+		}
+		this.angleMin = angleMin;
+		this.angleMax = angleMax;
+	}
+
+	/**
+	 * Returns the X component of the acceleration applied to all the particles.
+	 * 
+	 * @return Acceleration in units per second squared
+	 */
+	public float getGravityX() {
+		return gravityX;
+	}
+
+	/**
+	 * Returns the Y component of the acceleration applied to all the particles.
+	 * 
+	 * @return Acceleration in units per second squared
+	 */
+	public float getGravityY() {
+		return gravityY;
+	}
+
+	/**
+	 * Sets the acceleration applied to all the particles.
+	 * 
+	 * @param gravityX X component in units per second squared.
+	 * @param gravityY Y component in units per second squared.
+	 */
+	public void setGravity(float gravityX, float gravityY) {
+		this.gravityX = gravityX;
+		this.gravityY = gravityY;
+	}
+
+	/**
+	 * Returns the size of the particles when they are emitted.
+	 * 
+	 * @return Size
+	 */
+	public float getStartSize() {
+		return startSize;
+	}
+
+	/**
+	 * Returns the size of the particles when they die.
+	 * 
+	 * @return Size
+	 */
+	public float getEndSize() {
+		return endSize;
+	}
+
+	/**
+	 * Sets the size of the particles. Particles are squares whose size is interpolated from the start size to the end
+	 * size during their life.
+	 * 
+	 * @param startSize Size of the particles when they are emitted.
+	 * @param endSize Size of the particles when they die.
+	 */
+	public void setSize(float startSize, float endSize) {
+		if (startSize < 0 || endSize < 0) {
+			throw new IllegalArgumentException("The size of the particles can not be negative");
+		}
+		this.startSize = startSize;
+		this.endSize = endSize;
+	}
+
+	/**
+	 * Returns the minimum initial rotation of the particles.
+	 * 
+	 * @return Rotation in degrees
+	 */
+	public float getRotationMin() {
+		return rotationMin;
+	}
+
+	/**
+	 * Returns the maximum initial rotation of the particles.
+	 * 
+	 * @return Rotation in degrees
+	 */
+	public float getRotationMax() {
+		return rotationMax;
+	}
+
+	/**
+	 * Sets the range of the initial rotation of the particles.
+	 * 
+	 * @param rotationMin Minimum rotation in degrees.
+	 * @param rotationMax Maximum rotation in degrees.
+	 */
+	public void setRotation(float rotationMin, float rotationMax) {
+		if (rotationMax < rotationMin) {
+			throw new IllegalArgumentException("rotationMin can not be greater than rotationMax");
+		}
+		this.rotationMin = rotationMin;
+		this.rotationMax = rotationMax;
+	}
+
+	/**
+	 * Returns the minimum angular velocity of the particles.
+	 * 
+	 * @return Angular velocity in degrees per second
+	 */
+	public float getAngularVelocityMin() {
+		return angularVelocityMin;
+	}
+
+	/**
+	 * Returns the maximum angular velocity of the particles.
+	 * 
+	 * @return Angular velocity in degrees per second
+	 */
+	public float getAngularVelocityMax() {
+		return angularVelocityMax;
+	}
+
+	/**
+	 * Sets the range of the angular velocity of the particles.
+	 * 
+	 * @param angularVelocityMin Minimum angular velocity in degrees per second.
+	 * @param angularVelocityMax Maximum angular velocity in degrees per second.
+	 */
+	public void setAngularVelocity(float angularVelocityMin, float angularVelocityMax) {
+		if (angularVelocityMax < angularVelocityMin) {
+			throw new IllegalArgumentException("angularVelocityMin can not be greater than angularVelocityMax");
+		}
+		this.angularVelocityMin = angularVelocityMin;
+		this.angularVelocityMax = angularVelocityMax;
+	}
+
+	/**
+	 * Returns the color of the particles when they are emitted.<br>
+	 * The returned Color can be modified. The emitters read it when they are created or reset.
+	 * 
+	 * @return Color
+	 */
+	public Color getStartColor() {
+		return startColor;
+	}
+
+	/**
+	 * Returns the color of the particles when they die.<br>
+	 * The returned Color can be modified. The emitters read it when they are created or reset.
+	 * 
+	 * @return Color
+	 */
+	public Color getEndColor() {
+		return endColor;
+	}
+
+}
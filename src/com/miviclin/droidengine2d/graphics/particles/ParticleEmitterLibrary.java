@@ -0,0 +1,181 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.particles;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import android.content.Context;
+
+import com.miviclin.droidengine2d.graphics.Color;
+import com.miviclin.droidengine2d.resources.AssetsLoader;
+
+/**
+ * Set of named {@link ParticleEmitterDefinition}s loaded from an XML file.<br>
+ * Each emitter element defines one ParticleEmitterDefinition. The attributes that are not specified keep their default
+ * values. Ranges are specified with two attributes (min and max), and colors with 4 components (r g b a) between 0
+ * and 1. Example:
+ * 
+ * <pre>
+ * &lt;ParticleEmitters&gt;
+ *     &lt;emitter name="smoke" maxParticles="2000" emissionRate="400" burst="0" duration="0"
+ *             lifeMin="800" lifeMax="1500" spawnWidth="16" spawnHeight="0"
+ *             speedMin="20" speedMax="60" angleMin="70" angleMax="110" gravityX="0" gravityY="15"
+ *             startSize="8" endSize="32" rotationMin="0" rotationMax="360"
+ *             angularVelocityMin="-90" angularVelocityMax="90"
+ *             startColor="0.5 0.5 0.5 1" endColor="0.2 0.2 0.2 0" /&gt;
+ * &lt;/ParticleEmitters&gt;
+ * </pre>
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class ParticleEmitterLibrary {
+
+	private HashMap<String, ParticleEmitterDefinition> definitions;
+
+	/**
+	 * Constructor.
+	 */
+	public ParticleEmitterLibrary() {
+		this.definitions = new HashMap<String, ParticleEmitterDefinition>();
+	}
+
+	/**
+	 * Loads the ParticleEmitterDefinitions of the specified XML file. Definitions with the same name as a definition
+	 * that was already loaded replace it.
+	 * 
+	 * @param path Path of the file in the assets folder.
+	 * @param context Context.
+	 */
+	public void loadFromFile(String path, Context context) {
+		XmlPullParserFactory factory;
+		XmlPullParser xpp;
+		int eventType;
+
+		try {
+			factory = XmlPullParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			xpp = factory.newPullParser();
+			xpp.setInput(AssetsLoader.getAsset(context, path), null);
+			eventType = xpp.getEventType();
+
+			while (eventType != XmlPullParser.END_DOCUMENT) {
+				if (eventType == XmlPullParser.START_TAG && xpp.getName().equals("emitter")) {
+					String name = xpp.getAttributeValue(null, "name");
+					if (name == null) {
+						throw new IllegalArgumentException("The emitters of " + path + " must define a name");
+					}
+					definitions.put(name, parseDefinition(xpp));
+				}
+				eventType = xpp.next();
+			}
+		} catch (XmlPullParserException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Creates a ParticleEmitterDefinition from the attributes of the current emitter element.
+	 * 
+	 * @param xpp XmlPullParser positioned on an emitter element.
+	 * @return ParticleEmitterDefinition
+	 */
+	private static ParticleEmitterDefinition parseDefinition(XmlPullParser xpp) {
+		ParticleEmitterDefinition d = new ParticleEmitterDefinition();
+		d.setMaxParticles((int) parseFloat(xpp, "maxParticles", d.getMaxParticles()));
+		d.setEmissionRate(parseFloat(xpp, "emissionRate", d.getEmissionRate()));
+		d.setBurst((int) parseFloat(xpp, "burst", d.getBurst()));
+		d.setDuration(parseFloat(xpp, "duration", d.getDuration()));
+		d.setLife(parseFloat(xpp, "lifeMin", d.getLifeMin()), parseFloat(xpp, "lifeMax", d.getLifeMax()));
+		d.setSpawnArea(parseFloat(xpp, "spawnWidth", d.getSpawnWidth()),
+				parseFloat(xpp, "spawnHeight", d.getSpawnHeight()));
+		d.setSpeed(parseFloat(xpp, "speedMin", d.getSpeedMin()), parseFloat(xpp, "speedMax", d.getSpeedMax()));
+		d.setAngle(parseFloat(xpp, "angleMin", d.getAngleMin()), parseFloat(xpp, "angleMax", d.getAngleMax()));
+		d.setGravity(parseFloat(xpp, "gravityX", d.getGravityX()), parseFloat(xpp, "gravityY", d.getGravityY()));
+		d.setSize(parseFloat(xpp, "startSize", d.getStartSize()), parseFloat(xpp, "endSize", d.getEndSize()));
+		d.setRotation(parseFloat(xpp, "rotationMin", d.getRotationMin()),
+				parseFloat(xpp, "rotationMax", d.getRotationMax()));
+		d.setAngularVelocity(parseFloat(xpp, "angularVelocityMin", d.getAngularVelocityMin()),
+				parseFloat(xpp, "angularVelocityMax", d.getAngularVelocityMax()));
+		parseColor(xpp, "startColor", d.getStartColor());
+		parseColor(xpp, "endColor", d.getEndColor());
+		return d;
+	}
+
+	/**
+	 * Returns the value of the specified attribute as a float.
+	 * 
+	 * @param xpp XmlPullParser.
+	 * @param attribute Name of the attribute.
+	 * @param defaultValue Value returned if the attribute is not defined.
+	 * @return Value of the attribute
+	 */
+	private static float parseFloat(XmlPullParser xpp, String attribute, float defaultValue) {
+		String value = xpp.getAttributeValue(null, attribute);
+		return (value != null) ? Float.parseFloat(value) : defaultValue;
+	}
+
+	/**
+	 * Sets the specified color to the value of the specified attribute, if it is defined.
+	 * 
+	 * @param xpp XmlPullParser.
+	 * @param attribute Name of the attribute.
+	 * @param color Color.
+	 */
+	private static void parseColor(XmlPullParser xpp, String attribute, Color color) {
+		String value = xpp.getAttributeValue(null, attribute);
+		if (value == null) {
+			return;
+		}
+		String[] tokens = value.trim().split("\\s+");
+		if (tokens.length != 4) {
+			throw new IllegalArgumentException("The attribute " + attribute + " must have 4 components (r g b a)");
+		}
+		color.setRGBA(Float.parseFloat(tokens[0]), Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2]),
+				Float.parseFloat(tokens[3]));
+	}
+
+	/**
+	 * Returns the ParticleEmitterDefinition with the specified name.
+	 * 
+	 * @param name Name of the definition.
+	 * @return ParticleEmitterDefinition, or null if there is no definition with the specified name
+	 */
+	public ParticleEmitterDefinition getDefinition(String name) {
+		return definitions.get(name);
+	}
+
+	/**
+	 * Creates a new ParticleEmitter that uses the ParticleEmitterDefinition with the specified name.
+	 * 
+	 * @param name Name of the definition.
+	 * @return ParticleEmitter
+	 */
+	public ParticleEmitter createEmitter(String name) {
+		ParticleEmitterDefinition definition = definitions.get(name);
+		if (definition == null) {
+			throw new IllegalArgumentException("There is no particle emitter named " + name);
+		}
+		return new ParticleEmitter(definition);
+	}
+
+}
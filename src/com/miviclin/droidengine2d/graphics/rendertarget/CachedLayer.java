@@ -0,0 +1,132 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.rendertarget;
+
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.graphics.Graphics;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.cameras.OrthographicCamera;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.util.Transform;
+
+/**
+ * CachedLayer is a group of elements that change rarely (a HUD, a parallax background...), which are rendered to a
+ * {@link RenderTarget} only when the layer is marked as dirty. Every frame, the contents of the RenderTarget are
+ * rendered as one textured rectangle (see {@link Graphics#drawCachedLayer(CachedLayer, Transform)}).<br>
+ * Subclasses implement {@link #drawContents(Graphics)}. The contents are rendered with a camera whose viewport covers
+ * the RenderTarget: (0, 0) is its bottom-left corner and (width, height) is its top-right corner.<br>
+ * If the GL context is lost, the contents are rendered again the next time the layer is drawn, even if it was not
+ * marked as dirty.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public abstract class CachedLayer {
+
+	private final RenderTarget renderTarget;
+	private final OrthographicCamera camera;
+	private final TextureMaterial material;
+	private boolean dirty;
+
+	/**
+	 * Creates a new CachedLayer. The layer is dirty until its contents are rendered for the first time.
+	 * 
+	 * @param width Width of the layer in pixels.
+	 * @param height Height of the layer in pixels.
+	 */
+	public CachedLayer(int width, int height) {
+		this.renderTarget = new RenderTarget(width, height);
+		this.camera = new OrthographicCamera();
+		this.camera.setViewportDimensions(width, height);
+		this.camera.update();
+		this.material = new TextureMaterial(renderTarget.getTextureRegion());
+		this.material.getBlendingOptions().setSourceFactor(GLES20.GL_ONE);
+		this.material.getBlendingOptions().setDestinationFactor(GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		this.dirty = true;
+	}
+
+	/**
+	 * Renders the contents of this layer.<br>
+	 * This method is called from {@link Graphics#updateCachedLayer(CachedLayer)} while the rendering of Graphics is
+	 * redirected to the RenderTarget of this layer, which has been cleared with a transparent color.
+	 * 
+	 * @param graphics Graphics.
+	 */
+	public abstract void drawContents(Graphics graphics);
+
+	/**
+	 * Marks this layer as dirty, so its contents are rendered again the next time it is drawn.
+	 */
+	public void markDirty() {
+		dirty = true;
+	}
+
+	/**
+	 * Returns true if the contents of this layer have to be rendered again, because the layer has been marked as dirty
+	 * or because the GL context has been lost.
+	 * 
+	 * @return true if the contents are not up to date, false otherwise
+	 */
+	public boolean needsUpdate() {
+		return dirty || renderTarget.isContentLost();
+	}
+
+	/**
+	 * Registers that the contents of this layer have been rendered.<br>
+	 * This method is called from {@link Graphics#updateCachedLayer(CachedLayer)}.
+	 */
+	public void onContentsUpdated() {
+		dirty = false;
+	}
+
+	/**
+	 * Removes the RenderTarget of this layer from the OpenGL context. The layer is marked as dirty, so it is created
+	 * and rendered again if it is drawn after calling this method.
+	 */
+	public void delete() {
+		renderTarget.delete();
+		dirty = true;
+	}
+
+	/**
+	 * Returns the RenderTarget where the contents of this layer are rendered.
+	 * 
+	 * @return RenderTarget
+	 */
+	public RenderTarget getRenderTarget() {
+		return renderTarget;
+	}
+
+	/**
+	 * Returns the camera used to render the contents of this layer.
+	 * 
+	 * @return Camera
+	 */
+	public Camera getCamera() {
+		return camera;
+	}
+
+	/**
+	 * Returns the material used to render the contents of this layer as a textured rectangle. Its blending options use
+	 * premultiplied alpha.
+	 * 
+	 * @return TextureMaterial
+	 */
+	public TextureMaterial getMaterial() {
+		return material;
+	}
+
+}
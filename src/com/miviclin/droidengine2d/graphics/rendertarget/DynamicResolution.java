@@ -0,0 +1,380 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.rendertarget;
+
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.graphics.Graphics;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.cameras.OrthographicCamera;
+import com.miviclin.droidengine2d.graphics.material.TextureMaterial;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+import com.miviclin.droidengine2d.util.Transform;
+import com.miviclin.droidengine2d.util.math.Vector2;
+
+/**
+ * DynamicResolution renders the game to an offscreen {@link RenderTarget} whose resolution is a fraction of the
+ * resolution of the surface, and upscales it to the surface at the end of the frame.<br>
+ * The fraction (scale) changes between the configured bounds depending on the measured frame times: it is decreased
+ * when the frames take longer than the target frame time and it is increased again when there is time left. Changes
+ * need several consecutive frames above or below the thresholds, and an increase that has to be reverted right away
+ * makes the next increase wait longer, so the scale does not oscillate.<br>
+ * The viewport of the camera is not modified, so the coordinates used by the game are the same at any scale.<br>
+ * The RenderTarget is created with the maximum scale and only its viewport changes, so changing the scale does not
+ * create new GL objects. The RenderTarget has a depth buffer, so the opaque pass of Graphics can be used with it. This
+ * class must only be used from the GL thread.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class DynamicResolution {
+
+	/**
+	 * Default target frame time, in milliseconds (60 frames per second).
+	 */
+	public static final float DEFAULT_TARGET_FRAME_TIME_MS = 1000.0f / 60.0f;
+
+	/**
+	 * Frame times longer than this value (in milliseconds) are ignored. They are usually caused by the game being
+	 * paused or by the surface being recreated, not by the rendering.
+	 */
+	public static final float MAX_FRAME_TIME_MS = 250.0f;
+
+	private static final float FRAME_TIME_SMOOTHING = 0.1f;
+	private static final int MAX_FRAMES_TO_INCREASE_MULTIPLIER = 8;
+
+	private final float minScale;
+	private final float maxScale;
+	private final OrthographicCamera surfaceCamera;
+	private final Transform surfaceTransform;
+	private float scale;
+	private float scaleStep;
+	private float targetFrameTimeMs;
+	private float decreaseThreshold;
+	private float increaseThreshold;
+	private int framesToDecrease;
+	private int framesToIncrease;
+	private int currentFramesToIncrease;
+	private float averageFrameTimeMs;
+	private int numSlowFrames;
+	private int numFastFrames;
+	private int numFramesSinceIncrease;
+	private int surfaceWidth;
+	private int surfaceHeight;
+	private RenderTarget renderTarget;
+	private TextureMaterial material;
+
+	/**
+	 * Creates a new DynamicResolution.<br>
+	 * The initial scale is maxScale. The target frame time is {@link #DEFAULT_TARGET_FRAME_TIME_MS}.
+	 * 
+	 * @param minScale Minimum scale of the resolution. It must be greater than 0.
+	 * @param maxScale Maximum scale of the resolution. It must be greater than or equal to minScale, and less than or
+	 *            equal to 1.
+	 */
+	public DynamicResolution(float minScale, float maxScale) {
+		if (minScale <= 0 || maxScale < minScale || maxScale > 1.0f) {
+			throw new IllegalArgumentException("The scale bounds must satisfy 0 < minScale <= maxScale <= 1");
+		}
+		this.minScale = minScale;
+		this.maxScale = maxScale;
+		this.surfaceCamera = new OrthographicCamera();
+		this.surfaceTransform = new Transform(new Vector2(0.0f, 0.0f), new Vector2(1.0f, 1.0f),
+				new Vector2(0.0f, 0.0f), 0.0f);
+		this.scale = maxScale;
+		this.scaleStep = 0.1f;
+		this.targetFrameTimeMs = DEFAULT_TARGET_FRAME_TIME_MS;
+		this.decreaseThreshold = 1.1f;
+		this.increaseThreshold = 1.02f;
+		this.framesToDecrease = 15;
+		this.framesToIncrease = 120;
+		this.currentFramesToIncrease = framesToIncrease;
+		this.numFramesSinceIncrease = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Sets the dimensions of the surface. The RenderTarget is created again with the dimensions of the surface
+	 * multiplied by the maximum scale.<br>
+	 * This method must be called every time the dimensions of the surface change.
+	 * 
+	 * @param width Width of the surface in pixels.
+	 * @param height Height of the surface in pixels.
+	 */
+	public void setSurfaceDimensions(int width, int height) {
+		if (width == surfaceWidth && height == surfaceHeight && renderTarget != null) {
+			return;
+		}
+		delete();
+		this.surfaceWidth = width;
+		this.surfaceHeight = height;
+		int renderTargetWidth = Math.max(1, (int) Math.ceil(width * maxScale));
+		int renderTargetHeight = Math.max(1, (int) Math.ceil(height * maxScale));
+		renderTarget = new RenderTarget(renderTargetWidth, renderTargetHeight, true);
+		surfaceCamera.setViewportDimensions(width, height);
+		surfaceCamera.update();
+		surfaceTransform.getScale().set(width, height);
+		updateViewport();
+	}
+
+	/**
+	 * Registers the duration of a frame and updates the scale if needed.<br>
+	 * The frame times are smoothed with an exponential moving average. The scale is decreased by one step when the
+	 * average is above the target frame time multiplied by the decrease threshold during the configured number of
+	 * consecutive frames, and it is increased by one step when the average is below the target frame time multiplied
+	 * by the increase threshold during the configured number of consecutive frames.<br>
+	 * If the scale has to be decreased shortly after being increased, the number of frames needed to increase it again
+	 * is doubled (up to 8 times the configured value), and it is restored when the scale is decreased for any other
+	 * reason.
+	 * 
+	 * @param frameTimeNanos Time elapsed since the previous frame, in nanoseconds.
+	 */
+	public void onFrameTime(long frameTimeNanos) {
+		float frameTimeMs = frameTimeNanos / 1000000.0f;
+		if (frameTimeMs <= 0 || frameTimeMs > MAX_FRAME_TIME_MS) {
+			return;
+		}
+		if (averageFrameTimeMs == 0) {
+			averageFrameTimeMs = frameTimeMs;
+		} else {
+			averageFrameTimeMs += (frameTimeMs - averageFrameTimeMs) * FRAME_TIME_SMOOTHING;
+		}
+		if (numFramesSinceIncrease < Integer.MAX_VALUE) {
+			numFramesSinceIncrease++;
+		}
+
+		if (averageFrameTimeMs > targetFrameTimeMs * decreaseThreshold) {
+			numSlowFrames++;
+			numFastFrames = 0;
+		} else if (averageFrameTimeMs <= targetFrameTimeMs * increaseThreshold) {
+			numFastFrames++;
+			numSlowFrames = 0;
+		} else {
+			numSlowFrames = 0;
+			numFastFrames = 0;
+		}
+
+		if (numSlowFrames >= framesToDecrease && scale > minScale) {
+			if (numFramesSinceIncrease <= framesToIncrease) {
+				currentFramesToIncrease = Math.min(currentFramesToIncrease * 2,
+						framesToIncrease * MAX_FRAMES_TO_INCREASE_MULTIPLIER);
+			} else {
+				currentFramesToIncrease = framesToIncrease;
+			}
+			changeScale(scale - scaleStep);
+		} else if (numFastFrames >= currentFramesToIncrease && scale < maxScale) {
+			changeScale(scale + scaleStep);
+			numFramesSinceIncrease = 0;
+		}
+	}
+
+	/**
+	 * Sets the scale to the specified value, clamped to the scale bounds, and restarts the measurement of the frame
+	 * times, because the previous frames were rendered with a different resolution.
+	 * 
+	 * @param newScale New scale.
+	 */
+	private void changeScale(float newScale) {
+		scale = Math.max(minScale, Math.min(maxScale, newScale));
+		averageFrameTimeMs = 0;
+		numSlowFrames = 0;
+		numFastFrames = 0;
+		updateViewport();
+	}
+
+	/**
+	 * Sets the viewport of the RenderTarget to the dimensions of the surface multiplied by the current scale, and
+	 * updates the TextureRegion that is upscaled to the surface.
+	 */
+	private void updateViewport() {
+		if (renderTarget == null) {
+			return;
+		}
+		int width = Math.max(1, Math.min(renderTarget.getWidth(), Math.round(surfaceWidth * scale)));
+		int height = Math.max(1, Math.min(renderTarget.getHeight(), Math.round(surfaceHeight * scale)));
+		if (material != null && width == renderTarget.getViewportWidth() &&
+				height == renderTarget.getViewportHeight()) {
+			return;
+		}
+		renderTarget.setViewportDimensions(width, height);
+		TextureRegion textureRegion = new TextureRegion(renderTarget.getTexture(), 0, 0, width, height);
+		textureRegion.flipVertically();
+		if (material == null) {
+			material = new TextureMaterial(textureRegion);
+			material.getBlendingOptions().setSourceFactor(GLES20.GL_ONE);
+			material.getBlendingOptions().setDestinationFactor(GLES20.GL_ZERO);
+		} else {
+			material.setTextureRegion(textureRegion);
+		}
+	}
+
+	/**
+	 * Redirects the rendering of the specified Graphics to the RenderTarget, and clears its color buffer with the
+	 * current clear color and its depth buffer.<br>
+	 * This method must be called at the beginning of the frame, before rendering anything.
+	 * 
+	 * @param graphics Graphics.
+	 */
+	public void beginFrame(Graphics graphics) {
+		if (renderTarget == null) {
+			throw new RuntimeException("setSurfaceDimensions must be called before rendering a frame");
+		}
+		graphics.setRenderTarget(renderTarget);
+		GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+	}
+
+	/**
+	 * Renders the pending elements to the RenderTarget, selects the surface again and upscales the contents of the
+	 * RenderTarget to cover the whole surface. The camera of the specified Graphics is restored when it finishes.<br>
+	 * This method must be called at the end of the frame, after rendering everything.
+	 * 
+	 * @param graphics Graphics.
+	 */
+	public void endFrame(Graphics graphics) {
+		graphics.setRenderTarget(null);
+		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+		Camera sceneCamera = graphics.getCamera();
+		graphics.setCamera(surfaceCamera);
+		graphics.drawRect(material, surfaceTransform);
+		graphics.flush();
+		graphics.setCamera(sceneCamera);
+	}
+
+	/**
+	 * Removes the RenderTarget from the OpenGL context.<br>
+	 * This method should be called when dynamic resolution is not needed anymore, to release resources.
+	 */
+	public void delete() {
+		if (renderTarget != null) {
+			renderTarget.delete();
+			renderTarget = null;
+			material = null;
+		}
+	}
+
+	/**
+	 * Returns the current scale of the resolution.
+	 * 
+	 * @return Scale, between the minimum scale and the maximum scale
+	 */
+	public float getScale() {
+		return scale;
+	}
+
+	/**
+	 * Returns the minimum scale of the resolution.
+	 * 
+	 * @return Minimum scale
+	 */
+	public float getMinScale() {
+		return minScale;
+	}
+
+	/**
+	 * Returns the maximum scale of the resolution.
+	 * 
+	 * @return Maximum scale
+	 */
+	public float getMaxScale() {
+		return maxScale;
+	}
+
+	/**
+	 * Returns the value added to or subtracted from the scale every time it changes.
+	 * 
+	 * @return Scale step
+	 */
+	public float getScaleStep() {
+		return scaleStep;
+	}
+
+	/**
+	 * Sets the value added to or subtracted from the scale every time it changes. The default value is 0.1.
+	 * 
+	 * @param scaleStep Scale step. It must be greater than 0.
+	 */
+	public void setScaleStep(float scaleStep) {
+		if (scaleStep <= 0) {
+			throw new IllegalArgumentException("scaleStep must be greater than 0");
+		}
+		this.scaleStep = scaleStep;
+	}
+
+	/**
+	 * Returns the target frame time.
+	 * 
+	 * @return Target frame time in milliseconds
+	 */
+	public float getTargetFrameTime() {
+		return targetFrameTimeMs;
+	}
+
+	/**
+	 * Sets the target frame time. The default value is {@link #DEFAULT_TARGET_FRAME_TIME_MS}.
+	 * 
+	 * @param targetFrameTimeMs Target frame time in milliseconds. It must be greater than 0.
+	 */
+	public void setTargetFrameTime(float targetFrameTimeMs) {
+		if (targetFrameTimeMs <= 0) {
+			throw new IllegalArgumentException("targetFrameTimeMs must be greater than 0");
+		}
+		this.targetFrameTimeMs = targetFrameTimeMs;
+	}
+
+	/**
+	 * Sets the thresholds used to change the scale. They are multiplied by the target frame time. The gap between them
+	 * prevents the scale from changing while the frame time is close to the target frame time.<br>
+	 * The default values are 1.1 for the decrease threshold and 1.02 for the increase threshold. The increase threshold
+	 * must be slightly greater than 1 when vertical synchronization is enabled, because the frame times can not be
+	 * shorter than the refresh period of the display.
+	 * 
+	 * @param decreaseThreshold The scale is decreased if the frame time is above the target multiplied by this value.
+	 * @param increaseThreshold The scale is increased if the frame time is below the target multiplied by this value.
+	 *            It must be less than decreaseThreshold.
+	 */
+	public void setThresholds(float decreaseThreshold, float increaseThreshold) {
+		if (increaseThreshold <= 0 || decreaseThreshold <= increaseThreshold) {
+			throw new IllegalArgumentException("The thresholds must satisfy 0 < increaseThreshold < decreaseThreshold");
+		}
+		this.decreaseThreshold = decreaseThreshold;
+		this.increaseThreshold = increaseThreshold;
+	}
+
+	/**
+	 * Sets the number of consecutive frames above or below the thresholds needed to change the scale.<br>
+	 * The default values are 15 frames to decrease the scale and 120 frames to increase it, so the scale reacts
+	 * quickly to slow frames and it is increased carefully.
+	 * 
+	 * @param framesToDecrease Consecutive slow frames needed to decrease the scale. It must be greater than 0.
+	 * @param framesToIncrease Consecutive fast frames needed to increase the scale. It must be greater than 0.
+	 */
+	public void setNumFramesToChangeScale(int framesToDecrease, int framesToIncrease) {
+		if (framesToDecrease <= 0 || framesToIncrease <= 0) {
+			throw new IllegalArgumentException("The number of frames must be greater than 0");
+		}
+		this.framesToDecrease = framesToDecrease;
+		this.framesToIncrease = framesToIncrease;
+		this.currentFramesToIncrease = framesToIncrease;
+	}
+
+	/**
+	 * Returns the RenderTarget where the game is rendered.
+	 * 
+	 * @return RenderTarget, or null if the dimensions of the surface have not been set
+	 */
+	public RenderTarget getRenderTarget() {
+		return renderTarget;
+	}
+
+}
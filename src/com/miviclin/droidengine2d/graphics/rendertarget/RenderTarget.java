@@ -0,0 +1,295 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.rendertarget;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import com.miviclin.droidengine2d.graphics.GLDebugger;
+import com.miviclin.droidengine2d.graphics.GLStateCache;
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+
+/**
+ * RenderTarget is a framebuffer object whose color buffer is a texture, so the elements rendered to it can be rendered
+ * later as a textured rectangle.<br>
+ * {@link com.miviclin.droidengine2d.graphics.Graphics#setRenderTarget(RenderTarget)} redirects the rendering of
+ * Graphics to a RenderTarget. The contents of the texture are stored with premultiplied alpha, so they must be
+ * rendered with the blending factors GL_ONE and GL_ONE_MINUS_SRC_ALPHA.<br>
+ * The framebuffer object and its texture are created the first time they are needed, and they are created again if
+ * the GL context is lost. The contents of the texture are lost too, so {@link #isContentLost()} should be checked
+ * before reusing them. This class must only be used from the GL thread.<br>
+ * A RenderTarget can optionally have a depth buffer, which is needed to render the opaque pass of Graphics to it.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class RenderTarget {
+
+	private final RenderTargetTexture texture;
+	private final TextureRegion textureRegion;
+	private final boolean depthBuffer;
+	private int framebufferId;
+	private int depthRenderbufferId;
+	private int contextGeneration;
+	private int viewportWidth;
+	private int viewportHeight;
+
+	/**
+	 * Creates a new RenderTarget without depth buffer.
+	 * 
+	 * @param width Width of the texture in pixels.
+	 * @param height Height of the texture in pixels.
+	 */
+	public RenderTarget(int width, int height) {
+		this(width, height, false);
+	}
+
+	/**
+	 * Creates a new RenderTarget.
+	 * 
+	 * @param width Width of the texture in pixels.
+	 * @param height Height of the texture in pixels.
+	 * @param depthBuffer true to attach a 16-bit depth buffer to the framebuffer object, false otherwise.
+	 */
+	public RenderTarget(int width, int height, boolean depthBuffer) {
+		this.texture = new RenderTargetTexture(this, width, height);
+		this.textureRegion = new TextureRegion(texture, 0, 0, width, height);
+		this.textureRegion.flipVertically();
+		this.depthBuffer = depthBuffer;
+		this.framebufferId = 0;
+		this.depthRenderbufferId = 0;
+		this.contextGeneration = -1;
+		this.viewportWidth = width;
+		this.viewportHeight = height;
+	}
+
+	/**
+	 * Returns true if the framebuffer object of this RenderTarget has not been created in the current GL context, so
+	 * the contents of its texture are not available.
+	 * 
+	 * @return true if the contents are lost, false otherwise
+	 */
+	public boolean isContentLost() {
+		return contextGeneration != GLStateCache.getInstance().getContextGeneration();
+	}
+
+	/**
+	 * Binds the framebuffer object of this RenderTarget and sets the viewport (see
+	 * {@link #setViewportDimensions(int, int)}). The framebuffer object is created if it does not exist in the current
+	 * GL context.
+	 */
+	public void bind() {
+		if (isContentLost()) {
+			create();
+		}
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		glStateCache.bindFramebuffer(framebufferId);
+		glStateCache.viewport(0, 0, viewportWidth, viewportHeight);
+	}
+
+	/**
+	 * Creates the texture and the framebuffer object of this RenderTarget. The framebuffer that was bound before
+	 * calling this method is bound again when it finishes.
+	 */
+	private void create() {
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		int previousFramebuffer = glStateCache.getBoundFramebuffer();
+
+		texture.allocate();
+
+		int[] handles = new int[1];
+		GLES20.glGenFramebuffers(1, handles, 0);
+		framebufferId = handles[0];
+		glStateCache.bindFramebuffer(framebufferId);
+		GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D,
+				texture.getTextureId(), 0);
+		if (depthBuffer) {
+			GLES20.glGenRenderbuffers(1, handles, 0);
+			depthRenderbufferId = handles[0];
+			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, depthRenderbufferId);
+			GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, texture.getWidth(),
+					texture.getHeight());
+			GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
+					GLES20.GL_RENDERBUFFER, depthRenderbufferId);
+			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+		}
+		int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+		glStateCache.bindFramebuffer(Math.max(previousFramebuffer, 0));
+		if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+			throw new RuntimeException("The framebuffer object is not complete (status 0x" +
+					Integer.toHexString(status) + ")");
+		}
+		contextGeneration = glStateCache.getContextGeneration();
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Removes the framebuffer object and the texture of this RenderTarget from the OpenGL context.<br>
+	 * This method should be called when the RenderTarget is not needed anymore, to release resources. The RenderTarget
+	 * is created again if it is used after calling this method.
+	 */
+	public void delete() {
+		if (isContentLost()) {
+			return;
+		}
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		int[] handles = new int[] { framebufferId };
+		GLES20.glDeleteFramebuffers(1, handles, 0);
+		glStateCache.onFramebufferDeleted(framebufferId);
+		if (depthBuffer) {
+			handles[0] = depthRenderbufferId;
+			GLES20.glDeleteRenderbuffers(1, handles, 0);
+			depthRenderbufferId = 0;
+		}
+		texture.delete();
+		framebufferId = 0;
+		contextGeneration = -1;
+	}
+
+	/**
+	 * Sets the dimensions of the viewport used when this RenderTarget is bound. The viewport starts at the bottom-left
+	 * corner of the texture, so only the bottom-left part of the texture is rendered if it is smaller.<br>
+	 * By default, the viewport covers the whole texture. A smaller viewport allows changing the resolution of the
+	 * rendered image without creating the framebuffer object again.
+	 * 
+	 * @param width Width of the viewport in pixels. It must be between 1 and the width of the texture.
+	 * @param height Height of the viewport in pixels. It must be between 1 and the height of the texture.
+	 */
+	public void setViewportDimensions(int width, int height) {
+		if (width <= 0 || width > texture.getWidth() || height <= 0 || height > texture.getHeight()) {
+			throw new IllegalArgumentException("The viewport must be fully contained inside the texture");
+		}
+		this.viewportWidth = width;
+		this.viewportHeight = height;
+	}
+
+	/**
+	 * Returns the width of the viewport used when this RenderTarget is bound.
+	 * 
+	 * @return Width of the viewport in pixels
+	 */
+	public int getViewportWidth() {
+		return viewportWidth;
+	}
+
+	/**
+	 * Returns the height of the viewport used when this RenderTarget is bound.
+	 * 
+	 * @return Height of the viewport in pixels
+	 */
+	public int getViewportHeight() {
+		return viewportHeight;
+	}
+
+	/**
+	 * Returns true if this RenderTarget has a depth buffer.
+	 * 
+	 * @return true if the framebuffer object has a depth buffer, false otherwise
+	 */
+	public boolean hasDepthBuffer() {
+		return depthBuffer;
+	}
+
+	/**
+	 * Returns the texture where the elements rendered to this RenderTarget are stored.
+	 * 
+	 * @return Texture
+	 */
+	public Texture getTexture() {
+		return texture;
+	}
+
+	/**
+	 * Returns a TextureRegion that covers the whole texture of this RenderTarget. The region is flipped vertically,
+	 * because the first row of the texture is the bottom row of the rendered image.
+	 * 
+	 * @return TextureRegion
+	 */
+	public TextureRegion getTextureRegion() {
+		return textureRegion;
+	}
+
+	/**
+	 * Returns the width of this RenderTarget in pixels.
+	 * 
+	 * @return Width
+	 */
+	public int getWidth() {
+		return texture.getWidth();
+	}
+
+	/**
+	 * Returns the height of this RenderTarget in pixels.
+	 * 
+	 * @return Height
+	 */
+	public int getHeight() {
+		return texture.getHeight();
+	}
+
+	/**
+	 * Texture used as the color buffer of a RenderTarget.
+	 * 
+	 * @author Miguel Vicente Linares
+	 * 
+	 */
+	private static class RenderTargetTexture extends Texture {
+
+		private final RenderTarget renderTarget;
+
+		/**
+		 * Creates a new RenderTargetTexture.
+		 * 
+		 * @param renderTarget RenderTarget this texture belongs to.
+		 * @param width Width of the texture in pixels.
+		 * @param height Height of the texture in pixels.
+		 */
+		public RenderTargetTexture(RenderTarget renderTarget, int width, int height) {
+			super(width, height);
+			this.renderTarget = renderTarget;
+		}
+
+		/**
+		 * Allocates an empty RGBA texture with the dimensions of this texture.
+		 */
+		void allocate() {
+			allocateTextureId();
+			bind();
+			setFilters(getMinFilter(), getMagFilter());
+			setWrapMode(GLES20.GL_CLAMP_TO_EDGE, GLES20.GL_CLAMP_TO_EDGE);
+			GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, getWidth(), getHeight(), 0, GLES20.GL_RGBA,
+					GLES20.GL_UNSIGNED_BYTE, null);
+		}
+
+		/**
+		 * Creates the framebuffer object of the RenderTarget this texture belongs to, if it does not exist in the
+		 * current GL context. Its contents will be empty.
+		 */
+		@Override
+		public void loadTexture(Context context) {
+			if (renderTarget.isContentLost()) {
+				renderTarget.create();
+			}
+		}
+
+		@Override
+		public boolean isLoaded() {
+			return !renderTarget.isContentLost();
+		}
+
+	}
+
+}
@@ -16,26 +16,45 @@ package com.miviclin.droidengine2d.graphics.shader;
 
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
 
 import android.opengl.GLES20;
 import android.util.Log;
 
+import com.miviclin.droidengine2d.BuildConfig;
 import com.miviclin.droidengine2d.graphics.GLDebugger;
+import com.miviclin.droidengine2d.graphics.GLStateCache;
 
 /**
- * ShaderProgram contains a vertex shader and a fragment shader.
+ * ShaderProgram contains a vertex shader and a fragment shader.<br>
+ * Attributes and uniforms can be accessed by name or by handle. The handle of each attribute and uniform is assigned
+ * when {@link #setShaders(String, String, ArrayList, ArrayList)} is called and does not change when the program is
+ * compiled and linked again, so it can be resolved once and stored to avoid looking up names every time a value is
+ * set.<br>
+ * The last value set to each uniform is cached, so setting a uniform to the value it already has does not call
+ * OpenGL.
  * 
  * @author Miguel Vicente Linares
  * 
  */
 public class ShaderProgram {
 
+	private static final int UNKNOWN_VALUE = -1;
+
 	private String vertexShaderSource;
 	private String fragmentShaderSource;
-	private HashMap<String, Integer> attributesLocations;
-	private HashMap<String, Integer> uniformsLocations;
+	private HashMap<String, Integer> attributesHandles;
+	private HashMap<String, Integer> uniformsHandles;
+	private String[] attributesNames;
+	private String[] uniformsNames;
+	private int[] attributesLocations;
+	private int[] uniformsLocations;
+	private float[][] uniformsFloatValues;
+	private int[][] uniformsIntValues;
+	private int[] uniformsValuesLengths;
+	private final float[] tmpFloatValues;
+	private final int[] tmpIntValues;
 	private int programId;
 	private boolean linked;
 
@@ -45,8 +64,17 @@ public class ShaderProgram {
 	public ShaderProgram() {
 		this.vertexShaderSource = "";
 		this.fragmentShaderSource = "";
-		this.attributesLocations = new HashMap<String, Integer>();
-		this.uniformsLocations = new HashMap<String, Integer>();
+		this.attributesHandles = new HashMap<String, Integer>();
+		this.uniformsHandles = new HashMap<String, Integer>();
+		this.attributesNames = new String[0];
+		this.uniformsNames = new String[0];
+		this.attributesLocations = new int[0];
+		this.uniformsLocations = new int[0];
+		this.uniformsFloatValues = new float[0][];
+		this.uniformsIntValues = new int[0][];
+		this.uniformsValuesLengths = new int[0];
+		this.tmpFloatValues = new float[4];
+		this.tmpIntValues = new int[1];
 		this.linked = false;
 	}
 
@@ -68,6 +96,36 @@ public class ShaderProgram {
 		return fragmentShaderSource;
 	}
 
+	/**
+	 * Returns the handle of the specified attribute.<br>
+	 * The handle can be used to set the attribute without looking up its name again.
+	 * 
+	 * @param attributeName Name of the attribute.
+	 * @return Handle of the attribute
+	 */
+	public int getAttributeHandle(String attributeName) {
+		Integer handle = attributesHandles.get(attributeName);
+		if (handle == null) {
+			throw new IllegalArgumentException("The specified attribute is not registered: " + attributeName);
+		}
+		return handle.intValue();
+	}
+
+	/**
+	 * Returns the handle of the specified uniform.<br>
+	 * The handle can be used to set the uniform without looking up its name again.
+	 * 
+	 * @param uniformName Name of the uniform.
+	 * @return Handle of the uniform
+	 */
+	public int getUniformHandle(String uniformName) {
+		Integer handle = uniformsHandles.get(uniformName);
+		if (handle == null) {
+			throw new IllegalArgumentException("The specified uniform is not registered: " + uniformName);
+		}
+		return handle.intValue();
+	}
+
 	/**
 	 * Returns the location of the specified attribute in the shader.
 	 * 
@@ -75,7 +133,7 @@ public class ShaderProgram {
 	 * @return Location of the attribute
 	 */
 	public int getAttributeLocation(String attributeName) {
-		int attributeLocation = attributesLocations.get(attributeName).intValue();
+		int attributeLocation = attributesLocations[getAttributeHandle(attributeName)];
 		if (attributeLocation == -1) {
 			throw new IllegalArgumentException("The specified attribute is not linked: " + attributeName);
 		}
@@ -89,18 +147,47 @@ public class ShaderProgram {
 	 * @return Location of the uniform
 	 */
 	public int getUniformLocation(String uniformName) {
-		int uniformLocation = uniformsLocations.get(uniformName).intValue();
+		int uniformLocation = uniformsLocations[getUniformHandle(uniformName)];
 		if (uniformLocation == -1) {
 			throw new IllegalArgumentException("The specified uniform is not linked: " + uniformName);
 		}
 		return uniformLocation;
 	}
 
+	/**
+	 * Returns the location of the attribute with the specified handle in the shader.
+	 * 
+	 * @param attributeHandle Handle of the attribute.
+	 * @return Location of the attribute
+	 */
+	public int getAttributeLocation(int attributeHandle) {
+		int attributeLocation = attributesLocations[attributeHandle];
+		if (attributeLocation == -1) {
+			throw new IllegalArgumentException("The specified attribute is not linked: " +
+					attributesNames[attributeHandle]);
+		}
+		return attributeLocation;
+	}
+
+	/**
+	 * Returns the location of the uniform with the specified handle in the shader.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @return Location of the uniform
+	 */
+	public int getUniformLocation(int uniformHandle) {
+		int uniformLocation = uniformsLocations[uniformHandle];
+		if (uniformLocation == -1) {
+			throw new IllegalArgumentException("The specified uniform is not linked: " + uniformsNames[uniformHandle]);
+		}
+		return uniformLocation;
+	}
+
 	/**
 	 * Installs this shader program as part of the current rendering state.
 	 */
 	public void use() {
-		GLES20.glUseProgram(programId);
+		GLStateCache.getInstance().useProgram(programId);
 	}
 
 	/**
@@ -143,7 +230,8 @@ public class ShaderProgram {
 
 	/**
 	 * Sets the vertex and fragment shaders of this program. This method should be called from {@link #compileAndLink()}
-	 * .
+	 * .<br>
+	 * Each attribute and uniform that was not registered yet gets a new handle.
 	 * 
 	 * @param vertexShaderSource GLSL code of the vertex shader.
 	 * @param fragmentShaderSource GLSL code of the fragment shader.
@@ -157,12 +245,32 @@ public class ShaderProgram {
 		this.fragmentShaderSource = fragmentShaderSource;
 
 		for (int i = 0; i < attributes.size(); i++) {
-			attributesLocations.put(attributes.get(i), -1);
+			if (!attributesHandles.containsKey(attributes.get(i))) {
+				attributesHandles.put(attributes.get(i), attributesHandles.size());
+			}
 		}
+		attributesNames = new String[attributesHandles.size()];
+		for (String attributeName : attributesHandles.keySet()) {
+			attributesNames[attributesHandles.get(attributeName).intValue()] = attributeName;
+		}
+		attributesLocations = new int[attributesNames.length];
+		Arrays.fill(attributesLocations, -1);
 
 		for (int i = 0; i < uniforms.size(); i++) {
-			uniformsLocations.put(uniforms.get(i), -1);
+			if (!uniformsHandles.containsKey(uniforms.get(i))) {
+				uniformsHandles.put(uniforms.get(i), uniformsHandles.size());
+			}
 		}
+		uniformsNames = new String[uniformsHandles.size()];
+		for (String uniformName : uniformsHandles.keySet()) {
+			uniformsNames[uniformsHandles.get(uniformName).intValue()] = uniformName;
+		}
+		uniformsLocations = new int[uniformsNames.length];
+		Arrays.fill(uniformsLocations, -1);
+		uniformsFloatValues = new float[uniformsNames.length][];
+		uniformsIntValues = new int[uniformsNames.length][];
+		uniformsValuesLengths = new int[uniformsNames.length];
+		Arrays.fill(uniformsValuesLengths, UNKNOWN_VALUE);
 	}
 
 	/**
@@ -186,31 +294,30 @@ public class ShaderProgram {
 
 	/**
 	 * Links the attributes of the shaders to this program.<br>
-	 * This method is called from {@link #compileAndLink()}.
+	 * This method is called from {@link #compileAndLink()}. The cached values of the uniforms are discarded, because
+	 * they belonged to the previous program.
 	 * 
 	 * @param programId The ID (used by the OpenGL context) of this program.
 	 */
 	protected void link(int programId) {
-		String variableName;
 		int location;
-		for (Map.Entry<String, Integer> entry : attributesLocations.entrySet()) {
-			variableName = entry.getKey();
-			location = GLES20.glGetAttribLocation(programId, variableName);
+		for (int i = 0; i < attributesNames.length; i++) {
+			location = GLES20.glGetAttribLocation(programId, attributesNames[i]);
 			GLDebugger.getInstance().passiveCheckGLError();
 			if (location == -1) {
-				throw new RuntimeException("Could not get attribute location for " + variableName);
+				throw new RuntimeException("Could not get attribute location for " + attributesNames[i]);
 			}
-			entry.setValue(location);
+			attributesLocations[i] = location;
 		}
-		for (Map.Entry<String, Integer> entry : uniformsLocations.entrySet()) {
-			variableName = entry.getKey();
-			location = GLES20.glGetUniformLocation(programId, variableName);
+		for (int i = 0; i < uniformsNames.length; i++) {
+			location = GLES20.glGetUniformLocation(programId, uniformsNames[i]);
 			GLDebugger.getInstance().passiveCheckGLError();
 			if (location == -1) {
-				throw new RuntimeException("Could not get uniform location for " + variableName);
+				throw new RuntimeException("Could not get uniform location for " + uniformsNames[i]);
 			}
-			entry.setValue(location);
+			uniformsLocations[i] = location;
 		}
+		Arrays.fill(uniformsValuesLengths, UNKNOWN_VALUE);
 	}
 
 	/**
@@ -224,13 +331,103 @@ public class ShaderProgram {
 	 *            dataBuffer.
 	 */
 	public void setAttribute(String attributeName, int size, int strideBytes, FloatBuffer dataBuffer, int dataOffset) {
-		int attributeLocation = getAttributeLocation(attributeName);
+		setAttribute(getAttributeHandle(attributeName), size, strideBytes, dataBuffer, dataOffset);
+	}
+
+	/**
+	 * Sets the values of the attribute with the specified handle for each vertex that will be sent to the vertex
+	 * shader.
+	 * 
+	 * @param attributeHandle Handle of the attribute.
+	 * @param size Number of components of the specified vertex attribute (For example: position (x, y, z) => size=3).
+	 * @param strideBytes Byte offset between consecutive generic vertex attributes.
+	 * @param dataBuffer Buffer where vertices are stored.
+	 * @param dataOffset Offset of the first component of the first attribute with the specified handle in the
+	 *            dataBuffer.
+	 */
+	public void setAttribute(int attributeHandle, int size, int strideBytes, FloatBuffer dataBuffer, int dataOffset) {
+		setAttribute(attributeHandle, size, GLES20.GL_FLOAT, false, strideBytes, dataBuffer, dataOffset);
+	}
+
+	/**
+	 * Sets the values of the attribute with the specified handle for each vertex that will be sent to the vertex
+	 * shader.<br>
+	 * The components of the attribute can be of any type, even if they are stored in a buffer of floats. For example,
+	 * a color packed in a float can be read as 4 normalized GL_UNSIGNED_BYTE components.
+	 * 
+	 * @param attributeHandle Handle of the attribute.
+	 * @param size Number of components of the specified vertex attribute (For example: position (x, y, z) => size=3).
+	 * @param type Data type of each component (GL_FLOAT, GL_UNSIGNED_BYTE...).
+	 * @param normalized true if integer values must be mapped to the [0..1] or [-1..1] interval, false otherwise.
+	 * @param strideBytes Byte offset between consecutive generic vertex attributes.
+	 * @param dataBuffer Buffer where vertices are stored.
+	 * @param dataOffset Offset of the first component of the first attribute with the specified handle in the
+	 *            dataBuffer (number of floats).
+	 */
+	public void setAttribute(int attributeHandle, int size, int type, boolean normalized, int strideBytes,
+			FloatBuffer dataBuffer, int dataOffset) {
 
-		GLES20.glEnableVertexAttribArray(attributeLocation);
+		int attributeLocation = getAttributeLocation(attributeHandle);
+
+		GLStateCache.getInstance().enableVertexAttribArray(attributeLocation);
 		GLDebugger.getInstance().passiveCheckGLError();
 
 		dataBuffer.position(dataOffset);
-		GLES20.glVertexAttribPointer(attributeLocation, size, GLES20.GL_FLOAT, false, strideBytes, dataBuffer);
+		GLES20.glVertexAttribPointer(attributeLocation, size, type, normalized, strideBytes, dataBuffer);
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Sets the specified attribute's values for each vertex that will be sent to the vertex shader.<br>
+	 * The values are read from the vertex buffer object that is currently bound to GL_ARRAY_BUFFER.
+	 * 
+	 * @param attributeName Name of the attribute.
+	 * @param size Number of components of the specified vertex attribute (For example: position (x, y, z) => size=3).
+	 * @param strideBytes Byte offset between consecutive generic vertex attributes.
+	 * @param offsetBytes Byte offset of the first component of the first attribute with the specified attributeName in
+	 *            the bound vertex buffer object.
+	 */
+	public void setAttribute(String attributeName, int size, int strideBytes, int offsetBytes) {
+		setAttribute(getAttributeHandle(attributeName), size, strideBytes, offsetBytes);
+	}
+
+	/**
+	 * Sets the values of the attribute with the specified handle for each vertex that will be sent to the vertex
+	 * shader.<br>
+	 * The values are read from the vertex buffer object that is currently bound to GL_ARRAY_BUFFER.
+	 * 
+	 * @param attributeHandle Handle of the attribute.
+	 * @param size Number of components of the specified vertex attribute (For example: position (x, y, z) => size=3).
+	 * @param strideBytes Byte offset between consecutive generic vertex attributes.
+	 * @param offsetBytes Byte offset of the first component of the first attribute with the specified handle in the
+	 *            bound vertex buffer object.
+	 */
+	public void setAttribute(int attributeHandle, int size, int strideBytes, int offsetBytes) {
+		setAttribute(attributeHandle, size, GLES20.GL_FLOAT, false, strideBytes, offsetBytes);
+	}
+
+	/**
+	 * Sets the values of the attribute with the specified handle for each vertex that will be sent to the vertex
+	 * shader.<br>
+	 * The values are read from the vertex buffer object that is currently bound to GL_ARRAY_BUFFER.
+	 * 
+	 * @param attributeHandle Handle of the attribute.
+	 * @param size Number of components of the specified vertex attribute (For example: position (x, y, z) => size=3).
+	 * @param type Data type of each component (GL_FLOAT, GL_UNSIGNED_BYTE...).
+	 * @param normalized true if integer values must be mapped to the [0..1] or [-1..1] interval, false otherwise.
+	 * @param strideBytes Byte offset between consecutive generic vertex attributes.
+	 * @param offsetBytes Byte offset of the first component of the first attribute with the specified handle in the
+	 *            bound vertex buffer object.
+	 */
+	public void setAttribute(int attributeHandle, int size, int type, boolean normalized, int strideBytes,
+			int offsetBytes) {
+
+		int attributeLocation = getAttributeLocation(attributeHandle);
+
+		GLStateCache.getInstance().enableVertexAttribArray(attributeLocation);
+		GLDebugger.getInstance().passiveCheckGLError();
+
+		GLES20.glVertexAttribPointer(attributeLocation, size, type, normalized, strideBytes, offsetBytes);
 		GLDebugger.getInstance().passiveCheckGLError();
 	}
 
@@ -241,9 +438,21 @@ public class ShaderProgram {
 	 * @param x Value of the uniform.
 	 */
 	public void setUniform1f(String uniformName, float x) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform1f(uniformLocation, x);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform1f(getUniformHandle(uniformName), x);
+	}
+
+	/**
+	 * Specifies the value of the 1-component uniform with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param x Value of the uniform.
+	 */
+	public void setUniform1f(int uniformHandle, float x) {
+		tmpFloatValues[0] = x;
+		if (updateCachedValue(uniformHandle, tmpFloatValues, 0, 1)) {
+			GLES20.glUniform1f(getUniformLocation(uniformHandle), x);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -255,9 +464,77 @@ public class ShaderProgram {
 	 * @param dataOffset Offset of the first element of the uniform in the specified array.
 	 */
 	public void setUniform1fv(String uniformName, int count, float[] data, int dataOffset) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform1fv(uniformLocation, count, data, dataOffset);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform1fv(getUniformHandle(uniformName), count, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 1-component uniform array with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param count Number of elements of the uniform array.
+	 * @param data Array where the value of the uniform array is stored.
+	 * @param dataOffset Offset of the first element of the uniform in the specified array.
+	 */
+	public void setUniform1fv(int uniformHandle, int count, float[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, count)) {
+			GLES20.glUniform1fv(getUniformLocation(uniformHandle), count, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
+	}
+
+	/**
+	 * Specifies the value of the specified 1-component integer uniform of this shader program.<br>
+	 * This method is also used to assign texture units to sampler uniforms.
+	 * 
+	 * @param uniformName Name of the uniform.
+	 * @param x Value of the uniform.
+	 */
+	public void setUniform1i(String uniformName, int x) {
+		setUniform1i(getUniformHandle(uniformName), x);
+	}
+
+	/**
+	 * Specifies the value of the 1-component integer uniform with the specified handle.<br>
+	 * This method is also used to assign texture units to sampler uniforms.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param x Value of the uniform.
+	 */
+	public void setUniform1i(int uniformHandle, int x) {
+		tmpIntValues[0] = x;
+		if (updateCachedValue(uniformHandle, tmpIntValues, 0, 1)) {
+			GLES20.glUniform1i(getUniformLocation(uniformHandle), x);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
+	}
+
+	/**
+	 * Specifies the value of the specified 1-component integer uniform array of this shader program.<br>
+	 * This method is also used to assign texture units to arrays of sampler uniforms.
+	 * 
+	 * @param uniformName Name of the uniform.
+	 * @param count Number of elements of the uniform array.
+	 * @param data Array where the value of the uniform array is stored.
+	 * @param dataOffset Offset of the first element of the uniform in the specified array.
+	 */
+	public void setUniform1iv(String uniformName, int count, int[] data, int dataOffset) {
+		setUniform1iv(getUniformHandle(uniformName), count, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 1-component integer uniform array with the specified handle.<br>
+	 * This method is also used to assign texture units to arrays of sampler uniforms.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param count Number of elements of the uniform array.
+	 * @param data Array where the value of the uniform array is stored.
+	 * @param dataOffset Offset of the first element of the uniform in the specified array.
+	 */
+	public void setUniform1iv(int uniformHandle, int count, int[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, count)) {
+			GLES20.glUniform1iv(getUniformLocation(uniformHandle), count, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -268,9 +545,23 @@ public class ShaderProgram {
 	 * @param y Second component of the uniform.
 	 */
 	public void setUniform1f(String uniformName, float x, float y) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform2f(uniformLocation, x, y);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform2f(getUniformHandle(uniformName), x, y);
+	}
+
+	/**
+	 * Specifies the value of the 2-component uniform with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param x First component of the uniform.
+	 * @param y Second component of the uniform.
+	 */
+	public void setUniform2f(int uniformHandle, float x, float y) {
+		tmpFloatValues[0] = x;
+		tmpFloatValues[1] = y;
+		if (updateCachedValue(uniformHandle, tmpFloatValues, 0, 2)) {
+			GLES20.glUniform2f(getUniformLocation(uniformHandle), x, y);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -282,9 +573,22 @@ public class ShaderProgram {
 	 * @param dataOffset Offset of the first element of the uniform in the specified array.
 	 */
 	public void setUniform2fv(String uniformName, int count, float[] data, int dataOffset) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform2fv(uniformLocation, count, data, dataOffset);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform2fv(getUniformHandle(uniformName), count, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 2-component uniform array with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param count Number of elements of the uniform array.
+	 * @param data Array where the value of the uniform array is stored.
+	 * @param dataOffset Offset of the first element of the uniform in the specified array.
+	 */
+	public void setUniform2fv(int uniformHandle, int count, float[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, count * 2)) {
+			GLES20.glUniform2fv(getUniformLocation(uniformHandle), count, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -296,9 +600,25 @@ public class ShaderProgram {
 	 * @param z Third component of the uniform.
 	 */
 	public void setUniform3f(String uniformName, float x, float y, float z) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform3f(uniformLocation, x, y, z);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform3f(getUniformHandle(uniformName), x, y, z);
+	}
+
+	/**
+	 * Specifies the value of the 3-component uniform with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param x First component of the uniform.
+	 * @param y Second component of the uniform.
+	 * @param z Third component of the uniform.
+	 */
+	public void setUniform3f(int uniformHandle, float x, float y, float z) {
+		tmpFloatValues[0] = x;
+		tmpFloatValues[1] = y;
+		tmpFloatValues[2] = z;
+		if (updateCachedValue(uniformHandle, tmpFloatValues, 0, 3)) {
+			GLES20.glUniform3f(getUniformLocation(uniformHandle), x, y, z);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -310,9 +630,22 @@ public class ShaderProgram {
 	 * @param dataOffset Offset of the first element of the uniform in the specified array.
 	 */
 	public void setUniform3fv(String uniformName, int count, float[] data, int dataOffset) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform3fv(uniformLocation, count, data, dataOffset);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform3fv(getUniformHandle(uniformName), count, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 3-component uniform array with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param count Number of elements of the uniform array.
+	 * @param data Array where the value of the uniform array is stored.
+	 * @param dataOffset Offset of the first element of the uniform in the specified array.
+	 */
+	public void setUniform3fv(int uniformHandle, int count, float[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, count * 3)) {
+			GLES20.glUniform3fv(getUniformLocation(uniformHandle), count, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -325,9 +658,27 @@ public class ShaderProgram {
 	 * @param w Fourth component of the uniform.
 	 */
 	public void setUniform4f(String uniformName, float x, float y, float z, float w) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform4f(uniformLocation, x, y, z, w);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform4f(getUniformHandle(uniformName), x, y, z, w);
+	}
+
+	/**
+	 * Specifies the value of the 4-component uniform with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param x First component of the uniform.
+	 * @param y Second component of the uniform.
+	 * @param z Third component of the uniform.
+	 * @param w Fourth component of the uniform.
+	 */
+	public void setUniform4f(int uniformHandle, float x, float y, float z, float w) {
+		tmpFloatValues[0] = x;
+		tmpFloatValues[1] = y;
+		tmpFloatValues[2] = z;
+		tmpFloatValues[3] = w;
+		if (updateCachedValue(uniformHandle, tmpFloatValues, 0, 4)) {
+			GLES20.glUniform4f(getUniformLocation(uniformHandle), x, y, z, w);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -339,9 +690,22 @@ public class ShaderProgram {
 	 * @param dataOffset Offset of the first element of the uniform in the specified array.
 	 */
 	public void setUniform4fv(String uniformName, int count, float[] data, int dataOffset) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniform4fv(uniformLocation, count, data, dataOffset);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniform4fv(getUniformHandle(uniformName), count, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 4-component uniform array with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param count Number of elements of the uniform array.
+	 * @param data Array where the value of the uniform array is stored.
+	 * @param dataOffset Offset of the first element of the uniform in the specified array.
+	 */
+	public void setUniform4fv(int uniformHandle, int count, float[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, count * 4)) {
+			GLES20.glUniform4fv(getUniformLocation(uniformHandle), count, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -352,9 +716,22 @@ public class ShaderProgram {
 	 * @param dataOffset Offset of the first element of the first matrix.
 	 */
 	public void setUniformMatrix2fv(String uniformName, int numMatrices, float[] data, int dataOffset) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniformMatrix2fv(uniformLocation, numMatrices, false, data, dataOffset);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniformMatrix2fv(getUniformHandle(uniformName), numMatrices, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 2x2 matrix uniform with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param numMatrices Number of matrices in the uniform array.
+	 * @param data Data of the matrices we want to send, in the same array.
+	 * @param dataOffset Offset of the first element of the first matrix.
+	 */
+	public void setUniformMatrix2fv(int uniformHandle, int numMatrices, float[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, numMatrices * 4)) {
+			GLES20.glUniformMatrix2fv(getUniformLocation(uniformHandle), numMatrices, false, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -365,9 +742,22 @@ public class ShaderProgram {
 	 * @param dataOffset Offset of the first element of the first matrix.
 	 */
 	public void setUniformMatrix3fv(String uniformName, int numMatrices, float[] data, int dataOffset) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniformMatrix3fv(uniformLocation, numMatrices, false, data, dataOffset);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniformMatrix3fv(getUniformHandle(uniformName), numMatrices, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 3x3 matrix uniform with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param numMatrices Number of matrices in the uniform array.
+	 * @param data Data of the matrices we want to send, in the same array.
+	 * @param dataOffset Offset of the first element of the first matrix.
+	 */
+	public void setUniformMatrix3fv(int uniformHandle, int numMatrices, float[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, numMatrices * 9)) {
+			GLES20.glUniformMatrix3fv(getUniformLocation(uniformHandle), numMatrices, false, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
 	}
 
 	/**
@@ -378,9 +768,93 @@ public class ShaderProgram {
 	 * @param dataOffset Offset of the first element of the first matrix.
 	 */
 	public void setUniformMatrix4fv(String uniformName, int numMatrices, float[] data, int dataOffset) {
-		int uniformLocation = getUniformLocation(uniformName);
-		GLES20.glUniformMatrix4fv(uniformLocation, numMatrices, false, data, dataOffset);
-		GLDebugger.getInstance().passiveCheckGLError();
+		setUniformMatrix4fv(getUniformHandle(uniformName), numMatrices, data, dataOffset);
+	}
+
+	/**
+	 * Specifies the value of the 4x4 matrix uniform with the specified handle.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param numMatrices Number of matrices in the uniform array.
+	 * @param data Data of the matrices we want to send, in the same array.
+	 * @param dataOffset Offset of the first element of the first matrix.
+	 */
+	public void setUniformMatrix4fv(int uniformHandle, int numMatrices, float[] data, int dataOffset) {
+		if (updateCachedValue(uniformHandle, data, dataOffset, numMatrices * 16)) {
+			GLES20.glUniformMatrix4fv(getUniformLocation(uniformHandle), numMatrices, false, data, dataOffset);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
+	}
+
+	/**
+	 * Compares the specified value with the cached value of the uniform with the specified handle and replaces the
+	 * cached value if they are different.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param data Array where the new value is stored.
+	 * @param dataOffset Offset of the first element of the new value in the specified array.
+	 * @param length Number of elements of the new value.
+	 * @return true if the value changed and has to be sent to OpenGL, false otherwise
+	 */
+	private boolean updateCachedValue(int uniformHandle, float[] data, int dataOffset, int length) {
+		float[] cachedValue = uniformsFloatValues[uniformHandle];
+		if (cachedValue != null && uniformsValuesLengths[uniformHandle] == length) {
+			int i = 0;
+			while (i < length && cachedValue[i] == data[dataOffset + i]) {
+				i++;
+			}
+			if (i == length) {
+				skipUniformUpload();
+				return false;
+			}
+		} else if (cachedValue == null || cachedValue.length < length) {
+			cachedValue = new float[length];
+			uniformsFloatValues[uniformHandle] = cachedValue;
+		}
+		System.arraycopy(data, dataOffset, cachedValue, 0, length);
+		uniformsValuesLengths[uniformHandle] = length;
+		uniformsIntValues[uniformHandle] = null;
+		return true;
+	}
+
+	/**
+	 * Compares the specified value with the cached value of the integer uniform with the specified handle and replaces
+	 * the cached value if they are different.
+	 * 
+	 * @param uniformHandle Handle of the uniform.
+	 * @param data Array where the new value is stored.
+	 * @param dataOffset Offset of the first element of the new value in the specified array.
+	 * @param length Number of elements of the new value.
+	 * @return true if the value changed and has to be sent to OpenGL, false otherwise
+	 */
+	private boolean updateCachedValue(int uniformHandle, int[] data, int dataOffset, int length) {
+		int[] cachedValue = uniformsIntValues[uniformHandle];
+		if (cachedValue != null && uniformsValuesLengths[uniformHandle] == length) {
+			int i = 0;
+			while (i < length && cachedValue[i] == data[dataOffset + i]) {
+				i++;
+			}
+			if (i == length) {
+				skipUniformUpload();
+				return false;
+			}
+		} else if (cachedValue == null || cachedValue.length < length) {
+			cachedValue = new int[length];
+			uniformsIntValues[uniformHandle] = cachedValue;
+		}
+		System.arraycopy(data, dataOffset, cachedValue, 0, length);
+		uniformsValuesLengths[uniformHandle] = length;
+		uniformsFloatValues[uniformHandle] = null;
+		return true;
+	}
+
+	/**
+	 * Registers a skipped uniform upload in {@link GLDebugger} if the debug mode is enabled.
+	 */
+	private void skipUniformUpload() {
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().incrementNumSkippedGLCallsInCurrentFrame();
+		}
 	}
 
 	/**
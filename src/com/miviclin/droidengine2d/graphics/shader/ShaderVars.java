@@ -25,6 +25,9 @@ public class ShaderVars {
 	// Uniforms
 
 	public static final String U_MVP_MATRIX = "uMVPMatrix";
+	public static final String U_VIEW_PROJECTION_MATRIX = "uViewProjectionMatrix";
+	public static final String U_TEXTURES = "uTextures";
+	public static final String U_TRANSLATION = "uTranslation";
 
 	// Attributes
 
@@ -33,11 +36,17 @@ public class ShaderVars {
 	public static final String A_COLOR = "aColor";
 	public static final String A_TEXTURE_COORD = "aTextureCoord";
 	public static final String A_OPACITY = "aOpacity";
+	public static final String A_TEXTURE_SLOT = "aTextureSlot";
+	public static final String A_HSV = "aHsv";
+	public static final String A_MATERIAL_FLAGS = "aMaterialFlags";
 
 	// Varyings
 
 	public static final String V_COLOR = "vColor";
 	public static final String V_TEXTURE_COORD = "vTextureCoord";
 	public static final String V_OPACITY = "vOpacity";
+	public static final String V_TEXTURE_SLOT = "vTextureSlot";
+	public static final String V_HSV = "vHsv";
+	public static final String V_MATERIAL_FLAGS = "vMaterialFlags";
 
 }
@@ -0,0 +1,486 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.texture;
+
+/**
+ * NinePatch divides the image of a {@link TextureRegion} in nine parts, so it can be resized without distorting its
+ * borders. The corners keep their size, the top and bottom edges are resized horizontally, the left and right edges
+ * are resized vertically and the center is resized in both directions.<br>
+ * The edges and the center can be stretched or tiled (see {@link #setTiled(boolean)}). Tiled parts are repeated
+ * without stretching, and the last tile of each row and column is cut.<br>
+ * NinePatch generates the vertices of all the parts at once, so the whole patch can be rendered in one call with one
+ * transform (see {@code Graphics.drawNinePatch}). The vertices are only generated again when the size of the patch,
+ * the borders or the region change.<br>
+ * The region can be rotated or flipped, but it can not be trimmed.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class NinePatch {
+
+	private static final int INITIAL_QUADS = 9;
+	private static final float TILE_EPSILON = 0.001f;
+
+	private TextureRegion region;
+	private float left;
+	private float right;
+	private float top;
+	private float bottom;
+	private boolean tiled;
+
+	private float[] positions;
+	private float[] uvs;
+	private short[] triangles;
+	private int numQuads;
+	private boolean dirty;
+	private float width;
+	private float height;
+
+	private float regionX;
+	private float regionY;
+	private float regionWidth;
+	private float regionHeight;
+	private boolean regionRotated;
+	private boolean regionFlippedHorizontally;
+	private boolean regionFlippedVertically;
+
+	/**
+	 * Creates a new NinePatch whose edges and center are stretched.
+	 * 
+	 * @param region TextureRegion. It can not be trimmed.
+	 * @param left Width of the left border, in pixels of the image.
+	 * @param right Width of the right border, in pixels of the image.
+	 * @param top Height of the top border, in pixels of the image.
+	 * @param bottom Height of the bottom border, in pixels of the image.
+	 */
+	public NinePatch(TextureRegion region, float left, float right, float top, float bottom) {
+		this.positions = new float[INITIAL_QUADS * 8];
+		this.uvs = new float[INITIAL_QUADS * 8];
+		this.triangles = new short[INITIAL_QUADS * 6];
+		this.numQuads = 0;
+		this.tiled = false;
+		setTextureRegion(region);
+		setBorders(left, right, top, bottom);
+	}
+
+	/**
+	 * Returns the TextureRegion of this NinePatch.
+	 * 
+	 * @return TextureRegion
+	 */
+	public TextureRegion getTextureRegion() {
+		return region;
+	}
+
+	/**
+	 * Sets the TextureRegion of this NinePatch.<br>
+	 * The borders must fit in the new region.
+	 * 
+	 * @param region TextureRegion. It can not be trimmed.
+	 */
+	public void setTextureRegion(TextureRegion region) {
+		if (region.isTrimmed()) {
+			throw new IllegalArgumentException("The TextureRegion of a NinePatch can not be trimmed");
+		}
+		if ((region.getImageWidth() < left + right) || (region.getImageHeight() < top + bottom)) {
+			throw new IllegalArgumentException("The borders do not fit in the TextureRegion");
+		}
+		this.region = region;
+		this.dirty = true;
+	}
+
+	/**
+	 * Sets the size of the borders of this NinePatch.
+	 * 
+	 * @param left Width of the left border, in pixels of the image.
+	 * @param right Width of the right border, in pixels of the image.
+	 * @param top Height of the top border, in pixels of the image.
+	 * @param bottom Height of the bottom border, in pixels of the image.
+	 */
+	public void setBorders(float left, float right, float top, float bottom) {
+		if (left < 0 || right < 0 || top < 0 || bottom < 0) {
+			throw new IllegalArgumentException("The size of the borders can not be negative");
+		}
+		if ((region.getImageWidth() < left + right) || (region.getImageHeight() < top + bottom)) {
+			throw new IllegalArgumentException("The borders do not fit in the TextureRegion");
+		}
+		this.left = left;
+		this.right = right;
+		this.top = top;
+		this.bottom = bottom;
+		this.dirty = true;
+	}
+
+	/**
+	 * Returns the width of the left border.
+	 * 
+	 * @return Width in pixels of the image
+	 */
+	public float getLeft() {
+		return left;
+	}
+
+	/**
+	 * Returns the width of the right border.
+	 * 
+	 * @return Width in pixels of the image
+	 */
+	public float getRight() {
+		return right;
+	}
+
+	/**
+	 * Returns the height of the top border.
+	 * 
+	 * @return Height in pixels of the image
+	 */
+	public float getTop() {
+		return top;
+	}
+
+	/**
+	 * Returns the height of the bottom border.
+	 * 
+	 * @return Height in pixels of the image
+	 */
+	public float getBottom() {
+		return bottom;
+	}
+
+	/**
+	 * Returns true if the edges and the center are tiled, or false if they are stretched.
+	 * 
+	 * @return true if the edges and the center are tiled
+	 */
+	public boolean isTiled() {
+		return tiled;
+	}
+
+	/**
+	 * Sets whether the edges and the center are tiled or stretched.<br>
+	 * Each tile keeps the size of its part of the image, taking one pixel of the image as one unit of the patch. Tiled
+	 * patches generate one quad per tile, and the number of quads is limited by the renderer (see
+	 * {@link #update(float, float, int)}).
+	 * 
+	 * @param tiled true to tile the edges and the center, false to stretch them.
+	 */
+	public void setTiled(boolean tiled) {
+		if (this.tiled != tiled) {
+			this.tiled = tiled;
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Generates the vertices of this NinePatch for the specified size, if they have not been generated yet.<br>
+	 * If the size is smaller than the borders, the borders are shrunk proportionally and the center is not
+	 * rendered.<br>
+	 * The whole patch is rendered in one call, so it must fit in an empty batch of the renderer. If the patch is tiled
+	 * and it would have more than {@code maxQuads} quads, an IllegalArgumentException is thrown and the previous
+	 * vertices are kept.
+	 * 
+	 * @param width Width of the patch.
+	 * @param height Height of the patch.
+	 * @param maxQuads Maximum number of quads that fit in an empty batch of the renderer.
+	 */
+	public void update(float width, float height, int maxQuads) {
+		if (!dirty && width == this.width && height == this.height && numQuads <= maxQuads && !regionChanged()) {
+			return;
+		}
+		float imageWidth = region.getImageWidth();
+		float imageHeight = region.getImageHeight();
+		float centerWidth = imageWidth - left - right;
+		float centerHeight = imageHeight - top - bottom;
+
+		// Size of the borders and the center of the patch
+		float leftSize = left;
+		float rightSize = right;
+		float bottomSize = bottom;
+		float topSize = top;
+		if (width < left + right) {
+			float ratio = width / (left + right);
+			leftSize *= ratio;
+			rightSize *= ratio;
+		}
+		if (height < top + bottom) {
+			float ratio = height / (top + bottom);
+			bottomSize *= ratio;
+			topSize *= ratio;
+		}
+		float middleWidth = width - leftSize - rightSize;
+		float middleHeight = height - bottomSize - topSize;
+
+		// Columns and rows of the patch. The patch is built with the Y axis pointing up and the image has the Y axis
+		// pointing down, so the bottom row of the patch is the bottom part of the image.
+		float[] columnX = { 0.0f, leftSize, width - rightSize };
+		float[] columnSize = { leftSize, middleWidth, rightSize };
+		float[] columnImageX = { 0.0f, left, imageWidth - right };
+		float[] columnImageSize = { left, centerWidth, right };
+		float[] rowY = { 0.0f, bottomSize, height - topSize };
+		float[] rowSize = { bottomSize, middleHeight, topSize };
+		float[] rowImageY = { imageHeight - bottom, top, 0.0f };
+		float[] rowImageSize = { bottom, centerHeight, top };
+
+		// The number of quads is checked before modifying anything, so an invalid size does not leave the patch half
+		// built
+		int quads = 0;
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 3; column++) {
+				quads += countPartQuads(columnSize[column], rowSize[row], columnImageSize[column], rowImageSize[row],
+						tiled && column == 1, tiled && row == 1);
+			}
+		}
+		if (quads > maxQuads) {
+			throw new IllegalArgumentException("The NinePatch would have " + quads + " tiles. The maximum is " +
+					maxQuads + ".");
+		}
+
+		this.width = width;
+		this.height = height;
+		regionX = region.getX();
+		regionY = region.getY();
+		regionWidth = region.getWidth();
+		regionHeight = region.getHeight();
+		regionRotated = region.isRotated();
+		regionFlippedHorizontally = region.isFlippedHorizontally();
+		regionFlippedVertically = region.isFlippedVertically();
+		ensureCapacity(quads);
+		numQuads = 0;
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 3; column++) {
+				addPart(columnX[column], rowY[row], columnSize[column], rowSize[row],
+						columnImageX[column], rowImageY[row], columnImageSize[column], rowImageSize[row],
+						tiled && column == 1, tiled && row == 1);
+			}
+		}
+		this.dirty = false;
+	}
+
+	/**
+	 * Returns the number of quads of one of the nine parts of the patch.
+	 * 
+	 * @param w Width of the part in the patch.
+	 * @param h Height of the part in the patch.
+	 * @param imageW Width of the part in the image.
+	 * @param imageH Height of the part in the image.
+	 * @param tileX true to tile the part horizontally.
+	 * @param tileY true to tile the part vertically.
+	 * @return Number of quads
+	 */
+	private static int countPartQuads(float w, float h, float imageW, float imageH, boolean tileX, boolean tileY) {
+		if (w <= 0 || h <= 0 || imageW <= 0 || imageH <= 0) {
+			return 0;
+		}
+		int columns = tileX ? countTiles(w, imageW) : 1;
+		int rows = tileY ? countTiles(h, imageH) : 1;
+		return columns * rows;
+	}
+
+	/**
+	 * Returns the number of tiles needed to cover the specified size. A last tile smaller than a thousandth of a tile
+	 * is ignored, so rounding errors do not generate empty quads.
+	 * 
+	 * @param size Size of the part.
+	 * @param tileSize Size of a tile.
+	 * @return Number of tiles
+	 */
+	private static int countTiles(float size, float tileSize) {
+		return Math.max(1, (int) Math.ceil(size / tileSize - TILE_EPSILON));
+	}
+
+	/**
+	 * Adds the quads of one of the nine parts of the patch.
+	 * 
+	 * @param x Left edge of the part in the patch.
+	 * @param y Bottom edge of the part in the patch.
+	 * @param w Width of the part in the patch.
+	 * @param h Height of the part in the patch.
+	 * @param imageX Left edge of the part in the image.
+	 * @param imageY Top edge of the part in the image.
+	 * @param imageW Width of the part in the image.
+	 * @param imageH Height of the part in the image.
+	 * @param tileX true to tile the part horizontally.
+	 * @param tileY true to tile the part vertically.
+	 */
+	private void addPart(float x, float y, float w, float h, float imageX, float imageY, float imageW, float imageH,
+			boolean tileX, boolean tileY) {
+
+		if (w <= 0 || h <= 0 || imageW <= 0 || imageH <= 0) {
+			return;
+		}
+		float tileW = tileX ? imageW : w;
+		float tileH = tileY ? imageH : h;
+		int columns = tileX ? countTiles(w, imageW) : 1;
+		int rows = tileY ? countTiles(h, imageH) : 1;
+		// Tiles start at the top-left corner of the part, so the cut tiles are on the right and bottom edges
+		for (int row = 0; row < rows; row++) {
+			float tileTop = y + h - row * tileH;
+			float quadH = (row == rows - 1) ? tileTop - y : tileH;
+			float quadImageH = tileY ? quadH : imageH;
+			for (int column = 0; column < columns; column++) {
+				float tileLeft = x + column * tileW;
+				float quadW = (column == columns - 1) ? x + w - tileLeft : tileW;
+				float quadImageW = tileX ? quadW : imageW;
+				addQuad(tileLeft, tileTop - quadH, quadW, quadH, imageX, imageY, quadImageW, quadImageH);
+			}
+		}
+	}
+
+	/**
+	 * Adds a quad to the patch. The positions are normalized to the size of the patch and mirrored if the region is
+	 * flipped.
+	 * 
+	 * @param x Left edge of the quad in the patch.
+	 * @param y Bottom edge of the quad in the patch.
+	 * @param w Width of the quad in the patch.
+	 * @param h Height of the quad in the patch.
+	 * @param imageX Left edge of the quad in the image.
+	 * @param imageY Top edge of the quad in the image.
+	 * @param imageW Width of the quad in the image.
+	 * @param imageH Height of the quad in the image.
+	 */
+	private void addQuad(float x, float y, float w, float h, float imageX, float imageY, float imageW, float imageH) {
+		float x0 = x / width;
+		float x1 = (x + w) / width;
+		float y0 = y / height;
+		float y1 = (y + h) / height;
+		if (regionFlippedHorizontally) {
+			x0 = 1.0f - x0;
+			x1 = 1.0f - x1;
+		}
+		if (regionFlippedVertically) {
+			y0 = 1.0f - y0;
+			y1 = 1.0f - y1;
+		}
+		int p = numQuads * 8;
+		// Bottom-left, bottom-right, top-right and top-left vertices
+		positions[p + 0] = x0;
+		positions[p + 1] = y0;
+		positions[p + 2] = x1;
+		positions[p + 3] = y0;
+		positions[p + 4] = x1;
+		positions[p + 5] = y1;
+		positions[p + 6] = x0;
+		positions[p + 7] = y1;
+
+		float imageLeft = imageX;
+		float imageRight = imageX + imageW;
+		float imageTop = imageY;
+		float imageBottom = imageY + imageH;
+		uvs[p + 0] = region.getImageU(imageLeft, imageBottom);
+		uvs[p + 1] = region.getImageV(imageLeft, imageBottom);
+		uvs[p + 2] = region.getImageU(imageRight, imageBottom);
+		uvs[p + 3] = region.getImageV(imageRight, imageBottom);
+		uvs[p + 4] = region.getImageU(imageRight, imageTop);
+		uvs[p + 5] = region.getImageV(imageRight, imageTop);
+		uvs[p + 6] = region.getImageU(imageLeft, imageTop);
+		uvs[p + 7] = region.getImageV(imageLeft, imageTop);
+
+		// Flipping one axis reverses the winding order of the triangles
+		boolean reverse = regionFlippedHorizontally != regionFlippedVertically;
+		short first = (short) (numQuads * 4);
+		int t = numQuads * 6;
+		triangles[t + 0] = first;
+		triangles[t + 1] = (short) (first + (reverse ? 2 : 1));
+		triangles[t + 2] = (short) (first + (reverse ? 1 : 2));
+		triangles[t + 3] = first;
+		triangles[t + 4] = (short) (first + (reverse ? 3 : 2));
+		triangles[t + 5] = (short) (first + (reverse ? 2 : 3));
+		numQuads++;
+	}
+
+	/**
+	 * Grows the arrays of vertices if they can not hold the specified number of quads.
+	 * 
+	 * @param quads Number of quads.
+	 */
+	private void ensureCapacity(int quads) {
+		if (quads * 8 <= positions.length) {
+			return;
+		}
+		int newQuads = Math.max(quads, positions.length / 4);
+		float[] newPositions = new float[newQuads * 8];
+		float[] newUVs = new float[newQuads * 8];
+		short[] newTriangles = new short[newQuads * 6];
+		System.arraycopy(positions, 0, newPositions, 0, numQuads * 8);
+		System.arraycopy(uvs, 0, newUVs, 0, numQuads * 8);
+		System.arraycopy(triangles, 0, newTriangles, 0, numQuads * 6);
+		positions = newPositions;
+		uvs = newUVs;
+		triangles = newTriangles;
+	}
+
+	/**
+	 * Returns true if the region has been modified since the vertices were generated.
+	 * 
+	 * @return true if the region has been modified
+	 */
+	private boolean regionChanged() {
+		return regionX != region.getX() || regionY != region.getY() ||
+				regionWidth != region.getWidth() || regionHeight != region.getHeight() ||
+				regionRotated != region.isRotated() ||
+				regionFlippedHorizontally != region.isFlippedHorizontally() ||
+				regionFlippedVertically != region.isFlippedVertically();
+	}
+
+	/**
+	 * Returns the positions of the vertices generated by the last call to {@link #update(float, float, int)} (x0, y0,
+	 * x1, y1...). The positions are fractions of the size of the patch with the Y axis pointing up, like the positions
+	 * of {@link TextureRegion#getMeshPositions()}.
+	 * 
+	 * @return Positions of the vertices
+	 */
+	public float[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Returns the UV coordinates of the vertices generated by the last call to {@link #update(float, float, int)} (u0,
+	 * v0, u1, v1...).
+	 * 
+	 * @return UV coordinates of the vertices
+	 */
+	public float[] getUVs() {
+		return uvs;
+	}
+
+	/**
+	 * Returns the indices of the triangles generated by the last call to {@link #update(float, float, int)}.
+	 * 
+	 * @return Indices of the vertices of the triangles (3 per triangle)
+	 */
+	public short[] getTriangles() {
+		return triangles;
+	}
+
+	/**
+	 * Returns the number of vertices generated by the last call to {@link #update(float, float, int)}.
+	 * 
+	 * @return Number of vertices
+	 */
+	public int getNumVertices() {
+		return numQuads * 4;
+	}
+
+	/**
+	 * Returns the number of indices generated by the last call to {@link #update(float, float, int)}.
+	 * 
+	 * @return Number of indices
+	 */
+	public int getNumIndices() {
+		return numQuads * 6;
+	}
+
+}
@@ -0,0 +1,281 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.texture;
+
+import android.graphics.Bitmap;
+
+/**
+ * RegionMesh is a list of triangles that covers the visible pixels of the image of a {@link TextureRegion}, so the
+ * image can be rendered without filling its fully transparent areas (see {@link TextureRegion#setMesh(RegionMesh)}).
+ * <br>
+ * The outline can be convex or concave. It can be computed offline (TexturePacker polygon sprites) or when the game is
+ * loaded, from the alpha channel of the image (see {@link #createFromAlpha(TextureRegion, Bitmap, int, int)}).<br>
+ * The vertices are specified in pixels, relative to the top-left corner of the original (untrimmed) image, with the Y
+ * axis pointing down. The same RegionMesh can be shared by several TextureRegions with the same original image, for
+ * example a region and its flipped copy. A RegionMesh is immutable.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class RegionMesh {
+
+	/**
+	 * Maximum number of vertices of a RegionMesh.
+	 */
+	public static final int MAX_VERTICES = Short.MAX_VALUE;
+
+	private final float[] vertices;
+	private final short[] triangles;
+
+	/**
+	 * Creates a new RegionMesh.<br>
+	 * The triangles can be specified in any winding order. They are stored in the order expected by the renderers, so
+	 * they are not discarded by face culling.
+	 * 
+	 * @param vertices Coordinates of the vertices (x0, y0, x1, y1...) in pixels, relative to the top-left corner of the
+	 *            original image. The array is copied.
+	 * @param triangles Indices of the vertices of each triangle (3 indices per triangle). The array is copied.
+	 */
+	public RegionMesh(float[] vertices, short[] triangles) {
+		if (vertices.length < 6 || vertices.length % 2 != 0) {
+			throw new IllegalArgumentException("The mesh must have at least 3 vertices (2 coordinates per vertex)");
+		}
+		if (vertices.length / 2 > MAX_VERTICES) {
+			throw new IllegalArgumentException("The mesh can not have more than " + MAX_VERTICES + " vertices");
+		}
+		if (triangles.length < 3 || triangles.length % 3 != 0) {
+			throw new IllegalArgumentException("The mesh must have at least 1 triangle (3 indices per triangle)");
+		}
+		int numVertices = vertices.length / 2;
+		for (int i = 0; i < triangles.length; i++) {
+			if (triangles[i] < 0 || triangles[i] >= numVertices) {
+				throw new IllegalArgumentException("Index " + triangles[i] + " is not a vertex of the mesh");
+			}
+		}
+		this.vertices = vertices.clone();
+		this.triangles = triangles.clone();
+		normalizeWinding();
+	}
+
+	/**
+	 * Sorts the vertices of every triangle clockwise in pixel coordinates, which is counterclockwise once the Y axis
+	 * points up.
+	 */
+	private void normalizeWinding() {
+		short[] t = triangles;
+		float[] v = vertices;
+		for (int i = 0; i < t.length; i += 3) {
+			int a = t[i] * 2;
+			int b = t[i + 1] * 2;
+			int c = t[i + 2] * 2;
+			float cross = (v[b] - v[a]) * (v[c + 1] - v[a + 1]) - (v[b + 1] - v[a + 1]) * (v[c] - v[a]);
+			if (cross < 0) {
+				short tmp = t[i + 1];
+				t[i + 1] = t[i + 2];
+				t[i + 2] = tmp;
+			}
+		}
+	}
+
+	/**
+	 * Creates a RegionMesh from the alpha channel of the image of the specified TextureRegion.<br>
+	 * The image is divided in square cells, and the cells that contain at least one pixel whose alpha is greater than
+	 * the threshold are covered by the mesh. Consecutive cells of a row are merged into one rectangle, and equal
+	 * rectangles of consecutive rows are merged too, so the mesh has 2 triangles per rectangle. Smaller cells fit the
+	 * outline better but produce more triangles. Rotated and trimmed regions are supported.<br>
+	 * This method reads the pixels of the bitmap, so it should be called when the game is loaded.
+	 * 
+	 * @param region TextureRegion.
+	 * @param bitmap Image of the texture of the region. It must have the same dimensions as the texture.
+	 * @param cellSize Size of the cells in pixels.
+	 * @param alphaThreshold Alpha value (0-255) below or equal to which a pixel is considered transparent.
+	 * @return RegionMesh, or null if all the pixels of the image are transparent
+	 */
+	public static RegionMesh createFromAlpha(TextureRegion region, Bitmap bitmap, int cellSize, int alphaThreshold) {
+		if (cellSize < 1) {
+			throw new IllegalArgumentException("The size of the cells must be at least 1 pixel");
+		}
+		Texture texture = region.getTexture();
+		if (bitmap.getWidth() != texture.getWidth() || bitmap.getHeight() != texture.getHeight()) {
+			throw new IllegalArgumentException("The bitmap must have the same dimensions as the texture");
+		}
+		int regionX = (int) region.getX();
+		int regionY = (int) region.getY();
+		int regionWidth = (int) region.getWidth();
+		int regionHeight = (int) region.getHeight();
+		int imageWidth = (int) region.getImageWidth();
+		int imageHeight = (int) region.getImageHeight();
+		int[] pixels = new int[regionWidth * regionHeight];
+		bitmap.getPixels(pixels, 0, regionWidth, regionX, regionY, regionWidth, regionHeight);
+
+		int columns = (imageWidth + cellSize - 1) / cellSize;
+		int rows = (imageHeight + cellSize - 1) / cellSize;
+		boolean[] cells = new boolean[columns * rows];
+		for (int py = 0; py < imageHeight; py++) {
+			for (int px = 0; px < imageWidth; px++) {
+				// Rotated images are stored 90 degrees clockwise: the top edge is the right edge of the region
+				int pixel = region.isRotated()
+						? pixels[px * regionWidth + (imageHeight - 1 - py)]
+						: pixels[py * regionWidth + px];
+				if ((pixel >>> 24) > alphaThreshold) {
+					cells[(py / cellSize) * columns + (px / cellSize)] = true;
+				}
+			}
+		}
+
+		// Each rectangle is stored as (first column, last column + 1, first row, last row + 1)
+		int[] rectangles = new int[columns * rows * 4];
+		int numRectangles = 0;
+		int firstOpenRectangle = 0;
+		for (int row = 0; row < rows; row++) {
+			int rowFirstRectangle = numRectangles;
+			int column = 0;
+			while (column < columns) {
+				if (!cells[row * columns + column]) {
+					column++;
+					continue;
+				}
+				int start = column;
+				while (column < columns && cells[row * columns + column]) {
+					column++;
+				}
+				int merged = -1;
+				for (int i = firstOpenRectangle; i < rowFirstRectangle; i++) {
+					if (rectangles[i * 4] == start && rectangles[i * 4 + 1] == column && rectangles[i * 4 + 3] == row) {
+						merged = i;
+						break;
+					}
+				}
+				if (merged != -1) {
+					rectangles[merged * 4 + 3] = row + 1;
+				} else {
+					rectangles[numRectangles * 4 + 0] = start;
+					rectangles[numRectangles * 4 + 1] = column;
+					rectangles[numRectangles * 4 + 2] = row;
+					rectangles[numRectangles * 4 + 3] = row + 1;
+					numRectangles++;
+				}
+			}
+			// Rectangles that were not extended to this row can not be extended anymore
+			while (firstOpenRectangle < rowFirstRectangle && rectangles[firstOpenRectangle * 4 + 3] <= row) {
+				firstOpenRectangle++;
+			}
+		}
+		if (numRectangles == 0) {
+			return null;
+		}
+		if (numRectangles * 4 > MAX_VERTICES) {
+			throw new IllegalArgumentException("The mesh would have more than " + MAX_VERTICES +
+					" vertices. Use bigger cells.");
+		}
+
+		float offsetX = region.getTrimOffsetX();
+		float offsetY = region.getTrimOffsetY();
+		float[] vertices = new float[numRectangles * 8];
+		short[] triangles = new short[numRectangles * 6];
+		for (int i = 0; i < numRectangles; i++) {
+			float left = offsetX + rectangles[i * 4 + 0] * cellSize;
+			float right = offsetX + Math.min(rectangles[i * 4 + 1] * cellSize, imageWidth);
+			float top = offsetY + rectangles[i * 4 + 2] * cellSize;
+			float bottom = offsetY + Math.min(rectangles[i * 4 + 3] * cellSize, imageHeight);
+			int v = i * 8;
+			vertices[v + 0] = left;
+			vertices[v + 1] = bottom;
+			vertices[v + 2] = right;
+			vertices[v + 3] = bottom;
+			vertices[v + 4] = right;
+			vertices[v + 5] = top;
+			vertices[v + 6] = left;
+			vertices[v + 7] = top;
+			short first = (short) (i * 4);
+			int t = i * 6;
+			triangles[t + 0] = first;
+			triangles[t + 1] = (short) (first + 1);
+			triangles[t + 2] = (short) (first + 2);
+			triangles[t + 3] = first;
+			triangles[t + 4] = (short) (first + 2);
+			triangles[t + 5] = (short) (first + 3);
+		}
+		return new RegionMesh(vertices, triangles);
+	}
+
+	/**
+	 * Returns the number of vertices of this mesh.
+	 * 
+	 * @return Number of vertices
+	 */
+	public int getNumVertices() {
+		return vertices.length / 2;
+	}
+
+	/**
+	 * Returns the number of indices of this mesh (3 per triangle).
+	 * 
+	 * @return Number of indices
+	 */
+	public int getNumIndices() {
+		return triangles.length;
+	}
+
+	/**
+	 * Returns the X coordinate of the specified vertex.
+	 * 
+	 * @param vertex Index of the vertex.
+	 * @return X coordinate in pixels, relative to the left edge of the original image
+	 */
+	public float getVertexX(int vertex) {
+		return vertices[vertex * 2];
+	}
+
+	/**
+	 * Returns the Y coordinate of the specified vertex.
+	 * 
+	 * @param vertex Index of the vertex.
+	 * @return Y coordinate in pixels, relative to the top edge of the original image
+	 */
+	public float getVertexY(int vertex) {
+		return vertices[vertex * 2 + 1];
+	}
+
+	/**
+	 * Returns the index located at the specified position of the list of triangles.
+	 * 
+	 * @param index Position in the list of triangles (3 indices per triangle).
+	 * @return Index of a vertex
+	 */
+	public short getIndex(int index) {
+		return triangles[index];
+	}
+
+	/**
+	 * Returns the area covered by the triangles of this mesh. Comparing it with the area of the original image gives
+	 * the fraction of the fill rate saved by rendering the mesh instead of a rectangle.
+	 * 
+	 * @return Area in square pixels
+	 */
+	public float computeArea() {
+		float area = 0.0f;
+		short[] t = triangles;
+		float[] v = vertices;
+		for (int i = 0; i < t.length; i += 3) {
+			int a = t[i] * 2;
+			int b = t[i + 1] * 2;
+			int c = t[i + 2] * 2;
+			area += (v[b] - v[a]) * (v[c + 1] - v[a + 1]) - (v[b + 1] - v[a + 1]) * (v[c] - v[a]);
+		}
+		return area / 2;
+	}
+
+}
@@ -19,6 +19,7 @@ import android.graphics.Bitmap;
 import android.opengl.GLES20;
 import android.opengl.GLUtils;
 
+import com.miviclin.droidengine2d.graphics.GLStateCache;
 import com.miviclin.droidengine2d.resources.AssetsLoader;
 import com.miviclin.droidengine2d.util.math.Vector2;
 
@@ -62,6 +63,31 @@ public class Texture implements Comparable<Texture> {
 		this.loaded = false;
 	}
 
+	/**
+	 * Creates a new Texture whose contents are not loaded from a file, but generated by OpenGL (for example, the color
+	 * buffer of a framebuffer object).<br>
+	 * Subclasses must override {@link #loadTexture(Context)} to allocate the texture. The wrap mode is
+	 * GL_CLAMP_TO_EDGE, because OpenGL ES 2.0 does not support other wrap modes for textures whose dimensions are not
+	 * powers of two.
+	 * 
+	 * @param width Width of the texture in pixels.
+	 * @param height Height of the texture in pixels.
+	 */
+	protected Texture(int width, int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("The dimensions of the texture must be greater than 0");
+		}
+		this.path = null;
+		this.textureId = -1;
+		this.minFilter = GLES20.GL_LINEAR;
+		this.magFilter = GLES20.GL_LINEAR;
+		this.wrapS = GLES20.GL_CLAMP_TO_EDGE;
+		this.wrapT = GLES20.GL_CLAMP_TO_EDGE;
+		this.width = width;
+		this.height = height;
+		this.loaded = false;
+	}
+
 	/**
 	 * Loads the texture and sets filters and wrap mode.
 	 * 
@@ -93,18 +119,45 @@ public class Texture implements Comparable<Texture> {
 		textureId = textures[0];
 	}
 
+	/**
+	 * Returns the ID of this texture in the OpenGL context.
+	 * 
+	 * @return Texture ID, or -1 if the texture has not been allocated
+	 */
+	public int getTextureId() {
+		return textureId;
+	}
+
 	/**
 	 * Binds this texture to the OpenGL context.
 	 */
 	public void bind() {
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+		GLStateCache.getInstance().bindTexture2D(textureId);
 	}
 
 	/**
 	 * Unbinds this texture to the OpenGL context.
 	 */
 	public void unBind() {
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+		GLStateCache.getInstance().bindTexture2D(0);
+	}
+
+	/**
+	 * Returns the min filter of this texture.
+	 * 
+	 * @return Min. filter
+	 */
+	public int getMinFilter() {
+		return minFilter;
+	}
+
+	/**
+	 * Returns the mag filter of this texture.
+	 * 
+	 * @return Mag. filter
+	 */
+	public int getMagFilter() {
+		return magFilter;
 	}
 
 	/**
@@ -138,10 +191,11 @@ public class Texture implements Comparable<Texture> {
 	 * This method should be called when the texture is not needed anymore, to release resources.
 	 */
 	public void delete() {
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+		bind();
 		int[] textures = new int[1];
 		textures[0] = textureId;
 		GLES20.glDeleteTextures(1, textures, 0);
+		GLStateCache.getInstance().onTextureDeleted(textureId);
 	}
 
 	/**
@@ -174,6 +228,15 @@ public class Texture implements Comparable<Texture> {
 
 	@Override
 	public int compareTo(Texture texture) {
+		if (path == null || texture.path == null) {
+			if (path != null) {
+				return 1;
+			}
+			if (texture.path != null) {
+				return -1;
+			}
+			return (textureId < texture.textureId) ? -1 : ((textureId == texture.textureId) ? 0 : 1);
+		}
 		return path.compareTo(texture.path);
 	}
 
@@ -27,7 +27,14 @@ import android.content.Context;
 import com.miviclin.droidengine2d.resources.AssetsLoader;
 
 /**
- * TextureAtlas that supports texture atlases generated by TexturePacker (lite version).
+ * TextureAtlas that supports texture atlases generated by TexturePacker (lite version).<br>
+ * Trimmed sprites (oX, oY, oW and oH attributes) and rotated sprites (r attribute) are supported. The w and h
+ * attributes are the dimensions of the trimmed sprite, so a rotated sprite takes an area of h x w pixels of the
+ * texture, where it is stored rotated 90 degrees clockwise. The regions keep the trim offsets and the original size
+ * (see {@link TextureRegion#getOriginalWidth()}), so the renderers render only the trimmed pixels at the right
+ * position inside the rectangle of the original sprite.<br>
+ * Polygon sprites (vertices and triangles elements inside the sprite element) are loaded as the {@link RegionMesh} of
+ * their regions. The vertices are relative to the top-left corner of the original sprite.
  * 
  * @author Miguel Vicente Linares
  * 
@@ -50,9 +57,11 @@ public class TexturePackerAtlas implements TextureAtlas {
 		XmlPullParserFactory factory;
 		XmlPullParser xpp;
 		int eventType, x, y, width, height, index;
-		boolean rotated;
-		TextureRegion region;
+		boolean rotated, trimmed;
+		TextureRegion region = null;
 		String regionName, originalX, originalY, originalW, originalH;
+		String meshVertices = null;
+		String meshTriangles = null;
 		String texturePath = null;
 
 		try {
@@ -78,25 +87,38 @@ public class TexturePackerAtlas implements TextureAtlas {
 						originalH = xpp.getAttributeValue(null, "oH");
 
 						rotated = xpp.getAttributeValue(null, "r") != null;
-						if (rotated) {
-							throw new IllegalArgumentException("TexturePacker's rotated textures are not supported");
-						}
+						trimmed = (originalX != null) || (originalY != null) || (originalW != null) ||
+								(originalH != null);
 						if (texturePath == null) {
 							throw new NullPointerException("Can not find the texture path. " +
 									"Check TextureAtlas imagePath in the XML file and also check that the provided " +
 									"path for tha XML file is correct.");
 						}
-						if ((originalX != null) || (originalY != null) || (originalW != null) || (originalH != null)) {
-							// Trimmed
-							throw new IllegalArgumentException("TexturePacker's trimmed textures are not supported");
+						if (trimmed && ((originalX == null) || (originalY == null) || (originalW == null) ||
+								(originalH == null))) {
+							throw new IllegalArgumentException("Trimmed sprite " + regionName +
+									" must define oX, oY, oW and oH");
+						}
+						if (sourceTexture == null) {
+							sourceTexture = new Texture(context, texturePath);
+						}
+						if (rotated) {
+							region = new TextureRegion(sourceTexture, x, y, height, width);
+							region.setRotated(true);
 						} else {
-							// Not trimmed
-							if (sourceTexture == null) {
-								sourceTexture = new Texture(context, texturePath);
-							}
 							region = new TextureRegion(sourceTexture, x, y, width, height);
-							regions.put(regionName, region);
 						}
+						if (trimmed) {
+							region.setTrim(Integer.parseInt(originalX), Integer.parseInt(originalY),
+									Integer.parseInt(originalW), Integer.parseInt(originalH));
+						}
+						regions.put(regionName, region);
+						meshVertices = null;
+						meshTriangles = null;
+					} else if (xpp.getName().equals("vertices")) {
+						meshVertices = xpp.nextText();
+					} else if (xpp.getName().equals("triangles")) {
+						meshTriangles = xpp.nextText();
 					} else if (xpp.getName().equals("TextureAtlas")) {
 						index = path.lastIndexOf('/');
 						if ((index != -1) && (index + 1 <= path.length())) {
@@ -105,6 +127,10 @@ public class TexturePackerAtlas implements TextureAtlas {
 							texturePath = xpp.getAttributeValue(null, "imagePath");
 						}
 					}
+				} else if (eventType == XmlPullParser.END_TAG && xpp.getName().equals("sprite")) {
+					if ((meshVertices != null) && (meshTriangles != null)) {
+						region.setMesh(new RegionMesh(parseFloats(meshVertices), parseShorts(meshTriangles)));
+					}
 				}
 				eventType = xpp.next();
 			}
@@ -115,6 +141,36 @@ public class TexturePackerAtlas implements TextureAtlas {
 		}
 	}
 
+	/**
+	 * Parses a list of numbers separated by whitespace.
+	 * 
+	 * @param text Text.
+	 * @return Array of numbers
+	 */
+	private static float[] parseFloats(String text) {
+		String[] tokens = text.trim().split("\\s+");
+		float[] values = new float[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			values[i] = Float.parseFloat(tokens[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Parses a list of integers separated by whitespace.
+	 * 
+	 * @param text Text.
+	 * @return Array of integers
+	 */
+	private static short[] parseShorts(String text) {
+		String[] tokens = text.trim().split("\\s+");
+		short[] values = new short[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			values[i] = Short.parseShort(tokens[i]);
+		}
+		return values;
+	}
+
 	@Override
 	public Texture getSourceTexture() {
 		return sourceTexture;
@@ -15,7 +15,15 @@
 package com.miviclin.droidengine2d.graphics.texture;
 
 /**
- * TextureRegion is a region of a texture.
+ * TextureRegion is a region of a texture.<br>
+ * A region can be trimmed: the transparent borders of the original image have been removed, and the region stores
+ * the offset of the remaining pixels and the size of the original image, so it can be rendered as a smaller rectangle
+ * at the right position inside the original one (see {@link #setTrim(float, float, float, float)}).<br>
+ * A region can also be rotated: the image is stored in the texture rotated 90 degrees clockwise, so the region is
+ * as wide as the image is tall (see {@link #setRotated(boolean)}). The UV coordinates of the vertices returned by
+ * {@link #getVertexU(int)} and {@link #getVertexV(int)} take the rotation into account.<br>
+ * A region can have a mesh that covers only the visible pixels of its image (see {@link #setMesh(RegionMesh)}), which
+ * is rendered by {@link com.miviclin.droidengine2d.graphics.mesh.TriangleBatchRenderer}.
  * 
  * @author Miguel Vicente Linares
  * 
@@ -33,6 +41,21 @@ public class TextureRegion {
 	private float height;
 	private boolean flippedHorizontally;
 	private boolean flippedVertically;
+	private boolean rotated;
+	private boolean trimmed;
+	private float trimOffsetX;
+	private float trimOffsetY;
+	private float originalWidth;
+	private float originalHeight;
+	private final float[] vertexUVs;
+	private float quadLeft;
+	private float quadBottom;
+	private float quadRight;
+	private float quadTop;
+	private RegionMesh mesh;
+	private float[] meshPositions;
+	private float[] meshUVs;
+	private short[] meshTriangles;
 
 	/**
 	 * Creates a new TextureRegion.
@@ -48,12 +71,16 @@ public class TextureRegion {
 			throw new IllegalArgumentException("texture can not be null");
 		}
 		this.texture = texture;
+		this.vertexUVs = new float[8];
+		this.rotated = false;
+		this.trimmed = false;
 		setWidth(width);
 		setHeight(height);
 		setX(x);
 		setY(y);
 		this.flippedHorizontally = false;
 		this.flippedVertically = false;
+		updateVertexData();
 	}
 
 	/**
@@ -73,6 +100,15 @@ public class TextureRegion {
 		this.height = textureRegion.height;
 		this.flippedHorizontally = textureRegion.flippedHorizontally;
 		this.flippedVertically = textureRegion.flippedVertically;
+		this.rotated = textureRegion.rotated;
+		this.trimmed = textureRegion.trimmed;
+		this.trimOffsetX = textureRegion.trimOffsetX;
+		this.trimOffsetY = textureRegion.trimOffsetY;
+		this.originalWidth = textureRegion.originalWidth;
+		this.originalHeight = textureRegion.originalHeight;
+		this.vertexUVs = new float[8];
+		this.mesh = textureRegion.mesh;
+		updateVertexData();
 	}
 
 	/**
@@ -144,6 +180,7 @@ public class TextureRegion {
 		this.u1 = x / texture.getWidth();
 		this.u2 = (x + width) / texture.getWidth();
 		this.x = x;
+		updateVertexData();
 	}
 
 	/**
@@ -170,6 +207,7 @@ public class TextureRegion {
 		this.v1 = y / texture.getHeight();
 		this.v2 = (y + height) / texture.getHeight();
 		this.y = y;
+		updateVertexData();
 	}
 
 	/**
@@ -191,6 +229,7 @@ public class TextureRegion {
 			throw new IllegalArgumentException("width must be greater than 0");
 		}
 		this.width = width;
+		updateVertexData();
 	}
 
 	/**
@@ -212,6 +251,7 @@ public class TextureRegion {
 			throw new IllegalArgumentException("height must be greater than 0");
 		}
 		this.height = height;
+		updateVertexData();
 	}
 
 	/**
@@ -224,13 +264,17 @@ public class TextureRegion {
 	}
 
 	/**
-	 * Flips this TextureRegion horizontally.
+	 * Flips this TextureRegion horizontally. If the region is rotated, the image is flipped, not the area of the
+	 * texture.
 	 */
 	public final void flipHorizontally() {
-		float previousU1 = u1;
-		u1 = u2;
-		u2 = previousU1;
+		if (rotated) {
+			swapV();
+		} else {
+			swapU();
+		}
 		flippedHorizontally = !flippedHorizontally;
+		updateVertexData();
 	}
 
 	/**
@@ -243,13 +287,379 @@ public class TextureRegion {
 	}
 
 	/**
-	 * Flips this TextureRegion vertically.
+	 * Flips this TextureRegion vertically. If the region is rotated, the image is flipped, not the area of the texture.
 	 */
 	public final void flipVertically() {
+		if (rotated) {
+			swapU();
+		} else {
+			swapV();
+		}
+		flippedVertically = !flippedVertically;
+		updateVertexData();
+	}
+
+	/**
+	 * Swaps the U1 and U2 coordinates.
+	 */
+	private void swapU() {
+		float previousU1 = u1;
+		u1 = u2;
+		u2 = previousU1;
+	}
+
+	/**
+	 * Swaps the V1 and V2 coordinates.
+	 */
+	private void swapV() {
 		float previousV1 = v1;
 		v1 = v2;
 		v2 = previousV1;
-		flippedVertically = !flippedVertically;
+	}
+
+	/**
+	 * Returns true if the image of this TextureRegion is stored in the texture rotated 90 degrees clockwise.
+	 * 
+	 * @return true if this TextureRegion is rotated, false otherwise
+	 */
+	public final boolean isRotated() {
+		return rotated;
+	}
+
+	/**
+	 * Sets whether the image of this TextureRegion is stored in the texture rotated 90 degrees clockwise.<br>
+	 * The position and the dimensions of the region always describe the area of the texture, so the width of a
+	 * rotated region is the height of its image. This method must be called before flipping the region.
+	 * 
+	 * @param rotated true if the image is rotated, false otherwise.
+	 */
+	public final void setRotated(boolean rotated) {
+		this.rotated = rotated;
+		updateVertexData();
+	}
+
+	/**
+	 * Returns true if the transparent borders of the image of this TextureRegion have been removed.
+	 * 
+	 * @return true if this TextureRegion is trimmed, false otherwise
+	 */
+	public final boolean isTrimmed() {
+		return trimmed;
+	}
+
+	/**
+	 * Declares this TextureRegion as trimmed. The pixels stored in the region are rendered as a smaller rectangle
+	 * inside the rectangle of the original image.
+	 * 
+	 * @param offsetX Distance in pixels from the left edge of the original image to the left edge of the trimmed image.
+	 * @param offsetY Distance in pixels from the top edge of the original image to the top edge of the trimmed image.
+	 * @param originalWidth Width of the original image in pixels.
+	 * @param originalHeight Height of the original image in pixels.
+	 */
+	public final void setTrim(float offsetX, float offsetY, float originalWidth, float originalHeight) {
+		if (offsetX < 0 || offsetY < 0) {
+			throw new IllegalArgumentException("The trim offsets must be equal or greater than 0");
+		}
+		if (offsetX + getImageWidth() > originalWidth || offsetY + getImageHeight() > originalHeight) {
+			throw new IllegalArgumentException("The trimmed image must be fully contained inside the original image");
+		}
+		this.trimmed = true;
+		this.trimOffsetX = offsetX;
+		this.trimOffsetY = offsetY;
+		this.originalWidth = originalWidth;
+		this.originalHeight = originalHeight;
+		updateVertexData();
+	}
+
+	/**
+	 * Returns the distance in pixels from the left edge of the original image to the left edge of the trimmed image.
+	 * 
+	 * @return Trim offset in the X axis, or 0 if this TextureRegion is not trimmed
+	 */
+	public final float getTrimOffsetX() {
+		return trimmed ? trimOffsetX : 0.0f;
+	}
+
+	/**
+	 * Returns the distance in pixels from the top edge of the original image to the top edge of the trimmed image.
+	 * 
+	 * @return Trim offset in the Y axis, or 0 if this TextureRegion is not trimmed
+	 */
+	public final float getTrimOffsetY() {
+		return trimmed ? trimOffsetY : 0.0f;
+	}
+
+	/**
+	 * Returns the width of the image stored in this TextureRegion, which is its height if the region is rotated.
+	 * 
+	 * @return Width of the (trimmed) image in pixels
+	 */
+	public final float getImageWidth() {
+		return rotated ? height : width;
+	}
+
+	/**
+	 * Returns the height of the image stored in this TextureRegion, which is its width if the region is rotated.
+	 * 
+	 * @return Height of the (trimmed) image in pixels
+	 */
+	public final float getImageHeight() {
+		return rotated ? width : height;
+	}
+
+	/**
+	 * Returns the width of the original image, before it was trimmed. This is the size that should be used to render
+	 * the region at its original scale.
+	 * 
+	 * @return Width of the original image in pixels
+	 */
+	public final float getOriginalWidth() {
+		return trimmed ? originalWidth : getImageWidth();
+	}
+
+	/**
+	 * Returns the height of the original image, before it was trimmed. This is the size that should be used to render
+	 * the region at its original scale.
+	 * 
+	 * @return Height of the original image in pixels
+	 */
+	public final float getOriginalHeight() {
+		return trimmed ? originalHeight : getImageHeight();
+	}
+
+	/**
+	 * Returns the U coordinate of the specified vertex of the rectangle where this region is rendered.
+	 * 
+	 * @param vertex Index of the vertex: 0 (bottom-left), 1 (bottom-right), 2 (top-right) or 3 (top-left).
+	 * @return U coordinate
+	 */
+	public final float getVertexU(int vertex) {
+		return vertexUVs[vertex * 2];
+	}
+
+	/**
+	 * Returns the V coordinate of the specified vertex of the rectangle where this region is rendered.
+	 * 
+	 * @param vertex Index of the vertex: 0 (bottom-left), 1 (bottom-right), 2 (top-right) or 3 (top-left).
+	 * @return V coordinate
+	 */
+	public final float getVertexV(int vertex) {
+		return vertexUVs[vertex * 2 + 1];
+	}
+
+	/**
+	 * Returns the left edge of the rectangle where the trimmed image is rendered, relative to the rectangle of the
+	 * original image.
+	 * 
+	 * @return Value between 0 (left edge of the original image) and 1 (right edge of the original image)
+	 */
+	public final float getQuadLeft() {
+		return quadLeft;
+	}
+
+	/**
+	 * Returns the bottom edge of the rectangle where the trimmed image is rendered, relative to the rectangle of the
+	 * original image.
+	 * 
+	 * @return Value between 0 (bottom edge of the original image) and 1 (top edge of the original image)
+	 */
+	public final float getQuadBottom() {
+		return quadBottom;
+	}
+
+	/**
+	 * Returns the right edge of the rectangle where the trimmed image is rendered, relative to the rectangle of the
+	 * original image.
+	 * 
+	 * @return Value between 0 (left edge of the original image) and 1 (right edge of the original image)
+	 */
+	public final float getQuadRight() {
+		return quadRight;
+	}
+
+	/**
+	 * Returns the top edge of the rectangle where the trimmed image is rendered, relative to the rectangle of the
+	 * original image.
+	 * 
+	 * @return Value between 0 (bottom edge of the original image) and 1 (top edge of the original image)
+	 */
+	public final float getQuadTop() {
+		return quadTop;
+	}
+
+	/**
+	 * Updates the UV coordinates of the vertices and the rectangle where the trimmed image is rendered. This method is
+	 * called every time the region changes, so renderers can read the values without computing them.
+	 */
+	private void updateVertexData() {
+		float[] uvs = vertexUVs;
+		if (rotated) {
+			// The image is rotated 90 degrees clockwise: its top edge is the right edge of the region
+			uvs[0] = u1;
+			uvs[1] = v1;
+			uvs[2] = u1;
+			uvs[3] = v2;
+			uvs[4] = u2;
+			uvs[5] = v2;
+			uvs[6] = u2;
+			uvs[7] = v1;
+		} else {
+			uvs[0] = u1;
+			uvs[1] = v2;
+			uvs[2] = u2;
+			uvs[3] = v2;
+			uvs[4] = u2;
+			uvs[5] = v1;
+			uvs[6] = u1;
+			uvs[7] = v1;
+		}
+		if (!trimmed) {
+			quadLeft = 0.0f;
+			quadBottom = 0.0f;
+			quadRight = 1.0f;
+			quadTop = 1.0f;
+		} else {
+			float left = trimOffsetX / originalWidth;
+			float right = (trimOffsetX + getImageWidth()) / originalWidth;
+			float top = 1.0f - trimOffsetY / originalHeight;
+			float bottom = 1.0f - (trimOffsetY + getImageHeight()) / originalHeight;
+			quadLeft = flippedHorizontally ? 1.0f - right : left;
+			quadRight = flippedHorizontally ? 1.0f - left : right;
+			quadBottom = flippedVertically ? 1.0f - top : bottom;
+			quadTop = flippedVertically ? 1.0f - bottom : top;
+		}
+		if (mesh != null) {
+			updateMeshData();
+		}
+	}
+
+	/**
+	 * Updates the positions, the UV coordinates and the triangles of the mesh of this region. The positions are
+	 * fractions of the original image with the Y axis pointing up, like {@link #getQuadLeft()}, and they are mirrored
+	 * if the region is flipped. The UV coordinates are clamped to the trimmed image, so the vertices of the mesh never
+	 * sample the pixels of other regions.
+	 */
+	private void updateMeshData() {
+		int numVertices = mesh.getNumVertices();
+		if (meshPositions == null || meshPositions.length != numVertices * 2) {
+			meshPositions = new float[numVertices * 2];
+			meshUVs = new float[numVertices * 2];
+			meshTriangles = new short[mesh.getNumIndices()];
+		}
+		float imageWidth = getImageWidth();
+		float imageHeight = getImageHeight();
+		float originalW = getOriginalWidth();
+		float originalH = getOriginalHeight();
+		float offsetX = getTrimOffsetX();
+		float offsetY = getTrimOffsetY();
+		for (int i = 0; i < numVertices; i++) {
+			float vx = mesh.getVertexX(i);
+			float vy = mesh.getVertexY(i);
+			float px = vx / originalW;
+			float py = 1.0f - vy / originalH;
+			meshPositions[i * 2 + 0] = flippedHorizontally ? 1.0f - px : px;
+			meshPositions[i * 2 + 1] = flippedVertically ? 1.0f - py : py;
+
+			float ix = Math.max(0.0f, Math.min(vx - offsetX, imageWidth));
+			float iy = Math.max(0.0f, Math.min(vy - offsetY, imageHeight));
+			meshUVs[i * 2 + 0] = getImageU(ix, iy);
+			meshUVs[i * 2 + 1] = getImageV(ix, iy);
+		}
+		// Flipping one axis reverses the winding order of the triangles
+		boolean reverse = flippedHorizontally != flippedVertically;
+		for (int i = 0; i < meshTriangles.length; i += 3) {
+			meshTriangles[i] = mesh.getIndex(i);
+			meshTriangles[i + 1] = mesh.getIndex(reverse ? i + 2 : i + 1);
+			meshTriangles[i + 2] = mesh.getIndex(reverse ? i + 1 : i + 2);
+		}
+	}
+
+	/**
+	 * Returns the U coordinate of the specified point of the image stored in this region. Rotated regions are taken
+	 * into account, but the flips are not.
+	 * 
+	 * @param imageX X coordinate in pixels, relative to the left edge of the (trimmed) image.
+	 * @param imageY Y coordinate in pixels, relative to the top edge of the (trimmed) image.
+	 * @return U coordinate
+	 */
+	public final float getImageU(float imageX, float imageY) {
+		if (rotated) {
+			// The image is rotated 90 degrees clockwise: its top edge is the right edge of the region
+			return (x + getImageHeight() - imageY) / texture.getWidth();
+		}
+		return (x + imageX) / texture.getWidth();
+	}
+
+	/**
+	 * Returns the V coordinate of the specified point of the image stored in this region. Rotated regions are taken
+	 * into account, but the flips are not.
+	 * 
+	 * @param imageX X coordinate in pixels, relative to the left edge of the (trimmed) image.
+	 * @param imageY Y coordinate in pixels, relative to the top edge of the (trimmed) image.
+	 * @return V coordinate
+	 */
+	public final float getImageV(float imageX, float imageY) {
+		if (rotated) {
+			return (y + imageX) / texture.getHeight();
+		}
+		return (y + imageY) / texture.getHeight();
+	}
+
+	/**
+	 * Sets the mesh used to render this region instead of a rectangle, so the transparent areas of the image are not
+	 * rendered (see {@link RegionMesh}). Renderers that only render rectangles ignore the mesh.
+	 * 
+	 * @param mesh RegionMesh, or null to render the region as a rectangle.
+	 */
+	public final void setMesh(RegionMesh mesh) {
+		this.mesh = mesh;
+		this.meshPositions = null;
+		this.meshUVs = null;
+		this.meshTriangles = null;
+		if (mesh != null) {
+			updateMeshData();
+		}
+	}
+
+	/**
+	 * Returns the mesh used to render this region.
+	 * 
+	 * @return RegionMesh, or null if this region is rendered as a rectangle
+	 */
+	public final RegionMesh getMesh() {
+		return mesh;
+	}
+
+	/**
+	 * Returns the positions of the vertices of the mesh of this region (x0, y0, x1, y1...). Each coordinate is a
+	 * fraction of the original image, with the Y axis pointing up, and the region flips are already applied.<br>
+	 * The returned array is not a copy, so it must not be modified.
+	 * 
+	 * @return Positions of the vertices, or null if this region has no mesh
+	 */
+	public final float[] getMeshPositions() {
+		return meshPositions;
+	}
+
+	/**
+	 * Returns the UV coordinates of the vertices of the mesh of this region (u0, v0, u1, v1...).<br>
+	 * The returned array is not a copy, so it must not be modified.
+	 * 
+	 * @return UV coordinates of the vertices, or null if this region has no mesh
+	 */
+	public final float[] getMeshUVs() {
+		return meshUVs;
+	}
+
+	/**
+	 * Returns the indices of the triangles of the mesh of this region, sorted counterclockwise with the region flips
+	 * already applied.<br>
+	 * The returned array is not a copy, so it must not be modified.
+	 * 
+	 * @return Indices of the triangles (3 per triangle), or null if this region has no mesh
+	 */
+	public final short[] getMeshTriangles() {
+		return meshTriangles;
 	}
 
 }
@@ -0,0 +1,284 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.tilemap;
+
+import java.util.Arrays;
+
+/**
+ * Layer of a tile map. It is a grid of tiles of the same size whose images are taken from a {@link TileSet}.<br>
+ * The layer is split in square chunks of tiles. Each chunk is rendered in one draw call by {@link TileMapRenderer},
+ * and changing a tile only requires rebuilding the vertex data of the chunk it belongs to.<br>
+ * The tile at (0, 0) is the bottom-left tile of the layer, and it is located at the position of the layer.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class TileMapLayer {
+
+	/**
+	 * ID of the empty tile. Empty tiles are not rendered.
+	 */
+	public static final int EMPTY_TILE = -1;
+
+	private static final int MAX_CHUNK_SIZE = 128;
+
+	private final TileSet tileSet;
+	private final int widthInTiles;
+	private final int heightInTiles;
+	private final float tileWidth;
+	private final float tileHeight;
+	private final int chunkSize;
+	private final int widthInChunks;
+	private final int heightInChunks;
+	private final int[] tiles;
+	private final int[] chunksVersions;
+	private float x;
+	private float y;
+
+	/**
+	 * Creates a new TileMapLayer with chunks of 32x32 tiles. All the tiles are empty.
+	 * 
+	 * @param tileSet TileSet.
+	 * @param widthInTiles Number of columns of tiles.
+	 * @param heightInTiles Number of rows of tiles.
+	 * @param tileWidth Width of each tile in world units.
+	 * @param tileHeight Height of each tile in world units.
+	 */
+	public TileMapLayer(TileSet tileSet, int widthInTiles, int heightInTiles, float tileWidth, float tileHeight) {
+		this(tileSet, widthInTiles, heightInTiles, tileWidth, tileHeight, 32);
+	}
+
+	/**
+	 * Creates a new TileMapLayer. All the tiles are empty.
+	 * 
+	 * @param tileSet TileSet.
+	 * @param widthInTiles Number of columns of tiles.
+	 * @param heightInTiles Number of rows of tiles.
+	 * @param tileWidth Width of each tile in world units.
+	 * @param tileHeight Height of each tile in world units.
+	 * @param chunkSize Number of columns and rows of tiles of each chunk (max 128).
+	 */
+	public TileMapLayer(TileSet tileSet, int widthInTiles, int heightInTiles, float tileWidth, float tileHeight,
+			int chunkSize) {
+
+		if (tileSet == null) {
+			throw new IllegalArgumentException("tileSet can not be null");
+		}
+		if (widthInTiles < 1 || heightInTiles < 1) {
+			throw new IllegalArgumentException("The layer must have at least one tile");
+		}
+		if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+			throw new IllegalArgumentException("The chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+		}
+		this.tileSet = tileSet;
+		this.widthInTiles = widthInTiles;
+		this.heightInTiles = heightInTiles;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.chunkSize = chunkSize;
+		this.widthInChunks = (widthInTiles + chunkSize - 1) / chunkSize;
+		this.heightInChunks = (heightInTiles + chunkSize - 1) / chunkSize;
+		this.tiles = new int[widthInTiles * heightInTiles];
+		this.chunksVersions = new int[widthInChunks * heightInChunks];
+		this.x = 0;
+		this.y = 0;
+		Arrays.fill(tiles, EMPTY_TILE);
+	}
+
+	/**
+	 * Returns the ID of the tile located at the specified column and row.
+	 * 
+	 * @param column Column.
+	 * @param row Row (0 is the bottom row).
+	 * @return ID of the tile, or {@link #EMPTY_TILE}
+	 */
+	public int getTile(int column, int row) {
+		checkBounds(column, row);
+		return tiles[row * widthInTiles + column];
+	}
+
+	/**
+	 * Sets the tile located at the specified column and row. Only the chunk that contains the tile is rebuilt.
+	 * 
+	 * @param column Column.
+	 * @param row Row (0 is the bottom row).
+	 * @param tileId ID of the tile in the TileSet, or {@link #EMPTY_TILE}.
+	 */
+	public void setTile(int column, int row, int tileId) {
+		checkBounds(column, row);
+		if (tileId < EMPTY_TILE || tileId >= tileSet.getNumTiles()) {
+			throw new IllegalArgumentException("The TileSet does not contain the tile " + tileId);
+		}
+		int index = row * widthInTiles + column;
+		if (tiles[index] != tileId) {
+			tiles[index] = tileId;
+			chunksVersions[(row / chunkSize) * widthInChunks + (column / chunkSize)]++;
+		}
+	}
+
+	/**
+	 * Sets all the tiles of this layer.
+	 * 
+	 * @param tileIds IDs of the tiles, row by row, starting from the bottom row.
+	 */
+	public void setTiles(int[] tileIds) {
+		if (tileIds.length != tiles.length) {
+			throw new IllegalArgumentException("The number of tiles must be " + tiles.length);
+		}
+		for (int i = 0; i < tileIds.length; i++) {
+			if (tileIds[i] < EMPTY_TILE || tileIds[i] >= tileSet.getNumTiles()) {
+				throw new IllegalArgumentException("The TileSet does not contain the tile " + tileIds[i]);
+			}
+		}
+		System.arraycopy(tileIds, 0, tiles, 0, tiles.length);
+		for (int i = 0; i < chunksVersions.length; i++) {
+			chunksVersions[i]++;
+		}
+	}
+
+	/**
+	 * Checks that the specified column and row are inside this layer.
+	 * 
+	 * @param column Column.
+	 * @param row Row.
+	 */
+	private void checkBounds(int column, int row) {
+		if (column < 0 || column >= widthInTiles || row < 0 || row >= heightInTiles) {
+			throw new IndexOutOfBoundsException("The tile (" + column + ", " + row + ") is out of the layer");
+		}
+	}
+
+	/**
+	 * Returns the version of the specified chunk. The version changes every time a tile of the chunk changes.
+	 * 
+	 * @param chunkColumn Column of the chunk.
+	 * @param chunkRow Row of the chunk.
+	 * @return Version of the chunk
+	 */
+	int getChunkVersion(int chunkColumn, int chunkRow) {
+		return chunksVersions[chunkRow * widthInChunks + chunkColumn];
+	}
+
+	/**
+	 * Returns the array of tiles of this layer, row by row, starting from the bottom row.
+	 * 
+	 * @return Array of tiles
+	 */
+	int[] getTiles() {
+		return tiles;
+	}
+
+	/**
+	 * Returns the TileSet of this layer.
+	 * 
+	 * @return TileSet
+	 */
+	public TileSet getTileSet() {
+		return tileSet;
+	}
+
+	/**
+	 * Returns the number of columns of tiles.
+	 * 
+	 * @return Width in tiles
+	 */
+	public int getWidthInTiles() {
+		return widthInTiles;
+	}
+
+	/**
+	 * Returns the number of rows of tiles.
+	 * 
+	 * @return Height in tiles
+	 */
+	public int getHeightInTiles() {
+		return heightInTiles;
+	}
+
+	/**
+	 * Returns the width of each tile in world units.
+	 * 
+	 * @return Tile width
+	 */
+	public float getTileWidth() {
+		return tileWidth;
+	}
+
+	/**
+	 * Returns the height of each tile in world units.
+	 * 
+	 * @return Tile height
+	 */
+	public float getTileHeight() {
+		return tileHeight;
+	}
+
+	/**
+	 * Returns the number of columns and rows of tiles of each chunk.
+	 * 
+	 * @return Chunk size
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Returns the number of columns of chunks.
+	 * 
+	 * @return Width in chunks
+	 */
+	public int getWidthInChunks() {
+		return widthInChunks;
+	}
+
+	/**
+	 * Returns the number of rows of chunks.
+	 * 
+	 * @return Height in chunks
+	 */
+	public int getHeightInChunks() {
+		return heightInChunks;
+	}
+
+	/**
+	 * Returns the position of this layer in the X axis.
+	 * 
+	 * @return Position in the X axis
+	 */
+	public float getX() {
+		return x;
+	}
+
+	/**
+	 * Returns the position of this layer in the Y axis.
+	 * 
+	 * @return Position in the Y axis
+	 */
+	public float getY() {
+		return y;
+	}
+
+	/**
+	 * Sets the position of the bottom-left corner of this layer. Moving a layer does not rebuild its chunks.
+	 * 
+	 * @param x Position in the X axis.
+	 * @param y Position in the Y axis.
+	 */
+	public void setPosition(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+}
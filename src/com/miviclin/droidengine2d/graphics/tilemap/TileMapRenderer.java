@@ -0,0 +1,485 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.tilemap;
+
+import static com.miviclin.droidengine2d.util.PrimitiveTypeSize.SIZE_OF_FLOAT;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.os.Build;
+
+import com.miviclin.droidengine2d.BuildConfig;
+import com.miviclin.droidengine2d.graphics.GLDebugger;
+import com.miviclin.droidengine2d.graphics.GLStateCache;
+import com.miviclin.droidengine2d.graphics.cameras.Camera;
+import com.miviclin.droidengine2d.graphics.cameras.OrthographicCamera;
+import com.miviclin.droidengine2d.graphics.material.BlendingOptions;
+import com.miviclin.droidengine2d.graphics.mesh.QuadIndexBufferObject;
+import com.miviclin.droidengine2d.graphics.shader.ShaderProgram;
+import com.miviclin.droidengine2d.graphics.shader.ShaderVars;
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+
+/**
+ * TileMapRenderer renders {@link TileMapLayer}s chunk by chunk, with one draw call per visible chunk.<br>
+ * If the camera is an {@link OrthographicCamera}, only the chunks that intersect its viewport are rendered. The vertex
+ * data of each visible chunk is built and uploaded to a static vertex buffer object the first time the chunk becomes
+ * visible and every time one of its tiles changes. The vertex buffer objects are kept in a pool, and the least recently
+ * used chunks are evicted when it is full, so the memory used and the cost of each frame depend on the number of
+ * visible chunks instead of the size of the map. Chunks are stamped with the frame in which they were last rendered
+ * (see {@link #beginFrame()}), and a chunk rendered in the current frame is never evicted, so several layers or a
+ * large viewport do not make the visible chunks evict each other.<br>
+ * The vertices of each chunk are relative to the chunk, so moving a layer does not rebuild its chunks.<br>
+ * This class must only be used from the GL thread.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class TileMapRenderer {
+
+	private static final int POSITION_OFFSET = 0;
+	private static final int UV_OFFSET = 2;
+	private static final int VERTEX_STRIDE = 4;
+	private static final int TILE_STRIDE = VERTEX_STRIDE * 4;
+
+	private final Context context;
+	private final ShaderProgram shaderProgram;
+	private final ArrayList<ChunkBuffer> chunkBuffers;
+	private final int maxCachedChunks;
+	private final BlendingOptions blendingOptions;
+	private FloatBuffer vertexBuffer;
+	private int viewProjectionMatrixHandle;
+	private int translationHandle;
+	private int positionHandle;
+	private int textureCoordHandle;
+	private int contextGeneration;
+	private int frameCounter;
+	private ChunkBuffer uncachedChunkBuffer;
+	private int numChunksRenderedInLastDraw;
+
+	/**
+	 * Creates a new TileMapRenderer that keeps the vertex data of up to 64 chunks in the GPU.
+	 * 
+	 * @param context Context used to load the textures.
+	 */
+	public TileMapRenderer(Context context) {
+		this(context, 64);
+	}
+
+	/**
+	 * Creates a new TileMapRenderer.<br>
+	 * If more than maxCachedChunks chunks are rendered in the same frame, the chunks that do not fit in the pool are
+	 * rendered without caching them, so their vertex data is built every time they are rendered.
+	 * 
+	 * @param context Context used to load the textures.
+	 * @param maxCachedChunks Number of chunks whose vertex data is kept in the GPU.
+	 */
+	public TileMapRenderer(Context context, int maxCachedChunks) {
+		if (maxCachedChunks < 1) {
+			throw new IllegalArgumentException("maxCachedChunks must be at least 1");
+		}
+		this.context = context;
+		this.shaderProgram = new ShaderProgram();
+		this.chunkBuffers = new ArrayList<ChunkBuffer>();
+		this.maxCachedChunks = maxCachedChunks;
+		this.blendingOptions = new BlendingOptions();
+		this.vertexBuffer = null;
+		this.contextGeneration = -1;
+		this.frameCounter = 0;
+		this.uncachedChunkBuffer = null;
+		this.numChunksRenderedInLastDraw = 0;
+		setupShaderProgram();
+	}
+
+	/**
+	 * Sets the GLSL code of the shader program of this renderer.
+	 */
+	private void setupShaderProgram() {
+
+		// @formatter:off
+
+		String vertexShaderSource = "" +
+				"uniform mat4 " + ShaderVars.U_VIEW_PROJECTION_MATRIX + ";\n" +
+				"uniform vec2 " + ShaderVars.U_TRANSLATION + ";\n" +
+				"attribute vec2 " + ShaderVars.A_POSITION + ";\n" +
+				"attribute vec2 " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"void main() {\n" +
+				"    vec2 position = " + ShaderVars.A_POSITION + " + " + ShaderVars.U_TRANSLATION + ";\n" +
+				"    gl_Position = " + ShaderVars.U_VIEW_PROJECTION_MATRIX + " * vec4(position, 0.0, 1.0);\n" +
+				"    " + ShaderVars.V_TEXTURE_COORD + " = " + ShaderVars.A_TEXTURE_COORD + ";\n" +
+				"}";
+
+		String fragmentShaderSource = "" +
+				"precision mediump float;\n" +
+				"varying vec2 " + ShaderVars.V_TEXTURE_COORD + ";\n" +
+				"uniform sampler2D sTexture;\n" +
+				"void main() {\n" +
+				"    gl_FragColor = texture2D(sTexture, " + ShaderVars.V_TEXTURE_COORD + ");\n" +
+				"}";
+
+		// @formatter:on
+
+		ArrayList<String> attributes = new ArrayList<String>();
+		attributes.add(ShaderVars.A_POSITION);
+		attributes.add(ShaderVars.A_TEXTURE_COORD);
+
+		ArrayList<String> uniforms = new ArrayList<String>();
+		uniforms.add(ShaderVars.U_VIEW_PROJECTION_MATRIX);
+		uniforms.add(ShaderVars.U_TRANSLATION);
+
+		shaderProgram.setShaders(vertexShaderSource, fragmentShaderSource, attributes, uniforms);
+		viewProjectionMatrixHandle = shaderProgram.getUniformHandle(ShaderVars.U_VIEW_PROJECTION_MATRIX);
+		translationHandle = shaderProgram.getUniformHandle(ShaderVars.U_TRANSLATION);
+		positionHandle = shaderProgram.getAttributeHandle(ShaderVars.A_POSITION);
+		textureCoordHandle = shaderProgram.getAttributeHandle(ShaderVars.A_TEXTURE_COORD);
+	}
+
+	/**
+	 * Renders the chunks of the specified layer that are visible from the specified camera.<br>
+	 * If the camera is not an {@link OrthographicCamera}, all the chunks of the layer are rendered.
+	 * 
+	 * @param layer TileMapLayer.
+	 * @param camera Camera.
+	 */
+	public void draw(TileMapLayer layer, Camera camera) {
+		numChunksRenderedInLastDraw = 0;
+		int firstChunkColumn = 0;
+		int firstChunkRow = 0;
+		int lastChunkColumn = layer.getWidthInChunks() - 1;
+		int lastChunkRow = layer.getHeightInChunks() - 1;
+		if (camera instanceof OrthographicCamera) {
+			float chunkWidth = layer.getChunkSize() * layer.getTileWidth();
+			float chunkHeight = layer.getChunkSize() * layer.getTileHeight();
+			float left = camera.getEye().getX() - layer.getX();
+			float bottom = camera.getEye().getY() - layer.getY();
+			float right = left + camera.getViewportWidth();
+			float top = bottom + camera.getViewportHeight();
+			if (right < 0 || top < 0) {
+				return;
+			}
+			firstChunkColumn = Math.max(firstChunkColumn, (int) Math.floor(left / chunkWidth));
+			firstChunkRow = Math.max(firstChunkRow, (int) Math.floor(bottom / chunkHeight));
+			lastChunkColumn = Math.min(lastChunkColumn, (int) Math.floor(right / chunkWidth));
+			lastChunkRow = Math.min(lastChunkRow, (int) Math.floor(top / chunkHeight));
+			if (firstChunkColumn > lastChunkColumn || firstChunkRow > lastChunkRow) {
+				return;
+			}
+		}
+
+		prepareDraw(layer, camera);
+		for (int chunkRow = firstChunkRow; chunkRow <= lastChunkRow; chunkRow++) {
+			for (int chunkColumn = firstChunkColumn; chunkColumn <= lastChunkColumn; chunkColumn++) {
+				drawChunk(layer, chunkColumn, chunkRow);
+			}
+		}
+
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		glStateCache.disableVertexAttribArray(shaderProgram.getAttributeLocation(positionHandle));
+		glStateCache.disableVertexAttribArray(shaderProgram.getAttributeLocation(textureCoordHandle));
+		GLDebugger.getInstance().passiveCheckGLError();
+	}
+
+	/**
+	 * Notifies this renderer that a new frame starts. The chunks rendered from now on are stamped with the new frame,
+	 * and the chunks rendered in previous frames can be evicted from the pool.<br>
+	 * This method must be called once per frame, before rendering any layer. If it is not called, the pool can not
+	 * evict any chunk once it is full, and the chunks that do not fit in it are rendered without caching them.
+	 */
+	public void beginFrame() {
+		frameCounter++;
+	}
+
+	/**
+	 * Sets up the shader program, the texture and the blending options used to render the chunks of the specified
+	 * layer. The vertex buffer objects are discarded if the GL context has been created again.
+	 * 
+	 * @param layer TileMapLayer.
+	 * @param camera Camera.
+	 */
+	private void prepareDraw(TileMapLayer layer, Camera camera) {
+		GLStateCache glStateCache = GLStateCache.getInstance();
+		if (contextGeneration != glStateCache.getContextGeneration()) {
+			contextGeneration = glStateCache.getContextGeneration();
+			chunkBuffers.clear();
+			uncachedChunkBuffer = null;
+			shaderProgram.compileAndLink();
+		} else if (!shaderProgram.isLinked()) {
+			shaderProgram.compileAndLink();
+		}
+		shaderProgram.use();
+
+		float[] viewProjectionMatrix = camera.getViewProjectionMatrix().getValues();
+		shaderProgram.setUniformMatrix4fv(viewProjectionMatrixHandle, 1, viewProjectionMatrix, 0);
+
+		Texture texture = layer.getTileSet().getTexture();
+		if (!texture.isLoaded()) {
+			texture.loadTexture(context);
+		}
+		texture.bind();
+
+		glStateCache.blendFunc(blendingOptions.getSourceFactor(), blendingOptions.getDestinationFactor());
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+			glStateCache.blendEquation(blendingOptions.getBlendEquationMode());
+		}
+
+		int chunkSize = layer.getChunkSize();
+		QuadIndexBufferObject.ensureCapacity(chunkSize * chunkSize);
+	}
+
+	/**
+	 * Renders the specified chunk in one draw call. The vertex data of the chunk is built if it is not cached or if it
+	 * has changed.
+	 * 
+	 * @param layer TileMapLayer.
+	 * @param chunkColumn Column of the chunk.
+	 * @param chunkRow Row of the chunk.
+	 */
+	private void drawChunk(TileMapLayer layer, int chunkColumn, int chunkRow) {
+		ChunkBuffer chunkBuffer = obtainChunkBuffer(layer, chunkColumn, chunkRow);
+		chunkBuffer.lastFrame = frameCounter;
+		if (chunkBuffer.numTiles == 0) {
+			return;
+		}
+		int chunkSize = layer.getChunkSize();
+		float chunkX = layer.getX() + chunkColumn * chunkSize * layer.getTileWidth();
+		float chunkY = layer.getY() + chunkRow * chunkSize * layer.getTileHeight();
+		shaderProgram.setUniform2f(translationHandle, chunkX, chunkY);
+
+		int strideBytes = VERTEX_STRIDE * SIZE_OF_FLOAT;
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, chunkBuffer.vertexBufferObject);
+		shaderProgram.setAttribute(positionHandle, 2, strideBytes, POSITION_OFFSET * SIZE_OF_FLOAT);
+		shaderProgram.setAttribute(textureCoordHandle, 2, strideBytes, UV_OFFSET * SIZE_OF_FLOAT);
+		QuadIndexBufferObject.bind();
+		GLES20.glDrawElements(GLES20.GL_TRIANGLES, chunkBuffer.numTiles * 6, GLES20.GL_UNSIGNED_SHORT, 0);
+		numChunksRenderedInLastDraw++;
+
+		if (BuildConfig.DEBUG) {
+			GLDebugger.getInstance().incrementNumDrawCallsInCurrentFrame();
+		}
+	}
+
+	/**
+	 * Returns the ChunkBuffer that contains the up to date vertex data of the specified chunk.<br>
+	 * If the chunk is not cached, a new ChunkBuffer is added to the pool if it is not full yet. Otherwise, the least
+	 * recently used ChunkBuffer is reused, unless it has been rendered in the current frame: in that case, the chunk
+	 * is built in a ChunkBuffer that is not part of the pool, so it is not cached. If the chunk is cached but it has
+	 * changed, its vertex data is rebuilt.
+	 * 
+	 * @param layer TileMapLayer.
+	 * @param chunkColumn Column of the chunk.
+	 * @param chunkRow Row of the chunk.
+	 * @return ChunkBuffer
+	 */
+	private ChunkBuffer obtainChunkBuffer(TileMapLayer layer, int chunkColumn, int chunkRow) {
+		int version = layer.getChunkVersion(chunkColumn, chunkRow);
+		ChunkBuffer leastRecentlyUsed = null;
+		for (int i = 0; i < chunkBuffers.size(); i++) {
+			ChunkBuffer chunkBuffer = chunkBuffers.get(i);
+			if (chunkBuffer.layer == layer && chunkBuffer.column == chunkColumn && chunkBuffer.row == chunkRow) {
+				if (chunkBuffer.version != version) {
+					buildChunk(chunkBuffer, layer, chunkColumn, chunkRow, version);
+				}
+				return chunkBuffer;
+			}
+			if (leastRecentlyUsed == null || chunkBuffer.lastFrame < leastRecentlyUsed.lastFrame) {
+				leastRecentlyUsed = chunkBuffer;
+			}
+		}
+		ChunkBuffer chunkBuffer = leastRecentlyUsed;
+		if (chunkBuffers.size() < maxCachedChunks) {
+			chunkBuffer = createChunkBuffer();
+			chunkBuffers.add(chunkBuffer);
+		} else if (leastRecentlyUsed.lastFrame == frameCounter) {
+			if (uncachedChunkBuffer == null) {
+				uncachedChunkBuffer = createChunkBuffer();
+			}
+			chunkBuffer = uncachedChunkBuffer;
+		}
+		buildChunk(chunkBuffer, layer, chunkColumn, chunkRow, version);
+		return chunkBuffer;
+	}
+
+	/**
+	 * Creates a ChunkBuffer with a new vertex buffer object.
+	 * 
+	 * @return ChunkBuffer
+	 */
+	private ChunkBuffer createChunkBuffer() {
+		int[] handles = new int[1];
+		GLES20.glGenBuffers(1, handles, 0);
+		return new ChunkBuffer(handles[0]);
+	}
+
+	/**
+	 * Builds the vertex data of the specified chunk and uploads it to the vertex buffer object of the specified
+	 * ChunkBuffer. Empty tiles are skipped.
+	 * 
+	 * @param chunkBuffer ChunkBuffer.
+	 * @param layer TileMapLayer.
+	 * @param chunkColumn Column of the chunk.
+	 * @param chunkRow Row of the chunk.
+	 * @param version Current version of the chunk.
+	 */
+	private void buildChunk(ChunkBuffer chunkBuffer, TileMapLayer layer, int chunkColumn, int chunkRow, int version) {
+		int chunkSize = layer.getChunkSize();
+		int requiredFloats = chunkSize * chunkSize * TILE_STRIDE;
+		if (vertexBuffer == null || vertexBuffer.capacity() < requiredFloats) {
+			vertexBuffer = ByteBuffer.allocateDirect(requiredFloats * SIZE_OF_FLOAT)
+					.order(ByteOrder.nativeOrder())
+					.asFloatBuffer();
+		}
+		FloatBuffer buffer = vertexBuffer;
+		buffer.clear();
+
+		TileSet tileSet = layer.getTileSet();
+		int[] tiles = layer.getTiles();
+		int widthInTiles = layer.getWidthInTiles();
+		float tileWidth = layer.getTileWidth();
+		float tileHeight = layer.getTileHeight();
+		int firstColumn = chunkColumn * chunkSize;
+		int firstRow = chunkRow * chunkSize;
+		int lastColumn = Math.min(firstColumn + chunkSize, widthInTiles);
+		int lastRow = Math.min(firstRow + chunkSize, layer.getHeightInTiles());
+		int numTiles = 0;
+		for (int row = firstRow; row < lastRow; row++) {
+			for (int column = firstColumn; column < lastColumn; column++) {
+				int tileId = tiles[row * widthInTiles + column];
+				if (tileId == TileMapLayer.EMPTY_TILE) {
+					continue;
+				}
+				TextureRegion region = tileSet.getTile(tileId);
+				// Trimmed regions only cover part of the cell and rotated regions have rotated UV coordinates
+				float cellX = (column - firstColumn) * tileWidth;
+				float cellY = (row - firstRow) * tileHeight;
+				float x1 = cellX + region.getQuadLeft() * tileWidth;
+				float y1 = cellY + region.getQuadBottom() * tileHeight;
+				float x2 = cellX + region.getQuadRight() * tileWidth;
+				float y2 = cellY + region.getQuadTop() * tileHeight;
+				// Bottom-Left
+				buffer.put(x1).put(y1).put(region.getVertexU(0)).put(region.getVertexV(0));
+				// Bottom-Right
+				buffer.put(x2).put(y1).put(region.getVertexU(1)).put(region.getVertexV(1));
+				// Top-Right
+				buffer.put(x2).put(y2).put(region.getVertexU(2)).put(region.getVertexV(2));
+				// Top-Left
+				buffer.put(x1).put(y2).put(region.getVertexU(3)).put(region.getVertexV(3));
+				numTiles++;
+			}
+		}
+		buffer.flip();
+
+		if (numTiles > 0) {
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, chunkBuffer.vertexBufferObject);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, buffer.limit() * SIZE_OF_FLOAT, buffer,
+					GLES20.GL_STATIC_DRAW);
+			GLDebugger.getInstance().passiveCheckGLError();
+		}
+		chunkBuffer.layer = layer;
+		chunkBuffer.column = chunkColumn;
+		chunkBuffer.row = chunkRow;
+		chunkBuffer.version = version;
+		chunkBuffer.numTiles = numTiles;
+	}
+
+	/**
+	 * Deletes the vertex buffer objects of all the cached chunks.<br>
+	 * This method must be called from the GL thread.
+	 */
+	public void delete() {
+		if (contextGeneration == GLStateCache.getInstance().getContextGeneration()) {
+			int[] handles = new int[chunkBuffers.size() + 1];
+			int numHandles = 0;
+			for (int i = 0; i < chunkBuffers.size(); i++) {
+				handles[numHandles++] = chunkBuffers.get(i).vertexBufferObject;
+			}
+			if (uncachedChunkBuffer != null) {
+				handles[numHandles++] = uncachedChunkBuffer.vertexBufferObject;
+			}
+			GLES20.glDeleteBuffers(numHandles, handles, 0);
+		}
+		chunkBuffers.clear();
+		uncachedChunkBuffer = null;
+	}
+
+	/**
+	 * Returns the BlendingOptions used to render the layers. They can be modified.
+	 * 
+	 * @return BlendingOptions
+	 */
+	public BlendingOptions getBlendingOptions() {
+		return blendingOptions;
+	}
+
+	/**
+	 * Returns the number of chunks whose vertex data is currently cached in the GPU.
+	 * 
+	 * @return Number of cached chunks
+	 */
+	public int getNumCachedChunks() {
+		return chunkBuffers.size();
+	}
+
+	/**
+	 * Returns the number of chunks rendered in the last call to {@link #draw(TileMapLayer, Camera)}.<br>
+	 * Chunks without tiles are not counted.
+	 * 
+	 * @return Number of chunks rendered
+	 */
+	public int getNumChunksRenderedInLastDraw() {
+		return numChunksRenderedInLastDraw;
+	}
+
+	/**
+	 * Vertex buffer object that contains the vertex data of a chunk of a TileMapLayer.
+	 * 
+	 * @author Miguel Vicente Linares
+	 * 
+	 */
+	private static class ChunkBuffer {
+
+		private final int vertexBufferObject;
+		private TileMapLayer layer;
+		private int column;
+		private int row;
+		private int version;
+		private int numTiles;
+		private int lastFrame;
+
+		/**
+		 * Creates a new ChunkBuffer that does not contain any chunk.
+		 * 
+		 * @param vertexBufferObject ID of the vertex buffer object.
+		 */
+		public ChunkBuffer(int vertexBufferObject) {
+			this.vertexBufferObject = vertexBufferObject;
+			this.layer = null;
+			this.column = -1;
+			this.row = -1;
+			this.version = 0;
+			this.numTiles = 0;
+			this.lastFrame = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,113 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.graphics.tilemap;
+
+import java.util.ArrayList;
+
+import com.miviclin.droidengine2d.graphics.texture.Texture;
+import com.miviclin.droidengine2d.graphics.texture.TextureRegion;
+
+/**
+ * TileSet maps tile IDs to TextureRegions.<br>
+ * All the regions of a TileSet must belong to the same texture, so each chunk of a {@link TileMapLayer} can be
+ * rendered in one draw call.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class TileSet {
+
+	private final Texture texture;
+	private final ArrayList<TextureRegion> tiles;
+
+	/**
+	 * Creates a new TileSet.
+	 * 
+	 * @param texture Texture all the tiles of this TileSet belong to.
+	 */
+	public TileSet(Texture texture) {
+		if (texture == null) {
+			throw new IllegalArgumentException("texture can not be null");
+		}
+		this.texture = texture;
+		this.tiles = new ArrayList<TextureRegion>();
+	}
+
+	/**
+	 * Adds a tile to this TileSet.
+	 * 
+	 * @param textureRegion TextureRegion of the tile. It must belong to the texture of this TileSet.
+	 * @return ID of the new tile
+	 */
+	public int addTile(TextureRegion textureRegion) {
+		if (!texture.equals(textureRegion.getTexture())) {
+			throw new IllegalArgumentException("The TextureRegion must belong to the texture of the TileSet");
+		}
+		tiles.add(textureRegion);
+		return tiles.size() - 1;
+	}
+
+	/**
+	 * Adds one tile for each cell of a grid of regions of the specified size, from left to right and from top to
+	 * bottom.
+	 * 
+	 * @param x Position of the grid in the X axis in pixels. Relative to the top-left corner of the texture.
+	 * @param y Position of the grid in the Y axis in pixels. Relative to the top-left corner of the texture.
+	 * @param columns Number of columns of the grid.
+	 * @param rows Number of rows of the grid.
+	 * @param tileWidth Width of each region in pixels.
+	 * @param tileHeight Height of each region in pixels.
+	 * @return ID of the first tile added
+	 */
+	public int addTiles(float x, float y, int columns, int rows, float tileWidth, float tileHeight) {
+		int firstTileId = tiles.size();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				tiles.add(new TextureRegion(texture, x + column * tileWidth, y + row * tileHeight, tileWidth,
+						tileHeight));
+			}
+		}
+		return firstTileId;
+	}
+
+	/**
+	 * Returns the TextureRegion of the tile with the specified ID.
+	 * 
+	 * @param tileId ID of the tile.
+	 * @return TextureRegion
+	 */
+	public TextureRegion getTile(int tileId) {
+		return tiles.get(tileId);
+	}
+
+	/**
+	 * Returns the number of tiles of this TileSet.
+	 * 
+	 * @return Number of tiles
+	 */
+	public int getNumTiles() {
+		return tiles.size();
+	}
+
+	/**
+	 * Returns the Texture all the tiles of this TileSet belong to.
+	 * 
+	 * @return Texture
+	 */
+	public Texture getTexture() {
+		return texture;
+	}
+
+}
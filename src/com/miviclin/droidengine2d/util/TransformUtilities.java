@@ -72,6 +72,33 @@ public class TransformUtilities {
 		Matrix.scaleM(matrix, offset, sx, sy, 0.0f);
 	}
 
+	/**
+	 * Applies the following transformations to the specified matrix:<br>
+	 * - Translation.<br>
+	 * - Rotation around the origin, specified by its sine and cosine.<br>
+	 * - Scale.<br>
+	 * The sine and cosine can be computed once and reused for many matrices with the same rotation.
+	 * 
+	 * @param matrix 4x4 matrix.
+	 * @param offset Index of the array where the first element of the matrix is located.
+	 * @param tx Translation in the X axis.
+	 * @param ty Translation in the Y axis.
+	 * @param sin Sine of the rotation angle around the origin (scale / 2).
+	 * @param cos Cosine of the rotation angle around the origin (scale / 2).
+	 * @param sx Scale in the X axis.
+	 * @param sy Scale in the Y axis.
+	 */
+	public static void transform2DSinCos(float[] matrix, int offset, float tx, float ty, float sin, float cos,
+			float sx, float sy) {
+
+		float x = tx + sx / 2;
+		float y = ty + sy / 2;
+		Matrix.setIdentityM(matrix, offset);
+		Matrix.translateM(matrix, offset, x, y, 0.0f);
+		MatrixFix.rotateZM(matrix, offset, sin, cos);
+		Matrix.scaleM(matrix, offset, sx, sy, 0.0f);
+	}
+
 	/**
 	 * Applies the following transformations to the specified matrix:<br>
 	 * - Translation.<br>
@@ -174,6 +201,30 @@ public class TransformUtilities {
 		matrix.scale(sx, sy, 0.0f);
 	}
 
+	/**
+	 * Applies the following transformations to the specified matrix:<br>
+	 * - Translation.<br>
+	 * - Rotation around the origin, specified by its sine and cosine.<br>
+	 * - Scale.<br>
+	 * The sine and cosine can be computed once and reused for many matrices with the same rotation.
+	 * 
+	 * @param matrix 4x4 matrix.
+	 * @param tx Translation in the X axis.
+	 * @param ty Translation in the Y axis.
+	 * @param sin Sine of the rotation angle around the origin.
+	 * @param cos Cosine of the rotation angle around the origin.
+	 * @param sx Scale in the X axis.
+	 * @param sy Scale in the Y axis.
+	 */
+	public static void transform2DSinCos(Matrix4 matrix, float tx, float ty, float sin, float cos, float sx,
+			float sy) {
+
+		matrix.setIdentity();
+		matrix.translate(tx, ty, 0.0f);
+		matrix.rotateZ(sin, cos);
+		matrix.scale(sx, sy, 0.0f);
+	}
+
 	/**
 	 * Applies the following transformations to the specified matrix:<br>
 	 * - Translation.<br>
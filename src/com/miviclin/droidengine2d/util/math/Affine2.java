@@ -0,0 +1,321 @@
+/*   Copyright 2013-2014 Miguel Vicente Linares
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.miviclin.droidengine2d.util.math;
+
+/**
+ * 2D affine transform, stored as the first two rows of a 3x3 matrix:<br>
+ * | m00 m01 m02 |<br>
+ * | m10 m11 m12 |<br>
+ * Unlike {@link Matrix4}, all operations are computed in Java without calling android.opengl.Matrix, so building the
+ * model transform of a sprite only takes a few multiplications.
+ * 
+ * @author Miguel Vicente Linares
+ * 
+ */
+public class Affine2 {
+
+	private float m00;
+	private float m01;
+	private float m02;
+	private float m10;
+	private float m11;
+	private float m12;
+
+	/**
+	 * Creates a new Affine2.<br>
+	 * The default value is the identity transform.
+	 */
+	public Affine2() {
+		setToIdentity();
+	}
+
+	/**
+	 * Sets this transform to the identity transform.
+	 * 
+	 * @return this Affine2
+	 */
+	public Affine2 setToIdentity() {
+		m00 = 1.0f;
+		m01 = 0.0f;
+		m02 = 0.0f;
+		m10 = 0.0f;
+		m11 = 1.0f;
+		m12 = 0.0f;
+		return this;
+	}
+
+	/**
+	 * Copies the specified transform into this transform.
+	 * 
+	 * @param other Affine2.
+	 * @return this Affine2
+	 */
+	public Affine2 set(Affine2 other) {
+		m00 = other.m00;
+		m01 = other.m01;
+		m02 = other.m02;
+		m10 = other.m10;
+		m11 = other.m11;
+		m12 = other.m12;
+		return this;
+	}
+
+	/**
+	 * Sets this transform to the result of the following transformations, applied to the points in this order:<br>
+	 * - Scale.<br>
+	 * - Rotation around (0, 0).<br>
+	 * - Translation.<br>
+	 * This is the same transform built by {@code TransformUtilities.transform2D(matrix, tx, ty, rotation, sx, sy)}.
+	 * 
+	 * @param tx Translation in the X axis.
+	 * @param ty Translation in the Y axis.
+	 * @param rotation Rotation angle in degrees.
+	 * @param sx Scale in the X axis.
+	 * @param sy Scale in the Y axis.
+	 * @return this Affine2
+	 */
+	public Affine2 setToTransform(float tx, float ty, float rotation, float sx, float sy) {
+		if (rotation == 0) {
+			return setToTransformSinCos(tx, ty, 0.0f, 1.0f, sx, sy);
+		}
+		return setToTransformSinCos(tx, ty, FastMath.sinDeg(rotation), FastMath.cosDeg(rotation), sx, sy);
+	}
+
+	/**
+	 * Sets this transform to the result of the following transformations, applied to the points in this order:<br>
+	 * - Scale.<br>
+	 * - Rotation around (0, 0).<br>
+	 * - Translation.<br>
+	 * The rotation is specified by its sine and cosine, so they can be computed once and reused for many transforms
+	 * with the same rotation (for example, the glyphs of a rotated text).
+	 * 
+	 * @param tx Translation in the X axis.
+	 * @param ty Translation in the Y axis.
+	 * @param sin Sine of the rotation angle.
+	 * @param cos Cosine of the rotation angle.
+	 * @param sx Scale in the X axis.
+	 * @param sy Scale in the Y axis.
+	 * @return this Affine2
+	 */
+	public Affine2 setToTransformSinCos(float tx, float ty, float sin, float cos, float sx, float sy) {
+		m00 = cos * sx;
+		m01 = -sin * sy;
+		m02 = tx;
+		m10 = sin * sx;
+		m11 = cos * sy;
+		m12 = ty;
+		return this;
+	}
+
+	/**
+	 * Sets this transform to the result of the following transformations, applied to the points in this order:<br>
+	 * - Translation by (-ox, -oy), so the origin is moved to (0, 0).<br>
+	 * - Scale.<br>
+	 * - Rotation around (0, 0).<br>
+	 * - Translation.<br>
+	 * The result places the origin of the model at (tx, ty), rotated and scaled around it.
+	 * 
+	 * @param tx Translation in the X axis.
+	 * @param ty Translation in the Y axis.
+	 * @param ox X coordinate of the origin, in model space.
+	 * @param oy Y coordinate of the origin, in model space.
+	 * @param rotation Rotation angle in degrees.
+	 * @param sx Scale in the X axis.
+	 * @param sy Scale in the Y axis.
+	 * @return this Affine2
+	 */
+	public Affine2 setToTransform(float tx, float ty, float ox, float oy, float rotation, float sx, float sy) {
+		setToTransform(tx, ty, rotation, sx, sy);
+		m02 = tx - (m00 * ox + m01 * oy);
+		m12 = ty - (m10 * ox + m11 * oy);
+		return this;
+	}
+
+	/**
+	 * Sets this transform to the result of the following transformations, applied to the points in this order:<br>
+	 * - Translation by (-ox, -oy), so the origin is moved to (0, 0).<br>
+	 * - Scale.<br>
+	 * - Rotation around (0, 0), specified by its sine and cosine.<br>
+	 * - Translation.
+	 * 
+	 * @param tx Translation in the X axis.
+	 * @param ty Translation in the Y axis.
+	 * @param ox X coordinate of the origin, in model space.
+	 * @param oy Y coordinate of the origin, in model space.
+	 * @param sin Sine of the rotation angle.
+	 * @param cos Cosine of the rotation angle.
+	 * @param sx Scale in the X axis.
+	 * @param sy Scale in the Y axis.
+	 * @return this Affine2
+	 */
+	public Affine2 setToTransformSinCos(float tx, float ty, float ox, float oy, float sin, float cos, float sx,
+			float sy) {
+
+		setToTransformSinCos(tx, ty, sin, cos, sx, sy);
+		m02 = tx - (m00 * ox + m01 * oy);
+		m12 = ty - (m10 * ox + m11 * oy);
+		return this;
+	}
+
+	/**
+	 * Multiplies this transform by the specified transform (this = this * other). The resulting transform applies
+	 * the specified transform first.
+	 * 
+	 * @param other Affine2.
+	 * @return this Affine2
+	 */
+	public Affine2 multiply(Affine2 other) {
+		float r00 = m00 * other.m00 + m01 * other.m10;
+		float r01 = m00 * other.m01 + m01 * other.m11;
+		float r02 = m00 * other.m02 + m01 * other.m12 + m02;
+		float r10 = m10 * other.m00 + m11 * other.m10;
+		float r11 = m10 * other.m01 + m11 * other.m11;
+		float r12 = m10 * other.m02 + m11 * other.m12 + m12;
+		m00 = r00;
+		m01 = r01;
+		m02 = r02;
+		m10 = r10;
+		m11 = r11;
+		m12 = r12;
+		return this;
+	}
+
+	/**
+	 * Returns the X coordinate of the specified point transformed by this transform.
+	 * 
+	 * @param x X coordinate of the point.
+	 * @param y Y coordinate of the point.
+	 * @return Transformed X coordinate
+	 */
+	public final float transformX(float x, float y) {
+		return m00 * x + m01 * y + m02;
+	}
+
+	/**
+	 * Returns the Y coordinate of the specified point transformed by this transform.
+	 * 
+	 * @param x X coordinate of the point.
+	 * @param y Y coordinate of the point.
+	 * @return Transformed Y coordinate
+	 */
+	public final float transformY(float x, float y) {
+		return m10 * x + m11 * y + m12;
+	}
+
+	/**
+	 * Multiplies a 4x4 matrix by the 4x4 matrix equivalent to the specified transform (result = lhs * rhs), and stores
+	 * the result in the specified array. The z coordinate is not modified by the transform.<br>
+	 * This is used to compose the model transform of a sprite with the view-projection matrix of the camera without
+	 * expanding the model transform to a full 4x4 matrix.<br>
+	 * Note that the model matrices built by {@code TransformUtilities.transform2D} scale the z coordinate by 0. With
+	 * this method the z coordinate of the vertices is kept, so the depth of each rectangle (see
+	 * {@code RectangleBatchRenderer.setDepth}) reaches the depth buffer.
+	 * 
+	 * @param result Array where the resulting 4x4 matrix is stored (column-major order, like {@link Matrix4}).
+	 * @param resultOffset Offset of the first element of the result.
+	 * @param lhs 4x4 matrix (column-major order).
+	 * @param lhsOffset Offset of the first element of lhs.
+	 * @param rhs Affine2.
+	 */
+	public static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset, Affine2 rhs) {
+		for (int row = 0; row < 4; row++) {
+			float l0 = lhs[lhsOffset + row];
+			float l1 = lhs[lhsOffset + 4 + row];
+			float l2 = lhs[lhsOffset + 8 + row];
+			float l3 = lhs[lhsOffset + 12 + row];
+			result[resultOffset + row] = l0 * rhs.m00 + l1 * rhs.m10;
+			result[resultOffset + 4 + row] = l0 * rhs.m01 + l1 * rhs.m11;
+			result[resultOffset + 8 + row] = l2;
+			result[resultOffset + 12 + row] = l0 * rhs.m02 + l1 * rhs.m12 + l3;
+		}
+	}
+
+	/**
+	 * Stores the 4x4 matrix equivalent to this transform in the specified Matrix4.
+	 * 
+	 * @param matrix Matrix4 where the result is stored.
+	 * @return The specified Matrix4
+	 */
+	public Matrix4 toMatrix4(Matrix4 matrix) {
+		float[] values = matrix.setIdentity().getValues();
+		values[Matrix4.M00] = m00;
+		values[Matrix4.M01] = m01;
+		values[Matrix4.M03] = m02;
+		values[Matrix4.M10] = m10;
+		values[Matrix4.M11] = m11;
+		values[Matrix4.M13] = m12;
+		return matrix;
+	}
+
+	/**
+	 * Returns the value located at the first row, first column.
+	 * 
+	 * @return m00
+	 */
+	public float getM00() {
+		return m00;
+	}
+
+	/**
+	 * Returns the value located at the first row, second column.
+	 * 
+	 * @return m01
+	 */
+	public float getM01() {
+		return m01;
+	}
+
+	/**
+	 * Returns the value located at the first row, third column (translation in the X axis).
+	 * 
+	 * @return m02
+	 */
+	public float getM02() {
+		return m02;
+	}
+
+	/**
+	 * Returns the value located at the second row, first column.
+	 * 
+	 * @return m10
+	 */
+	public float getM10() {
+		return m10;
+	}
+
+	/**
+	 * Returns the value located at the second row, second column.
+	 * 
+	 * @return m11
+	 */
+	public float getM11() {
+		return m11;
+	}
+
+	/**
+	 * Returns the value located at the second row, third column (translation in the Y axis).
+	 * 
+	 * @return m12
+	 */
+	public float getM12() {
+		return m12;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + m00 + ", " + m01 + ", " + m02 + "]\n[" + m10 + ", " + m11 + ", " + m12 + "]";
+	}
+
+}
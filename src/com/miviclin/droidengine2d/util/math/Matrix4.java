@@ -327,6 +327,18 @@ public class Matrix4 {
 		return this;
 	}
 
+	/**
+	 * Rotates this matrix around the Z axis.
+	 * 
+	 * @param sin Sine of the rotation angle.
+	 * @param cos Cosine of the rotation angle.
+	 * @return this Matrix4
+	 */
+	public Matrix4 rotateZ(float sin, float cos) {
+		MatrixFix.rotateZM(values, 0, sin, cos);
+		return this;
+	}
+
 	/**
 	 * Defines a viewing transformation in terms of an eye point, a center of view, and an up vector.
 	 * 
@@ -30,7 +30,9 @@ public class MatrixFix {
 	 * {@link android.opengl.Matrix#rotateM(float[], int, float, float, float, float)}. The difference is that the
 	 * method of the {@link android.opengl.Matrix} class allocates heap memory in API 10 and lower.<br>
 	 * 
-	 * Rotates matrix m in place by angle a (in degrees) around the axis (x, y, z)
+	 * Rotates matrix m in place by angle a (in degrees) around the axis (x, y, z).<br>
+	 * Rotations around the Z axis are computed by {@link #rotateZM(float[], int, float, float)}, which does not
+	 * allocate memory. The sine and cosine are computed with the same precision as android.opengl.Matrix.
 	 * 
 	 * @param m 4x4 matrix.
 	 * @param mOffset Index into m where the matrix starts.
@@ -41,6 +43,11 @@ public class MatrixFix {
 	 * @see Matrix#rotateM(float[], int, float[], int, float, float, float, float)
 	 */
 	public static void rotateM(float[] m, int mOffset, float a, float x, float y, float z) {
+		if (x == 0.0f && y == 0.0f && z != 0.0f) {
+			double radians = Math.toRadians((z > 0.0f) ? a : -a);
+			rotateZM(m, mOffset, (float) Math.sin(radians), (float) Math.cos(radians));
+			return;
+		}
 		synchronized (temp) {
 			Matrix.setRotateM(temp, 0, a, x, y, z);
 			Matrix.multiplyMM(temp, 16, m, mOffset, temp, 0);
@@ -48,4 +55,46 @@ public class MatrixFix {
 		}
 	}
 
+	/**
+	 * Rotates matrix m in place by angle a (in degrees) around the axis (x, y, z).<br>
+	 * Same as {@link #rotateM(float[], int, float, float, float, float)}, but the sine and cosine of rotations around
+	 * the Z axis are taken from the lookup tables of {@link FastMath}, which is faster but less precise. It is intended
+	 * for code that computes many transforms per frame and does not need the precision of {@link Math}.
+	 * 
+	 * @param m 4x4 matrix.
+	 * @param mOffset Index into m where the matrix starts.
+	 * @param a Angle to rotate in degrees.
+	 * @param x Scale factor x.
+	 * @param y Scale factor y.
+	 * @param z Scale factor z.
+	 */
+	public static void rotateMFast(float[] m, int mOffset, float a, float x, float y, float z) {
+		if (x == 0.0f && y == 0.0f && z != 0.0f) {
+			float angle = (z > 0.0f) ? a : -a;
+			rotateZM(m, mOffset, FastMath.sinDeg(angle), FastMath.cosDeg(angle));
+			return;
+		}
+		rotateM(m, mOffset, a, x, y, z);
+	}
+
+	/**
+	 * Rotates matrix m in place around the Z axis. The rotation is specified by its sine and cosine, so they can be
+	 * computed once and reused for many matrices.<br>
+	 * This method does not allocate memory, does not need synchronization and only updates the first two columns of
+	 * the matrix, so it is faster than {@link #rotateM(float[], int, float, float, float, float)}.
+	 * 
+	 * @param m 4x4 matrix.
+	 * @param mOffset Index into m where the matrix starts.
+	 * @param sin Sine of the rotation angle.
+	 * @param cos Cosine of the rotation angle.
+	 */
+	public static void rotateZM(float[] m, int mOffset, float sin, float cos) {
+		for (int i = 0; i < 4; i++) {
+			float c0 = m[mOffset + i];
+			float c1 = m[mOffset + 4 + i];
+			m[mOffset + i] = c0 * cos + c1 * sin;
+			m[mOffset + 4 + i] = c1 * cos - c0 * sin;
+		}
+	}
+
 }